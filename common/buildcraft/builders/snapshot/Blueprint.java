@@ -19,7 +19,6 @@ import com.google.common.collect.ImmutableSet;
 
 import net.minecraft.item.ItemStack;
 import net.minecraft.nbt.NBTTagCompound;
-import net.minecraft.nbt.NBTTagInt;
 import net.minecraft.nbt.NBTTagList;
 import net.minecraft.util.Rotation;
 import net.minecraft.util.math.BlockPos;
@@ -61,15 +60,7 @@ public class Blueprint extends Snapshot {
     public NBTTagCompound serializeNBT() {
         NBTTagCompound nbt = super.serializeNBT();
         nbt.setTag("palette", NBTUtilBC.writeCompoundList(palette.stream().map(SchematicBlockManager::writeToNBT)));
-        NBTTagList list = new NBTTagList();
-        for (int z = 0; z < size.getZ(); z++) {
-            for (int y = 0; y < size.getY(); y++) {
-                for (int x = 0; x < size.getX(); x++) {
-                    list.appendTag(new NBTTagInt(data[posToIndex(x, y, z)]));
-                }
-            }
-        }
-        nbt.setTag("data", list);
+        nbt.setTag("dataPacked", PackedBlueprintData.write(data, palette.size(), getAirIndex()));
         nbt.setTag("entities", NBTUtilBC.writeCompoundList(entities.stream().map(SchematicEntityManager::writeToNBT)));
         return nbt;
     }
@@ -86,6 +77,19 @@ public class Blueprint extends Snapshot {
             // schematics through mod additions/deletions)
             palette.add(SchematicBlockManager.readFromNBT(schematicBlockTag));
         }
+        if (nbt.hasKey("dataPacked", Constants.NBT.TAG_COMPOUND)) {
+            data = PackedBlueprintData.read(nbt.getCompoundTag("dataPacked"), getDataSize(), palette.size());
+        } else {
+            deserializeLegacyData(nbt);
+        }
+        for (NBTTagCompound schematicEntityTag :
+            NBTUtilBC.readCompoundList(nbt.getTag("entities")).collect(Collectors.toList())) {
+            entities.add(SchematicEntityManager.readFromNBT(schematicEntityTag));
+        }
+    }
+
+    /** Reads the "data" formats written by older versions: either a list of int tags or an int array. */
+    private void deserializeLegacyData(NBTTagCompound nbt) throws InvalidInputDataException {
         data = new int[Snapshot.getDataSize(size)];
         NBTTagList serializedDataList = nbt.hasKey("data", Constants.NBT.TAG_LIST)
             ? nbt.getTagList("data", Constants.NBT.TAG_INT)
@@ -115,10 +119,16 @@ public class Blueprint extends Snapshot {
                 }
             }
         }
-        for (NBTTagCompound schematicEntityTag :
-            NBTUtilBC.readCompoundList(nbt.getTag("entities")).collect(Collectors.toList())) {
-            entities.add(SchematicEntityManager.readFromNBT(schematicEntityTag));
+    }
+
+    /** @return The index of the first air schematic in the palette, or -1 if there isn't one. */
+    private int getAirIndex() {
+        for (int i = 0; i < palette.size(); i++) {
+            if (palette.get(i).isAir()) {
+                return i;
+            }
         }
+        return -1;
     }
 
     @Override
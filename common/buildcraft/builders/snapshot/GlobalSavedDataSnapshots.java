@@ -10,13 +10,20 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import javax.annotation.Nullable;
 
@@ -25,28 +32,44 @@ import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableList;
 
-import org.apache.commons.lang3.tuple.Pair;
-
+import net.minecraft.nbt.CompressedStreamTools;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTUtil;
+import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
 
+import net.minecraftforge.common.util.Constants;
 import net.minecraftforge.fml.common.FMLCommonHandler;
 import net.minecraftforge.fml.relauncher.Side;
 
-import buildcraft.lib.misc.data.SingleCache;
+import buildcraft.api.core.BCLog;
+import buildcraft.api.core.InvalidInputDataException;
+import buildcraft.api.enums.EnumSnapshotType;
+
+import buildcraft.lib.misc.NBTUtilBC;
+import buildcraft.lib.misc.WorkerThreadUtil;
 import buildcraft.lib.nbt.NbtSquisher;
 
+/** Stores every snapshot as a separate file in a global (not per-save) directory. An index file (key, file name, size
+ * and type of every snapshot) is kept next to them, so listing snapshots and finding the file of a key never have to
+ * read any snapshot files. The index is checked against the directory contents on a background thread whenever this is
+ * created, in case files were added, removed or changed by hand (or by an older version without an index). */
 public class GlobalSavedDataSnapshots {
     private static final String SNAPSHOT_FILE_EXTENSION = ".bcnbt";
+    private static final String INDEX_FILE_NAME = "index.nbt";
+    private static final int INDEX_VERSION = 1;
     private static final Map<Side, GlobalSavedDataSnapshots> INSTANCES = new EnumMap<>(Side.class);
+    /** Used for all of the background disk access. Unlike the shared worker pools this never runs a task on the thread
+     * that submitted it, so the main thread never waits on the disk. */
+    private static final ExecutorService IO_EXECUTOR = WorkerThreadUtil.createQueuedExecutor("BuildCraft Snapshot IO");
     private final LoadingCache<Snapshot.Key, Optional<Snapshot>> snapshotsCache = CacheBuilder.newBuilder()
         .expireAfterAccess(10, TimeUnit.MINUTES)
-        .build(CacheLoader.from(key -> Optional.ofNullable(readSnapshot(key)).map(Pair::getLeft)));
-    private final SingleCache<List<Snapshot.Key>> listCache = new SingleCache<>(
-        this::readList,
-        1,
-        TimeUnit.SECONDS
-    );
+        .build(CacheLoader.from(key -> Optional.ofNullable(readSnapshot(key))));
     private final File snapshotsFile;
+    private final File indexFile;
+    /** Guarded by itself, as the verification pass modifies it from the I/O thread. */
+    private final Map<Snapshot.Key, IndexEntry> index = new LinkedHashMap<>();
+    private volatile List<Snapshot.Key> list = ImmutableList.of();
 
     private GlobalSavedDataSnapshots(Side side) {
         snapshotsFile = new File(
@@ -60,6 +83,9 @@ public class GlobalSavedDataSnapshots {
         } else if (!snapshotsFile.isDirectory()) {
             throw new IllegalStateException("The snapshots directory was not a directory: " + snapshotsFile);
         }
+        indexFile = new File(snapshotsFile, INDEX_FILE_NAME);
+        readIndex();
+        IO_EXECUTOR.execute(this::verifyIndex);
     }
 
     public static void reInit(Side side) {
@@ -77,70 +103,210 @@ public class GlobalSavedDataSnapshots {
         return get(world.isRemote ? Side.CLIENT : Side.SERVER);
     }
 
-    private Pair<Snapshot, File> readSnapshot(Snapshot.Key key) {
-        File[] files = snapshotsFile.listFiles();
-        if (files != null) {
-            for (File snapshotFile : files) {
-                if (snapshotFile.getName().startsWith(key.toString()) &&
-                    snapshotFile.getName().endsWith(SNAPSHOT_FILE_EXTENSION)) {
-                    try (FileInputStream fileInputStream = new FileInputStream(snapshotFile)) {
-                        Snapshot snapshot = Snapshot.readFromNBT(NbtSquisher.expand(fileInputStream));
-                        if (Objects.equals(snapshot.key, key)) {
-                            return Pair.of(snapshot, snapshotFile);
-                        }
-                    } catch (IOException e) {
-                        new IOException("Failed to read the snapshot " + snapshotFile, e).printStackTrace();
-                    }
+    private void readIndex() {
+        NBTTagCompound nbt;
+        try {
+            nbt = CompressedStreamTools.read(indexFile);
+        } catch (IOException e) {
+            new IOException("Failed to read the snapshot index " + indexFile + ", rebuilding it", e).printStackTrace();
+            return;
+        }
+        if (nbt == null || nbt.getInteger("version") != INDEX_VERSION) {
+            return;
+        }
+        synchronized (index) {
+            for (NBTTagCompound entryTag :
+                NBTUtilBC.readCompoundList(nbt.getTag("entries")).collect(Collectors.toList())) {
+                try {
+                    IndexEntry entry = new IndexEntry(entryTag);
+                    index.put(entry.key, entry);
+                } catch (InvalidInputDataException e) {
+                    BCLog.logger.warn("[builders.snapshots] Ignoring an invalid index entry: " + e.getMessage());
                 }
             }
+            updateList();
         }
-        return null;
     }
 
-    private List<Snapshot.Key> readList() {
-        ImmutableList.Builder<Snapshot.Key> listBuilder = ImmutableList.builder();
-        File[] files = snapshotsFile.listFiles();
-        if (files != null) {
-            for (File snapshotFile : files) {
-                if (snapshotFile.getName().endsWith(SNAPSHOT_FILE_EXTENSION)) {
-                    try (FileInputStream fileInputStream = new FileInputStream(snapshotFile)) {
-                        Snapshot snapshot = Snapshot.readFromNBT(NbtSquisher.expand(fileInputStream));
-                        if (snapshotFile.getName().startsWith(snapshot.key.toString())) {
-                            listBuilder.add(snapshot.key);
-                        }
-                    } catch (IOException io) {
-                        new IOException("Failed to read the snapshot " + snapshotFile, io).printStackTrace();
-                    }
+    /** Writes the index. Must be called while holding the lock on {@link #index}. */
+    private void writeIndex() {
+        NBTTagCompound nbt = new NBTTagCompound();
+        nbt.setInteger("version", INDEX_VERSION);
+        nbt.setTag("entries", NBTUtilBC.writeCompoundList(index.values().stream().map(IndexEntry::writeToNBT)));
+        try {
+            CompressedStreamTools.safeWrite(nbt, indexFile);
+        } catch (IOException e) {
+            new IOException("Failed to write the snapshot index " + indexFile, e).printStackTrace();
+        }
+    }
+
+    /** Must be called while holding the lock on {@link #index}. */
+    private void updateList() {
+        list = ImmutableList.copyOf(index.keySet());
+    }
+
+    /** Compares the index with the snapshot files that actually exist, reading (only) the files that aren't in the
+     * index or that have changed since they were indexed. */
+    private void verifyIndex() {
+        File[] files = snapshotsFile.listFiles((dir, name) -> name.endsWith(SNAPSHOT_FILE_EXTENSION));
+        if (files == null) {
+            return;
+        }
+        Map<String, IndexEntry> byFileName = new HashMap<>();
+        synchronized (index) {
+            for (IndexEntry entry : index.values()) {
+                byFileName.put(entry.fileName, entry);
+            }
+        }
+        List<IndexEntry> found = new ArrayList<>();
+        for (File snapshotFile : files) {
+            IndexEntry existing = byFileName.get(snapshotFile.getName());
+            if (existing != null && existing.matches(snapshotFile)) {
+                continue;
+            }
+            try (FileInputStream fileInputStream = new FileInputStream(snapshotFile)) {
+                Snapshot snapshot = Snapshot.readFromNBT(NbtSquisher.expand(fileInputStream));
+                if (snapshotFile.getName().startsWith(snapshot.key.toString())) {
+                    found.add(new IndexEntry(snapshot, snapshotFile));
                 }
+            } catch (IOException e) {
+                new IOException("Failed to read the snapshot " + snapshotFile, e).printStackTrace();
+            }
+        }
+        synchronized (index) {
+            boolean changed = false;
+            for (Iterator<IndexEntry> iterator = index.values().iterator(); iterator.hasNext(); ) {
+                IndexEntry entry = iterator.next();
+                if (!new File(snapshotsFile, entry.fileName).isFile()) {
+                    iterator.remove();
+                    snapshotsCache.invalidate(entry.key);
+                    changed = true;
+                }
+            }
+            for (IndexEntry entry : found) {
+                // Don't re-add snapshots that have been removed since the directory was listed
+                if (new File(snapshotsFile, entry.fileName).isFile()) {
+                    index.values().removeIf(e -> e.fileName.equals(entry.fileName));
+                    index.put(entry.key, entry);
+                    snapshotsCache.invalidate(entry.key);
+                    changed = true;
+                }
+            }
+            if (changed || !indexFile.exists()) {
+                updateList();
+                writeIndex();
             }
         }
-        return listBuilder.build();
     }
 
+    @Nullable
+    private IndexEntry getIndexEntry(Snapshot.Key key) {
+        synchronized (index) {
+            return index.get(key);
+        }
+    }
+
+    @Nullable
+    private Snapshot readSnapshot(Snapshot.Key key) {
+        IndexEntry entry = getIndexEntry(key);
+        if (entry == null) {
+            return null;
+        }
+        File snapshotFile = new File(snapshotsFile, entry.fileName);
+        try (FileInputStream fileInputStream = new FileInputStream(snapshotFile)) {
+            Snapshot snapshot = Snapshot.readFromNBT(NbtSquisher.expand(fileInputStream));
+            if (Objects.equals(snapshot.key, key)) {
+                return snapshot;
+            }
+        } catch (IOException e) {
+            new IOException("Failed to read the snapshot " + snapshotFile, e).printStackTrace();
+        }
+        return null;
+    }
+
+    /** Writes the given snapshot on the snapshot I/O thread. It is available from {@link #getSnapshot(Snapshot.Key)}
+     * straight away, but only shows up in {@link #getList()} once the returned future has completed. */
+    public CompletableFuture<Snapshot> addSnapshotAsync(Snapshot snapshot) {
+        snapshotsCache.put(snapshot.key, Optional.of(snapshot));
+        return CompletableFuture.supplyAsync(() -> {
+            addSnapshot(snapshot);
+            return snapshot;
+        }, IO_EXECUTOR);
+    }
+
+    /** Writes the given snapshot, unless it has already been written. Snapshot files are named after the hash of
+     * their key, but as the hash doesn't include the header more than one key can have the same hash: every key after
+     * the first one gets a number added to the end of its file name. */
     public void addSnapshot(Snapshot snapshot) {
-        File snapshotFile = new File(
-            snapshotsFile,
-            snapshot.key.toString() + SNAPSHOT_FILE_EXTENSION
-        );
-        if (!snapshotFile.exists()) {
-            try (FileOutputStream fileOutputStream = new FileOutputStream(snapshotFile)) {
-                NbtSquisher.squishVanilla(Snapshot.writeToNBT(snapshot), fileOutputStream);
+        String hash = snapshot.key.toString();
+        for (int i = 0; ; i++) {
+            File snapshotFile = new File(snapshotsFile, (i == 0 ? hash : hash + "-" + i) + SNAPSHOT_FILE_EXTENSION);
+            boolean created;
+            try {
+                created = snapshotFile.createNewFile();
             } catch (IOException e) {
-                new IOException("Failed to write the snapshot file: " + snapshotFile, e).printStackTrace();
+                new IOException("Failed to create the snapshot file: " + snapshotFile, e).printStackTrace();
+                snapshotsCache.invalidate(snapshot.key);
+                return;
             }
+            if (created) {
+                try (FileOutputStream fileOutputStream = new FileOutputStream(snapshotFile)) {
+                    NbtSquisher.squishVanilla(Snapshot.writeToNBT(snapshot), fileOutputStream);
+                } catch (IOException e) {
+                    new IOException("Failed to write the snapshot file: " + snapshotFile, e).printStackTrace();
+                    snapshotFile.delete();
+                    snapshotsCache.invalidate(snapshot.key);
+                    return;
+                }
+            } else if (!isFileOf(snapshot.key, snapshotFile)) {
+                // Another snapshot with the same hash
+                continue;
+            }
+            synchronized (index) {
+                index.put(snapshot.key, new IndexEntry(snapshot, snapshotFile));
+                updateList();
+                writeIndex();
+            }
+            snapshotsCache.put(snapshot.key, Optional.of(snapshot));
+            return;
+        }
+    }
+
+    /** @return True if the given (existing) file contains the snapshot with the given key. This uses the index if the
+     * file hasn't changed since it was indexed, and reads the file otherwise. */
+    private boolean isFileOf(Snapshot.Key key, File snapshotFile) {
+        synchronized (index) {
+            for (IndexEntry entry : index.values()) {
+                if (entry.fileName.equals(snapshotFile.getName()) && entry.matches(snapshotFile)) {
+                    return entry.key.equals(key);
+                }
+            }
+        }
+        try (FileInputStream fileInputStream = new FileInputStream(snapshotFile)) {
+            return Objects.equals(Snapshot.readFromNBT(NbtSquisher.expand(fileInputStream)).key, key);
+        } catch (IOException e) {
+            new IOException("Failed to read the snapshot " + snapshotFile, e).printStackTrace();
+            return false;
         }
-        snapshotsCache.invalidate(snapshot.key);
-        listCache.clear();
     }
 
     public void removeSnapshot(Snapshot.Key key) {
-        Optional.ofNullable(readSnapshot(key)).map(Pair::getRight).ifPresent(snapshotFile -> {
-            if (!snapshotFile.delete()) {
-                new IOException("Failed to read the snapshot file: " + snapshotFile).printStackTrace();
+        synchronized (index) {
+            IndexEntry entry = index.remove(key);
+            if (entry == null) {
+                return;
             }
-            snapshotsCache.invalidate(key);
-        });
-        listCache.clear();
+            // Indexes written before file names were made unique can have more than one key for the same file
+            if (index.values().stream().noneMatch(e -> e.fileName.equals(entry.fileName))) {
+                File snapshotFile = new File(snapshotsFile, entry.fileName);
+                if (!snapshotFile.delete() && snapshotFile.exists()) {
+                    new IOException("Failed to delete the snapshot file: " + snapshotFile).printStackTrace();
+                }
+            }
+            updateList();
+            writeIndex();
+        }
+        snapshotsCache.invalidate(key);
     }
 
     @Nullable
@@ -149,7 +315,84 @@ public class GlobalSavedDataSnapshots {
         return snapshotsCache.getUnchecked(key).orElse(null);
     }
 
+    /** Reads the given snapshot on the snapshot I/O thread (unless it's already cached). The returned future completes
+     * on that thread, so use {@link buildcraft.lib.misc.MainThreadExecutor} to do anything with the result. The
+     * result is null if the snapshot doesn't exist. */
+    public CompletableFuture<Snapshot> getSnapshotAsync(@Nullable Snapshot.Key key) {
+        if (key == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        Optional<Snapshot> cached = snapshotsCache.getIfPresent(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached.orElse(null));
+        }
+        return CompletableFuture.supplyAsync(() -> getSnapshot(key), IO_EXECUTOR);
+    }
+
     public List<Snapshot.Key> getList() {
-        return listCache.get();
+        return list;
+    }
+
+    /** @return The type of the given snapshot (from the index), or null if it doesn't exist. */
+    @Nullable
+    public EnumSnapshotType getType(@Nullable Snapshot.Key key) {
+        IndexEntry entry = key == null ? null : getIndexEntry(key);
+        return entry == null ? null : entry.type;
+    }
+
+    /** @return The size of the given snapshot (from the index), or null if it doesn't exist. */
+    @Nullable
+    public BlockPos getSize(@Nullable Snapshot.Key key) {
+        IndexEntry entry = key == null ? null : getIndexEntry(key);
+        return entry == null ? null : entry.size;
+    }
+
+    private static final class IndexEntry {
+        /** Includes the header. */
+        final Snapshot.Key key;
+        final String fileName;
+        final EnumSnapshotType type;
+        final BlockPos size;
+        /** The length and modification time of the file when it was indexed, to find files that have changed. */
+        final long fileLength, fileModified;
+
+        IndexEntry(Snapshot snapshot, File file) {
+            key = snapshot.key;
+            fileName = file.getName();
+            type = snapshot.getType();
+            size = snapshot.size;
+            fileLength = file.length();
+            fileModified = file.lastModified();
+        }
+
+        IndexEntry(NBTTagCompound nbt) throws InvalidInputDataException {
+            if (!nbt.hasKey("key", Constants.NBT.TAG_COMPOUND)) {
+                throw new InvalidInputDataException("Missing key");
+            }
+            key = new Snapshot.Key(nbt.getCompoundTag("key"));
+            fileName = nbt.getString("file");
+            type = NBTUtilBC.readEnum(nbt.getTag("type"), EnumSnapshotType.class);
+            if (fileName.isEmpty() || type == null) {
+                throw new InvalidInputDataException("Missing file name or type for " + key);
+            }
+            size = NBTUtil.getPosFromTag(nbt.getCompoundTag("size"));
+            fileLength = nbt.getLong("length");
+            fileModified = nbt.getLong("modified");
+        }
+
+        NBTTagCompound writeToNBT() {
+            NBTTagCompound nbt = new NBTTagCompound();
+            nbt.setTag("key", key.serializeNBT());
+            nbt.setString("file", fileName);
+            nbt.setTag("type", NBTUtilBC.writeEnum(type));
+            nbt.setTag("size", NBTUtil.createPosTag(size));
+            nbt.setLong("length", fileLength);
+            nbt.setLong("modified", fileModified);
+            return nbt;
+        }
+
+        boolean matches(File file) {
+            return file.length() == fileLength && file.lastModified() == fileModified;
+        }
     }
 }
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.builders.snapshot;
+
+import java.util.Arrays;
+
+import net.minecraft.nbt.NBTTagCompound;
+
+import net.minecraftforge.common.util.Constants;
+
+import buildcraft.api.core.InvalidInputDataException;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+/** Compact NBT form of {@link Blueprint#data}: every palette index is packed into the smallest number of bits that can
+ * hold the palette size, and long runs of air are stored as run lengths rather than as packed values. This is written
+ * as two int arrays (which are a single object each), rather than one {@link net.minecraft.nbt.NBTTagInt} per block.
+ * <p>
+ * The layout of the compound is:
+ * <ul>
+ * <li>"bits": the number of bits per packed value.</li>
+ * <li>"air": the palette index that runs stand for, or -1 if there are no runs.</li>
+ * <li>"runs": alternating lengths of packed values and of air, starting with packed values.</li>
+ * <li>"values": the packed values (in order, skipping every air run), little endian within each int.</li>
+ * </ul>
+ */
+public final class PackedBlueprintData {
+    /** Shorter runs of air than this are cheaper to store as packed values than as 2 run lengths. */
+    public static final int MIN_AIR_RUN = 16;
+
+    private PackedBlueprintData() {}
+
+    /** @return The number of bits needed to store every index in a palette of the given size (at least 1). */
+    public static int getBits(int paletteSize) {
+        return Math.max(1, 32 - Integer.numberOfLeadingZeros(Math.max(paletteSize, 1) - 1));
+    }
+
+    /** @param airIndex The palette index of air, or -1 if the palette doesn't contain air. */
+    public static NBTTagCompound write(int[] data, int paletteSize, int airIndex) {
+        int bits = getBits(paletteSize);
+        IntArrayList runs = new IntArrayList();
+        int packedCount = 0;
+        if (airIndex >= 0) {
+            int runStart = 0;
+            int i = 0;
+            while (i < data.length) {
+                if (data[i] != airIndex) {
+                    i++;
+                    continue;
+                }
+                int airStart = i;
+                while (i < data.length && data[i] == airIndex) {
+                    i++;
+                }
+                if (i - airStart >= MIN_AIR_RUN) {
+                    runs.add(airStart - runStart);
+                    runs.add(i - airStart);
+                    packedCount += airStart - runStart;
+                    runStart = i;
+                }
+            }
+            if (runStart < data.length) {
+                runs.add(data.length - runStart);
+                packedCount += data.length - runStart;
+            }
+        } else {
+            packedCount = data.length;
+        }
+
+        int[] values = new int[(int) (((long) packedCount * bits + 31) >>> 5)];
+        long bit = 0;
+        int i = 0;
+        if (runs.isEmpty()) {
+            for (; i < data.length; i++, bit += bits) {
+                writeBits(values, bit, bits, data[i]);
+            }
+        } else {
+            for (int r = 0; r < runs.size(); r += 2) {
+                for (int end = i + runs.getInt(r); i < end; i++, bit += bits) {
+                    writeBits(values, bit, bits, data[i]);
+                }
+                if (r + 1 < runs.size()) {
+                    i += runs.getInt(r + 1);
+                }
+            }
+        }
+
+        NBTTagCompound nbt = new NBTTagCompound();
+        nbt.setByte("bits", (byte) bits);
+        nbt.setInteger("air", runs.isEmpty() ? -1 : airIndex);
+        nbt.setIntArray("runs", runs.toIntArray());
+        nbt.setIntArray("values", values);
+        return nbt;
+    }
+
+    /** Reads data written by {@link #write(int[], int, int)}, checking that it has exactly the given length and that
+     * every index is inside the palette. */
+    public static int[] read(NBTTagCompound nbt, int dataSize, int paletteSize) throws InvalidInputDataException {
+        int bits = nbt.getByte("bits");
+        if (bits < 1 || bits > 31) {
+            throw new InvalidInputDataException("Invalid number of bits per block: " + bits);
+        }
+        int airIndex = nbt.getInteger("air");
+        int[] runs = nbt.getIntArray("runs");
+        int[] values = nbt.hasKey("values", Constants.NBT.TAG_INT_ARRAY) ? nbt.getIntArray("values") : new int[0];
+        if (airIndex >= paletteSize) {
+            throw new InvalidInputDataException(
+                "Air index " + airIndex + " is outside the palette (" + paletteSize + ")"
+            );
+        }
+        if (runs.length > 0 && airIndex < 0) {
+            throw new InvalidInputDataException("Found air runs without an air index!");
+        }
+
+        long total = 0;
+        long packedCount = 0;
+        for (int r = 0; r < runs.length; r++) {
+            if (runs[r] < 0) {
+                throw new InvalidInputDataException("Negative run length " + runs[r]);
+            }
+            total += runs[r];
+            if ((r & 1) == 0) {
+                packedCount += runs[r];
+            }
+        }
+        if (runs.length == 0) {
+            total = packedCount = dataSize;
+        }
+        if (total != dataSize) {
+            throw new InvalidInputDataException(
+                "Serialized data has length of " + total + ", but we expected " + dataSize
+            );
+        }
+        if (((long) values.length << 5) < packedCount * bits) {
+            throw new InvalidInputDataException(
+                "Serialized data only has " + values.length + " ints, but we need " + packedCount * bits + " bits"
+            );
+        }
+
+        int[] data = new int[dataSize];
+        long bit = 0;
+        int i = 0;
+        if (runs.length == 0) {
+            for (; i < dataSize; i++, bit += bits) {
+                data[i] = readIndex(values, bit, bits, paletteSize);
+            }
+        } else {
+            for (int r = 0; r < runs.length; r += 2) {
+                for (int end = i + runs[r]; i < end; i++, bit += bits) {
+                    data[i] = readIndex(values, bit, bits, paletteSize);
+                }
+                if (r + 1 < runs.length) {
+                    int end = i + runs[r + 1];
+                    Arrays.fill(data, i, end, airIndex);
+                    i = end;
+                }
+            }
+        }
+        return data;
+    }
+
+    private static int readIndex(int[] values, long bit, int bits, int paletteSize) throws InvalidInputDataException {
+        int value = readBits(values, bit, bits);
+        if (value >= paletteSize) {
+            throw new InvalidInputDataException(
+                "Palette index " + value + " is outside the palette (" + paletteSize + ")"
+            );
+        }
+        return value;
+    }
+
+    private static void writeBits(int[] values, long bit, int bits, int value) {
+        int word = (int) (bit >>> 5);
+        int shift = (int) (bit & 31);
+        values[word] |= value << shift;
+        if (shift + bits > 32) {
+            values[word + 1] |= value >>> (32 - shift);
+        }
+    }
+
+    private static int readBits(int[] values, long bit, int bits) {
+        int word = (int) (bit >>> 5);
+        int shift = (int) (bit & 31);
+        long value = (values[word] & 0xFFFF_FFFFL) >>> shift;
+        if (shift + bits > 32) {
+            value |= (values[word + 1] & 0xFFFF_FFFFL) << (32 - shift);
+        }
+        return (int) (value & ((1L << bits) - 1));
+    }
+}
@@ -14,23 +14,17 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.Queue;
-import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
-import javax.annotation.Nonnull;
-
 import com.google.common.collect.ImmutableList;
 
-import net.minecraft.block.state.IBlockState;
 import net.minecraft.init.Items;
 import net.minecraft.item.ItemStack;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.nbt.NBTUtil;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Vec3d;
-import net.minecraft.world.IWorldEventListener;
-import net.minecraft.world.World;
 import net.minecraft.world.WorldServer;
 
 import net.minecraftforge.common.util.INBTSerializable;
@@ -42,7 +36,8 @@ import buildcraft.lib.misc.MessageUtil;
 import buildcraft.lib.misc.NBTUtilBC;
 import buildcraft.lib.misc.VecUtil;
 import buildcraft.lib.net.PacketBufferBC;
-import buildcraft.lib.world.WorldEventListenerAdapter;
+import buildcraft.lib.world.SpatialBlockUpdateNotifier;
+import buildcraft.lib.world.SpatialBlockUpdateNotifier.IBlockUpdateListener;
 
 public abstract class SnapshotBuilder<T extends ITileForSnapshotBuilder> implements INBTSerializable<NBTTagCompound> {
     private static final int MAX_QUEUE_SIZE = 16;
@@ -61,17 +56,10 @@ public abstract class SnapshotBuilder<T extends ITileForSnapshotBuilder> impleme
     private static final long MAX_POWER_PER_TICK = 256 * MjAPI.MJ;
 
     protected final T tile;
-    private final IWorldEventListener worldEventListener = new WorldEventListenerAdapter() {
-        @Override
-        public void notifyBlockUpdate(@Nonnull World world,
-                                      @Nonnull BlockPos pos,
-                                      @Nonnull IBlockState oldState,
-                                      @Nonnull IBlockState newState,
-                                      int flags) {
-            if (tile.getBuilder() == SnapshotBuilder.this && getBuildingInfo() != null && getBuildingInfo().box.contains(pos)) {
-                if (check(pos)) {
-                    afterChecks();
-                }
+    private final IBlockUpdateListener blockUpdateListener = (world, pos, oldState, newState, flags) -> {
+        if (tile.getBuilder() == SnapshotBuilder.this && getBuildingInfo() != null && checkResults != null) {
+            if (check(pos)) {
+                afterChecks();
             }
         }
     };
@@ -89,6 +77,11 @@ public abstract class SnapshotBuilder<T extends ITileForSnapshotBuilder> impleme
     private int[] breakOrder;
     private int[] placeOrder;
     private int[] checkOrder;
+    /** Every index whose check result is {@link #CHECK_RESULT_TO_BREAK}, in {@link #breakOrder}. */
+    private TaskOrderIndex toBreak;
+    /** Every index whose check result is {@link #CHECK_RESULT_TO_PLACE}, in {@link #placeOrder}. Indexes that we
+     * don't have enough items for are blocked until {@link #resourcesChanged()} is called. */
+    private TaskOrderIndex toPlace;
     private int currentCheckIndex;
     public Vec3d robotPos = null;
     public Vec3d prevRobotPos = null;
@@ -103,14 +96,15 @@ public abstract class SnapshotBuilder<T extends ITileForSnapshotBuilder> impleme
     protected abstract Snapshot.BuildingInfo getBuildingInfo();
 
     public void validate() {
-        if (!tile.getWorldBC().isRemote) {
-            tile.getWorldBC().addEventListener(worldEventListener);
+        if (!tile.getWorldBC().isRemote && getBuildingInfo() != null) {
+            SpatialBlockUpdateNotifier.get(tile.getWorldBC())
+                .register(blockUpdateListener, getBuildingInfo().box.min(), getBuildingInfo().box.max());
         }
     }
 
     public void invalidate() {
         if (!tile.getWorldBC().isRemote) {
-            tile.getWorldBC().removeEventListener(worldEventListener);
+            SpatialBlockUpdateNotifier.get(tile.getWorldBC()).unregister(blockUpdateListener);
         }
     }
 
@@ -204,11 +198,15 @@ public abstract class SnapshotBuilder<T extends ITileForSnapshotBuilder> impleme
             )))
             .mapToInt(this::posToIndex)
             .toArray();
+        toBreak = new TaskOrderIndex(breakOrder);
+        toPlace = new TaskOrderIndex(placeOrder);
+        validate();
         tile.getWorldBC().profiler.endSection();
     }
 
     public void resourcesChanged() {
         Arrays.fill(requiredCache, REQUIRED_UNKNOWN);
+        toPlace.unblockAll();
     }
 
     public void cancel() {
@@ -225,6 +223,9 @@ public abstract class SnapshotBuilder<T extends ITileForSnapshotBuilder> impleme
         breakOrder = null;
         placeOrder = null;
         checkOrder = null;
+        toBreak = null;
+        toPlace = null;
+        invalidate();
         currentCheckIndex = 0;
         robotPos = null;
         prevRobotPos = null;
@@ -311,66 +312,59 @@ public abstract class SnapshotBuilder<T extends ITileForSnapshotBuilder> impleme
         tile.getWorldBC().profiler.startSection("add tasks");
         tile.getWorldBC().profiler.startSection("break");
         if (tile.canExcavate()) {
-            Set<Integer> breakTasksIndexes = breakTasks.stream()
-                .map(breakTask -> posToIndex(breakTask.pos))
-                .collect(Collectors.toSet());
-            int[] blocks = Arrays.stream(breakOrder)
-                .filter(i -> checkResults[i] == CHECK_RESULT_TO_BREAK && !breakTasksIndexes.contains(i))
-                .toArray();
-            leftToBreak = blocks.length;
-            if (blocks.length != 0) {
+            int[] breakTasksIndexes = breakTasks.stream().mapToInt(breakTask -> posToIndex(breakTask.pos)).toArray();
+            leftToBreak = toBreak.size() - countContained(breakTasksIndexes, toBreak);
+            if (leftToBreak != 0) {
                 isDone = false;
             }
-            Arrays.stream(blocks)
-                .mapToObj(this::indexToPos)
-                .filter(blockPos -> BlockUtil.getFluidWithFlowing(tile.getWorldBC(), blockPos) == null)
-                .map(blockPos ->
-                    new BreakTask(
-                        blockPos,
-                        0
-                    )
-                )
-                .limit(MAX_QUEUE_SIZE - breakTasks.size())
-                .forEach(breakTasks::add);
+            for (int rank = toBreak.nextRank(0); rank != -1 && breakTasks.size() < MAX_QUEUE_SIZE;
+                 rank = toBreak.nextRank(rank + 1)) {
+                int i = toBreak.getIndex(rank);
+                if (contains(breakTasksIndexes, i)) {
+                    continue;
+                }
+                BlockPos blockPos = indexToPos(i);
+                if (BlockUtil.getFluidWithFlowing(tile.getWorldBC(), blockPos) == null) {
+                    breakTasks.add(new BreakTask(blockPos, 0));
+                }
+            }
         } else {
             leftToBreak = 0;
         }
         tile.getWorldBC().profiler.endSection();
         tile.getWorldBC().profiler.startSection("place");
-        {
-            Set<Integer> placeTasksIndexes = placeTasks.stream()
-                .map(placeTask -> posToIndex(placeTask.pos))
-                .collect(Collectors.toSet());
-            int[] blocks = Arrays.stream(placeOrder)
-                .filter(i -> checkResults[i] == CHECK_RESULT_TO_PLACE && !placeTasksIndexes.contains(i))
-                .toArray();
-            leftToPlace = blocks.length;
-            if (!tile.canExcavate() || breakTasks.isEmpty()) {
-                if (blocks.length != 0) {
-                    isDone = false;
+        int[] placeTasksIndexes = placeTasks.stream().mapToInt(placeTask -> posToIndex(placeTask.pos)).toArray();
+        leftToPlace = toPlace.size() - countContained(placeTasksIndexes, toPlace);
+        if (!tile.canExcavate() || breakTasks.isEmpty()) {
+            if (leftToPlace != 0) {
+                isDone = false;
+            }
+            int toCheck = MAX_QUEUE_SIZE - placeTasks.size();
+            for (int rank = toPlace.nextRank(0); rank != -1 && toCheck > 0; rank = toPlace.nextRank(rank + 1)) {
+                int i = toPlace.getIndex(rank);
+                if (contains(placeTasksIndexes, i)) {
+                    continue;
+                }
+                if (requiredCache[i] == REQUIRED_UNKNOWN) {
+                    boolean has = hasEnoughToPlaceItems(indexToPos(i));
+                    requiredCache[i] = has ? REQUIRED_TRUE : REQUIRED_FALSE;
+                }
+                if (requiredCache[i] == REQUIRED_FALSE) {
+                    // Skip it until our resources change
+                    toPlace.block(i);
+                    continue;
+                }
+                BlockPos blockPos = indexToPos(i);
+                if (!isReadyToPlace(blockPos)) {
+                    continue;
+                }
+                toCheck--;
+                if (canPlace(blockPos)) {
+                    PlaceTask placeTask = new PlaceTask(blockPos, getToPlaceItems(blockPos), 0);
+                    if (placeTask.items != null) {
+                        placeTasks.add(placeTask);
+                    }
                 }
-                Arrays.stream(blocks)
-                    .filter(i -> {
-                        if (requiredCache[i] != REQUIRED_UNKNOWN) {
-                            return requiredCache[i] == REQUIRED_TRUE;
-                        }
-                        boolean has = hasEnoughToPlaceItems(indexToPos(i));
-                        requiredCache[i] = has ? REQUIRED_TRUE : REQUIRED_FALSE;
-                        return has;
-                    })
-                    .mapToObj(this::indexToPos)
-                    .filter(this::isReadyToPlace)
-                    .limit(MAX_QUEUE_SIZE - placeTasks.size())
-                    .filter(this::canPlace)
-                    .map(blockPos ->
-                        new PlaceTask(
-                            blockPos,
-                            getToPlaceItems(blockPos),
-                            0
-                        )
-                    )
-                    .filter(placeTask -> placeTask.items != null)
-                    .forEach(placeTasks::add);
             }
         }
         tile.getWorldBC().profiler.endSection();
@@ -467,6 +461,25 @@ public abstract class SnapshotBuilder<T extends ITileForSnapshotBuilder> impleme
         return isDone;
     }
 
+    private static boolean contains(int[] indexes, int index) {
+        for (int i : indexes) {
+            if (i == index) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int countContained(int[] indexes, TaskOrderIndex orderIndex) {
+        int count = 0;
+        for (int i : indexes) {
+            if (orderIndex.contains(i)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
     @SuppressWarnings("WeakerAccess")
     protected int posToIndex(BlockPos blockPos) {
         return getBuildingInfo().getSnapshot().posToIndex(getBuildingInfo().fromWorld(blockPos));
@@ -483,22 +496,30 @@ public abstract class SnapshotBuilder<T extends ITileForSnapshotBuilder> impleme
     protected boolean check(BlockPos blockPos) {
         int i = posToIndex(blockPos);
         byte prev = checkResults[i];
+        byte result;
         if (isAir(blockPos)) {
             if (tile.getWorldBC().isAirBlock(blockPos)) {
-                checkResults[i] = CHECK_RESULT_CORRECT;
+                result = CHECK_RESULT_CORRECT;
             } else {
-                checkResults[i] = CHECK_RESULT_TO_BREAK;
+                result = CHECK_RESULT_TO_BREAK;
             }
         } else {
             if (isBlockCorrect(blockPos)) {
-                checkResults[i] = CHECK_RESULT_CORRECT;
+                result = CHECK_RESULT_CORRECT;
             } else if (canPlace(blockPos)) {
-                checkResults[i] = CHECK_RESULT_TO_PLACE;
+                result = CHECK_RESULT_TO_PLACE;
             } else {
-                checkResults[i] = CHECK_RESULT_TO_BREAK;
+                result = CHECK_RESULT_TO_BREAK;
             }
         }
-        return prev != checkResults[i];
+        setCheckResult(i, result);
+        return prev != result;
+    }
+
+    private void setCheckResult(int i, byte result) {
+        checkResults[i] = result;
+        toBreak.set(i, result == CHECK_RESULT_TO_BREAK);
+        toPlace.set(i, result == CHECK_RESULT_TO_PLACE);
     }
 
     protected void afterChecks() {
@@ -535,7 +556,10 @@ public abstract class SnapshotBuilder<T extends ITileForSnapshotBuilder> impleme
     @Override
     public void deserializeNBT(NBTTagCompound nbt) {
         updateSnapshot();
-        checkResults = nbt.getByteArray("checkResults");
+        byte[] savedResults = nbt.getByteArray("checkResults");
+        for (int i = 0; i < savedResults.length && i < checkResults.length; i++) {
+            setCheckResult(i, savedResults[i]);
+        }
         breakTasks.clear();
         NBTUtilBC.readCompoundList(nbt.getTag("breakTasks")).map(BreakTask::new).forEach(breakTasks::add);
         placeTasks.clear();
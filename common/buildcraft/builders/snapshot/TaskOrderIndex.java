@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.builders.snapshot;
+
+import java.util.BitSet;
+
+/** Keeps track of which snapshot indexes need work (for example every index that needs to be broken), ordered by a
+ * fixed priority order. Internally this is a bitset indexed by the rank of each index in the order, so it only needs
+ * to be updated when a single index changes, and finding the next N indexes in priority order only looks at the
+ * indexes that actually need work (skipping 64 at a time otherwise), rather than filtering the whole volume.
+ * <p>
+ * Indexes can also be "blocked" (for example because there aren't enough items to place them): blocked indexes are
+ * still counted by {@link #size()}, but skipped by {@link #nextRank(int)} until {@link #unblockAll()} is called. */
+public final class TaskOrderIndex {
+    private final int[] order;
+    private final int[] rankOf;
+    /** Ranks that need work. */
+    private final BitSet pending;
+    /** Ranks that need work, and aren't blocked. */
+    private final BitSet available;
+    private final BitSet blocked;
+    private int size;
+
+    /** @param order Every index, in the order that they should be returned in. */
+    public TaskOrderIndex(int[] order) {
+        this.order = order;
+        this.rankOf = new int[order.length];
+        for (int rank = 0; rank < order.length; rank++) {
+            rankOf[order[rank]] = rank;
+        }
+        pending = new BitSet(order.length);
+        available = new BitSet(order.length);
+        blocked = new BitSet(order.length);
+    }
+
+    public void set(int index, boolean value) {
+        int rank = rankOf[index];
+        if (pending.get(rank) == value) {
+            return;
+        }
+        pending.set(rank, value);
+        available.set(rank, value && !blocked.get(rank));
+        size += value ? 1 : -1;
+    }
+
+    public boolean contains(int index) {
+        return pending.get(rankOf[index]);
+    }
+
+    /** Stops the given index from being returned by {@link #nextRank(int)} until {@link #unblockAll()} is called. */
+    public void block(int index) {
+        int rank = rankOf[index];
+        blocked.set(rank);
+        available.clear(rank);
+    }
+
+    public void unblockAll() {
+        blocked.clear();
+        available.clear();
+        available.or(pending);
+    }
+
+    public void clear() {
+        pending.clear();
+        available.clear();
+        blocked.clear();
+        size = 0;
+    }
+
+    /** @return The number of indexes that need work, including blocked ones. */
+    public int size() {
+        return size;
+    }
+
+    /** @return The first rank (at or after the given rank) that needs work and isn't blocked, or -1 if there are no
+     *         more. Use {@link #getIndex(int)} to get the index for a rank. */
+    public int nextRank(int fromRank) {
+        return available.nextSetBit(fromRank);
+    }
+
+    public int getIndex(int rank) {
+        return order[rank];
+    }
+}
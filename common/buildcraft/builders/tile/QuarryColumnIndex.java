@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.builders.tile;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.Predicate;
+
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.util.math.BlockPos;
+
+import buildcraft.lib.misc.data.Box;
+
+/** Stores the "surface" of every column in a quarry's mining box: the highest Y that the drill can't move through. A
+ * block can only be mined once the drill can move down to it, which is exactly when it's at (or below) the surface of
+ * its column, so this replaces scanning the column above every candidate block.
+ * <p>
+ * Columns are found lazily (scanning down from the top of the box the first time they are asked for), and then kept up
+ * to date with {@link #onBlockChanged(BlockPos, boolean)}. Whenever the surface block is removed the column is only
+ * re-scanned from just below it, so finding the surfaces while mining the whole box only looks at every block once.
+ * <p>
+ * The invariant is that every block above {@link #surface} can be moved through. If a column is {@link #found} then
+ * the block at {@link #surface} can't be (or the surface is below the box, if the whole column can be moved
+ * through). */
+public class QuarryColumnIndex {
+    private final int minX, minY, minZ, maxY;
+    private final int sizeX, sizeZ;
+    private final int[] surface;
+    private final BitSet found;
+
+    public QuarryColumnIndex(Box box) {
+        this(box.min(), box.max());
+    }
+
+    public QuarryColumnIndex(BlockPos min, BlockPos max) {
+        minX = min.getX();
+        minY = min.getY();
+        minZ = min.getZ();
+        maxY = max.getY();
+        sizeX = max.getX() - minX + 1;
+        sizeZ = max.getZ() - minZ + 1;
+        surface = new int[sizeX * sizeZ];
+        found = new BitSet(surface.length);
+        clear();
+    }
+
+    /** @return True if this was created for the given box (or a box with the same position and size). */
+    public boolean isFor(Box box) {
+        return box.isInitialized() && box.min().getX() == minX && box.min().getY() == minY
+            && box.min().getZ() == minZ && box.max().getY() == maxY && box.size().getX() == sizeX
+            && box.size().getZ() == sizeZ;
+    }
+
+    public void clear() {
+        Arrays.fill(surface, maxY);
+        found.clear();
+    }
+
+    private int getIndex(int x, int z) {
+        return (x - minX) * sizeZ + (z - minZ);
+    }
+
+    /** @param canMoveThrough Used to find the surface of the column if it isn't already known.
+     * @return The highest Y in the given column that the drill can't move through, or one less than the bottom of the
+     *         box if it can move through the whole column. */
+    public int getSurface(int x, int z, Predicate<BlockPos> canMoveThrough) {
+        int index = getIndex(x, z);
+        if (!found.get(index)) {
+            BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+            int y = surface[index];
+            while (y >= minY && canMoveThrough.test(pos.setPos(x, y, z))) {
+                y--;
+            }
+            surface[index] = y;
+            found.set(index);
+        }
+        return surface[index];
+    }
+
+    /** @return True if every block above the given position (inside of the box) can be moved through. */
+    public boolean canMoveDownTo(BlockPos pos, Predicate<BlockPos> canMoveThrough) {
+        return getSurface(pos.getX(), pos.getZ(), canMoveThrough) <= pos.getY();
+    }
+
+    /** Updates the column of the given position, which must be inside the box.
+     *
+     * @param canMoveThrough True if the drill can now move through the given position. */
+    public void onBlockChanged(BlockPos pos, boolean canMoveThrough) {
+        int index = getIndex(pos.getX(), pos.getZ());
+        int y = pos.getY();
+        if (canMoveThrough) {
+            if (y == surface[index]) {
+                // Continue scanning from just below it
+                surface[index] = y - 1;
+                found.clear(index);
+            }
+        } else if (y > surface[index]) {
+            surface[index] = y;
+            found.set(index);
+        }
+    }
+
+    public NBTTagCompound writeToNBT() {
+        NBTTagCompound nbt = new NBTTagCompound();
+        nbt.setIntArray("surface", surface);
+        nbt.setByteArray("found", found.toByteArray());
+        return nbt;
+    }
+
+    /** Reads the columns written by {@link #writeToNBT()}, if they were written for a box of the same size. Otherwise
+     * this is cleared, so every column will be found again. */
+    public void readFromNBT(NBTTagCompound nbt) {
+        int[] read = nbt.getIntArray("surface");
+        if (read.length != surface.length) {
+            clear();
+            return;
+        }
+        for (int y : read) {
+            if (y < minY - 1 || y > maxY) {
+                clear();
+                return;
+            }
+        }
+        System.arraycopy(read, 0, surface, 0, surface.length);
+        found.clear();
+        found.or(BitSet.valueOf(nbt.getByteArray("found")));
+    }
+}
@@ -284,7 +284,7 @@ public class TileArchitectTable extends TileBC_Neptune implements ITickable, IDe
             ((Blueprint) snapshot).entities.addAll(blueprintScannedEntities);
         }
         snapshot.computeKey();
-        GlobalSavedDataSnapshots.get(world).addSnapshot(snapshot);
+        GlobalSavedDataSnapshots.get(world).addSnapshotAsync(snapshot);
         ItemStack stackIn = invSnapshotIn.getStackInSlot(0);
         stackIn.setCount(stackIn.getCount() - 1);
         if (stackIn.getCount() == 0) {
@@ -52,6 +52,7 @@ import buildcraft.lib.fluid.TankManager;
 import buildcraft.lib.misc.AdvancementUtil;
 import buildcraft.lib.misc.BoundingBoxUtil;
 import buildcraft.lib.misc.CapUtil;
+import buildcraft.lib.misc.MainThreadExecutor;
 import buildcraft.lib.misc.MessageUtil;
 import buildcraft.lib.misc.NBTUtilBC;
 import buildcraft.lib.misc.PositionUtil;
@@ -101,6 +102,8 @@ public class TileBuilder extends TileBC_Neptune
     private List<BlockPos> basePoses = new ArrayList<>();
     private int currentBasePosIndex = 0;
     private Snapshot snapshot = null;
+    /** The key of the snapshot that is being read on a worker thread, or null if none is. */
+    private Snapshot.Key loadingSnapshotKey = null;
     public EnumSnapshotType snapshotType = null;
     private Template.BuildingInfo templateBuildingInfo = null;
     private Blueprint.BuildingInfo blueprintBuildingInfo = null;
@@ -139,13 +142,11 @@ public class TileBuilder extends TileBC_Neptune
             if (handler == invSnapshot) {
                 currentBasePosIndex = 0;
                 snapshot = null;
+                loadingSnapshotKey = null;
                 if (after.getItem() instanceof ItemSnapshot) {
                     Snapshot.Header header = BCBuildersItems.snapshot.getHeader(after);
                     if (header != null) {
-                        Snapshot newSnapshot = GlobalSavedDataSnapshots.get(world).getSnapshot(header.key);
-                        if (newSnapshot != null) {
-                            snapshot = newSnapshot;
-                        }
+                        loadSnapshot(header.key);
                     }
                 }
                 updateSnapshot(true);
@@ -158,6 +159,23 @@ public class TileBuilder extends TileBC_Neptune
         super.onSlotChange(handler, slot, before, after);
     }
 
+    /** Reads the snapshot off the main thread, and only uses it if the same snapshot is still wanted when it has been
+     * read. */
+    private void loadSnapshot(Snapshot.Key key) {
+        loadingSnapshotKey = key;
+        GlobalSavedDataSnapshots.get(world).getSnapshotAsync(key).thenAcceptAsync(newSnapshot -> {
+            if (isInvalid() || loadingSnapshotKey != key) {
+                return;
+            }
+            loadingSnapshotKey = null;
+            if (newSnapshot != null) {
+                snapshot = newSnapshot;
+                updateSnapshot(true);
+                sendNetworkUpdate(NET_SNAPSHOT_TYPE);
+            }
+        }, MainThreadExecutor.SERVER);
+    }
+
     @Override
     public void validate() {
         super.validate();
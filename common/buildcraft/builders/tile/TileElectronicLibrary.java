@@ -12,6 +12,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 import javax.annotation.Nonnull;
 
@@ -31,6 +32,7 @@ import buildcraft.api.data.NbtSquishConstants;
 
 import buildcraft.lib.delta.DeltaInt;
 import buildcraft.lib.delta.DeltaManager;
+import buildcraft.lib.misc.MainThreadExecutor;
 import buildcraft.lib.misc.StackUtil;
 import buildcraft.lib.misc.data.IdAllocator;
 import buildcraft.lib.nbt.NbtSquisher;
@@ -90,6 +92,8 @@ public class TileElectronicLibrary extends TileBC_Neptune implements ITickable {
     public final DeltaInt deltaProgressDown = deltaManager.addDelta("progressDown", DeltaManager.EnumNetworkVisibility.GUI_ONLY);
     public final DeltaInt deltaProgressUp = deltaManager.addDelta("progressUp", DeltaManager.EnumNetworkVisibility.GUI_ONLY);
     private final Map<Pair<UUID, Snapshot.Key>, List<byte[]>> upSnapshotsParts = new HashMap<>();
+    /** The snapshot that will be sent down, which is read on a worker thread while the progress bar fills up. */
+    private CompletableFuture<Snapshot> downSnapshot = null;
 
     @Override
     protected void onSlotChange(IItemHandlerModifiable handler, int slot, @Nonnull ItemStack before, @Nonnull ItemStack after) {
@@ -99,6 +103,7 @@ public class TileElectronicLibrary extends TileBC_Neptune implements ITickable {
                 progressDown = -1;
                 deltaProgressDown.setValue(0);
             }
+            downSnapshot = null;
         }
         if (handler == invUpIn) {
             if (progressUp > 0) {
@@ -121,18 +126,25 @@ public class TileElectronicLibrary extends TileBC_Neptune implements ITickable {
                 progressDown = 0;
                 deltaProgressDown.addDelta(0, 50, 1);
                 deltaProgressDown.addDelta(50, 55, -1);
+                Snapshot.Header header = BCBuildersItems.snapshot.getHeader(invDownIn.getStackInSlot(0));
+                downSnapshot = GlobalSavedDataSnapshots.get(world).getSnapshotAsync(header == null ? null : header.key);
             }
             if (progressDown >= 50) {
-                sendNetworkGuiUpdate(NET_DOWN);
-                invDownOut.setStackInSlot(0, invDownIn.getStackInSlot(0));
-                invDownIn.setStackInSlot(0, StackUtil.EMPTY);
-                progressDown = -1;
+                // Wait for the snapshot to be read, if that is somehow slower than the progress bar
+                if (downSnapshot == null || downSnapshot.isDone()) {
+                    sendNetworkGuiUpdate(NET_DOWN);
+                    invDownOut.setStackInSlot(0, invDownIn.getStackInSlot(0));
+                    invDownIn.setStackInSlot(0, StackUtil.EMPTY);
+                    progressDown = -1;
+                    downSnapshot = null;
+                }
             } else {
                 progressDown++;
             }
         } else if (progressDown != -1) {
             progressDown = -1;
             deltaProgressDown.setValue(0);
+            downSnapshot = null;
         }
 
         if (selected != null && !invUpIn.getStackInSlot(0).isEmpty() && invUpOut.getStackInSlot(0).isEmpty()) {
@@ -175,7 +187,7 @@ public class TileElectronicLibrary extends TileBC_Neptune implements ITickable {
             if (id == NET_DOWN) {
                 Snapshot.Header header = BCBuildersItems.snapshot.getHeader(invDownIn.getStackInSlot(0));
                 if (header != null) {
-                    Snapshot snapshot = GlobalSavedDataSnapshots.get(world).getSnapshot(header.key);
+                    Snapshot snapshot = downSnapshot == null ? null : downSnapshot.getNow(null);
                     if (snapshot != null) {
                         snapshot = snapshot.copy();
                         snapshot.key = new Snapshot.Key(snapshot.key, header);
@@ -213,55 +225,22 @@ public class TileElectronicLibrary extends TileBC_Neptune implements ITickable {
                 if (buffer.readBoolean()) {
                     Snapshot snapshot = Snapshot.readFromNBT(NbtSquisher.expand(buffer));
                     snapshot.computeKey();
-                    GlobalSavedDataSnapshots.get(world).addSnapshot(snapshot);
+                    GlobalSavedDataSnapshots.get(world).addSnapshotAsync(snapshot);
                 }
             }
             if (id == NET_UP) {
                 if (selected != null) {
-                    Snapshot snapshot = GlobalSavedDataSnapshots.get(world).getSnapshot(selected);
-                    if (snapshot != null) {
-                        try (OutputStream outputStream = new OutputStream() {
-                            private byte[] buf = new byte[4 * 1024];
-                            private int pos = 0;
-                            private boolean closed = false;
-
-                            private void write(boolean last) throws IOException {
-                                MessageManager.sendToServer(createMessage(NET_UP, localBuffer -> {
-                                    localBuffer.writeUniqueId(ctx.getClientHandler().getGameProfile().getId());
-                                    selected.writeToByteBuf(localBuffer);
-                                    localBuffer.writeBoolean(last);
-                                    localBuffer.writeByteArray(buf);
-                                }));
+                    Snapshot.Key key = selected;
+                    UUID playerId = ctx.getClientHandler().getGameProfile().getId();
+                    GlobalSavedDataSnapshots.get(world).getSnapshotAsync(key).thenAcceptAsync(snapshot -> {
+                        if (snapshot != null) {
+                            try {
+                                sendSnapshotUp(snapshot, key, playerId);
+                            } catch (IOException e) {
+                                new IOException("Failed to send the snapshot " + key, e).printStackTrace();
                             }
-
-                            @Override
-                            public void write(int b) throws IOException {
-                                buf[pos++] = (byte) b;
-                                if (pos >= buf.length) {
-                                    write(false);
-                                    buf = new byte[buf.length];
-                                    pos = 0;
-                                }
-                            }
-
-                            @Override
-                            public void close() throws IOException {
-                                if (closed) {
-                                    return;
-                                }
-                                closed = true;
-                                buf = Arrays.copyOf(buf, pos);
-                                pos = 0;
-                                write(true);
-                            }
-                        }) {
-                            NbtSquisher.squish(
-                                Snapshot.writeToNBT(snapshot),
-                                NbtSquishConstants.BUILDCRAFT_V1_COMPRESSED,
-                                outputStream
-                            );
                         }
-                    }
+                    }, MainThreadExecutor.CLIENT);
                 }
             }
         }
@@ -286,7 +265,7 @@ public class TileElectronicLibrary extends TileBC_Neptune implements ITickable {
                         snapshot = snapshot.copy();
                         snapshot.key = new Snapshot.Key(snapshot.key, (Snapshot.Header) null);
                         snapshot.computeKey();
-                        GlobalSavedDataSnapshots.get(world).addSnapshot(snapshot);
+                        GlobalSavedDataSnapshots.get(world).addSnapshotAsync(snapshot);
                         invUpOut.setStackInSlot(0, BCBuildersItems.snapshot.getUsed(snapshot.getType(), header));
                         invUpIn.setStackInSlot(0, StackUtil.EMPTY);
                     } finally {
@@ -296,4 +275,48 @@ public class TileElectronicLibrary extends TileBC_Neptune implements ITickable {
             }
         }
     }
+
+    private void sendSnapshotUp(Snapshot snapshot, Snapshot.Key key, UUID playerId) throws IOException {
+        try (OutputStream outputStream = new OutputStream() {
+            private byte[] buf = new byte[4 * 1024];
+            private int pos = 0;
+            private boolean closed = false;
+
+            private void write(boolean last) throws IOException {
+                MessageManager.sendToServer(createMessage(NET_UP, localBuffer -> {
+                    localBuffer.writeUniqueId(playerId);
+                    key.writeToByteBuf(localBuffer);
+                    localBuffer.writeBoolean(last);
+                    localBuffer.writeByteArray(buf);
+                }));
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                buf[pos++] = (byte) b;
+                if (pos >= buf.length) {
+                    write(false);
+                    buf = new byte[buf.length];
+                    pos = 0;
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                buf = Arrays.copyOf(buf, pos);
+                pos = 0;
+                write(true);
+            }
+        }) {
+            NbtSquisher.squish(
+                Snapshot.writeToNBT(snapshot),
+                NbtSquishConstants.BUILDCRAFT_V1_COMPRESSED,
+                outputStream
+            );
+        }
+    }
 }
@@ -7,18 +7,16 @@
 package buildcraft.builders.tile;
 
 import java.io.IOException;
-import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
 import java.util.Random;
 import java.util.Set;
-import java.util.TreeSet;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -41,7 +39,6 @@ import net.minecraft.util.math.AxisAlignedBB;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.ChunkPos;
 import net.minecraft.util.math.Vec3d;
-import net.minecraft.world.IWorldEventListener;
 import net.minecraft.world.World;
 import net.minecraft.world.WorldServer;
 
@@ -80,7 +77,8 @@ import buildcraft.lib.misc.data.EnumAxisOrder;
 import buildcraft.lib.mj.MjBatteryReceiver;
 import buildcraft.lib.net.PacketBufferBC;
 import buildcraft.lib.tile.TileBC_Neptune;
-import buildcraft.lib.world.WorldEventListenerAdapter;
+import buildcraft.lib.world.SpatialBlockUpdateNotifier;
+import buildcraft.lib.world.SpatialBlockUpdateNotifier.IBlockUpdateListener;
 
 import buildcraft.builders.BCBuildersBlocks;
 import buildcraft.builders.BCBuildersConfig;
@@ -102,15 +100,28 @@ public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable
     public final Box frameBox = new Box();
     private final Box miningBox = new Box();
     private BoxIterator boxIterator;
+    /** Only valid if {@link QuarryColumnIndex#isFor(Box)} returns true for {@link #miningBox}: use
+     * {@link #getColumnIndex()} instead. */
+    private QuarryColumnIndex columnIndex;
     public final List<BlockPos> framePoses = new ArrayList<>();
-    private int frameBoxPosesCount = 0;
-    private final LinkedList<BlockPos> toCheck = new LinkedList<>();
-    private final Set<BlockPos> firstCheckedPoses = new HashSet<>();
+    /** Every position in the frame box (from {@link BlockPos#toLong()}), sorted by distance to the quarry. This is the
+     * order that they are first checked in, and the order that blocks in the way are broken in. An index into this is
+     * called a "rank". */
+    private long[] checkPoses = new long[0];
+    /** The frame box that {@link #checkPoses} was made for. */
+    private BlockPos checkMin = BlockPos.ORIGIN, checkSize = BlockPos.ORIGIN;
+    /** Maps the (x, z, y) index of every position in the frame box to its rank. */
+    private int[] checkRanks = new int[0];
+    /** Maps every rank to its index in {@link #framePoses}, or -1 if a frame shouldn't be placed there. */
+    private int[] framePosIndexes = new int[0];
+    /** The number of ranks that have been checked by the first pass over the frame box. After that blocks are only
+     * checked when they change (in {@link #blockUpdateListener}). */
+    private int checkCursor = 0;
     private boolean firstChecked = false;
-    private final Set<BlockPos> frameBreakBlockPoses = new TreeSet<>(
-        BlockUtil.uniqueBlockPosComparator(Comparator.comparingDouble(p -> getPos().distanceSq(p)))
-    );
-    private final Set<BlockPos> framePlaceFramePoses = new HashSet<>();
+    /** The ranks of every block that should be broken. */
+    private final BitSet frameBreakBlockPoses = new BitSet();
+    /** The indexes (in {@link #framePoses}) of every frame that should be placed. */
+    private final BitSet framePlaceFramePoses = new BitSet();
     public Task currentTask = null;
     public Vec3d drillPos;
     public Vec3d clientDrillPos;
@@ -122,17 +133,23 @@ public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable
     private List<AxisAlignedBB> collisionBoxes = ImmutableList.of();
     private Vec3d collisionDrillPos;
 
-    private final IWorldEventListener worldEventListener = new WorldEventListenerAdapter() {
+    private final IBlockUpdateListener blockUpdateListener = new IBlockUpdateListener() {
         @Override
-        public void notifyBlockUpdate(
+        public void onBlockUpdate(
             World w, BlockPos updatePos, IBlockState oldState, IBlockState newState, int flags
         ) {
             w.profiler.startSection("bc_quarry_listener");
             if (frameBox.isInitialized() && miningBox.isInitialized()) {
+                // The top of the mining box is inside of the frame box, so this has to happen for both of them
                 if (frameBox.contains(updatePos)) {
                     check(updatePos);
-                } else if (miningBox.contains(updatePos) && boxIterator != null) {
-                    if (boxIterator.hasVisited(updatePos)) {
+                }
+                if (miningBox.contains(updatePos)) {
+                    QuarryColumnIndex index = getColumnIndex();
+                    if (index != null) {
+                        index.onBlockChanged(updatePos, canMoveThrough(updatePos));
+                    }
+                    if (boxIterator != null && boxIterator.hasVisited(updatePos)) {
                         if (!canMoveThrough(updatePos) && canMoveDownTo(updatePos)) {
                             boxIterator.moveTo(updatePos);
                         }
@@ -377,6 +394,21 @@ public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable
         miningBox.setMin(new BlockPos(min.getX() + 1, minY, min.getZ() + 1));
         miningBox.setMax(new BlockPos(max.getX() - 1, max.getY() - 1, max.getZ() - 1));
         updatePoses();
+        updateBlockUpdateListener();
+    }
+
+    /** Listens for block updates inside both the frame and the mining box (which is directly below the frame). */
+    private void updateBlockUpdateListener() {
+        if (world.isRemote || tileEntityInvalid) {
+            return;
+        }
+        if (frameBox.isInitialized() && miningBox.isInitialized()) {
+            BlockPos min = new BlockPos(frameBox.min().getX(), Math.min(frameBox.min().getY(), miningBox.min().getY()),
+                frameBox.min().getZ());
+            SpatialBlockUpdateNotifier.get(world).register(blockUpdateListener, min, frameBox.max());
+        } else {
+            SpatialBlockUpdateNotifier.get(world).unregister(blockUpdateListener);
+        }
     }
 
     private boolean canMine(BlockPos blockPos) {
@@ -395,39 +427,67 @@ public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable
         return fluid != null && fluid.getViscosity() <= 1000;
     }
 
-    private boolean canMoveDownTo(BlockPos blockPos) {
-        for (int y = miningBox.max().getY(); y > blockPos.getY(); y--) {
-            if (!canMoveThrough(VecUtil.replaceValue(blockPos, Axis.Y, y))) {
-                return false;
-            }
+    @Nullable
+    private QuarryColumnIndex getColumnIndex() {
+        if (!miningBox.isInitialized()) {
+            return null;
+        }
+        if (columnIndex == null || !columnIndex.isFor(miningBox)) {
+            columnIndex = new QuarryColumnIndex(miningBox);
         }
-        return true;
+        return columnIndex;
+    }
+
+    private boolean canMoveDownTo(BlockPos blockPos) {
+        QuarryColumnIndex index = getColumnIndex();
+        return index != null && index.canMoveDownTo(blockPos, this::canMoveThrough);
+    }
+
+    /** @return True if the given position (in the mining box) can be mined now: it's the highest block in its column
+     *         that the drill can't move through, and it can be mined. */
+    private boolean isMiningTarget(BlockPos blockPos) {
+        QuarryColumnIndex index = getColumnIndex();
+        return index != null
+            && index.getSurface(blockPos.getX(), blockPos.getZ(), this::canMoveThrough) == blockPos.getY()
+            && canMine(blockPos);
     }
 
     private boolean canIgnoreInFrameBox(BlockPos blockPos) {
         return !world.isAirBlock(blockPos) && BlockUtil.getFluidWithFlowing(world, blockPos) == null;
     }
 
+    /** @return The rank of the given position, or -1 if it isn't in the frame box. */
+    private int getCheckRank(BlockPos blockPos) {
+        int dx = blockPos.getX() - checkMin.getX();
+        int dy = blockPos.getY() - checkMin.getY();
+        int dz = blockPos.getZ() - checkMin.getZ();
+        if (dx < 0 || dy < 0 || dz < 0 || dx >= checkSize.getX() || dy >= checkSize.getY() || dz >= checkSize.getZ()) {
+            return -1;
+        }
+        return checkRanks[(dy * checkSize.getZ() + dz) * checkSize.getX() + dx];
+    }
+
     private void check(BlockPos blockPos) {
-        frameBreakBlockPoses.remove(blockPos);
-        framePlaceFramePoses.remove(blockPos);
+        int rank = getCheckRank(blockPos);
+        if (rank < 0) {
+            return;
+        }
+        int frameIndex = framePosIndexes[rank];
+        frameBreakBlockPoses.clear(rank);
+        if (frameIndex >= 0) {
+            framePlaceFramePoses.clear(frameIndex);
+        }
         if (shouldBeFrame(blockPos)) {
             if (world.getBlockState(blockPos).getBlock() != BCBuildersBlocks.frame) {
                 if (canIgnoreInFrameBox(blockPos)) {
-                    frameBreakBlockPoses.add(blockPos);
-                } else {
-                    framePlaceFramePoses.add(blockPos);
+                    frameBreakBlockPoses.set(rank);
+                } else if (frameIndex >= 0) {
+                    framePlaceFramePoses.set(frameIndex);
                 }
             }
         } else {
             if (canIgnoreInFrameBox(blockPos)) {
-                frameBreakBlockPoses.add(blockPos);
-            }
-        }
-        if (!firstChecked) {
-            firstCheckedPoses.add(blockPos);
-            if (firstCheckedPoses.size() >= frameBoxPosesCount) {
-                firstChecked = true;
+                frameBreakBlockPoses.set(rank);
             }
         }
     }
@@ -443,9 +503,7 @@ public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable
     public void validate() {
         super.validate();
         BCBuildersEventDist.INSTANCE.validateQuarry(this);
-        if (!world.isRemote) {
-            world.addEventListener(worldEventListener);
-        }
+        updateBlockUpdateListener();
     }
 
     @Override
@@ -453,7 +511,7 @@ public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable
         super.invalidate();
         BCBuildersEventDist.INSTANCE.invalidateQuarry(this);
         if (!world.isRemote) {
-            world.removeEventListener(worldEventListener);
+            SpatialBlockUpdateNotifier.get(world).unregister(blockUpdateListener);
             ChunkLoaderManager.releaseChunksFor(this);
         }
     }
@@ -483,9 +541,12 @@ public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable
 
     private void updatePoses() {
         framePoses.clear();
-        frameBoxPosesCount = 0;
-        toCheck.clear();
-        firstCheckedPoses.clear();
+        checkPoses = new long[0];
+        checkMin = BlockPos.ORIGIN;
+        checkSize = BlockPos.ORIGIN;
+        checkRanks = new int[0];
+        framePosIndexes = new int[0];
+        checkCursor = 0;
         firstChecked = false;
         frameBreakBlockPoses.clear();
         framePlaceFramePoses.clear();
@@ -493,9 +554,27 @@ public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable
         if (state.getBlock() == BCBuildersBlocks.quarry && frameBox.isInitialized()) {
             List<BlockPos> blocksInArea = frameBox.getBlocksInArea();
             blocksInArea.sort(BlockUtil.uniqueBlockPosComparator(Comparator.comparingDouble(pos::distanceSq)));
-            frameBoxPosesCount = blocksInArea.size();
-            toCheck.addAll(blocksInArea);
+            checkMin = frameBox.min();
+            checkSize = frameBox.size();
+            checkPoses = new long[blocksInArea.size()];
+            checkRanks = new int[blocksInArea.size()];
+            framePosIndexes = new int[blocksInArea.size()];
+            Arrays.fill(framePosIndexes, -1);
+            for (int rank = 0; rank < checkPoses.length; rank++) {
+                BlockPos p = blocksInArea.get(rank);
+                checkPoses[rank] = p.toLong();
+                int dx = p.getX() - checkMin.getX();
+                int dy = p.getY() - checkMin.getY();
+                int dz = p.getZ() - checkMin.getZ();
+                checkRanks[(dy * checkSize.getZ() + dz) * checkSize.getX() + dx] = rank;
+            }
             framePoses.addAll(getFramePositions());
+            for (int i = 0; i < framePoses.size(); i++) {
+                int rank = getCheckRank(framePoses.get(i));
+                if (rank >= 0) {
+                    framePosIndexes[rank] = i;
+                }
+            }
             ChunkLoaderManager.loadChunksForTile(this);
         }
     }
@@ -520,16 +599,14 @@ public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable
             return;
         }
 
-        if (!toCheck.isEmpty()) {
-            for (int i = 0; i < (firstChecked ? 10 : 500); i++) {
-                BlockPos blockPos = toCheck.pollFirst();
-                check(blockPos);
-                toCheck.addLast(blockPos);
-            }
-        }
-
         if (!firstChecked) {
-            return;
+            for (int i = 0; i < 500 && checkCursor < checkPoses.length; i++) {
+                check(BlockPos.fromLong(checkPoses[checkCursor++]));
+            }
+            if (checkPoses.length == 0 || checkCursor < checkPoses.length) {
+                return;
+            }
+            firstChecked = true;
         }
 
         long max;
@@ -537,13 +614,7 @@ public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable
             max = MAX_POWER_PER_TICK;
         } else {
             long roundedUp = battery.getStored() + MjAPI.MJ / 2;
-            if (roundedUp > Long.MAX_VALUE / MAX_POWER_PER_TICK) {
-                // The multiplication would overflow, so we'll have to use BigInteger for this bit
-                max = BigInteger.valueOf(roundedUp).multiply(BigInteger.valueOf(MAX_POWER_PER_TICK))
-                    .divide(BigInteger.valueOf(battery.getCapacity() / 2)).longValue();
-            } else {
-                max = MAX_POWER_PER_TICK * roundedUp / (battery.getCapacity() / 2);
-            }
+            max = MathUtil.mulDiv(roundedUp, MAX_POWER_PER_TICK, battery.getCapacity() / 2);
             max = MathUtil.clamp(max, 0, MAX_POWER_PER_TICK);
         }
         debugPowerRate = max;
@@ -580,8 +651,9 @@ public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable
                 }
             }
 
-            if (!frameBreakBlockPoses.isEmpty()) {
-                BlockPos blockPos = frameBreakBlockPoses.iterator().next();
+            int breakRank = frameBreakBlockPoses.nextSetBit(0);
+            if (breakRank >= 0) {
+                BlockPos blockPos = BlockPos.fromLong(checkPoses[breakRank]);
                 if (canMine(blockPos)) {
                     drillPos = null;
                     currentTask = new TaskBreakBlock(blockPos);
@@ -592,12 +664,10 @@ public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable
             }
 
             if (!framePlaceFramePoses.isEmpty()) {
-                for (BlockPos blockPos : framePoses) {
-                    if (!framePlaceFramePoses.contains(blockPos)) {
-                        continue;
-                    }
+                for (int i = framePlaceFramePoses.nextSetBit(0); i >= 0; i = framePlaceFramePoses.nextSetBit(i + 1)) {
+                    BlockPos blockPos = framePoses.get(i);
                     check(blockPos);
-                    if (!framePlaceFramePoses.contains(blockPos)) {
+                    if (!framePlaceFramePoses.get(i)) {
                         continue;
                     }
                     drillPos = null;
@@ -607,24 +677,17 @@ public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable
                 }
             }
 
-            if (boxIterator == null || drillPos == null) {
+            // Blocks that appear behind the iterator move it back (in the block update listener), so it only needs to
+            // start again from the top if it has finished
+            if (boxIterator == null || (drillPos == null && boxIterator.hasFinished())) {
                 boxIterator = createBoxIterator();
-                while (
-                    canMoveThrough(boxIterator.getCurrent()) || !canMine(boxIterator.getCurrent())
-                    || !canMoveDownTo(boxIterator.getCurrent())
-                ) {
-                    if (boxIterator.advance() == null) {
-                        break;
-                    }
-                }
+            }
+            if (drillPos == null) {
                 drillPos = new Vec3d(miningBox.closestInsideTo(pos));
             }
 
-            if (boxIterator != null && boxIterator.hasNext()) {
-                while (
-                    canMoveThrough(boxIterator.getCurrent()) || !canMine(boxIterator.getCurrent())
-                    || !canMoveDownTo(boxIterator.getCurrent())
-                ) {
+            if (boxIterator.hasNext()) {
+                while (!isMiningTarget(boxIterator.getCurrent())) {
                     if (boxIterator.advance() == null) {
                         break;
                     }
@@ -690,6 +753,12 @@ public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable
         if (boxIterator != null) {
             nbt.setTag("boxIterator", boxIterator.writeToNbt());
         }
+        // Only saved if the whole frame is chunk loaded with the quarry, as otherwise blocks can change while the
+        // quarry is unloaded without it noticing
+        if (columnIndex != null && columnIndex.isFor(miningBox) && world != null && !world.isRemote
+            && ChunkLoaderManager.isLoadingChunksFor(this)) {
+            nbt.setTag("columnIndex", columnIndex.writeToNBT());
+        }
         nbt.setTag("battery", battery.serializeNBT());
         if (currentTask != null) {
             nbt.setByte(
@@ -712,6 +781,12 @@ public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable
         miningBox.initialize(nbt.getCompoundTag("box"));
         frameBox.initialize(nbt.getCompoundTag("frame"));
         boxIterator = BoxIterator.readFromNbt(nbt.getCompoundTag("boxIterator"));
+        columnIndex = null;
+        if (miningBox.isInitialized() && nbt.hasKey("columnIndex")) {
+            columnIndex = new QuarryColumnIndex(miningBox);
+            // This is only saved while the whole frame is chunk loaded, so nothing can have changed since then
+            columnIndex.readFromNBT(nbt.getCompoundTag("columnIndex"));
+        }
         battery.deserializeNBT(nbt.getCompoundTag("battery"));
         if (nbt.hasKey("currentTask")) {
             currentTask = EnumTaskType.values()[(int) nbt.getByte("currentTaskId")].supplier.apply(this);
@@ -841,8 +916,8 @@ public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable
         left.add(" - min = " + miningBox.min());
         left.add(" - max = " + miningBox.max());
 
-        left.add("firstCheckedPoses = " + firstCheckedPoses.size());
-        left.add("frameBoxPosesCount = " + frameBoxPosesCount);
+        left.add("checkCursor = " + checkCursor);
+        left.add("frameBoxPosesCount = " + checkPoses.length);
         left.add("firstChecked = " + firstChecked);
 
         BoxIterator iter = boxIterator;
@@ -858,6 +933,9 @@ public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable
             left.add("task = null");
         }
         left.add("drill = " + drillPos);
+        if (!world.isRemote) {
+            left.add("blockUpdates = " + SpatialBlockUpdateNotifier.get(world).getDebugString());
+        }
     }
 
     @Nonnull
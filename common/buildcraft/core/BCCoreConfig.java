@@ -79,6 +79,7 @@ public class BCCoreConfig {
     private static Property propNetworkUpdateRate;
     private static Property propMiningMultiplier;
     private static Property propMiningMaxDepth;
+    private static Property propCoalesceTileUpdates;
 
     public static void preInit(File cfgFolder) {
         configFolder = cfgFolder;
@@ -233,6 +234,11 @@ public class BCCoreConfig {
             + "\n(Note: values above 256 only have an effect if a mod like cubic chunks is installed).");
         none.setTo(propMiningMaxDepth);
 
+        propCoalesceTileUpdates = config.get(performance, "coalesceTileUpdates", true);
+        propCoalesceTileUpdates.setComment("Should tile network updates be bundled together and sent at the end of "
+            + "every tick? Disable this if you see machines showing out of date information.");
+        none.setTo(propCoalesceTileUpdates);
+
         reloadConfig(game);
         addReloadListener(BCCoreConfig::reloadConfig);
 
@@ -293,6 +299,7 @@ public class BCCoreConfig {
         BCLibConfig.enableAnimatedSprites = propEnableAnimatedSprites.getBoolean();
         miningMultiplier = MathUtil.clamp(propMiningMultiplier.getDouble(), 1, 200);
         miningMaxDepth = propMiningMaxDepth.getInt();
+        BCLibConfig.coalesceTileUpdates = propCoalesceTileUpdates.getBoolean();
 
         if (EnumRestartRequirement.WORLD.hasBeenRestarted(restarted)) {
             BCLibConfig.chunkLoadingLevel =
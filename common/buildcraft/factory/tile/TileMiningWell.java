@@ -6,14 +6,9 @@
 
 package buildcraft.factory.tile;
 
-import javax.annotation.Nonnull;
-
-import net.minecraft.block.state.IBlockState;
 import net.minecraft.init.Items;
 import net.minecraft.item.ItemStack;
 import net.minecraft.util.math.BlockPos;
-import net.minecraft.world.IWorldEventListener;
-import net.minecraft.world.World;
 import net.minecraft.world.WorldServer;
 
 import net.minecraftforge.fluids.Fluid;
@@ -27,7 +22,8 @@ import buildcraft.lib.misc.BlockUtil;
 import buildcraft.lib.misc.CapUtil;
 import buildcraft.lib.misc.InventoryUtil;
 import buildcraft.lib.mj.MjBatteryReceiver;
-import buildcraft.lib.world.WorldEventListenerAdapter;
+import buildcraft.lib.world.SpatialBlockUpdateNotifier;
+import buildcraft.lib.world.SpatialBlockUpdateNotifier.IBlockUpdateListener;
 
 import buildcraft.core.BCCoreConfig;
 import buildcraft.factory.BCFactoryBlocks;
@@ -35,19 +31,9 @@ import buildcraft.factory.BCFactoryBlocks;
 public class TileMiningWell extends TileMiner {
     private boolean shouldCheck = true;
     private final SafeTimeTracker tracker = new SafeTimeTracker(256);
-    private final IWorldEventListener worldEventListener = new WorldEventListenerAdapter() {
-        @Override
-        public void notifyBlockUpdate(@Nonnull World world,
-                                      @Nonnull BlockPos pos,
-                                      @Nonnull IBlockState oldState,
-                                      @Nonnull IBlockState newState,
-                                      int flags) {
-            if (pos.getX() == TileMiningWell.this.pos.getX() &&
-                pos.getY() <= TileMiningWell.this.pos.getY() &&
-                pos.getZ() == TileMiningWell.this.pos.getZ()) {
-                shouldCheck = true;
-            }
-        }
+    /** Only registered for the column below this mining well. */
+    private final IBlockUpdateListener blockUpdateListener = (world, pos, oldState, newState, flags) -> {
+        shouldCheck = true;
     };
 
     public TileMiningWell() {
@@ -120,7 +106,7 @@ public class TileMiningWell extends TileMiner {
     public void validate() {
         super.validate();
         if (!world.isRemote) {
-            world.addEventListener(worldEventListener);
+            SpatialBlockUpdateNotifier.get(world).register(blockUpdateListener, new BlockPos(pos.getX(), 0, pos.getZ()), pos);
         }
     }
 
@@ -128,7 +114,7 @@ public class TileMiningWell extends TileMiner {
     public void invalidate() {
         super.invalidate();
         if (!world.isRemote) {
-            world.removeEventListener(worldEventListener);
+            SpatialBlockUpdateNotifier.get(world).unregister(blockUpdateListener);
             if (currentPos != null) {
                 world.sendBlockBreakProgress(currentPos.hashCode(), currentPos, -1);
             }
@@ -82,6 +82,10 @@ public class BCLibConfig {
 
     public static boolean guideShowDetail = false;
 
+    /** If true then server side calls to {@link buildcraft.lib.tile.TileBC_Neptune#sendNetworkUpdate(int)} are
+     * deferred until the end of the tick, and bundled together by {@link buildcraft.lib.tile.TileUpdateCoalescer}. */
+    public static boolean coalesceTileUpdates = true;
+
     /** The maximum number of items that the guide book will index. */
     public static int guideItemSearchLimit = 10_000;
 
@@ -18,6 +18,8 @@ import net.minecraftforge.client.event.ModelBakeEvent;
 import net.minecraftforge.client.event.RenderWorldLastEvent;
 import net.minecraftforge.client.event.TextureStitchEvent;
 import net.minecraftforge.event.entity.EntityJoinWorldEvent;
+import net.minecraftforge.event.world.ChunkEvent;
+import net.minecraftforge.event.world.ChunkWatchEvent;
 import net.minecraftforge.event.world.WorldEvent;
 import net.minecraftforge.fml.common.eventhandler.EventPriority;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
@@ -43,11 +45,15 @@ import buildcraft.lib.debug.ClientDebuggables;
 import buildcraft.lib.item.ItemDebugger;
 import buildcraft.lib.marker.MarkerCache;
 import buildcraft.lib.misc.FakePlayerProvider;
+import buildcraft.lib.misc.MainThreadExecutor;
 import buildcraft.lib.misc.MessageUtil;
 import buildcraft.lib.misc.data.ModelVariableData;
+import buildcraft.lib.net.ChunkWatcherCache;
 import buildcraft.lib.net.MessageDebugRequest;
 import buildcraft.lib.net.MessageManager;
 import buildcraft.lib.net.cache.BuildCraftObjectCaches;
+import buildcraft.lib.path.MiniChunkCache;
+import buildcraft.lib.tile.TileUpdateCoalescer;
 
 public enum BCLibEventDist {
     INSTANCE;
@@ -65,11 +71,28 @@ public enum BCLibEventDist {
     @SubscribeEvent
     public static void onWorldUnload(WorldEvent.Unload event) {
         MarkerCache.onWorldUnload(event.getWorld());
+        ChunkWatcherCache.onWorldUnload(event.getWorld());
+        MiniChunkCache.onWorldUnload(event.getWorld());
         if (event.getWorld() instanceof WorldServer) {
             FakePlayerProvider.INSTANCE.unloadWorld((WorldServer) event.getWorld());
         }
     }
 
+    @SubscribeEvent
+    public static void onChunkLoad(ChunkEvent.Load event) {
+        MiniChunkCache.onChunkLoad(event.getChunk());
+    }
+
+    @SubscribeEvent
+    public static void onChunkUnload(ChunkEvent.Unload event) {
+        MiniChunkCache.onChunkUnload(event.getChunk());
+    }
+
+    @SubscribeEvent
+    public static void onChunkWatch(ChunkWatchEvent event) {
+        ChunkWatcherCache.onChunkWatchChange(event.getPlayer().world, event.getChunk());
+    }
+
     @SubscribeEvent
     @SideOnly(Side.CLIENT)
     public static void onReloadFinish(EventBuildCraftReload.FinishLoad event) {
@@ -127,9 +150,14 @@ public enum BCLibEventDist {
 
     @SubscribeEvent
     public static void serverTick(ServerTickEvent event) {
-        if (event.phase == Phase.END) {
+        if (event.phase == Phase.START) {
+            ChunkWatcherCache.onServerTickStart();
+        } else if (event.phase == Phase.END) {
             BCAdvDebugging.INSTANCE.onServerPostTick();
             MessageUtil.postTick();
+            TileUpdateCoalescer.onServerTick();
+            BuildCraftObjectCaches.onServerTick();
+            MainThreadExecutor.SERVER.runQueued();
         }
     }
 
@@ -138,6 +166,7 @@ public enum BCLibEventDist {
     public static void clientTick(ClientTickEvent event) {
         if (event.phase == Phase.END) {
             BuildCraftObjectCaches.onClientTick();
+            MainThreadExecutor.CLIENT.runQueued();
             Minecraft mc = Minecraft.getMinecraft();
             EntityPlayerSP player = mc.player;
             if (player != null && ItemDebugger.isShowDebugInfo(player)) {
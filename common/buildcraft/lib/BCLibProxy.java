@@ -55,6 +55,7 @@ import buildcraft.lib.net.MessageDebugRequest;
 import buildcraft.lib.net.MessageDebugResponse;
 import buildcraft.lib.net.MessageManager;
 import buildcraft.lib.net.MessageMarker;
+import buildcraft.lib.net.MessageMultiTileUpdate;
 import buildcraft.lib.net.MessageUpdateTile;
 import buildcraft.lib.net.cache.MessageObjectCacheRequest;
 import buildcraft.lib.net.cache.MessageObjectCacheResponse;
@@ -70,6 +71,7 @@ public abstract class BCLibProxy implements IGuiHandler {
 
     void fmlPreInit() {
         MessageManager.registerMessageClass(BCModules.LIB, MessageUpdateTile.class, MessageUpdateTile.HANDLER);
+        MessageManager.registerMessageClass(BCModules.LIB, MessageMultiTileUpdate.class, Side.CLIENT);
         MessageManager.registerMessageClass(BCModules.LIB, MessageContainer.class, MessageContainer.HANDLER);
         MessageManager.registerMessageClass(BCModules.LIB, MessageMarker.class, Side.CLIENT);
         MessageManager.registerMessageClass(BCModules.LIB, MessageObjectCacheRequest.class,
@@ -154,6 +156,7 @@ public abstract class BCLibProxy implements IGuiHandler {
             BCLibConfig.configChangeListeners.add(LibConfigChangeListener.INSTANCE);
 
             MessageManager.setHandler(MessageMarker.class, MessageMarker.HANDLER, Side.CLIENT);
+            MessageManager.setHandler(MessageMultiTileUpdate.class, MessageMultiTileUpdate.HANDLER, Side.CLIENT);
             MessageManager.setHandler(MessageObjectCacheResponse.class, MessageObjectCacheResponse.HANDLER,
                 Side.CLIENT);
             MessageManager.setHandler(MessageDebugResponse.class, MessageDebugResponse.HANDLER, Side.CLIENT);
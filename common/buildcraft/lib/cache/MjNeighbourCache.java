@@ -0,0 +1,121 @@
+package buildcraft.lib.cache;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+import javax.annotation.Nullable;
+
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.EnumFacing;
+
+import net.minecraftforge.common.capabilities.Capability;
+
+import buildcraft.api.mj.IMjConnector;
+import buildcraft.api.mj.IMjReceiver;
+import buildcraft.api.mj.MjAPI;
+
+import buildcraft.lib.tile.TileBC_Neptune;
+
+/** Caches the MJ capabilities of the immediate neighbours of a {@link TileBC_Neptune}, on top of its
+ * {@link ITileCache} (via {@link TileBC_Neptune#getNeighbourTile(EnumFacing)}). This is for tiles that push power every
+ * tick (like engines and kinesis pipes) so they don't have to look up the neighbouring tile and then ask it for its
+ * capabilities every time.
+ * <p>
+ * Found capabilities are kept until the neighbouring tile changes, or {@link #invalidate()} is called (which
+ * {@link TileBC_Neptune} does whenever a neighbour changes or the chunk is unloaded). Missing capabilities are
+ * checked again every {@link #MISSING_RECHECK_TICKS} ticks, as not every tile notifies its neighbours when it starts
+ * to expose a capability (for example pipes only configure their power flow on their first tick). */
+public class MjNeighbourCache {
+    private static final long MISSING_RECHECK_TICKS = 20;
+
+    private static final int CONNECTOR = 0;
+    private static final int RECEIVER = 1;
+
+    private final Function<EnumFacing, TileEntity> neighbours;
+    private final LongSupplier worldTime;
+    private final Entry[] entries = new Entry[6];
+
+    public MjNeighbourCache(TileBC_Neptune tile) {
+        this(tile::getNeighbourTile, () -> tile.getWorld().getTotalWorldTime());
+    }
+
+    /** @param neighbours Gets the current neighbouring tile on a given side.
+     * @param worldTime Gets the current total world time, for rechecking missing capabilities. */
+    public MjNeighbourCache(Function<EnumFacing, TileEntity> neighbours, LongSupplier worldTime) {
+        this.neighbours = neighbours;
+        this.worldTime = worldTime;
+    }
+
+    /** Removes everything that has been cached. */
+    public void invalidate() {
+        Arrays.fill(entries, null);
+    }
+
+    @Nullable
+    public TileEntity getTile(EnumFacing face) {
+        Entry entry = getEntry(face);
+        return entry == null ? null : entry.tile.get();
+    }
+
+    /** @return The {@link MjAPI#CAP_CONNECTOR} of the neighbour on the given face, from the side touching this. */
+    @Nullable
+    public IMjConnector getConnector(EnumFacing face) {
+        return getCapability(face, MjAPI.CAP_CONNECTOR, CONNECTOR);
+    }
+
+    /** @return The {@link MjAPI#CAP_RECEIVER} of the neighbour on the given face, from the side touching this. */
+    @Nullable
+    public IMjReceiver getReceiver(EnumFacing face) {
+        return getCapability(face, MjAPI.CAP_RECEIVER, RECEIVER);
+    }
+
+    private Entry getEntry(EnumFacing face) {
+        TileEntity neighbour = neighbours.apply(face);
+        int index = face.getIndex();
+        if (neighbour == null) {
+            entries[index] = null;
+            return null;
+        }
+        Entry entry = entries[index];
+        if (entry == null || entry.tile.get() != neighbour) {
+            entry = new Entry(neighbour);
+            entries[index] = entry;
+        }
+        return entry;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T getCapability(EnumFacing face, Capability<T> capability, int index) {
+        Entry entry = getEntry(face);
+        if (entry == null) {
+            return null;
+        }
+        Object cached = entry.caps[index];
+        if (cached != null) {
+            return (T) cached;
+        }
+        long now = worldTime.getAsLong();
+        if (now < entry.recheckAt[index]) {
+            return null;
+        }
+        TileEntity neighbour = entry.tile.get();
+        T found = neighbour == null ? null : neighbour.getCapability(capability, face.getOpposite());
+        entry.caps[index] = found;
+        if (found == null) {
+            entry.recheckAt[index] = now + MISSING_RECHECK_TICKS;
+        }
+        return found;
+    }
+
+    private static final class Entry {
+        final WeakReference<TileEntity> tile;
+        final Object[] caps = new Object[2];
+        final long[] recheckAt = new long[2];
+
+        Entry(TileEntity tile) {
+            this.tile = new WeakReference<>(tile);
+        }
+    }
+}
@@ -75,6 +75,14 @@ public class ChunkLoaderManager {
         }
     }
 
+    /** @return True if every chunk that the given tile wants loaded (from {@link #getChunksToLoad(TileEntity)}) is
+     *         currently being force loaded for it. This is false if the config doesn't allow it, or if forge didn't
+     *         give out a ticket. */
+    public static <T extends TileEntity & IChunkLoadingTile> boolean isLoadingChunksFor(T tile) {
+        ForgeChunkManager.Ticket ticket = TICKETS.get(new WorldPos(tile));
+        return ticket != null && ticket.getChunkList().containsAll(getChunksToLoad(tile));
+    }
+
     public static <T extends TileEntity & IChunkLoadingTile> Set<ChunkPos> getChunksToLoad(T tile) {
         Set<ChunkPos> chunksToLoad = tile.getChunksToLoad();
         Set<ChunkPos> chunkPoses = new HashSet<>(chunksToLoad != null ? chunksToLoad : Collections.emptyList());
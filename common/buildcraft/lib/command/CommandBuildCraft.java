@@ -10,6 +10,8 @@ public class CommandBuildCraft extends CommandTreeBase {
         addSubcommand(new CommandVersion());
         addSubcommand(new CommandChangelog());
         addSubcommand(new CommandReloadRegistries());
+        addSubcommand(new CommandCacheStats());
+        addSubcommand(new CommandNetStats());
     }
 
     @Override
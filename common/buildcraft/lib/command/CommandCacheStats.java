@@ -0,0 +1,44 @@
+package buildcraft.lib.command;
+
+import net.minecraft.command.CommandBase;
+import net.minecraft.command.CommandException;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.text.TextComponentTranslation;
+
+import buildcraft.lib.net.cache.BuildCraftObjectCaches;
+import buildcraft.lib.net.cache.NetworkedObjectCache;
+import buildcraft.lib.net.cache.NetworkedObjectCache.CacheStats;
+
+/** Displays the server side metrics of every {@link NetworkedObjectCache}. */
+public class CommandCacheStats extends CommandBase {
+
+    @Override
+    public String getName() {
+        return "cache_stats";
+    }
+
+    @Override
+    public String getUsage(ICommandSender sender) {
+        return "command.buildcraft.buildcraft.cache_stats.help";
+    }
+
+    @Override
+    public int getRequiredPermissionLevel() {
+        return 2;
+    }
+
+    @Override
+    public void execute(MinecraftServer server, ICommandSender sender, String[] args) throws CommandException {
+        for (NetworkedObjectCache<?> cache : BuildCraftObjectCaches.getCaches()) {
+            CacheStats stats = cache.server().getStats();
+            String max = stats.maxEntries == 0 ? "-" : Integer.toString(stats.maxEntries);
+            int hitRate = stats.getHitRate();
+            String rate = hitRate < 0 ? "-" : hitRate + "%";
+            sender.sendMessage(new TextComponentTranslation("command.buildcraft.buildcraft.cache_stats.entry",
+                stats.name, stats.entries, max, stats.bytes, rate));
+            sender.sendMessage(new TextComponentTranslation("command.buildcraft.buildcraft.cache_stats.traffic",
+                stats.sent, stats.resent, stats.missing, stats.evictions));
+        }
+    }
+}
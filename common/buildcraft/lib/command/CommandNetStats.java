@@ -0,0 +1,40 @@
+package buildcraft.lib.command;
+
+import net.minecraft.command.CommandBase;
+import net.minecraft.command.CommandException;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.text.TextComponentTranslation;
+
+import buildcraft.lib.net.ChunkWatcherCache;
+import buildcraft.lib.tile.TileUpdateCoalescer;
+
+/** Displays the counters of the various network update batchers. */
+public class CommandNetStats extends CommandBase {
+
+    @Override
+    public String getName() {
+        return "net_stats";
+    }
+
+    @Override
+    public String getUsage(ICommandSender sender) {
+        return "command.buildcraft.buildcraft.net_stats.help";
+    }
+
+    @Override
+    public int getRequiredPermissionLevel() {
+        return 2;
+    }
+
+    @Override
+    public void execute(MinecraftServer server, ICommandSender sender, String[] args) throws CommandException {
+        sender.sendMessage(new TextComponentTranslation("command.buildcraft.buildcraft.net_stats.tiles",
+            TileUpdateCoalescer.requested, TileUpdateCoalescer.merged, TileUpdateCoalescer.skipped,
+            TileUpdateCoalescer.written));
+        sender.sendMessage(new TextComponentTranslation("command.buildcraft.buildcraft.net_stats.tiles_sent",
+            TileUpdateCoalescer.delivered, TileUpdateCoalescer.packets, TileUpdateCoalescer.getMessagesAvoided()));
+        sender.sendMessage(new TextComponentTranslation("command.buildcraft.buildcraft.net_stats.watchers",
+            ChunkWatcherCache.hits, ChunkWatcherCache.misses, ChunkWatcherCache.invalidations));
+    }
+}
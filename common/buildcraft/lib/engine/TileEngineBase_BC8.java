@@ -10,6 +10,7 @@ import java.io.IOException;
 import java.util.List;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import net.minecraft.block.Block;
 import net.minecraft.entity.EntityLivingBase;
@@ -155,7 +156,6 @@ public abstract class TileEngineBase_BC8 extends TileBC_Neptune implements ITick
             if (isFacingReceiver(current)) {
                 if (currentDirection != current) {
                     currentDirection = current;
-                    // makeTileCache();
                     sendNetworkUpdate(NET_RENDER_DATA);
                     redrawBlock();
                     world.notifyNeighborsRespectDebug(getPos(), getBlockType(), true);
@@ -168,9 +168,7 @@ public abstract class TileEngineBase_BC8 extends TileBC_Neptune implements ITick
     }
 
     private boolean isFacingReceiver(EnumFacing dir) {
-        TileEntity neighbour = world.getTileEntity(getPos().offset(dir));
-        if (neighbour == null) return false;
-        IMjConnector other = neighbour.getCapability(MjAPI.CAP_CONNECTOR, dir.getOpposite());
+        IMjConnector other = getMjNeighbourCache().getConnector(dir);
         if (other == null) return false;
         return mjConnector.canConnect(other) && other.canConnect(mjConnector);
     }
@@ -341,7 +339,7 @@ public abstract class TileEngineBase_BC8 extends TileBC_Neptune implements ITick
     }
 
     private long getPowerToExtract(boolean doExtract) {
-        TileEntity tile = getTileBuffer(currentDirection).getTile();
+        TileEntity tile = getMjNeighbourCache().getTile(currentDirection);
 
         if (tile == null) return 0;
 
@@ -350,7 +348,7 @@ public abstract class TileEngineBase_BC8 extends TileBC_Neptune implements ITick
             return other.getMaxPower() - power;
         }
 
-        IMjReceiver receiver = getReceiverToPower(tile, currentDirection);
+        IMjReceiver receiver = getReceiverToPower(currentDirection);
         if (receiver == null) {
             return 0;
         }
@@ -365,7 +363,7 @@ public abstract class TileEngineBase_BC8 extends TileBC_Neptune implements ITick
     }
 
     private void sendPower() {
-        TileEntity tile = getTileBuffer(currentDirection).getTile();
+        TileEntity tile = getMjNeighbourCache().getTile(currentDirection);
         if (tile == null) {
             return;
         }
@@ -376,7 +374,7 @@ public abstract class TileEngineBase_BC8 extends TileBC_Neptune implements ITick
             }
             return;
         }
-        IMjReceiver receiver = getReceiverToPower(tile, currentDirection);
+        IMjReceiver receiver = getReceiverToPower(currentDirection);
         if (receiver != null) {
             long extracted = getPowerToExtract(true);
             if (extracted > 0) {
@@ -417,30 +415,15 @@ public abstract class TileEngineBase_BC8 extends TileBC_Neptune implements ITick
         sendNetworkUpdate(NET_RENDER_DATA);
     }
 
-    // TEMP
     @FunctionalInterface
     public interface ITileBuffer {
         TileEntity getTile();
     }
 
-    /** Temp! This should be replaced with a tile buffer! */
+    /** @return A buffer that always returns the current tile on the given side, as cached by
+     *         {@link #getMjNeighbourCache()}. */
     public ITileBuffer getTileBuffer(EnumFacing side) {
-        TileEntity tile = world.getTileEntity(getPos().offset(side));
-        return () -> tile;
-    }
-
-    @Override
-    public void invalidate() {
-        super.invalidate();
-        // tileCache = null;
-        // checkOrientation = true;
-    }
-
-    @Override
-    public void validate() {
-        super.validate();
-        // tileCache = null;
-        // checkOrientation = true;
+        return () -> getMjNeighbourCache().getTile(side);
     }
 
     /* STATE INFORMATION */
@@ -518,13 +501,30 @@ public abstract class TileEngineBase_BC8 extends TileBC_Neptune implements ITick
             TileEngineBase_BC8 other = (TileEngineBase_BC8) tile;
             return other.currentDirection == currentDirection;
         }
-        return getReceiverToPower(tile, side) != null;
+        return getReceiverToPower(tile.getCapability(MjAPI.CAP_RECEIVER, side.getOpposite())) != null;
     }
 
-    /** Redstone engines override this to get an {@link IMjRedstoneReceiver} instance */
+    /** @deprecated Power is sent to the receiver from {@link #getReceiverToPower(EnumFacing)}, which doesn't call this.
+     *             Override {@link #getReceiverToPower(IMjReceiver)} instead. */
+    @Deprecated
     public IMjReceiver getReceiverToPower(TileEntity tile, EnumFacing side) {
         if (tile == null) return null;
-        IMjReceiver rec = tile.getCapability(MjAPI.CAP_RECEIVER, side.getOpposite());
+        return getReceiverToPower(tile.getCapability(MjAPI.CAP_RECEIVER, side.getOpposite()));
+    }
+
+    /** @return The receiver that this will send power to on the given side, or null if there isn't one. This uses the
+     *         current neighbour on that side (from {@link #getMjNeighbourCache()}) so the capability isn't looked up
+     *         every time. */
+    public IMjReceiver getReceiverToPower(EnumFacing side) {
+        return getReceiverToPower(getMjNeighbourCache().getReceiver(side));
+    }
+
+    /** Checks if this can send power to the given receiver. Every receiver that this sends power to goes through this,
+     * so override this to restrict which receivers are powered (for example to only {@link IMjRedstoneReceiver}
+     * instances).
+     *
+     * @return The receiver to send power to, or null if power can't be sent to it. */
+    protected IMjReceiver getReceiverToPower(@Nullable IMjReceiver rec) {
         if (rec != null && rec.canConnect(mjConnector) && mjConnector.canConnect(rec)) {
             return rec;
         } else {
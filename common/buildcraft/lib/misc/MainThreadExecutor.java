@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.lib.misc;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+
+import net.minecraft.world.World;
+
+import net.minecraftforge.fml.relauncher.Side;
+
+import buildcraft.api.core.BCLog;
+
+/** An {@link Executor} that runs tasks at the end of the next server (or client) tick, on the main thread. Use this to
+ * apply the results of work done in {@link WorkerThreadUtil} to the world, for example with
+ * {@link java.util.concurrent.CompletableFuture#thenAcceptAsync(java.util.function.Consumer, Executor)}. */
+public enum MainThreadExecutor implements Executor {
+    SERVER,
+    CLIENT;
+
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+    public static MainThreadExecutor get(Side side) {
+        return side == Side.CLIENT ? CLIENT : SERVER;
+    }
+
+    public static MainThreadExecutor get(World world) {
+        return world.isRemote ? CLIENT : SERVER;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        tasks.add(task);
+    }
+
+    /** Runs every task that was queued before this was called. Called by BCLibEventDist at the end of every tick. */
+    public void runQueued() {
+        // Tasks added by other tasks run next tick, so that a task can't keep the tick going forever
+        for (int count = tasks.size(); count > 0; count--) {
+            Runnable task = tasks.poll();
+            if (task == null) {
+                break;
+            }
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                BCLog.logger.warn("[lib.threads] A main thread task failed!", e);
+            }
+        }
+    }
+}
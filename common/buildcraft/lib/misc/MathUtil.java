@@ -73,4 +73,109 @@ public class MathUtil {
     public static int findLowestCommonMultiple(int a, int b) {
         return (a / findHighestCommonFactor(a, b)) * b;
     }
+
+    /** @return The high 64 bits of the signed 128 bit product of a and b, the same as Math.multiplyHigh in java 9. */
+    public static long multiplyHigh(long a, long b) {
+        long high = multiplyHighUnsigned(a, b);
+        // Convert from the unsigned product to the signed product
+        return high - (a < 0 ? b : 0) - (b < 0 ? a : 0);
+    }
+
+    /** @return The high 64 bits of the unsigned 128 bit product of a and b. */
+    private static long multiplyHighUnsigned(long a, long b) {
+        long a0 = a & 0xFFFF_FFFFL, a1 = a >>> 32;
+        long b0 = b & 0xFFFF_FFFFL, b1 = b >>> 32;
+        long p00 = a0 * b0;
+        long p01 = a0 * b1;
+        long p10 = a1 * b0;
+        long middle = (p00 >>> 32) + (p01 & 0xFFFF_FFFFL) + (p10 & 0xFFFF_FFFFL);
+        return a1 * b1 + (p01 >>> 32) + (p10 >>> 32) + (middle >>> 32);
+    }
+
+    /** Calculates {@code a * b / c} without overflowing the intermediate product, and without allocating anything.
+     * This gives exactly the same result as doing the calculation with {@link java.math.BigInteger}: the result is
+     * rounded towards zero (like normal long division).
+     * 
+     * @throws ArithmeticException if c is 0, or if the result doesn't fit in a long. */
+    public static long mulDiv(long a, long b, long c) {
+        if (c == 0) {
+            throw new ArithmeticException("/ by zero");
+        }
+        if (((a < 0 ? -a : a) | (b < 0 ? -b : b)) >>> 31 == 0) {
+            // Both are less than 2^31 so the product can't overflow
+            return a * b / c;
+        }
+        boolean negative = (a < 0) ^ (b < 0) ^ (c < 0);
+        // Long.MIN_VALUE stays the same when negated, which is correct when treated as unsigned
+        long ua = a < 0 ? -a : a;
+        long ub = b < 0 ? -b : b;
+        long uc = c < 0 ? -c : c;
+        long high = multiplyHighUnsigned(ua, ub);
+        long low = ua * ub;
+        if (Long.compareUnsigned(high, uc) >= 0) {
+            throw new ArithmeticException("Overflow in " + a + " * " + b + " / " + c);
+        }
+        long quotient = divideUnsigned128(high, low, uc);
+        if (negative) {
+            if (Long.compareUnsigned(quotient, Long.MIN_VALUE) > 0) {
+                throw new ArithmeticException("Overflow in " + a + " * " + b + " / " + c);
+            }
+            return -quotient;
+        }
+        if (quotient < 0) {
+            throw new ArithmeticException("Overflow in " + a + " * " + b + " / " + c);
+        }
+        return quotient;
+    }
+
+    /** Divides the unsigned 128 bit number (high, low) by an unsigned divisor, which must be greater than high (so the
+     * quotient fits in 64 bits). This is "divlu" from Hacker's Delight (Knuth's algorithm D with 32 bit digits). */
+    private static long divideUnsigned128(long high, long low, long divisor) {
+        final long base = 1L << 32;
+        int shift = Long.numberOfLeadingZeros(divisor);
+        if (high == 0 && low >= 0 && divisor > 0) {
+            return low / divisor;
+        }
+        // Normalise the divisor so that its top bit is set
+        long v = divisor << shift;
+        long vn1 = v >>> 32;
+        long vn0 = v & 0xFFFF_FFFFL;
+        long un32 = shift == 0 ? high : (high << shift) | (low >>> (64 - shift));
+        long un10 = low << shift;
+        long un1 = un10 >>> 32;
+        long un0 = un10 & 0xFFFF_FFFFL;
+
+        long q1 = divideUnsigned(un32, vn1);
+        long rhat = un32 - q1 * vn1;
+        while (q1 >= base || Long.compareUnsigned(q1 * vn0, (rhat << 32) + un1) > 0) {
+            q1--;
+            rhat += vn1;
+            if (rhat >= base) {
+                break;
+            }
+        }
+
+        long un21 = (un32 << 32) + un1 - q1 * v;
+        long q0 = divideUnsigned(un21, vn1);
+        rhat = un21 - q0 * vn1;
+        while (q0 >= base || Long.compareUnsigned(q0 * vn0, (rhat << 32) + un0) > 0) {
+            q0--;
+            rhat += vn1;
+            if (rhat >= base) {
+                break;
+            }
+        }
+        return (q1 << 32) + q0;
+    }
+
+    /** Unsigned division by a positive divisor. Long.divideUnsigned allocates a BigInteger for "negative" dividends in
+     * java 8, so this is used instead. */
+    private static long divideUnsigned(long dividend, long divisor) {
+        if (dividend >= 0) {
+            return dividend / divisor;
+        }
+        long quotient = ((dividend >>> 1) / divisor) << 1;
+        long remainder = dividend - quotient * divisor;
+        return quotient + (Long.compareUnsigned(remainder, divisor) >= 0 ? 1 : 0);
+    }
 }
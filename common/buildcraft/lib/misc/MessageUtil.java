@@ -9,6 +9,7 @@ package buildcraft.lib.misc;
 import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -25,7 +26,6 @@ import net.minecraft.block.state.IBlockState;
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.network.PacketBuffer;
-import net.minecraft.server.management.PlayerChunkMapEntry;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Vec3d;
 import net.minecraft.world.World;
@@ -38,6 +38,7 @@ import buildcraft.api.core.BCLog;
 
 import buildcraft.lib.BCLibProxy;
 import buildcraft.lib.misc.data.DelayedList;
+import buildcraft.lib.net.ChunkWatcherCache;
 import buildcraft.lib.net.MessageManager;
 import buildcraft.lib.net.PacketBufferBC;
 
@@ -53,37 +54,27 @@ public class MessageUtil {
     }
 
     public static void postTick() {
-        for (Runnable runnable : DELAYED_TASKS.advance()) {
+        // Tasks can be added from any thread, but advance hands over the whole bucket so this doesn't need the lock
+        List<Runnable> tasks = DELAYED_TASKS.advance();
+        for (Runnable runnable : tasks) {
             runnable.run();
         }
+        DELAYED_TASKS.recycle(tasks);
     }
 
+    /** Sends the given message to every player watching the chunk that contains the given position. The message is
+     * only encoded once, no matter how many players are watching. */
     public static void sendToAllWatching(World worldObj, BlockPos pos, IMessage message) {
         if (worldObj instanceof WorldServer) {
-            WorldServer server = (WorldServer) worldObj;
-            PlayerChunkMapEntry playerChunkMap = server.getPlayerChunkMap().getEntry(pos.getX() >> 4, pos.getZ() >> 4);
-            if (playerChunkMap == null) {
-                // No-one was watching this chunk.
-                return;
+            List<EntityPlayerMP> players = ChunkWatcherCache.getWatchers((WorldServer) worldObj, pos);
+            if (!players.isEmpty()) {
+                MessageManager.sendToPlayers(message, players);
             }
-            // Slightly ugly hack to iterate through all players watching the chunk
-            playerChunkMap.hasPlayerMatchingInRange(0, player -> {
-                MessageManager.sendTo(message, player);
-                // Always return false so that the iteration doesn't stop early
-                return false;
-            });
-            // We could just use this instead, but that requires extra packet size as we are wrapping our
-            // packet in an FML packet and sending it through the vanilla system, which is not really desired
-            // playerChunkMap.sendPacket(MessageManager.getPacketFrom(message));
         }
     }
 
     public static void sendToPlayers(Iterable<EntityPlayer> players, IMessage message) {
-        for (EntityPlayer player : players) {
-            if (player instanceof EntityPlayerMP) {
-                MessageManager.sendTo(message, (EntityPlayerMP) player);
-            }
-        }
+        MessageManager.sendToPlayers(message, players);
     }
 
     public static void writeBooleanArray(PacketBuffer buf, boolean[] bool) {
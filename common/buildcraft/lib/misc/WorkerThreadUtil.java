@@ -9,9 +9,11 @@ package buildcraft.lib.misc;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
@@ -34,6 +36,14 @@ public class WorkerThreadUtil {
     private static final ExecutorService WORKING_POOL, DEPENDANT_WORKING_POOL, MONITORING_POOL;
     private static final boolean DEBUG = BCDebugging.shouldDebugLog("lib.threads");
 
+    /** An {@link Executor} that runs tasks with {@link #executeWorkTask(Runnable)}, for use with
+     * {@link java.util.concurrent.CompletableFuture}. */
+    public static final Executor WORK_EXECUTOR = WorkerThreadUtil::executeWorkTask;
+
+    /** An {@link Executor} that runs tasks with {@link #executeDependantTask(Runnable)}, for use with
+     * {@link java.util.concurrent.CompletableFuture}. */
+    public static final Executor DEPENDANT_EXECUTOR = WorkerThreadUtil::executeDependantTask;
+
     static {
         int availableProcessors = Runtime.getRuntime().availableProcessors();
         int max = Math.max(1, availableProcessors / 3);
@@ -105,6 +115,21 @@ public class WorkerThreadUtil {
         return DEPENDANT_WORKING_POOL.submit(callable);
     }
 
+    /** Creates a new executor with a single thread and an unbounded queue. Unlike {@link #WORK_EXECUTOR} and
+     * {@link #DEPENDANT_EXECUTOR} (which run tasks on the calling thread when every worker is busy) tasks given to this
+     * never run on the calling thread, so this is for long or blocking tasks that are started from the main thread,
+     * like disk I/O. Tasks run one at a time, in the order that they were given. The thread stops when it has been
+     * idle for a while, and is started again for the next task.
+     *
+     * @param name The name of the thread. */
+    public static ExecutorService createQueuedExecutor(String name) {
+        ThreadFactory factory = new BasicThreadFactory.Builder().daemon(false).namingPattern(name).build();
+        ThreadPoolExecutor executor =
+            new ThreadPoolExecutor(1, 1, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), factory);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     /** Executes a monitoring task. This is ONLY run when this is in debug mode, so ONLY use this for monitoring other
      * tasks. */
     public static void executeMonitoringTask(Runnable task) {
@@ -6,79 +6,183 @@
 
 package buildcraft.lib.misc.data;
 
+import java.util.AbstractList;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.function.Supplier;
 
 import com.google.common.collect.ImmutableList;
 
 /** Implements a delayed list of something- stuff that can be postponed for later retrieval. A specialised ordered queue
- * really. */
+ * really.
+ * <p>
+ * Internally this is a timing wheel: a circular buffer of buckets, where advancing only moves the head of the buffer
+ * along by one (rather than shifting every bucket down). The list returned by {@link #advance()} belongs to the caller,
+ * but callers that are done with it can hand it back with {@link #recycle(List)} so that it can be reused. */
 public class DelayedList<E> {
-    protected final List<List<E>> elements;
-    private final Supplier<List<E>> innerListSupplier;
+    private static final int MIN_CAPACITY = 8;
+
+    private List<E>[] buckets;
+    /** Always equal to buckets.length - 1 */
+    private int mask;
+    /** The index of the bucket with a delay of 0 */
+    private int head;
+    /** The number of buckets in use (starting at {@link #head}). */
+    private int size;
+
+    private final ArrayDeque<List<E>> pool = new ArrayDeque<>();
+
+    private final List<List<E>> view = new AbstractList<List<E>>() {
+        @Override
+        public List<E> get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException(index + " is not between 0 and " + size);
+            }
+            return buckets[(head + index) & mask];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    };
 
     public DelayedList() {
-        this(new ArrayList<>(), ArrayList::new);
+        buckets = createBuckets(MIN_CAPACITY);
+        mask = MIN_CAPACITY - 1;
     }
 
     public static <E> DelayedList<E> createConcurrent() {
-        return new DelayedList<E>(
-            Collections.synchronizedList(new ArrayList<>()),
-            () -> Collections.synchronizedList(new ArrayList<>())
-        ) {
+        return new DelayedList<E>() {
             @Override
-            public List<E> advance() {
-                synchronized (this.elements) {
-                    return super.advance();
+            public synchronized int getMaxDelay() {
+                return super.getMaxDelay();
+            }
+
+            @Override
+            public synchronized List<E> advance() {
+                return super.advance();
+            }
+
+            @Override
+            public synchronized void add(int delay, E element) {
+                super.add(delay, element);
+            }
+
+            @Override
+            public synchronized List<List<E>> getAllElements() {
+                // The view can't be used outside of the lock, so this has to be a copy
+                List<List<E>> copy = new ArrayList<>();
+                for (List<E> bucket : super.getAllElements()) {
+                    copy.add(new ArrayList<>(bucket));
                 }
+                return copy;
+            }
+
+            @Override
+            public synchronized void clear() {
+                super.clear();
+            }
+
+            @Override
+            public synchronized void recycle(List<E> bucket) {
+                super.recycle(bucket);
             }
         };
     }
 
-    private DelayedList(List<List<E>> actualList, Supplier<List<E>> innerList) {
-        elements = actualList;
-        innerListSupplier = innerList;
+    @SuppressWarnings("unchecked")
+    private static <E> List<E>[] createBuckets(int capacity) {
+        return new List[capacity];
     }
 
     /** @return The maximum delay value that any of the elements has. */
     public int getMaxDelay() {
-        return elements.size();
+        return size;
     }
 
     /** Advances this list by one, effectively decrementing the delays of every element by one and returning all
      * elements that have a delay of 0.
-     * 
-     * @return The elements that are no longer on a delay. */
+     *
+     * @return The elements that are no longer on a delay. This list is no longer used by this {@link DelayedList}, so
+     *         it can be kept for as long as the caller needs it. */
     public List<E> advance() {
-        if (elements.isEmpty()) {
+        if (size == 0) {
             return ImmutableList.of();
         }
-        return elements.remove(0);
+        List<E> bucket = buckets[head];
+        buckets[head] = null;
+        head = (head + 1) & mask;
+        size--;
+        return bucket;
     }
 
     /** Adds an element that will by returned by {@link #advance()} after it has been called delay times.
-     * 
+     *
      * @param delay The number of times that advance needs to be called for the *next* advance to return this element.
      *            Negative numbers default up to 0. */
     public void add(int delay, E element) {
         if (delay < 0) {
             delay = 0;
         }
-        while (elements.size() < delay + 1) {
-            elements.add(innerListSupplier.get());
+        if (delay >= buckets.length) {
+            grow(delay + 1);
         }
-        elements.get(delay).add(element);
+        while (size < delay + 1) {
+            buckets[(head + size) & mask] = obtainBucket();
+            size++;
+        }
+        buckets[(head + delay) & mask].add(element);
     }
 
-    /** @return The inner data structure used to hold the elements. Most useful for saving the elements for later. */
+    /** @return A view of the inner data structure used to hold the elements, ordered by delay. Most useful for saving
+     *         the elements for later. The {@link #createConcurrent() concurrent} version returns a copy instead. */
     public List<List<E>> getAllElements() {
-        return elements;
+        return view;
     }
 
     /** Removes *all* elements from this list. */
     public void clear() {
-        elements.clear();
+        for (int i = 0; i < size; i++) {
+            int index = (head + i) & mask;
+            List<E> bucket = buckets[index];
+            buckets[index] = null;
+            recycle(bucket);
+        }
+        head = 0;
+        size = 0;
+    }
+
+    private void grow(int minCapacity) {
+        int capacity = buckets.length;
+        while (capacity < minCapacity) {
+            capacity <<= 1;
+        }
+        List<E>[] newBuckets = createBuckets(capacity);
+        for (int i = 0; i < size; i++) {
+            newBuckets[i] = buckets[(head + i) & mask];
+        }
+        buckets = newBuckets;
+        mask = capacity - 1;
+        head = 0;
+    }
+
+    private List<E> obtainBucket() {
+        List<E> bucket = pool.pollFirst();
+        return bucket == null ? new ArrayList<>() : bucket;
+    }
+
+    /** Hands back a list that was returned by {@link #advance()}, so that it can be reused for later elements. The
+     * list is cleared, so the caller must not use it afterwards. */
+    public void recycle(List<E> bucket) {
+        if (bucket instanceof ImmutableList) {
+            // Returned by advance() when there wasn't anything left
+            return;
+        }
+        bucket.clear();
+        // Never pool more than could actually be used at once
+        if (pool.size() < buckets.length) {
+            pool.addFirst(bucket);
+        }
     }
 }
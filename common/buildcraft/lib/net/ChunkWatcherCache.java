@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.lib.net;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.server.management.PlayerChunkMapEntry;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldServer;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+
+/** A per-tick snapshot of the players watching each chunk, shared by everything in BuildCraft that sends messages to
+ * the watchers of a chunk. Snapshots are cleared at the start of every server tick, and whenever a player starts or
+ * stops watching the chunk. SERVER SIDE, and server thread only. */
+public final class ChunkWatcherCache {
+    private static final Map<World, Long2ObjectMap<List<EntityPlayerMP>>> WORLD_SNAPSHOTS = new WeakHashMap<>();
+
+    /** Reused to collect the players while creating a snapshot. */
+    private static final List<EntityPlayerMP> COLLECTING = new ArrayList<>();
+
+    public static long hits, misses, invalidations;
+
+    private ChunkWatcherCache() {}
+
+    /** @return Every player watching the chunk that contains the given position. The returned list must not be
+     *         modified, and should not be kept past the end of the current tick. */
+    public static List<EntityPlayerMP> getWatchers(WorldServer world, BlockPos pos) {
+        return getWatchers(world, pos.getX() >> 4, pos.getZ() >> 4);
+    }
+
+    /** @return Every player watching the given chunk. The returned list must not be modified, and should not be kept
+     *         past the end of the current tick. */
+    public static List<EntityPlayerMP> getWatchers(WorldServer world, int chunkX, int chunkZ) {
+        Long2ObjectMap<List<EntityPlayerMP>> snapshots = WORLD_SNAPSHOTS.get(world);
+        if (snapshots == null) {
+            snapshots = new Long2ObjectOpenHashMap<>();
+            WORLD_SNAPSHOTS.put(world, snapshots);
+        }
+        long key = ChunkPos.asLong(chunkX, chunkZ);
+        List<EntityPlayerMP> watchers = snapshots.get(key);
+        if (watchers != null) {
+            hits++;
+            return watchers;
+        }
+        misses++;
+        PlayerChunkMapEntry entry = world.getPlayerChunkMap().getEntry(chunkX, chunkZ);
+        if (entry == null) {
+            // No-one was watching this chunk.
+            watchers = Collections.emptyList();
+        } else {
+            COLLECTING.clear();
+            // Slightly ugly hack to iterate through all players watching the chunk
+            entry.hasPlayerMatchingInRange(0, player -> {
+                COLLECTING.add(player);
+                // Always return false so that the iteration doesn't stop early
+                return false;
+            });
+            if (COLLECTING.isEmpty()) {
+                watchers = Collections.emptyList();
+            } else if (COLLECTING.size() == 1) {
+                watchers = Collections.singletonList(COLLECTING.get(0));
+            } else {
+                watchers = Collections.unmodifiableList(new ArrayList<>(COLLECTING));
+            }
+            COLLECTING.clear();
+        }
+        snapshots.put(key, watchers);
+        return watchers;
+    }
+
+    /** Called by BuildCraftLib whenever a player starts or stops watching a chunk. */
+    public static void onChunkWatchChange(World world, ChunkPos chunk) {
+        Long2ObjectMap<List<EntityPlayerMP>> snapshots = WORLD_SNAPSHOTS.get(world);
+        if (snapshots != null && snapshots.remove(ChunkPos.asLong(chunk.x, chunk.z)) != null) {
+            invalidations++;
+        }
+    }
+
+    /** Called by BuildCraftLib at the start of every server tick. */
+    public static void onServerTickStart() {
+        for (Long2ObjectMap<List<EntityPlayerMP>> snapshots : WORLD_SNAPSHOTS.values()) {
+            snapshots.clear();
+        }
+    }
+
+    public static void onWorldUnload(World world) {
+        WORLD_SNAPSHOTS.remove(world);
+    }
+}
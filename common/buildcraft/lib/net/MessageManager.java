@@ -14,6 +14,7 @@ import javax.annotation.Nullable;
 
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.network.Packet;
 
 import net.minecraftforge.fml.common.FMLCommonHandler;
 import net.minecraftforge.fml.common.network.NetworkRegistry;
@@ -221,6 +222,24 @@ public class MessageManager {
         getSimpleNetworkWrapper(message).sendTo(message, player);
     }
 
+    /** Send this message to every player given. The message is only encoded once, and the resulting packet is shared
+     * between every player (in the same way that FML does for {@link #sendToAllAround(IMessage, NetworkRegistry.TargetPoint)}).
+     * The {@link IMessageHandler} for this message type should be on the CLIENT side.
+     *
+     * @param message The message to send
+     * @param players The players to send it to. Any that aren't an {@link EntityPlayerMP} are ignored. */
+    public static void sendToPlayers(IMessage message, Iterable<? extends EntityPlayer> players) {
+        Packet<?> packet = null;
+        for (EntityPlayer player : players) {
+            if (player instanceof EntityPlayerMP) {
+                if (packet == null) {
+                    packet = getSimpleNetworkWrapper(message).getPacketFrom(message);
+                }
+                ((EntityPlayerMP) player).connection.sendPacket(packet);
+            }
+        }
+    }
+
     /** Send this message to everyone within a certain range of a point. The {@link IMessageHandler} for this message
      * type should be on the CLIENT side.
      *
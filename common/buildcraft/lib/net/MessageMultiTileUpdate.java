@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.lib.net;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.netty.buffer.ByteBuf;
+
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.network.PacketBuffer;
+import net.minecraft.util.math.BlockPos;
+
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
+
+import buildcraft.lib.BCLibProxy;
+import buildcraft.lib.misc.MessageUtil;
+
+/** Several {@link MessageUpdateTile} payloads (possibly for different tiles) bundled into a single packet. Used by
+ * {@link buildcraft.lib.tile.TileUpdateCoalescer} to send every update in a tick to a player at once.
+ * <p>
+ * Payloads are shared between every message that they are added to, and are not owned by this message: the caller
+ * must release them after sending. */
+public class MessageMultiTileUpdate implements IMessage {
+    /** The (approximate) maximum size of a single message. */
+    public static final int MAX_MESSAGE_BYTES = 1 << 20;
+
+    private final List<BlockPos> positions = new ArrayList<>();
+    private final List<PacketBufferBC> payloads = new ArrayList<>();
+    private int byteCount;
+
+    public MessageMultiTileUpdate() {}
+
+    /** Adds the given payload to this message.
+     * 
+     * @return False if this message is already full (in which case the payload wasn't added). The first payload is
+     *         always added, regardless of its size. */
+    public boolean add(BlockPos pos, PacketBufferBC payload) {
+        int length = payload.readableBytes();
+        if (length > 1 << 24) {
+            throw new IllegalStateException("Can't write out " + length + "bytes!");
+        }
+        // 5 bytes per position var int, and 3 for the length
+        int size = length + 18;
+        if (!positions.isEmpty() && byteCount + size > MAX_MESSAGE_BYTES) {
+            return false;
+        }
+        positions.add(pos);
+        payloads.add(payload);
+        byteCount += size;
+        return true;
+    }
+
+    public int getCount() {
+        return positions.size();
+    }
+
+    @Override
+    public void toBytes(ByteBuf buf) {
+        PacketBuffer buffer = new PacketBuffer(buf);
+        buffer.writeVarInt(positions.size());
+        for (int i = 0; i < positions.size(); i++) {
+            MessageUtil.writeBlockPos(buffer, positions.get(i));
+            PacketBufferBC payload = payloads.get(i);
+            int length = payload.readableBytes();
+            buffer.writeMedium(length);
+            // Absolute read: payloads are shared between the messages for every player
+            buffer.writeBytes(payload, payload.readerIndex(), length);
+        }
+    }
+
+    @Override
+    public void fromBytes(ByteBuf buf) {
+        PacketBuffer buffer = new PacketBuffer(buf);
+        int count = buffer.readVarInt();
+        for (int i = 0; i < count; i++) {
+            positions.add(MessageUtil.readBlockPos(buffer));
+            int length = buffer.readUnsignedMedium();
+            // The handler releases these once they have been read
+            payloads.add(new PacketBufferBC(buf.readRetainedSlice(length)));
+        }
+    }
+
+    /** Releases every payload in this message. Only used on the receiving side. */
+    void releaseReceived() {
+        for (PacketBufferBC payload : payloads) {
+            if (payload.refCnt() > 0) {
+                payload.release();
+            }
+        }
+    }
+
+    public static final IMessageHandler<MessageMultiTileUpdate, IMessage> HANDLER = (message, ctx) -> {
+        try {
+            EntityPlayer player = BCLibProxy.getProxy().getPlayerForContext(ctx);
+            if (player == null || player.world == null) {
+                return null;
+            }
+            for (int i = 0; i < message.positions.size(); i++) {
+                // Replies are only used for messages sent to the server, which this never is
+                MessageUpdateTile.receivePayload(player, ctx, message.positions.get(i), message.payloads.get(i));
+            }
+            return null;
+        } catch (IOException io) {
+            throw new RuntimeException(io);
+        } finally {
+            message.releaseReceived();
+        }
+    };
+}
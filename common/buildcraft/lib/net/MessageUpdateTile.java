@@ -9,6 +9,7 @@ package buildcraft.lib.net;
 import java.io.IOException;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
 
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.network.PacketBuffer;
@@ -17,44 +18,74 @@ import net.minecraft.util.math.BlockPos;
 
 import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
 import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
+import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
 
 import buildcraft.api.core.BCLog;
 
 import buildcraft.lib.BCLibProxy;
 import buildcraft.lib.misc.MessageUtil;
 
+/** Sends a payload to (or from) a tile entity that implements {@link IPayloadReceiver}.
+ * <p>
+ * The payload is copied exactly once on each side: into the outgoing buffer by {@link #toBytes(ByteBuf)}, and out of
+ * the network by vanilla. On the receiving side {@link #fromBytes(ByteBuf)} takes a retained slice of the incoming
+ * buffer rather than copying it again. Payloads created with {@link #allocatePayload()} come from the pooled
+ * allocator, and so the message must be {@link #release() released} once it has been sent to everyone. */
 public class MessageUpdateTile implements IMessage {
+    private static final int INITIAL_PAYLOAD_CAPACITY = 256;
+
     private BlockPos pos;
     private PacketBufferBC payload;
 
     @SuppressWarnings("unused")
     public MessageUpdateTile() {}
 
+    /** @throws IllegalStateException if the payload is too big to be sent. The payload is left untouched, so the
+     *             caller still owns (and must release) it. */
     public MessageUpdateTile(BlockPos pos, PacketBufferBC payload) {
+        int size = payload.readableBytes();
+        if (size > 1 << 24) {
+            throw new IllegalStateException("Can't write out " + size + "bytes!");
+        }
         this.pos = pos;
         this.payload = payload;
-        if (getPayloadSize() > 1 << 24) {
-            throw new IllegalStateException("Can't write out " + getPayloadSize() + "bytes!");
-        }
+    }
+
+    /** @return A new payload buffer, from the pooled allocator. Messages created with this must be
+     *         {@link #release() released} after they have been sent. */
+    public static PacketBufferBC allocatePayload() {
+        return new PacketBufferBC(PooledByteBufAllocator.DEFAULT.directBuffer(INITIAL_PAYLOAD_CAPACITY));
     }
 
     public int getPayloadSize() {
         return payload == null ? 0 : payload.readableBytes();
     }
 
+    /** Releases the payload of this message. This must be called (once) for messages whose payload was created with
+     * {@link #allocatePayload()}, after every call to {@link MessageManager} has returned. (The payload is encoded
+     * immediately when sending, so it isn't needed afterwards). */
+    public void release() {
+        if (payload != null && payload.refCnt() > 0) {
+            payload.release();
+        }
+    }
+
     @Override
     public void fromBytes(ByteBuf buf) {
         this.pos = MessageUtil.readBlockPos(new PacketBuffer(buf));
         int size = buf.readUnsignedMedium();
-        payload = new PacketBufferBC(buf.readBytes(size));
+        // The handler releases this once it has been read
+        payload = new PacketBufferBC(buf.readRetainedSlice(size));
     }
 
     @Override
     public void toBytes(ByteBuf buf) {
         MessageUtil.writeBlockPos(new PacketBuffer(buf), pos);
         int length = payload.readableBytes();
+        buf.ensureWritable(3 + length);
         buf.writeMedium(length);
-        buf.writeBytes(payload, 0, length);
+        // Absolute read: this is called once for every player that the message is sent to
+        buf.writeBytes(payload, payload.readerIndex(), length);
     }
 
     public static final IMessageHandler<MessageUpdateTile, IMessage> HANDLER = (message, ctx) -> {
@@ -63,18 +94,25 @@ public class MessageUpdateTile implements IMessage {
             if (player == null || player.world == null) {
                 return null;
             }
-            TileEntity tile = player.world.getTileEntity(message.pos);
-            if (tile instanceof IPayloadReceiver) {
-                return ((IPayloadReceiver) tile).receivePayload(ctx, message.payload);
-            } else {
-                BCLog.logger.warn("Dropped message for player " + player.getName() + " for tile at " + message.pos
-                    + " (found " + tile + ")");
-            }
-            return null;
+            return receivePayload(player, ctx, message.pos, message.payload);
         } catch (IOException io) {
             throw new RuntimeException(io);
         } finally {
             message.payload.release();
         }
     };
+
+    /** Passes the given payload on to the {@link IPayloadReceiver} at the given position. Doesn't release the
+     * payload. */
+    static IMessage receivePayload(EntityPlayer player, MessageContext ctx, BlockPos pos, PacketBufferBC payload)
+        throws IOException {
+        TileEntity tile = player.world.getTileEntity(pos);
+        if (tile instanceof IPayloadReceiver) {
+            return ((IPayloadReceiver) tile).receivePayload(ctx, payload);
+        } else {
+            BCLog.logger.warn("Dropped message for player " + player.getName() + " for tile at " + pos + " (found "
+                + tile + ")");
+        }
+        return null;
+    }
 }
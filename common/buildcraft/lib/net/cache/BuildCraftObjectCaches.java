@@ -7,6 +7,7 @@
 package buildcraft.lib.net.cache;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.function.Supplier;
@@ -76,6 +77,18 @@ public class BuildCraftObjectCaches {
         }
     }
 
+    /** @return Every registered cache, in network order. */
+    public static List<NetworkedObjectCache<?>> getCaches() {
+        return Collections.unmodifiableList(CACHES);
+    }
+
+    /** Called by BuildCraftLib at the end of every server tick. */
+    public static void onServerTick() {
+        for (NetworkedObjectCache<?> cache : CACHES) {
+            cache.onServerTick();
+        }
+    }
+
     /** Called by BuildCraftLib on every client tick. */
     public static void onClientTick() {
         for (NetworkedObjectCache<?> cache : CACHES) {
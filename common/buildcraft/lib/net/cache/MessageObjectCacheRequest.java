@@ -61,9 +61,10 @@ public class MessageObjectCacheRequest implements IMessage {
         PacketBufferBC buffer = new PacketBufferBC(Unpooled.buffer());
         for (int i = 0; i < values.length; i++) {
             int id = message.ids[i];
-            cache.writeObjectServer(id, buffer);
-            values[i] = new byte[buffer.readableBytes()];
-            buffer.readBytes(values[i]);
+            if (cache.writeObjectServer(id, buffer)) {
+                values[i] = new byte[buffer.readableBytes()];
+                buffer.readBytes(values[i]);
+            }
             buffer.clear();
         }
         return new MessageObjectCacheResponse(message.cacheId, message.ids, values);
@@ -21,6 +21,7 @@ public class MessageObjectCacheResponse implements IMessage {
     private int cacheId;
 
     private int[] ids;
+    /** The encoded value of each id, or null if the server doesn't have that id any more. */
     private byte[][] values;
 
     @SuppressWarnings("unused")
@@ -39,8 +40,12 @@ public class MessageObjectCacheResponse implements IMessage {
         buf.writeShort(ids.length);
         for (int i = 0; i < ids.length; i++) {
             buf.writeInt(ids[i]);
-            buf.writeShort(values[i].length);
-            buf.writeBytes(values[i]);
+            if (values[i] == null) {
+                buf.writeShort(-1);
+            } else {
+                buf.writeShort(values[i].length);
+                buf.writeBytes(values[i]);
+            }
         }
     }
 
@@ -52,8 +57,13 @@ public class MessageObjectCacheResponse implements IMessage {
         values = new byte[idCount][];
         for (int i = 0; i < idCount; i++) {
             ids[i] = buf.readInt();
-            values[i] = new byte[buf.readShort()];
-            buf.readBytes(values[i]);
+            int length = buf.readShort();
+            if (length < 0) {
+                values[i] = null;
+            } else {
+                values[i] = new byte[length];
+                buf.readBytes(values[i]);
+            }
         }
     }
 
@@ -63,6 +73,10 @@ public class MessageObjectCacheResponse implements IMessage {
             for (int i = 0; i < message.ids.length; i++) {
                 int id = message.ids[i];
                 byte[] payload = message.values[i];
+                if (payload == null) {
+                    cache.onClientMissing(id);
+                    continue;
+                }
                 cache.readObjectClient(id, new PacketBufferBC(Unpooled.copiedBuffer(payload)));
             }
             return null;
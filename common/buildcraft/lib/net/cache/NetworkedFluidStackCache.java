@@ -21,10 +21,13 @@ import it.unimi.dsi.fastutil.objects.Object2IntOpenCustomHashMap;
 
 public class NetworkedFluidStackCache extends NetworkedObjectCache<FluidStack> {
     private static final int FLUID_AMOUNT = 1;
+    private static final int MAX_ENTRIES = 1024;
+    /** 10 minutes */
+    private static final int MAX_AGE = 20 * 60 * 10;
 
     public NetworkedFluidStackCache() {
         // Use water for our base stack as it might not be too bad of an assumption
-        super(new FluidStack(FluidRegistry.WATER, FLUID_AMOUNT));
+        super(new FluidStack(FluidRegistry.WATER, FLUID_AMOUNT), MAX_ENTRIES, MAX_AGE);
     }
 
     @Override
@@ -22,9 +22,12 @@ import it.unimi.dsi.fastutil.objects.Object2IntOpenCustomHashMap;
 
 // We use ItemStackKey here because ItemStack doesn't implement hashCode and equals
 public class NetworkedItemStackCache extends NetworkedObjectCache<ItemStack> {
+    private static final int MAX_ENTRIES = 8192;
+    /** 10 minutes */
+    private static final int MAX_AGE = 20 * 60 * 10;
 
     public NetworkedItemStackCache() {
-        super(StackUtil.EMPTY);
+        super(StackUtil.EMPTY, MAX_ENTRIES, MAX_AGE);
     }
 
     @Override
@@ -24,9 +24,14 @@ import buildcraft.api.core.BCLog;
 import buildcraft.lib.net.MessageManager;
 import buildcraft.lib.net.PacketBufferBC;
 
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2LongLinkedOpenHashMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayFIFOQueue;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
 
 /** Provides a way of defining a cache of *some object* that will be sent from server to every client (when they are
  * needed). Each object has a specific integer ID.
@@ -41,32 +46,90 @@ public abstract class NetworkedObjectCache<T> {
     static final boolean DEBUG_LOG = BCDebugging.shouldDebugLog("lib.net.cache");
     static final boolean DEBUG_CPLX = BCDebugging.shouldDebugComplex("lib.net.cache");
 
-    /* Implementation notes -- this currently is a simple, never expiring object<->id cache. Because it doesn't ever
-     * clear objects out of the cache we can guarantee that the index of an object is unique, just by incrementing a
-     * single variable. */
+    /* Implementation notes -- there are two modes:
+     * 
+     * - Unbounded (the default): a simple, never expiring object<->id cache. Because it doesn't ever clear objects out
+     * of the cache we can guarantee that the index of an object is unique, just by incrementing a single variable.
+     * 
+     * - Bounded: objects that haven't been stored for a while (or the least recently stored objects, if the cache is
+     * over its maximum size) are evicted. Every id is made up of a slot (the low SLOT_BITS bits) and the generation of
+     * that slot (the remaining bits). Evicting an object frees its slot and increments the generation, so a re-used
+     * slot never produces an id that a client has seen before. Clients can therefore drop (or keep) any link they like
+     * without ever seeing the wrong object: a request for an evicted id is answered with a "missing" response, and the
+     * server will store the object under a new id the next time it is sent. */
+
+    /** The number of bits of an id that are used for the slot -- the rest are used for the generation. */
+    public static final int SLOT_BITS = 20;
+    static final int MAX_SLOTS = 1 << SLOT_BITS;
+    static final int SLOT_MASK = MAX_SLOTS - 1;
+    static final int MAX_GENERATION = (1 << (31 - SLOT_BITS)) - 1;
+
+    /** Objects that have been used within this many ticks are never evicted (unless every slot is in use), so that
+     * clients always have a chance to request the objects that they have just been sent. */
+    public static final int MIN_AGE = 20 * 20;
+    /** How often (in ticks) bounded caches look for objects to evict. */
+    public static final int SWEEP_INTERVAL = 20;
 
     /** The default object -- used at the client in case the object hasn't been sent to the client yet. */
     protected final T defaultObject;
 
+    /** The maximum number of objects to keep, or 0 if this cache is unbounded. */
+    private final int maxEntries;
+    /** The maximum number of ticks that an object will be kept after it was last used, if this cache is bounded. */
+    private final int maxAge;
+
     private final Int2ObjectMap<T> serverIdToObject = new Int2ObjectOpenHashMap<>();
     /** Server side map of the object to its integer ID. Inverse of {@link #serverIdToObject} */
     private final Object2IntMap<T> serverObjectToId = createObject2IntMap();
-
-    /** The ID for the next stored object. */
+    /** Server side map of the id to the tick that it was last used at, in least-recently-used order. Only used for
+     * bounded caches. */
+    private final Int2LongLinkedOpenHashMap serverLastUsed = new Int2LongLinkedOpenHashMap();
+    /** The encoded size of every object that has been sent to a client at least once. */
+    private final Int2IntOpenHashMap serverEncodedSizes = new Int2IntOpenHashMap();
+    /** The current generation of every slot. Only used for bounded caches. */
+    private final IntArrayList serverSlotGenerations = new IntArrayList();
+    /** Slots that have been evicted, and can be re-used. Only used for bounded caches. */
+    private final IntArrayFIFOQueue serverFreeSlots = new IntArrayFIFOQueue();
+
+    /** The ID for the next stored object. Only used for unbounded caches. */
     private int serverCurrentId = 0;
+    private long serverTicks = 0;
+
+    private long serverBytes, serverHits, serverMisses, serverEvictions, serverSent, serverResent, serverMissing;
 
     /** The list of cached client-side objects. */
     private final Int2ObjectMap<Link> clientObjects = new Int2ObjectOpenHashMap<>();
     /** The list of all links that are currently unknown. */
     private final Queue<Link> clientUnknowns = new LinkedList<>();
+    private long clientTicks = 0;
 
     /** A server view of this cache. Contains methods specific to */
     private final ServerView serverView = new ServerView();
     private final ClientView clientView = new ClientView();
 
+    /** Creates an unbounded cache, which never evicts anything. */
     public NetworkedObjectCache(T defaultObject) {
+        this(defaultObject, 0, 0);
+    }
+
+    /** Creates a bounded cache.
+     * 
+     * @param maxEntries The maximum number of objects to keep, or 0 for an unbounded cache. Note that objects used
+     *            within the last {@link #MIN_AGE} ticks are kept even if this is exceeded.
+     * @param maxAge The number of ticks after an object was last used that it will be evicted. This is used on both
+     *            the server and the client. */
+    public NetworkedObjectCache(T defaultObject, int maxEntries, int maxAge) {
+        if (maxEntries < 0 || maxEntries > MAX_SLOTS / 2) {
+            throw new IllegalArgumentException("Invalid maxEntries " + maxEntries);
+        }
+        if (maxEntries > 0 && maxAge < MIN_AGE) {
+            throw new IllegalArgumentException("maxAge (" + maxAge + ") must be at least " + MIN_AGE);
+        }
         this.defaultObject = defaultObject;
+        this.maxEntries = maxEntries;
+        this.maxAge = maxAge;
         serverObjectToId.defaultReturnValue(-1);
+        serverLastUsed.defaultReturnValue(-1);
     }
 
     protected abstract Object2IntMap<T> createObject2IntMap();
@@ -116,6 +179,11 @@ public abstract class NetworkedObjectCache<T> {
         public int getId(T value) {
             return serverGetId(value);
         }
+
+        public CacheStats getStats() {
+            return new CacheStats(getCacheName(), serverIdToObject.size(), maxEntries, serverBytes, serverHits,
+                serverMisses, serverEvictions, serverSent, serverResent, serverMissing);
+        }
     }
 
     /** The client view of the cache. */
@@ -129,6 +197,11 @@ public abstract class NetworkedObjectCache<T> {
         public Link retrieve(int id) {
             return clientRetrieve(id);
         }
+
+        /** @return The number of links that this cache currently knows about. */
+        public int getLinkCount() {
+            return clientObjects.size();
+        }
     }
 
     /** Defines a link to a cached object (on the client - don't use this on the server). If */
@@ -140,12 +213,19 @@ public abstract class NetworkedObjectCache<T> {
         /** The id of this value. */
         final int id;
 
+        /** The client tick that this was last used at. */
+        long lastUsed;
+
+        /** True if the server told us that it no longer has this object. */
+        boolean missing;
+
         Link(int id) {
             this.id = id;
         }
 
         @Override
         public T get() {
+            lastUsed = clientTicks;
             return actual == null ? defaultObject : actual;
         }
 
@@ -154,6 +234,41 @@ public abstract class NetworkedObjectCache<T> {
         }
     }
 
+    /** A snapshot of the server side metrics of a single cache. */
+    public static final class CacheStats {
+        public final String name;
+        public final int entries, maxEntries;
+        /** The total encoded size of every entry that has been sent to at least one client. */
+        public final long bytes;
+        /** The number of times that {@link ServerView#store(Object)} found (or didn't find) an existing entry. */
+        public final long hits, misses;
+        public final long evictions;
+        /** The number of objects written to clients, and how many of those had already been written before. */
+        public final long sent, resent;
+        /** The number of ids requested by clients that had already been evicted. */
+        public final long missing;
+
+        CacheStats(String name, int entries, int maxEntries, long bytes, long hits, long misses, long evictions,
+            long sent, long resent, long missing) {
+            this.name = name;
+            this.entries = entries;
+            this.maxEntries = maxEntries;
+            this.bytes = bytes;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.sent = sent;
+            this.resent = resent;
+            this.missing = missing;
+        }
+
+        /** @return The percentage of stores that found an existing entry, or -1 if nothing has been stored yet. */
+        public int getHitRate() {
+            long total = hits + misses;
+            return total == 0 ? -1 : (int) (hits * 100 / total);
+        }
+    }
+
     // Abstract overridable methods
 
     /** Writes the specified object out to the buffer.
@@ -180,13 +295,17 @@ public abstract class NetworkedObjectCache<T> {
      * @param object
      * @return */
     private int serverStore(T object) {
-        Integer current = serverObjectToId.get(object);
-        if (current == null) {
+        int current = serverObjectToId.getInt(object);
+        if (current == -1) {
             // new entry
-            int id = serverCurrentId++;
+            serverMisses++;
+            int id = serverAllocateId();
             T copy = copyOf(object);
             serverObjectToId.put(copy, id);
             serverIdToObject.put(id, copy);
+            if (isBounded()) {
+                serverLastUsed.put(id, serverTicks);
+            }
             if (DEBUG_CPLX) {
                 String toString;
                 if (copy instanceof FluidStack) {
@@ -200,10 +319,66 @@ public abstract class NetworkedObjectCache<T> {
             return id;
         } else {
             // existing entry
+            serverHits++;
+            if (isBounded()) {
+                serverLastUsed.putAndMoveToLast(current, serverTicks);
+            }
             return current;
         }
     }
 
+    public final boolean isBounded() {
+        return maxEntries > 0;
+    }
+
+    private int serverAllocateId() {
+        if (!isBounded()) {
+            return serverCurrentId++;
+        }
+        if (serverFreeSlots.isEmpty() && serverSlotGenerations.size() >= MAX_SLOTS) {
+            // Every slot is in use: evict the oldest entry, regardless of how recently it was used
+            while (serverFreeSlots.isEmpty() && !serverLastUsed.isEmpty()) {
+                int oldest = serverLastUsed.firstIntKey();
+                serverLastUsed.removeFirstLong();
+                serverEvict(oldest);
+            }
+            if (serverFreeSlots.isEmpty()) {
+                throw new IllegalStateException("The cache " + getNameAndId() + " has run out of slots!");
+            }
+        }
+        int slot;
+        if (serverFreeSlots.isEmpty()) {
+            slot = serverSlotGenerations.size();
+            serverSlotGenerations.add(0);
+        } else {
+            slot = serverFreeSlots.dequeueInt();
+        }
+        return (serverSlotGenerations.getInt(slot) << SLOT_BITS) | slot;
+    }
+
+    /** Removes the given id from the server-side maps. Note that this doesn't remove it from
+     * {@link #serverLastUsed}. */
+    private void serverEvict(int id) {
+        T obj = serverIdToObject.remove(id);
+        if (obj != null) {
+            serverObjectToId.removeInt(obj);
+        }
+        if (serverEncodedSizes.containsKey(id)) {
+            serverBytes -= serverEncodedSizes.remove(id);
+        }
+        serverEvictions++;
+        int slot = id & SLOT_MASK;
+        int generation = serverSlotGenerations.getInt(slot);
+        if (generation < MAX_GENERATION) {
+            serverSlotGenerations.set(slot, generation + 1);
+            serverFreeSlots.enqueue(slot);
+        }
+        // Otherwise the slot has been used for every possible generation, so it is retired permanently
+        if (DEBUG_CPLX) {
+            BCLog.logger.info("[lib.net.cache] The cache " + getNameAndId() + " evicted #" + id);
+        }
+    }
+
     protected abstract T copyOf(T object);
 
     /** Gets the ID for the given object, or -1 if this was not stored in the cache. SERVER SIDE.
@@ -213,7 +388,11 @@ public abstract class NetworkedObjectCache<T> {
      * @param object
      * @return */
     private int serverGetId(T object) {
-        return serverObjectToId.getInt(object);
+        int id = serverObjectToId.getInt(object);
+        if (id != -1 && isBounded()) {
+            serverLastUsed.putAndMoveToLast(id, serverTicks);
+        }
+        return id;
     }
 
     /** Retrieves a link to the specified ID. CLIENT SIDE.
@@ -231,13 +410,30 @@ public abstract class NetworkedObjectCache<T> {
             clientUnknowns.add(current);
             clientObjects.put(id, current);
         }
+        current.lastUsed = clientTicks;
         return current;
     }
 
-    /** Used by {@link MessageObjectCacheRequest#HANDLER} to write the actual object out. */
-    void writeObjectServer(int id, PacketBufferBC buffer) {
+    /** Used by {@link MessageObjectCacheRequest#HANDLER} to write the actual object out.
+     * 
+     * @return False if the given id isn't stored (because it was evicted), in which case nothing was written. */
+    boolean writeObjectServer(int id, PacketBufferBC buffer) {
         T obj = serverIdToObject.get(id);
+        if (obj == null) {
+            serverMissing++;
+            return false;
+        }
+        int start = buffer.writerIndex();
         writeObject(obj, buffer);
+        serverSent++;
+        if (serverEncodedSizes.containsKey(id)) {
+            serverResent++;
+        } else {
+            int size = buffer.writerIndex() - start;
+            serverEncodedSizes.put(id, size);
+            serverBytes += size;
+        }
+        return true;
     }
 
     /** Used by {@link MessageObjectCacheResponse#HANDLER} to read an object in.
@@ -262,11 +458,45 @@ public abstract class NetworkedObjectCache<T> {
         }
     }
 
+    /** Used by {@link MessageObjectCacheResponse#HANDLER} when the server no longer has the requested object. The link
+     * is kept (so it will keep returning the default object) but it will be removed by the next sweep. */
+    void onClientMissing(int id) {
+        Link link = clientObjects.get(id);
+        if (link != null) {
+            link.missing = true;
+        }
+        if (DEBUG_CPLX) {
+            BCLog.logger.info("[lib.net.cache] The cache " + getNameAndId() + " was told that #" + id + " is missing");
+        }
+    }
+
     final String getNameAndId() {
         return "(" + BuildCraftObjectCaches.CACHES.indexOf(this) + " = " + getCacheName() + ")";
     }
 
+    /** Called by {@link BuildCraftObjectCaches#onServerTick()} at the end of every server tick. */
+    void onServerTick() {
+        serverTicks++;
+        if (!isBounded() || serverTicks % SWEEP_INTERVAL != 0) {
+            return;
+        }
+        while (!serverLastUsed.isEmpty()) {
+            int oldest = serverLastUsed.firstIntKey();
+            long age = serverTicks - serverLastUsed.get(oldest);
+            if (age < MIN_AGE || (age < maxAge && serverIdToObject.size() <= maxEntries)) {
+                // Everything after this is newer
+                break;
+            }
+            serverLastUsed.removeFirstLong();
+            serverEvict(oldest);
+        }
+    }
+
     void onClientWorldTick() {
+        clientTicks++;
+        if (isBounded() && clientTicks % SWEEP_INTERVAL == 0) {
+            clientSweep();
+        }
         int[] ids = new int[clientUnknowns.size()];
         for (int i = 0; i < ids.length; i++) {
             ids[i] = clientUnknowns.remove().id;
@@ -280,6 +510,26 @@ public abstract class NetworkedObjectCache<T> {
         }
     }
 
+    /** Removes links that haven't been used for a while. If there are still too many links then the age limit is
+     * halved until there aren't (or it reaches {@link #MIN_AGE}). Removed links still work for anything that kept a
+     * reference to them -- they just won't be returned by {@link ClientView#retrieve(int)} again. */
+    private void clientSweep() {
+        long age = maxAge;
+        while (true) {
+            ObjectIterator<Link> iter = clientObjects.values().iterator();
+            while (iter.hasNext()) {
+                Link link = iter.next();
+                if ((link.actual != null || link.missing) && clientTicks - link.lastUsed >= age) {
+                    iter.remove();
+                }
+            }
+            if (clientObjects.size() <= maxEntries || age <= MIN_AGE) {
+                return;
+            }
+            age = Math.max(MIN_AGE, age / 2);
+        }
+    }
+
     void onClientJoinServer() {
         clientObjects.clear();
         clientUnknowns.clear();
@@ -6,50 +6,123 @@
 
 package buildcraft.lib.path;
 
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.Map;
-import java.util.concurrent.Callable;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
 import java.util.function.Consumer;
 
+import javax.annotation.Nonnull;
+
 import com.google.common.base.Throwables;
-import com.google.common.util.concurrent.Futures;
 
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.util.EnumFacing;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
 import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.IChunkProvider;
+import net.minecraft.world.gen.ChunkProviderServer;
 
 import buildcraft.lib.misc.WorkerThreadUtil;
+import buildcraft.lib.path.task.EnumTraversalExpense;
 import buildcraft.lib.path.task.TaskMiniChunkManager;
+import buildcraft.lib.world.WorldEventListenerAdapter;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import it.unimi.dsi.fastutil.longs.LongSets;
 
+/** Caches the {@link MiniChunkGraph} of every 16x16x16 mini chunk that has been requested, per world. Graphs are built
+ * on the worker threads, and are removed from the cache (see {@link #invalidate(World, BlockPos)}) as soon as a block
+ * inside of them changes how expensive it is to move through.
+ * <p>
+ * The cache of a world (and its listener) is only ever created on the main thread, by
+ * {@link MiniChunkPathFinder#findPath(World, BlockPos, BlockPos)}. Graphs requested from other threads before then fail
+ * instead. */
 public class MiniChunkCache {
-    private static Map<Integer, MiniChunkCache> worldCaches = new HashMap<>();
+    private static final Map<World, MiniChunkCache> worldCaches =
+        Collections.synchronizedMap(new WeakHashMap<>());
 
     public final int dimId;
     private final Map<BlockPos, MiniChunkGraph> cache = new ConcurrentHashMap<>();
-    final Map<BlockPos, Future<MiniChunkGraph>> tempData = new ConcurrentHashMap<>();
+    final Map<BlockPos, CompletableFuture<MiniChunkGraph>> tempData = new ConcurrentHashMap<>();
+    /** Every loaded chunk (as {@link ChunkPos#asLong(int, int)}), kept up to date on the main thread so that the
+     * worker threads don't need to ask the world. */
+    private final LongSet loadedChunks = LongSets.synchronize(new LongOpenHashSet());
 
-    private MiniChunkCache(int dimId) {
-        this.dimId = dimId;
+    private MiniChunkCache(World world) {
+        this.dimId = world.provider.getDimension();
+        IChunkProvider provider = world.getChunkProvider();
+        if (provider instanceof ChunkProviderServer) {
+            for (Chunk chunk : ((ChunkProviderServer) provider).getLoadedChunks()) {
+                loadedChunks.add(ChunkPos.asLong(chunk.x, chunk.z));
+            }
+        }
+        world.addEventListener(new WorldEventListenerAdapter() {
+            @Override
+            public void notifyBlockUpdate(@Nonnull World w, @Nonnull BlockPos pos, @Nonnull IBlockState oldState,
+                @Nonnull IBlockState newState, int flags) {
+                onBlockChange(w, pos, newState);
+            }
+        });
     }
 
-    public static Future<MiniChunkGraph> requestGraph(World world, BlockPos pos) {
-        int dimId = world.provider.getDimension();
-        if (!worldCaches.containsKey(dimId)) {
-            worldCaches.put(dimId, new MiniChunkCache(dimId));
+    /** Creates the cache for the given world if it doesn't exist yet. This must only be called from the main thread,
+     * as it adds a listener to the world. */
+    static void create(World world) {
+        synchronized (worldCaches) {
+            worldCaches.computeIfAbsent(world, MiniChunkCache::new);
         }
-        return worldCaches.get(dimId).requestGraphImpl(world, pos);
     }
 
-    public static MiniChunkGraph getGraphIfExists(World world, BlockPos pos) {
-        int dimId = world.provider.getDimension();
-        if (!worldCaches.containsKey(dimId)) {
-            worldCaches.put(dimId, new MiniChunkCache(dimId));
+    /** @return The cache for the given world, or null if it hasn't been {@link #create(World) created} yet. */
+    private static MiniChunkCache get(World world) {
+        return worldCaches.get(world);
+    }
+
+    public static void onWorldUnload(World world) {
+        worldCaches.remove(world);
+    }
+
+    public static void onChunkLoad(Chunk chunk) {
+        MiniChunkCache cache = get(chunk.getWorld());
+        if (cache != null) {
+            cache.loadedChunks.add(ChunkPos.asLong(chunk.x, chunk.z));
         }
-        return worldCaches.get(dimId).getGraphIfExistsImpl(pos);
     }
 
+    public static void onChunkUnload(Chunk chunk) {
+        MiniChunkCache cache = get(chunk.getWorld());
+        if (cache != null) {
+            cache.loadedChunks.remove(ChunkPos.asLong(chunk.x, chunk.z));
+        }
+    }
+
+    /** @return A future that completes with the graph of the mini chunk that contains the given position, or fails if
+     *         that position isn't loaded (or the cache for the world hasn't been created yet). The graph will already
+     *         be {@link MiniChunkGraph#isRemoved() removed} if a block inside of it changed while it was being
+     *         built. */
+    public static CompletableFuture<MiniChunkGraph> requestGraph(World world, BlockPos pos) {
+        MiniChunkCache cache = get(world);
+        if (cache == null) {
+            CompletableFuture<MiniChunkGraph> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new IllegalStateException("No cache exists for " + world + "!"));
+            return failed;
+        }
+        return cache.requestGraphImpl(world, pos);
+    }
+
+    public static MiniChunkGraph getGraphIfExists(World world, BlockPos pos) {
+        MiniChunkCache cache = get(world);
+        return cache == null ? null : cache.getGraphIfExistsImpl(pos);
+    }
+
+    /** Waits for {@link #requestGraph(World, BlockPos)}. This should only ever be called from a dependant task in
+     * {@link WorkerThreadUtil} (or the thread of {@link MiniChunkPathFinder}), never from the main thread. */
     public static MiniChunkGraph requestAndWait(World world, BlockPos pos) {
         try {
             return requestGraph(world, pos).get();
@@ -58,40 +131,112 @@ public class MiniChunkCache {
         }
     }
 
-    private void putGraph(BlockPos min, MiniChunkGraph graph) {
-        cache.put(min, graph);
+    private void putGraph(BlockPos min, MiniChunkGraph graph, CompletableFuture<MiniChunkGraph> future) {
+        synchronized (this) {
+            if (tempData.get(min) != future) {
+                // A block changed while this was being built, so it might already be wrong. It's still given to
+                // everything waiting for it, so mark it as removed for them to request it again.
+                graph.unlink();
+                return;
+            }
+            for (EnumFacing face : EnumFacing.VALUES) {
+                MiniChunkGraph neighbour = cache.get(min.offset(face, 16));
+                if (neighbour != null) {
+                    graph.link(face, neighbour);
+                }
+            }
+            cache.put(min, graph);
+            tempData.remove(min);
+        }
     }
 
-    private Future<MiniChunkGraph> requestGraphImpl(World world, BlockPos pos) {
+    private CompletableFuture<MiniChunkGraph> requestGraphImpl(World world, BlockPos pos) {
         final BlockPos minPos = convertToMin(pos);
         pos = minPos;
         MiniChunkGraph existing = cache.get(pos);
         if (existing != null) {
-            return Futures.immediateCheckedFuture(existing);
+            return CompletableFuture.completedFuture(existing);
+        }
+        if (!isLoaded(pos)) {
+            CompletableFuture<MiniChunkGraph> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new IllegalStateException("The block " + pos + " is not loaded!"));
+            return failed;
         }
-        if (!world.isBlockLoaded(pos)) return Futures.immediateFailedFuture(new Throwable("The block " + pos + " is not loaded!"));
         synchronized (this) {
+            existing = cache.get(pos);
+            if (existing != null) {
+                return CompletableFuture.completedFuture(existing);
+            }
             if (tempData.containsKey(pos)) {
                 return tempData.get(pos);
             }
-            Consumer<MiniChunkGraph> setter = (graph) -> putGraph(minPos, graph);
-            Callable<MiniChunkGraph> task = new TaskMiniChunkManager(world, pos, setter);
-            Future<MiniChunkGraph> future = WorkerThreadUtil.executeDependantTask(task);
+            CompletableFuture<MiniChunkGraph> future = new CompletableFuture<>();
+            Consumer<MiniChunkGraph> setter = (graph) -> putGraph(minPos, graph, future);
+            TaskMiniChunkManager task = new TaskMiniChunkManager(world, pos, setter);
             tempData.put(pos, future);
+            WorkerThreadUtil.executeDependantTask(() -> {
+                try {
+                    future.complete(task.call());
+                } catch (Throwable t) {
+                    tempData.remove(minPos, future);
+                    future.completeExceptionally(t);
+                }
+            });
             return future;
         }
     }
 
+    private boolean isLoaded(BlockPos pos) {
+        if (pos.getY() < 0 || pos.getY() >= 256) {
+            return false;
+        }
+        return loadedChunks.contains(ChunkPos.asLong(pos.getX() >> 4, pos.getZ() >> 4));
+    }
+
     private MiniChunkGraph getGraphIfExistsImpl(BlockPos pos) {
         pos = convertToMin(pos);
         return cache.get(pos);
     }
 
+    private void onBlockChange(World world, BlockPos pos, IBlockState newState) {
+        BlockPos min = convertToMin(pos);
+        MiniChunkGraph graph = cache.get(min);
+        if (graph != null) {
+            EnumTraversalExpense expense = EnumTraversalExpense.getFor(world, pos, newState);
+            if (graph.getExpenseAt(pos) == expense.expense) {
+                return;
+            }
+        } else if (!tempData.containsKey(min)) {
+            return;
+        }
+        invalidateImpl(min);
+    }
+
+    /** Removes the graph of the mini chunk that contains the given position, and stops any graph that is currently
+     * being built for it from being cached. The next {@link #requestGraph(World, BlockPos)} will build it again. This
+     * is called automatically whenever a block changes its {@link EnumTraversalExpense}. */
+    public static void invalidate(World world, BlockPos pos) {
+        MiniChunkCache cache = get(world);
+        if (cache != null) {
+            cache.invalidateImpl(convertToMin(pos));
+        }
+    }
+
+    private void invalidateImpl(BlockPos min) {
+        synchronized (this) {
+            tempData.remove(min);
+            MiniChunkGraph graph = cache.remove(min);
+            if (graph != null) {
+                graph.unlink();
+            }
+        }
+    }
+
     private static BlockPos convertToMin(BlockPos pos) {
         // Get the minimum blockpos of the minichunk
-        int x = (pos.getX() / 16) * 16;
-        int y = (pos.getY() / 16) * 16;
-        int z = (pos.getZ() / 16) * 16;
+        int x = pos.getX() & ~15;
+        int y = pos.getY() & ~15;
+        int z = pos.getZ() & ~15;
         return new BlockPos(x, y, z);
     }
 }
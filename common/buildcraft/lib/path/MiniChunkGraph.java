@@ -6,77 +6,267 @@
 
 package buildcraft.lib.path;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Sets;
 
 import net.minecraft.util.EnumFacing;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
 
-import buildcraft.lib.path.task.TaskMiniChunkAnalyser;
+import buildcraft.lib.path.task.AnalysedChunk;
+import buildcraft.lib.path.task.EnumTraversalExpense;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMaps;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 
 public class MiniChunkGraph {
+    public static final int SIZE = 16;
+    public static final int VOLUME = SIZE * SIZE * SIZE;
+
+    private static final int[] NO_CONNECTIONS = new int[0];
+
     public enum ChunkType {
         COMPLETELY_FREE,
         SINGLE_GRAPH,
         MULTIPLE_GRAPHS,
-        COMPLETELY_FILLED
+        COMPLETELY_FILLED;
+
+        public static ChunkType getFor(AnalysedChunk analysed) {
+            int graphs = analysed.getGraphCount();
+            if (graphs == 0) {
+                return COMPLETELY_FILLED;
+            } else if (graphs > 1) {
+                return MULTIPLE_GRAPHS;
+            } else if (analysed.expenseCounts[EnumTraversalExpense.SOLID.ordinal()] == 0) {
+                return COMPLETELY_FREE;
+            } else {
+                return SINGLE_GRAPH;
+            }
+        }
     }
 
     public final BlockPos min;
     public final ChunkType type;
-    public final Map<EnumFacing, MiniChunkGraph> neighbours = new EnumMap<>(EnumFacing.class);
+    /** The linked graphs next to this one. This is modified (by {@link MiniChunkCache}) while paths are searched. */
+    public final Map<EnumFacing, MiniChunkGraph> neighbours =
+        Collections.synchronizedMap(new EnumMap<>(EnumFacing.class));
     public final ImmutableList<MiniChunkNode> nodes;
-    final byte[][][] expenseArray, graphArray;
+    /** Both indexed by {@link #getIndex(int, int, int)}. */
+    final byte[] expenseArray;
+    final short[] graphArray;
+    /** Paths through single nodes that have already been found by {@link MiniChunkPathFinder}. These are only valid
+     * for as long as this graph is, so they are stored here rather than in the path finder. */
+    final Long2ObjectMap<int[]> segments = Long2ObjectMaps.synchronize(new Long2ObjectOpenHashMap<>());
+    private volatile boolean removed = false;
 
-    public MiniChunkGraph(BlockPos min, ChunkType type, byte[][][] expenseArray, byte[][][] graphArray, int numNodes) {
+    public MiniChunkGraph(BlockPos min, AnalysedChunk analysed) {
         this.min = min;
-        this.type = type;
-        this.expenseArray = expenseArray;
-        this.graphArray = graphArray;
+        this.type = ChunkType.getFor(analysed);
+        this.expenseArray = analysed.expenses;
+        this.graphArray = analysed.graphs;
         ImmutableList.Builder<MiniChunkNode> builder = ImmutableList.builder();
-        for (int i = 0; i < numNodes; i++) {
-            builder.add(new MiniChunkNode(i));
+        for (int i = 0; i < analysed.getGraphCount(); i++) {
+            builder.add(new MiniChunkNode(i, analysed.blockCounts.getInt(i), analysed.totalExpenses.getInt(i)));
         }
         this.nodes = builder.build();
     }
 
+    /** @return The index into the flat arrays of a mini chunk for the given position, relative to the minimum corner of
+     *         the mini chunk. */
+    public static int getIndex(int x, int y, int z) {
+        return (y << 8) | (z << 4) | x;
+    }
+
+    /** @return True if the given position (relative to the minimum corner of a mini chunk) is inside the mini
+     *         chunk. */
+    public static boolean isValid(int x, int y, int z) {
+        return ((x | y | z) & ~(SIZE - 1)) == 0;
+    }
+
+    /** @return The index of the block on the given face of a mini chunk, where a and b are the 2 coordinates along the
+     *         face (in axis order, skipping the axis of the face). The same a and b on the opposite face of the
+     *         neighbouring mini chunk will be the block touching this one. */
+    public static int getFaceIndex(EnumFacing face, int a, int b) {
+        int edge = face.getAxisDirection() == EnumFacing.AxisDirection.POSITIVE ? SIZE - 1 : 0;
+        switch (face.getAxis()) {
+            case X:
+                return getIndex(edge, a, b);
+            case Y:
+                return getIndex(a, edge, b);
+            default:
+                return getIndex(a, b, edge);
+        }
+    }
+
+    /** @return The index of the block in the neighbouring mini chunk (on the given side) that touches the block at the
+     *         given index. The given index must be on that side of the mini chunk. */
+    public static int getTouchingIndex(EnumFacing face, int index) {
+        switch (face.getAxis()) {
+            case X:
+                return index ^ (SIZE - 1);
+            case Y:
+                return index ^ ((SIZE - 1) << 8);
+            default:
+                return index ^ ((SIZE - 1) << 4);
+        }
+    }
+
+    /** @return The world position of the given index in this mini chunk. */
+    public BlockPos getPos(int index) {
+        return min.add(index & 15, index >> 8, (index >> 4) & 15);
+    }
+
+    int getIndex(BlockPos pos) {
+        int x = pos.getX() - min.getX();
+        int y = pos.getY() - min.getY();
+        int z = pos.getZ() - min.getZ();
+        return isValid(x, y, z) ? getIndex(x, y, z) : -1;
+    }
+
+    /** @return The {@link EnumTraversalExpense#expense} of the given position, or {@link Integer#MIN_VALUE} if the
+     *         position isn't inside of this mini chunk. */
+    public int getExpenseAt(BlockPos pos) {
+        int index = getIndex(pos);
+        return index < 0 ? Integer.MIN_VALUE : expenseArray[index];
+    }
+
+    /** @return True if this has been removed from the {@link MiniChunkCache} because a block inside of it changed. Any
+     *         paths that went through this should be found again. */
+    public boolean isRemoved() {
+        return removed;
+    }
+
     public MiniChunkNode getFor(BlockPos pos) {
-        BlockPos normalised = pos.subtract(min);
-        if (!TaskMiniChunkAnalyser.isValid(normalised)) throw new IllegalArgumentException("The position " + normalised + " was invalid! (from " + pos + ")");
-        int id = graphArray[normalised.getX()][normalised.getY()][normalised.getZ()];
+        int index = getIndex(pos);
+        if (index < 0) throw new IllegalArgumentException("The position " + pos + " was not inside " + min + "!");
+        int id = graphArray[index];
         if (id >= 0) return nodes.get(id);
-        throw new IllegalArgumentException("The position " + normalised + " had no graph! (gId = " + id + ")");
+        throw new IllegalArgumentException("The position " + pos + " had no graph! (gId = " + id + ")");
+    }
+
+    /** Connects this to the given graph, which must be the mini chunk next to this one in the given direction. This
+     * finds every pair of nodes that touch across the shared face, and stores them as int adjacency lists in both
+     * graphs. */
+    public void link(EnumFacing face, MiniChunkGraph other) {
+        EnumFacing opposite = face.getOpposite();
+        int[] pairs = new int[SIZE * SIZE];
+        int[] reversed = new int[SIZE * SIZE];
+        int count = 0;
+        for (int a = 0; a < SIZE; a++) {
+            for (int b = 0; b < SIZE; b++) {
+                int ours = graphArray[getFaceIndex(face, a, b)];
+                int theirs = other.graphArray[getFaceIndex(opposite, a, b)];
+                if (ours >= 0 && theirs >= 0) {
+                    pairs[count] = (ours << 16) | theirs;
+                    reversed[count] = (theirs << 16) | ours;
+                    count++;
+                }
+            }
+        }
+        setConnections(face, pairs, count);
+        other.setConnections(opposite, reversed, count);
+        neighbours.put(face, other);
+        other.neighbours.put(opposite, this);
+    }
+
+    /** Disconnects this from every neighbour and marks this as {@link #isRemoved() removed}, after this was removed
+     * from the cache. */
+    public void unlink() {
+        removed = true;
+        synchronized (neighbours) {
+            for (Map.Entry<EnumFacing, MiniChunkGraph> entry : neighbours.entrySet()) {
+                EnumFacing opposite = entry.getKey().getOpposite();
+                MiniChunkGraph other = entry.getValue();
+                other.neighbours.remove(opposite);
+                // Segments leading into this might use node ids that are about to change
+                other.segments.clear();
+                for (MiniChunkNode node : other.nodes) {
+                    node.connected[opposite.ordinal()] = NO_CONNECTIONS;
+                }
+            }
+            neighbours.clear();
+        }
+        segments.clear();
+    }
+
+    /** @param pairs Packed (node id << 16 | connected id) pairs. The first count pairs are sorted in-place. */
+    private void setConnections(EnumFacing face, int[] pairs, int count) {
+        Arrays.sort(pairs, 0, count);
+        int i = 0;
+        for (MiniChunkNode node : nodes) {
+            // Count the distinct connections first, so that each list is allocated at the right size
+            int start = i;
+            int distinct = 0;
+            int last = -1;
+            while (i < count && (pairs[i] >>> 16) == node.id) {
+                if (pairs[i] != last) {
+                    distinct++;
+                    last = pairs[i];
+                }
+                i++;
+            }
+            if (distinct == 0) {
+                node.connected[face.ordinal()] = NO_CONNECTIONS;
+                continue;
+            }
+            int[] connected = new int[distinct];
+            last = -1;
+            for (int j = start, k = 0; j < i; j++) {
+                if (pairs[j] != last) {
+                    connected[k++] = pairs[j] & 0xFFFF;
+                    last = pairs[j];
+                }
+            }
+            node.connected[face.ordinal()] = connected;
+        }
     }
 
     public class MiniChunkNode {
         public final int id;
-        final Set<MiniChunkNode> connected = Sets.newIdentityHashSet();
+        /** The number of blocks in this node. */
+        public final int blockCount;
+        /** The sum of the expense of every block in this node. */
+        public final int totalExpense;
+        /** The ids of the connected nodes in each neighbour, indexed by {@link EnumFacing#ordinal()}. */
+        final int[][] connected = new int[6][];
 
-        public MiniChunkNode(int id) {
+        public MiniChunkNode(int id, int blockCount, int totalExpense) {
             this.id = id;
+            this.blockCount = blockCount;
+            this.totalExpense = totalExpense;
+            Arrays.fill(connected, NO_CONNECTIONS);
         }
 
-        public Set<MiniChunkNode> getConnected() {
-            return Collections.unmodifiableSet(connected);
+        /** @return The ids of the nodes in the neighbouring graph on the given side that this is connected to. Empty if
+         *         the neighbour hasn't been linked yet. Don't modify the returned array! */
+        public int[] getConnected(EnumFacing face) {
+            return connected[face.ordinal()];
+        }
+
+        /** @return The node in the neighbouring graph on the given side with the given id (as returned from
+         *         {@link #getConnected(EnumFacing)}). */
+        public MiniChunkNode getConnectedNode(EnumFacing face, int connectedId) {
+            return neighbours.get(face).nodes.get(connectedId);
         }
 
         /** Checks if this node contains the given position. This will be the world position of the block */
         public boolean contains(BlockPos pos) {
-            BlockPos normalised = pos.subtract(min);
-            if (!TaskMiniChunkAnalyser.isValid(normalised)) return false;
-            return graphArray[normalised.getX()][normalised.getY()][normalised.getZ()] == id;
+            int index = getIndex(pos);
+            return index >= 0 && graphArray[index] == id;
         }
 
         public int getExpense(BlockPos pos) {
-            BlockPos normalised = pos.subtract(min);
-            if (!TaskMiniChunkAnalyser.isValid(normalised)) return Integer.MAX_VALUE;
-            int expense = expenseArray[normalised.getX()][normalised.getY()][normalised.getZ()];
+            int index = getIndex(pos);
+            if (index < 0) return Integer.MAX_VALUE;
+            int expense = expenseArray[index];
             if (expense < 0) return Integer.MAX_VALUE;
             return expense;
         }
@@ -85,18 +275,18 @@ public class MiniChunkGraph {
             return MiniChunkGraph.this;
         }
 
-        public void requestAllConnected(World world) {
-            // Request all first, and THEN wait for all of them.
-            for (EnumFacing face : EnumFacing.VALUES) {
-                if (!neighbours.containsKey(face)) {
-                    MiniChunkCache.requestGraph(world, min.offset(face, 16));
-                }
-            }
+        /** Requests the graph of every neighbour that isn't linked yet.
+         * 
+         * @return A future that completes once every neighbour has either been linked or failed to load (because it
+         *         isn't loaded). This never completes exceptionally. */
+        public CompletableFuture<Void> requestAllConnected(World world) {
+            List<CompletableFuture<?>> futures = new ArrayList<>();
             for (EnumFacing face : EnumFacing.VALUES) {
                 if (!neighbours.containsKey(face)) {
-                    MiniChunkCache.requestAndWait(world, min.offset(face, 16));
+                    futures.add(MiniChunkCache.requestGraph(world, min.offset(face, 16)).handle((graph, t) -> null));
                 }
             }
+            return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()]));
         }
     }
 }
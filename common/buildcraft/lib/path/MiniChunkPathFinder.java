@@ -0,0 +1,453 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.lib.path;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+import buildcraft.lib.misc.WorkerThreadUtil;
+import buildcraft.lib.path.MiniChunkGraph.MiniChunkNode;
+
+/** Finds long paths through the world, on a separate thread, in 2 steps:
+ * <ol>
+ * <li>An A* search over the {@link MiniChunkNode}s of {@link MiniChunkCache}, loading the graphs of neighbouring mini
+ * chunks as it reaches them.</li>
+ * <li>A search inside each of the found nodes (using the block expenses of its graph), from where the path enters the
+ * node to where it leaves it for the next one.</li>
+ * </ol>
+ * Both results are cached: node paths in this class, and the path through each node in the {@link MiniChunkGraph} that
+ * contains it. Both are thrown away as soon as any of the graphs they go through are removed from the cache. */
+public class MiniChunkPathFinder {
+    /** The maximum number of nodes that will be expanded before the search gives up. */
+    public static final int MAX_EXPANDED_NODES = 4096;
+
+    /** The maximum number of times to search again if a graph was removed during a search. */
+    private static final int MAX_ATTEMPTS = 3;
+
+    private static final Cache<NodePathKey, List<MiniChunkNode>> NODE_PATHS = CacheBuilder.newBuilder()//
+        .maximumSize(256)//
+        .build();
+
+    /** Searches run one at a time on their own thread, rather than on {@link WorkerThreadUtil#DEPENDANT_EXECUTOR}
+     * (which runs tasks on the calling thread when all of its threads are busy) so that a search is never run on the
+     * main thread. The graphs that a search needs are still built on the worker threads. */
+    private static final ExecutorService EXECUTOR = WorkerThreadUtil.createQueuedExecutor("BuildCraft Path Finder");
+
+    /** Finds a path between the given positions, on a separate thread. This must be called from the main thread of a
+     * server world. The returned future never completes on the main thread, so use something like
+     * {@link CompletableFuture#thenAcceptAsync(Consumer, java.util.concurrent.Executor)} with
+     * {@link buildcraft.lib.misc.MainThreadExecutor} to use the result in the world.
+     *
+     * @return A future that completes with every position along the path (including both ends), or an empty list if
+     *         there is no path. It completes exceptionally if either end isn't loaded. */
+    public static CompletableFuture<List<BlockPos>> findPath(World world, BlockPos from, BlockPos to) {
+        MinecraftServer server = world.getMinecraftServer();
+        if (world.isRemote || server == null || !server.isCallingFromMinecraftThread()) {
+            throw new IllegalStateException("Paths can only be found from the main thread of a server world!");
+        }
+        MiniChunkCache.create(world);
+        BlockPos start = from.toImmutable();
+        BlockPos end = to.toImmutable();
+        return CompletableFuture.supplyAsync(() -> findPathWaiting(world, start, end), EXECUTOR);
+    }
+
+    private static List<BlockPos> findPathWaiting(World world, BlockPos from, BlockPos to) {
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            MiniChunkGraph startGraph = MiniChunkCache.requestAndWait(world, from);
+            MiniChunkGraph goalGraph = MiniChunkCache.requestAndWait(world, to);
+            if (startGraph.isRemoved() || goalGraph.isRemoved()) {
+                // A block changed while one of them was being built
+                continue;
+            }
+            if (startGraph.getExpenseAt(from) < 0 || goalGraph.getExpenseAt(to) < 0) {
+                return ImmutableList.of();
+            }
+            MiniChunkNode start = startGraph.getFor(from);
+            MiniChunkNode goal = goalGraph.getFor(to);
+            List<MiniChunkNode> nodes = findNodePath(start, goal, node -> node.requestAllConnected(world).join());
+            if (nodes == null) {
+                return ImmutableList.of();
+            }
+            List<BlockPos> path = refine(nodes, from, to);
+            if (path != null && !isAnyRemoved(nodes)) {
+                return path;
+            }
+        }
+        return ImmutableList.of();
+    }
+
+    private static boolean isAnyRemoved(List<MiniChunkNode> nodes) {
+        for (MiniChunkNode node : nodes) {
+            if (node.getParent().isRemoved()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // ##################
+    //
+    // Node search
+    //
+    // ##################
+
+    /** Finds (or returns the cached) path of nodes from the start node to the goal node. Cached paths are only reused
+     * if none of their graphs have been removed since.
+     *
+     * @param loadNeighbours Called with each node that the search reaches whose graph isn't linked to all 6 of its
+     *            neighbours yet. This should link as many of them as it can before returning.
+     * @return The nodes along the cheapest path (including both ends), or null if the goal couldn't be reached. */
+    public static List<MiniChunkNode> findNodePath(MiniChunkNode start, MiniChunkNode goal,
+        Consumer<MiniChunkNode> loadNeighbours) {
+        NodePathKey key = new NodePathKey(start, goal);
+        List<MiniChunkNode> cached = NODE_PATHS.getIfPresent(key);
+        if (cached != null) {
+            if (!isAnyRemoved(cached)) {
+                return cached;
+            }
+            NODE_PATHS.invalidate(key);
+        }
+        List<MiniChunkNode> path = searchNodes(start, goal, loadNeighbours);
+        if (path != null) {
+            NODE_PATHS.put(key, path);
+        }
+        return path;
+    }
+
+    private static List<MiniChunkNode> searchNodes(MiniChunkNode start, MiniChunkNode goal,
+        Consumer<MiniChunkNode> loadNeighbours) {
+        // MiniChunkNode doesn't override equals, so this compares by identity
+        Map<MiniChunkNode, SearchEntry> entries = new HashMap<>();
+        PriorityQueue<SearchEntry> open = new PriorityQueue<>();
+        SearchEntry first = new SearchEntry(start, null, 0, getHeuristic(start, goal));
+        entries.put(start, first);
+        open.add(first);
+        int expanded = 0;
+        while (!open.isEmpty()) {
+            SearchEntry current = open.poll();
+            if (current.closed || entries.get(current.node) != current) {
+                // Already expanded, or a cheaper way to this node was found after this was added
+                continue;
+            }
+            current.closed = true;
+            if (current.node == goal) {
+                List<MiniChunkNode> path = new ArrayList<>();
+                for (SearchEntry e = current; e != null; e = e.parent) {
+                    path.add(e.node);
+                }
+                Collections.reverse(path);
+                return ImmutableList.copyOf(path);
+            }
+            if (++expanded > MAX_EXPANDED_NODES) {
+                return null;
+            }
+            MiniChunkGraph graph = current.node.getParent();
+            if (graph.neighbours.size() < EnumFacing.VALUES.length) {
+                loadNeighbours.accept(current.node);
+            }
+            for (EnumFacing face : EnumFacing.VALUES) {
+                MiniChunkGraph next = graph.neighbours.get(face);
+                if (next == null) {
+                    continue;
+                }
+                for (int id : current.node.getConnected(face)) {
+                    if (id >= next.nodes.size()) {
+                        // The neighbour was rebuilt while we were looking at it
+                        continue;
+                    }
+                    MiniChunkNode node = next.nodes.get(id);
+                    double g = current.g + getCost(current.node, node);
+                    SearchEntry existing = entries.get(node);
+                    if (existing != null && (existing.closed || existing.g <= g)) {
+                        continue;
+                    }
+                    SearchEntry entry = new SearchEntry(node, current, g, g + getHeuristic(node, goal));
+                    entries.put(node, entry);
+                    open.add(entry);
+                }
+            }
+        }
+        return null;
+    }
+
+    /** @return The approximate cost of moving from the middle of one node to the middle of a connected node. */
+    public static double getCost(MiniChunkNode from, MiniChunkNode to) {
+        double fromExpense = from.totalExpense / (double) from.blockCount;
+        double toExpense = to.totalExpense / (double) to.blockCount;
+        return (fromExpense + toExpense) * MiniChunkGraph.SIZE / 2;
+    }
+
+    /** @return The manhattan distance between the mini chunks of the given nodes. As every block costs at least 1 to
+     *         move through this never overestimates {@link #getCost(MiniChunkNode, MiniChunkNode)}. */
+    private static double getHeuristic(MiniChunkNode node, MiniChunkNode goal) {
+        BlockPos a = node.getParent().min;
+        BlockPos b = goal.getParent().min;
+        return Math.abs(a.getX() - b.getX()) + Math.abs(a.getY() - b.getY()) + Math.abs(a.getZ() - b.getZ());
+    }
+
+    private static class SearchEntry implements Comparable<SearchEntry> {
+        final MiniChunkNode node;
+        final SearchEntry parent;
+        final double g, f;
+        boolean closed = false;
+
+        SearchEntry(MiniChunkNode node, SearchEntry parent, double g, double f) {
+            this.node = node;
+            this.parent = parent;
+            this.g = g;
+            this.f = f;
+        }
+
+        @Override
+        public int compareTo(SearchEntry o) {
+            return Double.compare(f, o.f);
+        }
+    }
+
+    private static class NodePathKey {
+        final MiniChunkNode start, goal;
+
+        NodePathKey(MiniChunkNode start, MiniChunkNode goal) {
+            this.start = start;
+            this.goal = goal;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof NodePathKey)) return false;
+            NodePathKey other = (NodePathKey) obj;
+            return start == other.start && goal == other.goal;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(start) * 31 + System.identityHashCode(goal);
+        }
+    }
+
+    // ##################
+    //
+    // Block search
+    //
+    // ##################
+
+    /** @return Every block along the given node path, or null if the graphs changed so much that the nodes are no
+     *         longer connected. */
+    public static List<BlockPos> refine(List<MiniChunkNode> nodes, BlockPos from, BlockPos to) {
+        ImmutableList.Builder<BlockPos> path = ImmutableList.builder();
+        int entry = nodes.get(0).getParent().getIndex(from);
+        for (int i = 0; i < nodes.size(); i++) {
+            MiniChunkNode node = nodes.get(i);
+            MiniChunkGraph graph = node.getParent();
+            int[] segment;
+            EnumFacing face = null;
+            if (i == nodes.size() - 1) {
+                segment = getSegment(node, entry, null, graph.getIndex(to));
+            } else {
+                MiniChunkNode next = nodes.get(i + 1);
+                face = getFace(graph, next.getParent());
+                if (face == null) {
+                    return null;
+                }
+                segment = getSegment(node, entry, face, next.id);
+            }
+            if (segment == null) {
+                return null;
+            }
+            for (int index : segment) {
+                path.add(graph.getPos(index));
+            }
+            if (face != null) {
+                entry = MiniChunkGraph.getTouchingIndex(face, segment[segment.length - 1]);
+            }
+        }
+        return path.build();
+    }
+
+    private static EnumFacing getFace(MiniChunkGraph graph, MiniChunkGraph next) {
+        for (EnumFacing face : EnumFacing.VALUES) {
+            if (graph.neighbours.get(face) == next) {
+                return face;
+            }
+        }
+        return null;
+    }
+
+    /** @param face The side that the path leaves the node through, or null if the path ends in this node.
+     * @param target The id of the node to move into on the given side, or the index of the last block if face is
+     *            null.
+     * @return The indexes of every block from the entry to the exit (inclusive), or null if the exit couldn't be
+     *         reached. */
+    private static int[] getSegment(MiniChunkNode node, int entry, EnumFacing face, int target) {
+        MiniChunkGraph graph = node.getParent();
+        long key = getSegmentKey(node.id, entry, face, target);
+        int[] segment = graph.segments.get(key);
+        if (segment == null) {
+            segment = searchNode(node, entry, face, target);
+            if (segment != null) {
+                graph.segments.put(key, segment);
+            }
+        }
+        return segment;
+    }
+
+    /** @return The key that the path through the given node is stored under in {@link MiniChunkGraph#segments}. The
+     *         entry and target both fit in 12 bits (as they are either block indexes or node ids). */
+    public static long getSegmentKey(int nodeId, int entry, EnumFacing face, int target) {
+        return ((long) nodeId << 32) | (entry << 16) | ((face == null ? 0 : face.ordinal() + 1) << 12) | target;
+    }
+
+    /** Dijkstra's algorithm over the blocks of a single node, using a binary heap of packed (cost << 12 | index)
+     * longs. */
+    private static int[] searchNode(MiniChunkNode node, int entry, EnumFacing face, int target) {
+        MiniChunkGraph graph = node.getParent();
+        short[] graphs = graph.graphArray;
+        byte[] expenses = graph.expenseArray;
+        if (graphs[entry] != node.id) {
+            return null;
+        }
+        boolean[] goals = new boolean[MiniChunkGraph.VOLUME];
+        if (face == null) {
+            goals[target] = true;
+        } else {
+            MiniChunkGraph next = graph.neighbours.get(face);
+            if (next == null) {
+                return null;
+            }
+            for (int a = 0; a < MiniChunkGraph.SIZE; a++) {
+                for (int b = 0; b < MiniChunkGraph.SIZE; b++) {
+                    int index = MiniChunkGraph.getFaceIndex(face, a, b);
+                    int touching = MiniChunkGraph.getTouchingIndex(face, index);
+                    goals[index] = graphs[index] == node.id && next.graphArray[touching] == target;
+                }
+            }
+        }
+
+        int[] costs = new int[MiniChunkGraph.VOLUME];
+        int[] previous = new int[MiniChunkGraph.VOLUME];
+        Arrays.fill(costs, Integer.MAX_VALUE);
+        costs[entry] = 0;
+        previous[entry] = -1;
+        long[] heap = new long[64];
+        int heapSize = 0;
+        heap[heapSize++] = entry;
+        while (heapSize > 0) {
+            long top = heap[0];
+            heap[0] = heap[--heapSize];
+            siftDown(heap, heapSize);
+            int index = (int) (top & 0xFFF);
+            int cost = (int) (top >>> 12);
+            if (cost > costs[index]) {
+                continue;
+            }
+            if (goals[index]) {
+                int length = 0;
+                for (int i = index; i >= 0; i = previous[i]) {
+                    length++;
+                }
+                int[] segment = new int[length];
+                for (int i = index; i >= 0; i = previous[i]) {
+                    segment[--length] = i;
+                }
+                return segment;
+            }
+            int x = index & 15;
+            int z = (index >> 4) & 15;
+            int y = index >> 8;
+            for (int n = 0; n < 6; n++) {
+                int next;
+                switch (n) {
+                    case 0:
+                        next = x > 0 ? index - 1 : -1;
+                        break;
+                    case 1:
+                        next = x < 15 ? index + 1 : -1;
+                        break;
+                    case 2:
+                        next = z > 0 ? index - 16 : -1;
+                        break;
+                    case 3:
+                        next = z < 15 ? index + 16 : -1;
+                        break;
+                    case 4:
+                        next = y > 0 ? index - 256 : -1;
+                        break;
+                    default:
+                        next = y < 15 ? index + 256 : -1;
+                        break;
+                }
+                if (next < 0 || graphs[next] != node.id) {
+                    continue;
+                }
+                int nextCost = cost + expenses[next];
+                if (nextCost < costs[next]) {
+                    costs[next] = nextCost;
+                    previous[next] = index;
+                    if (heapSize == heap.length) {
+                        heap = Arrays.copyOf(heap, heapSize * 2);
+                    }
+                    heap[heapSize] = ((long) nextCost << 12) | next;
+                    siftUp(heap, heapSize++);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static void siftUp(long[] heap, int i) {
+        long value = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >> 1;
+            if (heap[parent] <= value) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = value;
+    }
+
+    private static void siftDown(long[] heap, int size) {
+        if (size == 0) {
+            return;
+        }
+        long value = heap[0];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (heap[child] >= value) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = value;
+    }
+}
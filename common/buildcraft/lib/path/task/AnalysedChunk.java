@@ -6,17 +6,31 @@
 
 package buildcraft.lib.path.task;
 
+import java.util.Arrays;
+
+import buildcraft.lib.path.MiniChunkGraph;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
 public class AnalysedChunk {
     public final int[] expenseCounts;
-    public final EnumTraversalExpense[][][] expenses;
-    public final MiniGraph[][][] graphs = new MiniGraph[16][16][16];
+    /** Same as {@link FilledChunk#expenses}. */
+    public final byte[] expenses;
+    /** The graph id of every block (indexed by {@link MiniChunkGraph#getIndex(int, int, int)}), or -1 if the block is
+     * solid. At most half of the blocks can be separate graphs, so this needs a short. */
+    public final short[] graphs = new short[MiniChunkGraph.VOLUME];
+    /** The number of blocks in each graph, indexed by graph id. */
+    public final IntArrayList blockCounts = new IntArrayList();
+    /** The sum of the expense of every block in each graph, indexed by graph id. */
+    public final IntArrayList totalExpenses = new IntArrayList();
 
     public AnalysedChunk(FilledChunk filled) {
         expenseCounts = filled.expenseCounts;
         expenses = filled.expenses;
+        Arrays.fill(graphs, (short) -1);
     }
 
-    public static class MiniGraph {
-        public int blockCount, totalExpense;
+    public int getGraphCount() {
+        return blockCounts.size();
     }
 }
@@ -6,7 +6,17 @@
 
 package buildcraft.lib.path.task;
 
+import buildcraft.lib.path.MiniChunkGraph;
+
 public class FilledChunk {
-    public final EnumTraversalExpense[][][] expenses = new EnumTraversalExpense[16][16][16];
-    public final int[] expenseCounts = new int[3];
+    /** The {@link EnumTraversalExpense#expense} of every block, indexed by {@link MiniChunkGraph#getIndex(int, int,
+     * int)}. */
+    public final byte[] expenses = new byte[MiniChunkGraph.VOLUME];
+    /** The number of blocks of each {@link EnumTraversalExpense}, indexed by ordinal. */
+    public final int[] expenseCounts = new int[EnumTraversalExpense.values().length];
+
+    public void set(int index, EnumTraversalExpense expense) {
+        expenses[index] = expense.expense;
+        expenseCounts[expense.ordinal()]++;
+    }
 }
@@ -19,9 +19,10 @@ public class MiniChunkCalculationData {
     public final BlockPos min;
     public final CompletableFuture<MiniChunkGraph> futureResult = new CompletableFuture<>();
 
-    final byte[][][] expenseArray = new byte[16][16][16];
+    // Both indexed by MiniChunkGraph.getIndex
+    final byte[] expenseArray = new byte[MiniChunkGraph.VOLUME];
     // We need 4+4+4 bits to store- so a short
-    final short[][][] graphArray = new short[16][16][16];
+    final short[] graphArray = new short[MiniChunkGraph.VOLUME];
 
     volatile int numNodes = 0;
     volatile boolean hasNonAir = false;
@@ -31,10 +32,6 @@ public class MiniChunkCalculationData {
     public MiniChunkCalculationData(MiniChunkCache cache, BlockPos min) {
         this.cache = cache;
         this.min = min;
-        for (int x = 0; x < 16; x++) {
-            for (int y = 0; y < 16; y++) {
-                Arrays.fill(graphArray[x][y], (short) -1);
-            }
-        }
+        Arrays.fill(graphArray, (short) -1);
     }
 }
@@ -6,15 +6,15 @@
 
 package buildcraft.lib.path.task;
 
-import java.util.HashSet;
-import java.util.Set;
 import java.util.concurrent.Callable;
 
-import net.minecraft.util.EnumFacing;
 import net.minecraft.util.math.BlockPos;
 
-import buildcraft.lib.path.task.AnalysedChunk.MiniGraph;
+import buildcraft.lib.path.MiniChunkGraph;
 
+/** Splits a mini chunk into the separate graphs of non-solid blocks, by flood filling from every block that isn't in a
+ * graph yet. This only uses flat arrays, indexed by {@link MiniChunkGraph#getIndex(int, int, int)}, and a single int
+ * array as the queue, so it doesn't allocate anything per block. */
 public class TaskMiniChunkAnalyser implements Callable<AnalysedChunk> {
     private final FilledChunk filled;
 
@@ -25,51 +25,55 @@ public class TaskMiniChunkAnalyser implements Callable<AnalysedChunk> {
     @Override
     public AnalysedChunk call() {
         AnalysedChunk chunk = new AnalysedChunk(filled);
-        for (int x = 0; x < 16; x++) {
-            for (int y = 0; y < 16; y++) {
-                for (int z = 0; z < 16; z++) {
-                    MiniGraph g = chunk.graphs[x][y][z];
-                    EnumTraversalExpense exp = chunk.expenses[x][y][z];
-                    if (exp != EnumTraversalExpense.SOLID & g == null) {
-                        spreadGraph(chunk, x, y, z);
-                    }
-                }
+        int[] queue = new int[MiniChunkGraph.VOLUME];
+        for (int i = 0; i < MiniChunkGraph.VOLUME; i++) {
+            if (chunk.expenses[i] != EnumTraversalExpense.SOLID.expense && chunk.graphs[i] < 0) {
+                spreadGraph(chunk, i, queue);
             }
         }
         return chunk;
     }
 
-    private static void spreadGraph(AnalysedChunk chunk, int x, int y, int z) {
-        Set<BlockPos> openSet = new HashSet<>();
-        Set<BlockPos> closedSet = new HashSet<>();
-        MiniGraph graph = new MiniGraph();
-        openSet.add(new BlockPos(x, y, z));
-        while (!openSet.isEmpty()) {
-            BlockPos toTest = openSet.iterator().next();
-            int x_ = toTest.getX();
-            int y_ = toTest.getY();
-            int z_ = toTest.getZ();
-            EnumTraversalExpense expense = chunk.expenses[x_][y_][z_];
-            if (expense != EnumTraversalExpense.SOLID) {
-                graph.blockCount++;
-                graph.totalExpense += expense.expense;
-                chunk.graphs[x_][y_][z_] = graph;
-                for (EnumFacing face : EnumFacing.VALUES) {
-                    BlockPos offset = toTest.offset(face);
-                    if (!isValid(offset)) continue;
-                    if (closedSet.contains(offset)) continue;
-                    openSet.add(offset);
-                }
-                openSet.remove(toTest);
-                closedSet.add(toTest);
-            }
+    private static void spreadGraph(AnalysedChunk chunk, int start, int[] queue) {
+        byte[] expenses = chunk.expenses;
+        short[] graphs = chunk.graphs;
+        short id = (short) chunk.getGraphCount();
+        int blockCount = 0;
+        int totalExpense = 0;
+        int head = 0;
+        int tail = 0;
+        graphs[start] = id;
+        queue[tail++] = start;
+        while (head < tail) {
+            int index = queue[head++];
+            blockCount++;
+            totalExpense += expenses[index];
+            int x = index & 15;
+            int z = (index >> 4) & 15;
+            int y = index >> 8;
+            if (x > 0) tail = visit(expenses, graphs, queue, tail, index - 1, id);
+            if (x < 15) tail = visit(expenses, graphs, queue, tail, index + 1, id);
+            if (z > 0) tail = visit(expenses, graphs, queue, tail, index - 16, id);
+            if (z < 15) tail = visit(expenses, graphs, queue, tail, index + 16, id);
+            if (y > 0) tail = visit(expenses, graphs, queue, tail, index - 256, id);
+            if (y < 15) tail = visit(expenses, graphs, queue, tail, index + 256, id);
+        }
+        chunk.blockCounts.add(blockCount);
+        chunk.totalExpenses.add(totalExpense);
+    }
+
+    /** Adds the given block to the queue if it isn't solid and hasn't been added yet.
+     * 
+     * @return The new tail of the queue. */
+    private static int visit(byte[] expenses, short[] graphs, int[] queue, int tail, int index, short id) {
+        if (graphs[index] < 0 && expenses[index] != EnumTraversalExpense.SOLID.expense) {
+            graphs[index] = id;
+            queue[tail++] = index;
         }
+        return tail;
     }
 
     public static boolean isValid(BlockPos offset) {
-        if (offset.getX() < 0 || offset.getX() >= 16) return false;
-        if (offset.getY() < 0 || offset.getY() >= 16) return false;
-        if (offset.getZ() < 0 || offset.getZ() >= 16) return false;
-        return true;
+        return MiniChunkGraph.isValid(offset.getX(), offset.getY(), offset.getZ());
     }
 }
@@ -11,6 +11,8 @@ import java.util.concurrent.Callable;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
 
+import buildcraft.lib.path.MiniChunkGraph;
+
 public class TaskMiniChunkFiller implements Callable<FilledChunk> {
     private final World world;
     private final BlockPos offset;
@@ -23,13 +25,14 @@ public class TaskMiniChunkFiller implements Callable<FilledChunk> {
     @Override
     public FilledChunk call() throws Exception {
         FilledChunk filled = new FilledChunk();
-        for (int x = 0; x < 16; x++) {
-            for (int y = 0; y < 16; y++) {
-                for (int z = 0; z < 16; z++) {
-                    BlockPos pos = offset.add(x, y, z);
+        BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+        // Iterate in index order
+        for (int y = 0; y < 16; y++) {
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    pos.setPos(offset.getX() + x, offset.getY() + y, offset.getZ() + z);
                     EnumTraversalExpense expense = EnumTraversalExpense.getFor(world, pos, world.getBlockState(pos));
-                    filled.expenses[x][y][z] = expense;
-                    filled.expenseCounts[expense.ordinal()]++;
+                    filled.set(MiniChunkGraph.getIndex(x, y, z), expense);
                 }
             }
         }
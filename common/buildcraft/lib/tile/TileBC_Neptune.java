@@ -53,9 +53,11 @@ import buildcraft.api.core.BCDebugging;
 import buildcraft.api.core.BCLog;
 import buildcraft.api.core.IPlayerOwned;
 
+import buildcraft.lib.BCLibConfig;
 import buildcraft.lib.cache.CachedChunk;
 import buildcraft.lib.cache.IChunkCache;
 import buildcraft.lib.cache.ITileCache;
+import buildcraft.lib.cache.MjNeighbourCache;
 import buildcraft.lib.cache.TileCacheRet;
 import buildcraft.lib.cache.TileCacheType;
 import buildcraft.lib.cap.CapabilityHelper;
@@ -82,6 +84,8 @@ import buildcraft.lib.net.MessageUpdateTile;
 import buildcraft.lib.net.PacketBufferBC;
 import buildcraft.lib.tile.item.ItemHandlerManager;
 
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
 public abstract class TileBC_Neptune extends TileEntity implements IPayloadReceiver, IAdvDebugTarget, IPlayerOwned {
     public static final boolean DEBUG = BCDebugging.shouldDebugLog("lib.tile");
 
@@ -120,8 +124,13 @@ public abstract class TileBC_Neptune extends TileEntity implements IPayloadRecei
     private final Set<EntityPlayer> usingPlayers = Sets.newIdentityHashSet();
     private GameProfile owner;
 
+    /** The network update ids waiting to be sent by {@link TileUpdateCoalescer} at the end of this tick. */
+    IntArrayList pendingNetworkUpdates;
+
     private final IChunkCache chunkCache = new CachedChunk(this);
     private final ITileCache tileCache = TileCacheType.NEIGHBOUR_CACHE.create(this);
+    /** Only created by {@link #getMjNeighbourCache()}, as most tiles never look at the MJ capabilities around them. */
+    private MjNeighbourCache mjCache;
 
     protected final DeltaManager deltaManager = new DeltaManager((gui, type, writer) -> {
         final int id;
@@ -223,6 +232,23 @@ public abstract class TileBC_Neptune extends TileEntity implements IPayloadRecei
         return BlockUtil.getTileEntity(world, pos, true);
     }
 
+    /** @return A cache of the MJ capabilities of every neighbour of this tile. This is invalidated at the same time as
+     *         {@link #getNeighbourTile(EnumFacing)}. */
+    public final MjNeighbourCache getMjNeighbourCache() {
+        if (mjCache == null) {
+            mjCache = new MjNeighbourCache(this);
+        }
+        return mjCache;
+    }
+
+    private void invalidateCaches() {
+        chunkCache.invalidate();
+        tileCache.invalidate();
+        if (mjCache != null) {
+            mjCache.invalidate();
+        }
+    }
+
     public final Chunk getContainingChunk() {
         return chunkCache.getChunk(getPos());
     }
@@ -274,30 +300,28 @@ public abstract class TileBC_Neptune extends TileEntity implements IPayloadRecei
 
     @Override
     public void invalidate() {
+        // Clients still need the last state of this tile
+        flushNetworkUpdates();
         super.invalidate();
-        chunkCache.invalidate();
-        tileCache.invalidate();
+        invalidateCaches();
     }
 
     @Override
     public void validate() {
         super.validate();
-        chunkCache.invalidate();
-        tileCache.invalidate();
+        invalidateCaches();
     }
 
     @Override
     public void onLoad() {
         super.onLoad();
-        chunkCache.invalidate();
-        tileCache.invalidate();
+        invalidateCaches();
     }
 
     @Override
     public void onChunkUnload() {
         super.onChunkUnload();
-        chunkCache.invalidate();
-        tileCache.invalidate();
+        invalidateCaches();
     }
 
     /** Called whenever {@link #onRemove()} is called (by default). */
@@ -344,6 +368,9 @@ public abstract class TileBC_Neptune extends TileEntity implements IPayloadRecei
 
     public void onNeighbourBlockChanged(Block block, BlockPos nehighbour) {
         tileCache.invalidate();
+        if (mjCache != null) {
+            mjCache.invalidate();
+        }
     }
 
     @Override
@@ -453,25 +480,42 @@ public abstract class TileBC_Neptune extends TileEntity implements IPayloadRecei
         }
     }
 
-    /** Sends a network update update of the specified ID. */
+    /** Sends a network update update of the specified ID. On the server this is normally deferred until the end of the
+     * tick by {@link TileUpdateCoalescer}, so calling this several times in a single tick only sends one update. The
+     * payload is written when the update is actually sent, so it will contain the state of this tile at that point
+     * rather than the state when this was called. */
     public final void sendNetworkUpdate(int id) {
         if (hasWorld()) {
-            MessageUpdateTile message = createNetworkUpdate(id);
-            if (world.isRemote) {
-                MessageManager.sendToServer(message);
-            } else {
-                MessageUtil.sendToAllWatching(world, pos, message);
+            if (!world.isRemote && BCLibConfig.coalesceTileUpdates) {
+                TileUpdateCoalescer.markDirty(this, id);
+                return;
+            }
+            flushNetworkUpdates();
+            MessageUpdateTile message = createPooledMessage(id, networkUpdateWriter(id));
+            try {
+                if (world.isRemote) {
+                    MessageManager.sendToServer(message);
+                } else {
+                    MessageUtil.sendToAllWatching(world, pos, message);
+                }
+            } finally {
+                message.release();
             }
         }
     }
 
     public final void sendNetworkGuiTick(EntityPlayer player) {
         if (hasWorld() && !world.isRemote) {
-            MessageUpdateTile message = createNetworkUpdate(NET_GUI_TICK);
-            if (message.getPayloadSize() <= Short.BYTES) {
-                return;
+            flushNetworkUpdates();
+            MessageUpdateTile message = createPooledMessage(NET_GUI_TICK, networkUpdateWriter(NET_GUI_TICK));
+            try {
+                if (message.getPayloadSize() <= Short.BYTES) {
+                    return;
+                }
+                MessageManager.sendTo(message, (EntityPlayerMP) player);
+            } finally {
+                message.release();
             }
-            MessageManager.sendTo(message, (EntityPlayerMP) player);
         }
     }
 
@@ -485,47 +529,67 @@ public abstract class TileBC_Neptune extends TileEntity implements IPayloadRecei
 
     public final void sendNetworkUpdate(int id, EntityPlayer target) {
         if (hasWorld() && target instanceof EntityPlayerMP) {
-            MessageUpdateTile message = createNetworkUpdate(id);
-            MessageManager.sendTo(message, (EntityPlayerMP) target);
+            createAndSendMessage(id, (EntityPlayerMP) target, networkUpdateWriter(id));
         }
     }
 
+    /** Creates a new network update message. Unlike the various "send" methods the returned message uses an unpooled
+     * payload, as it might be kept around for an unknown amount of time. */
     public final MessageUpdateTile createNetworkUpdate(final int id) {
         if (hasWorld()) {
-            final Side side = world.isRemote ? Side.CLIENT : Side.SERVER;
-            return createMessage(id, (buffer) -> writePayload(id, buffer, side));
+            return createMessage(id, networkUpdateWriter(id));
         } else {
             BCLog.logger.warn("Did not have a world at " + pos + "!");
         }
         return null;
     }
 
+    private IPayloadWriter networkUpdateWriter(int id) {
+        final Side side = world.isRemote ? Side.CLIENT : Side.SERVER;
+        return buffer -> writePayload(id, buffer, side);
+    }
+
     public final void createAndSendMessage(int id, IPayloadWriter writer) {
         if (hasWorld()) {
-            IMessage message = createMessage(id, writer);
-            if (world.isRemote) {
-                MessageManager.sendToServer(message);
-            } else {
-                MessageUtil.sendToAllWatching(world, pos, message);
+            flushNetworkUpdates();
+            MessageUpdateTile message = createPooledMessage(id, writer);
+            try {
+                if (world.isRemote) {
+                    MessageManager.sendToServer(message);
+                } else {
+                    MessageUtil.sendToAllWatching(world, pos, message);
+                }
+            } finally {
+                message.release();
             }
         }
     }
 
     public final void createAndSendGuiMessage(int id, IPayloadWriter writer) {
         if (hasWorld()) {
-            IMessage message = createMessage(id, writer);
-            if (world.isRemote) {
-                MessageManager.sendToServer(message);
-            } else {
-                MessageUtil.sendToPlayers(usingPlayers, message);
+            flushNetworkUpdates();
+            MessageUpdateTile message = createPooledMessage(id, writer);
+            try {
+                if (world.isRemote) {
+                    MessageManager.sendToServer(message);
+                } else {
+                    MessageUtil.sendToPlayers(usingPlayers, message);
+                }
+            } finally {
+                message.release();
             }
         }
     }
 
     public final void createAndSendMessage(int id, EntityPlayerMP player, IPayloadWriter writer) {
         if (hasWorld()) {
-            IMessage message = createMessage(id, writer);
-            MessageManager.sendTo(message, player);
+            flushNetworkUpdates();
+            MessageUpdateTile message = createPooledMessage(id, writer);
+            try {
+                MessageManager.sendTo(message, player);
+            } finally {
+                message.release();
+            }
         }
     }
 
@@ -535,6 +599,15 @@ public abstract class TileBC_Neptune extends TileEntity implements IPayloadRecei
         }
     }
 
+    /** Sends any network updates that {@link TileUpdateCoalescer} is holding for this tile, so that they arrive before
+     * whatever is sent next. */
+    private void flushNetworkUpdates() {
+        if (pendingNetworkUpdates != null && !pendingNetworkUpdates.isEmpty()) {
+            TileUpdateCoalescer.flushPending(this);
+        }
+    }
+
+    /** Creates a message with an unpooled payload, that the caller can keep or send at any time. */
     public final MessageUpdateTile createMessage(int id, IPayloadWriter writer) {
         PacketBufferBC buffer = new PacketBufferBC(Unpooled.buffer());
         buffer.writeShort(id);
@@ -542,6 +615,35 @@ public abstract class TileBC_Neptune extends TileEntity implements IPayloadRecei
         return new MessageUpdateTile(pos, buffer);
     }
 
+    /** Creates a message with a pooled payload. Messages are encoded as soon as they are sent, so the caller MUST
+     * {@link MessageUpdateTile#release() release} the returned message immediately after sending it. */
+    private MessageUpdateTile createPooledMessage(int id, IPayloadWriter writer) {
+        PacketBufferBC buffer = writePooledPayload(id, writer);
+        try {
+            return new MessageUpdateTile(pos, buffer);
+        } catch (RuntimeException e) {
+            buffer.release();
+            throw e;
+        }
+    }
+
+    /** Used by {@link TileUpdateCoalescer}: the returned (pooled) payload must be released after it has been sent. */
+    final PacketBufferBC writeNetworkUpdatePayload(int id) {
+        return writePooledPayload(id, networkUpdateWriter(id));
+    }
+
+    private static PacketBufferBC writePooledPayload(int id, IPayloadWriter writer) {
+        PacketBufferBC buffer = MessageUpdateTile.allocatePayload();
+        try {
+            buffer.writeShort(id);
+            writer.write(buffer);
+        } catch (RuntimeException | Error e) {
+            buffer.release();
+            throw e;
+        }
+        return buffer;
+    }
+
     @Override
     public void onDataPacket(NetworkManager net, SPacketUpdateTileEntity pkt) {
         handleUpdateTag(pkt.getNbtCompound());
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.lib.tile;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldServer;
+
+import buildcraft.api.core.BCDebugging;
+import buildcraft.api.core.BCLog;
+
+import buildcraft.lib.BCLibConfig;
+import buildcraft.lib.net.ChunkWatcherCache;
+import buildcraft.lib.net.MessageManager;
+import buildcraft.lib.net.MessageMultiTileUpdate;
+import buildcraft.lib.net.PacketBufferBC;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+/** Collects the server side calls to {@link TileBC_Neptune#sendNetworkUpdate(int)} made during a tick, and sends them
+ * all at the end of the tick. Each (tile, id) pair is only written once per tick, no matter how many times it was
+ * requested, and every update sent to a single player is bundled into one {@link MessageMultiTileUpdate}.
+ * <p>
+ * Payloads are only written when they are sent, so they contain the state of the tile at the end of the tick rather
+ * than the state when the update was requested. Any other message sent for a tile (or invalidating it) sends its
+ * pending updates first (see {@link #flushPending(TileBC_Neptune)}), so clients still receive every message for a
+ * single tile in the order it was requested in. This is only used if {@link BCLibConfig#coalesceTileUpdates} is
+ * true. */
+public final class TileUpdateCoalescer {
+    public static final boolean DEBUG = BCDebugging.shouldDebugLog("lib.tile.coalesce");
+
+    private static List<TileBC_Neptune> dirtyTiles = new ArrayList<>();
+    private static List<TileBC_Neptune> flushingTiles = new ArrayList<>();
+
+    // Scratch state, reused every tick
+    private static final List<PacketBufferBC> payloads = new ArrayList<>();
+    private static final Map<EntityPlayerMP, List<MessageMultiTileUpdate>> playerMessages = new HashMap<>();
+
+    /** The number of calls to {@link #markDirty(TileBC_Neptune, int)}. */
+    public static long requested;
+    /** The number of requests that were merged with an earlier request in the same tick. */
+    public static long merged;
+    /** The number of updates that weren't written, because no-one was watching the tile (or it was removed). */
+    public static long skipped;
+    /** The number of payloads written. */
+    public static long written;
+    /** The number of payloads delivered to players, and the number of packets they were bundled into. */
+    public static long delivered, packets;
+
+    private TileUpdateCoalescer() {}
+
+    static void markDirty(TileBC_Neptune tile, int id) {
+        requested++;
+        IntArrayList ids = tile.pendingNetworkUpdates;
+        if (ids == null) {
+            ids = new IntArrayList(2);
+            tile.pendingNetworkUpdates = ids;
+        }
+        if (ids.isEmpty()) {
+            dirtyTiles.add(tile);
+        } else if (ids.contains(id)) {
+            merged++;
+            return;
+        }
+        ids.add(id);
+    }
+
+    /** Called by BuildCraftLib at the end of every server tick. */
+    public static void onServerTick() {
+        if (dirtyTiles.isEmpty()) {
+            return;
+        }
+        // Swap the lists so that any updates requested while writing are sent next tick
+        List<TileBC_Neptune> tiles = dirtyTiles;
+        dirtyTiles = flushingTiles;
+        flushingTiles = tiles;
+        try {
+            for (TileBC_Neptune tile : tiles) {
+                flushTile(tile, playerMessages, payloads);
+            }
+            send(playerMessages);
+        } finally {
+            tiles.clear();
+            release(playerMessages, payloads);
+        }
+        if (DEBUG) {
+            BCLog.logger.info("[lib.tile.coalesce] " + getStats());
+        }
+    }
+
+    /** Immediately sends every update that is waiting to be sent for the given tile. Called by {@link TileBC_Neptune}
+     * before it sends any other message, and when it is invalidated (so the final state isn't lost). */
+    static void flushPending(TileBC_Neptune tile) {
+        IntArrayList ids = tile.pendingNetworkUpdates;
+        if (ids == null || ids.isEmpty()) {
+            return;
+        }
+        // This might be called while writing a payload in onServerTick, so the shared scratch state can't be used
+        Map<EntityPlayerMP, List<MessageMultiTileUpdate>> messages = new HashMap<>();
+        List<PacketBufferBC> tilePayloads = new ArrayList<>();
+        try {
+            flushTile(tile, messages, tilePayloads);
+            send(messages);
+        } finally {
+            release(messages, tilePayloads);
+        }
+    }
+
+    private static void send(Map<EntityPlayerMP, List<MessageMultiTileUpdate>> messages) {
+        for (Entry<EntityPlayerMP, List<MessageMultiTileUpdate>> entry : messages.entrySet()) {
+            for (MessageMultiTileUpdate message : entry.getValue()) {
+                MessageManager.sendTo(message, entry.getKey());
+                packets++;
+            }
+        }
+    }
+
+    private static void release(Map<EntityPlayerMP, List<MessageMultiTileUpdate>> messages,
+        List<PacketBufferBC> toRelease) {
+        messages.clear();
+        for (PacketBufferBC payload : toRelease) {
+            payload.release();
+        }
+        toRelease.clear();
+    }
+
+    private static void flushTile(TileBC_Neptune tile, Map<EntityPlayerMP, List<MessageMultiTileUpdate>> messages,
+        List<PacketBufferBC> tilePayloads) {
+        // Take the list, as writing a payload can request (or flush) more updates for this tile
+        IntArrayList ids = tile.pendingNetworkUpdates;
+        tile.pendingNetworkUpdates = null;
+        if (ids == null || ids.isEmpty()) {
+            // Already sent by flushPending
+            return;
+        }
+
+        World world = tile.getWorld();
+        // Invalidated tiles flush their own updates first, so anything left was requested after it was removed
+        if (tile.isInvalid() || !(world instanceof WorldServer)) {
+            skipped += ids.size();
+            return;
+        }
+        BlockPos pos = tile.getPos();
+        List<EntityPlayerMP> watchers = ChunkWatcherCache.getWatchers((WorldServer) world, pos);
+        if (watchers.isEmpty()) {
+            skipped += ids.size();
+            return;
+        }
+        for (int i = 0; i < ids.size(); i++) {
+            PacketBufferBC payload = tile.writeNetworkUpdatePayload(ids.getInt(i));
+            tilePayloads.add(payload);
+            written++;
+            for (EntityPlayerMP player : watchers) {
+                List<MessageMultiTileUpdate> list = messages.computeIfAbsent(player, p -> new ArrayList<>(1));
+                if (list.isEmpty() || !list.get(list.size() - 1).add(pos, payload)) {
+                    MessageMultiTileUpdate message = new MessageMultiTileUpdate();
+                    message.add(pos, payload);
+                    list.add(message);
+                }
+                delivered++;
+            }
+        }
+    }
+
+    /** @return A lower bound on the number of messages that weren't sent because of coalescing: every merged request
+     *         avoided at least one message, and bundling avoided every delivery beyond the first in each packet. */
+    public static long getMessagesAvoided() {
+        return merged + delivered - packets;
+    }
+
+    public static String getStats() {
+        return requested + " requested, " + merged + " merged, " + skipped + " skipped, " + written + " written, "
+            + delivered + " delivered in " + packets + " packets";
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.lib.world;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import javax.annotation.Nonnull;
+
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.IWorldEventListener;
+import net.minecraft.world.World;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+
+/** A single {@link IWorldEventListener} per world that forwards block updates to the listeners whose box contains the
+ * updated position. Boxes are indexed by every chunk section (16x16x16) that they touch, so a block update only costs a
+ * single map lookup plus a contains check for each box in that section, rather than one call to every listener in the
+ * world.
+ * <p>
+ * Each listener has at most one box: registering it again replaces the old box. SERVER SIDE, and server thread only. */
+public final class SpatialBlockUpdateNotifier {
+    private static final Map<World, SpatialBlockUpdateNotifier> INSTANCES = new WeakHashMap<>();
+    private static final Subscription[] NO_SUBSCRIPTIONS = new Subscription[0];
+
+    private final Map<IBlockUpdateListener, Subscription> subscriptions = new IdentityHashMap<>();
+    /** Copy-on-write arrays, so that listeners can (un)register while an update is being dispatched. */
+    private final Long2ObjectMap<Subscription[]> sections = new Long2ObjectOpenHashMap<>();
+
+    /** Every block update in the world, and every call to a listener. Only used for debugging. */
+    private long updates, delivered;
+
+    @FunctionalInterface
+    public interface IBlockUpdateListener {
+        void onBlockUpdate(World world, BlockPos pos, IBlockState oldState, IBlockState newState, int flags);
+    }
+
+    private SpatialBlockUpdateNotifier(World world) {
+        world.addEventListener(new WorldEventListenerAdapter() {
+            @Override
+            public void notifyBlockUpdate(@Nonnull World world,
+                                          @Nonnull BlockPos pos,
+                                          @Nonnull IBlockState oldState,
+                                          @Nonnull IBlockState newState,
+                                          int flags) {
+                dispatch(world, pos, oldState, newState, flags);
+            }
+        });
+    }
+
+    public static SpatialBlockUpdateNotifier get(World world) {
+        if (world.isRemote) {
+            throw new IllegalArgumentException("Block update listeners are only supported on the server!");
+        }
+        return INSTANCES.computeIfAbsent(world, SpatialBlockUpdateNotifier::new);
+    }
+
+    /** Registers (or moves) the given listener so that it is told about every block update between min and max
+     * (inclusive). */
+    public void register(IBlockUpdateListener listener, BlockPos min, BlockPos max) {
+        Subscription existing = subscriptions.get(listener);
+        if (existing != null) {
+            if (existing.min.equals(min) && existing.max.equals(max)) {
+                return;
+            }
+            unregister(listener);
+        }
+        Subscription subscription = new Subscription(listener, min, max);
+        subscriptions.put(listener, subscription);
+        for (int sx = min.getX() >> 4; sx <= max.getX() >> 4; sx++) {
+            for (int sy = min.getY() >> 4; sy <= max.getY() >> 4; sy++) {
+                for (int sz = min.getZ() >> 4; sz <= max.getZ() >> 4; sz++) {
+                    long key = sectionKey(sx, sy, sz);
+                    Subscription[] old = sections.getOrDefault(key, NO_SUBSCRIPTIONS);
+                    Subscription[] added = Arrays.copyOf(old, old.length + 1);
+                    added[old.length] = subscription;
+                    sections.put(key, added);
+                }
+            }
+        }
+    }
+
+    public void unregister(IBlockUpdateListener listener) {
+        Subscription subscription = subscriptions.remove(listener);
+        if (subscription == null) {
+            return;
+        }
+        BlockPos min = subscription.min;
+        BlockPos max = subscription.max;
+        for (int sx = min.getX() >> 4; sx <= max.getX() >> 4; sx++) {
+            for (int sy = min.getY() >> 4; sy <= max.getY() >> 4; sy++) {
+                for (int sz = min.getZ() >> 4; sz <= max.getZ() >> 4; sz++) {
+                    long key = sectionKey(sx, sy, sz);
+                    Subscription[] old = sections.get(key);
+                    if (old == null) {
+                        continue;
+                    }
+                    if (old.length == 1) {
+                        sections.remove(key);
+                        continue;
+                    }
+                    Subscription[] removed = new Subscription[old.length - 1];
+                    int j = 0;
+                    for (Subscription s : old) {
+                        if (s != subscription && j < removed.length) {
+                            removed[j++] = s;
+                        }
+                    }
+                    sections.put(key, removed);
+                }
+            }
+        }
+    }
+
+    public int getSubscriptionCount() {
+        return subscriptions.size();
+    }
+
+    public long getUpdateCount() {
+        return updates;
+    }
+
+    public long getDeliveredCount() {
+        return delivered;
+    }
+
+    public String getDebugString() {
+        return subscriptions.size() + " listeners, " + sections.size() + " sections, delivered " + delivered + " of "
+            + updates + " updates";
+    }
+
+    void dispatch(World world, BlockPos pos, IBlockState oldState, IBlockState newState, int flags) {
+        updates++;
+        Subscription[] inSection = sections.get(sectionKey(pos.getX() >> 4, pos.getY() >> 4, pos.getZ() >> 4));
+        if (inSection == null) {
+            return;
+        }
+        for (Subscription subscription : inSection) {
+            // Also check that it hasn't been unregistered by a previous listener
+            if (subscription.contains(pos) && subscriptions.get(subscription.listener) == subscription) {
+                delivered++;
+                subscription.listener.onBlockUpdate(world, pos, oldState, newState, flags);
+            }
+        }
+    }
+
+    private static long sectionKey(int sx, int sy, int sz) {
+        return (sx & 0x3F_FFFFL) << 42 | (sz & 0x3F_FFFFL) << 20 | (sy & 0xF_FFFFL);
+    }
+
+    private static final class Subscription {
+        final IBlockUpdateListener listener;
+        final BlockPos min, max;
+
+        Subscription(IBlockUpdateListener listener, BlockPos min, BlockPos max) {
+            this.listener = listener;
+            this.min = min.toImmutable();
+            this.max = max.toImmutable();
+        }
+
+        boolean contains(BlockPos pos) {
+            return pos.getX() >= min.getX() && pos.getX() <= max.getX() //
+                && pos.getY() >= min.getY() && pos.getY() <= max.getY() //
+                && pos.getZ() >= min.getZ() && pos.getZ() <= max.getZ();
+        }
+    }
+}
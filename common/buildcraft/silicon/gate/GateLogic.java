@@ -98,6 +98,9 @@ public class GateLogic implements IGate, IWireEmitter, IRedstoneStatementContain
 
     private final EnumSet<EnumDyeColor> wireBroadcasts;
 
+    /** False until {@link #wireBroadcasts} has been pushed to the wire systems at least once since loading. */
+    private boolean sentWireBroadcasts = false;
+
     /** Used on the client to determine if this gate should glow or not. */
     public boolean isOn;
 
@@ -438,7 +441,7 @@ public class GateLogic implements IGate, IWireEmitter, IRedstoneStatementContain
             }
         }
 
-        if (!previousBroadcasts.equals(wireBroadcasts)) {
+        if (!previousBroadcasts.equals(wireBroadcasts) || !sentWireBroadcasts) {
             IWireManager wires = getPipeHolder().getWireManager();
             EnumSet<EnumDyeColor> turnedOff = EnumSet.copyOf(previousBroadcasts);
             turnedOff.removeAll(wireBroadcasts);
@@ -449,7 +452,9 @@ public class GateLogic implements IGate, IWireEmitter, IRedstoneStatementContain
             // FIXME: add call to "wires.emittingColour(turnedOff)"
 
             if (BCModules.TRANSPORT.isLoaded() && !getPipeHolder().getPipeWorld().isRemote) {
-                WorldSavedDataWireSystems.get(getPipeHolder().getPipeWorld()).gatesChanged = true;
+                sentWireBroadcasts = true;
+                WorldSavedDataWireSystems.get(getPipeHolder().getPipeWorld())
+                    .onEmitterChanged(getPipeHolder().getPipePos(), pluggable.side, this);
             }
         }
 
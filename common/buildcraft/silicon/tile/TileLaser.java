@@ -8,7 +8,9 @@ package buildcraft.silicon.tile;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 import javax.annotation.Nonnull;
@@ -22,6 +24,7 @@ import net.minecraft.util.math.AxisAlignedBB;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Vec3d;
 import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
 
 import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
 import net.minecraftforge.fml.relauncher.Side;
@@ -59,6 +62,9 @@ public class TileLaser extends TileBC_Neptune implements ITickable, IDebuggable,
     private final SafeTimeTracker serverTargetMoveInterval = new SafeTimeTracker(10, 20);
 
     private final List<BlockPos> targetPositions = new ArrayList<>();
+    /** Every {@link ILaserTarget} in {@link #targetPositions}, so they don't have to be looked up in the world several
+     * times per tick. This is rebuilt by {@link #findPossibleTargets()} whenever a block near this laser changes. */
+    private final Map<BlockPos, CachedTarget> targets = new HashMap<>();
     private BlockPos targetPos;
     public Vec3d laserPos;
     private boolean worldHasUpdated = true;
@@ -90,6 +96,7 @@ public class TileLaser extends TileBC_Neptune implements ITickable, IDebuggable,
 
     private void findPossibleTargets() {
         targetPositions.clear();
+        targets.clear();
         IBlockState state = world.getBlockState(pos);
         if (state.getBlock() != BCSiliconBlocks.laser) {
             return;
@@ -105,7 +112,7 @@ public class TileLaser extends TileBC_Neptune implements ITickable, IDebuggable,
                 TileEntity tileAt = world.getTileEntity(p);
                 if (tileAt instanceof ILaserTarget) {
                     targetPositions.add(p);
-
+                    targets.put(p, new CachedTarget(tileAt, world.getChunkFromBlockCoords(p)));
                 }
             }
         });
@@ -126,23 +133,33 @@ public class TileLaser extends TileBC_Neptune implements ITickable, IDebuggable,
     }
 
     private boolean isPowerNeededAt(BlockPos position) {
-        if (position != null) {
+        ILaserTarget target = getTargetAt(position);
+        return target != null && target.getRequiredLaserPower() > 0;
+    }
+
+    private ILaserTarget getTargetAt(BlockPos position) {
+        if (position == null || !world.isBlockLoaded(position)) {
+            return null;
+        }
+        CachedTarget cached = targets.get(position);
+        if (cached == null) {
+            return null;
+        }
+        if (cached.tile.isInvalid() || !cached.chunk.isLoaded()) {
+            // The target's chunk was unloaded and then loaded again, so it will have a new tile
             TileEntity tile = world.getTileEntity(position);
-            if (tile instanceof ILaserTarget) {
-                ILaserTarget target = (ILaserTarget) tile;
-                return target.getRequiredLaserPower() > 0;
+            if (!(tile instanceof ILaserTarget)) {
+                targets.remove(position);
+                return null;
             }
+            cached = new CachedTarget(tile, world.getChunkFromBlockCoords(position));
+            targets.put(position, cached);
         }
-        return false;
+        return (ILaserTarget) cached.tile;
     }
 
     private ILaserTarget getTarget() {
-        if (targetPos != null) {
-            if (world.getTileEntity(targetPos) instanceof ILaserTarget) {
-                return (ILaserTarget) world.getTileEntity(targetPos);
-            }
-        }
-        return null;
+        return getTargetAt(targetPos);
     }
 
     private void updateLaser() {
@@ -298,6 +315,23 @@ public class TileLaser extends TileBC_Neptune implements ITickable, IDebuggable,
         }
     }
 
+    @Override
+    public void onChunkUnload() {
+        super.onChunkUnload();
+        targets.clear();
+        worldHasUpdated = true;
+    }
+
+    private static final class CachedTarget {
+        final TileEntity tile;
+        final Chunk chunk;
+
+        CachedTarget(TileEntity tile, Chunk chunk) {
+            this.tile = tile;
+            this.chunk = chunk;
+        }
+    }
+
     @Nonnull
     @Override
     @SideOnly(Side.CLIENT)
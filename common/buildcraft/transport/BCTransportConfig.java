@@ -45,12 +45,16 @@ public class BCTransportConfig {
     public static int baseFlowRate = 10;
     public static boolean fluidPipeColourBorder;
     public static PowerLossMode lossMode = PowerLossMode.DEFAULT;
+    /** If true then connected kinesis pipes are solved together as a single
+     * {@link buildcraft.transport.pipe.flow.PowerNetwork}, rather than moving power one pipe per tick. */
+    public static boolean powerNetworks = false;
 
     private static Property propMjPerMillibucket;
     private static Property propMjPerItem;
     private static Property propBaseFlowRate;
     private static Property propFluidPipeColourBorder;
     private static Property propLossMode;
+    private static Property propPowerNetworks;
 
     public static void preInit() {
         Configuration config = BCCoreConfig.config;
@@ -71,6 +75,10 @@ public class BCTransportConfig {
         ConfigUtil.setEnumProperty(propLossMode, PowerLossMode.VALUES);
         EnumRestartRequirement.WORLD.setTo(propLossMode);
 
+        propPowerNetworks = config.get("experimental", "kinesisPowerNetworks", false);
+        propPowerNetworks.setComment("Distribute power through whole networks of kinesis pipes at once");
+        EnumRestartRequirement.WORLD.setTo(propPowerNetworks);
+
         MinecraftForge.EVENT_BUS.register(BCTransportConfig.class);
     }
 
@@ -95,6 +103,7 @@ public class BCTransportConfig {
                 fluidPipeColourBorder ? EnumPipeColourType.BORDER_INNER : EnumPipeColourType.TRANSLUCENT;
 
             lossMode = ConfigUtil.parseEnumForConfig(propLossMode, PowerLossMode.DEFAULT);
+            powerNetworks = propPowerNetworks.getBoolean();
 
             fluidTransfer(BCTransportPipes.cobbleFluid, baseFlowRate, 10);
             fluidTransfer(BCTransportPipes.woodFluid, baseFlowRate, 10);
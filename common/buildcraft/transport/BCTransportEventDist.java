@@ -6,16 +6,20 @@
 
 package buildcraft.transport;
 
+import net.minecraft.client.Minecraft;
+
 import net.minecraftforge.client.event.TextureStitchEvent;
 import net.minecraftforge.event.world.BlockEvent;
 import net.minecraftforge.event.world.ChunkWatchEvent;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
 import net.minecraftforge.fml.common.gameevent.TickEvent;
+import net.minecraftforge.fml.common.network.FMLNetworkEvent.ClientDisconnectionFromServerEvent;
 import net.minecraftforge.fml.relauncher.Side;
 import net.minecraftforge.fml.relauncher.SideOnly;
 
 import buildcraft.transport.client.render.PipeWireRenderer;
 import buildcraft.transport.net.PipeItemMessageQueue;
+import buildcraft.transport.wire.ClientWireSystems;
 import buildcraft.transport.wire.WorldSavedDataWireSystems;
 
 public enum BCTransportEventDist {
@@ -35,7 +39,14 @@ public enum BCTransportEventDist {
 
     @SubscribeEvent
     public void onChunkWatch(ChunkWatchEvent event) {
-        WorldSavedDataWireSystems.get(event.getPlayer().world).changedPlayers.add(event.getPlayer());
+        WorldSavedDataWireSystems.get(event.getPlayer().world).onChunkWatchChange(event.getPlayer(), event.getChunk());
+    }
+
+    @SubscribeEvent
+    @SideOnly(Side.CLIENT)
+    public void onDisconnectFromServer(ClientDisconnectionFromServerEvent event) {
+        // Fired on the network thread, and wire system ids are only unique within a single server
+        Minecraft.getMinecraft().addScheduledTask(ClientWireSystems.INSTANCE.wireSystems::clear);
     }
 
     @SubscribeEvent
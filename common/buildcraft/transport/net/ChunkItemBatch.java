@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.transport.net;
+
+import java.util.Arrays;
+
+import javax.annotation.Nullable;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import gnu.trove.map.hash.TShortIntHashMap;
+
+import net.minecraft.item.EnumDyeColor;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.math.BlockPos;
+
+import buildcraft.lib.net.PacketBufferBC;
+
+/** Holds all of the travelling items that need to be sent to clients for a single chunk, stored in flat primitive
+ * arrays. Every tick the batch is encoded once (via {@link #encode(long)}) and the resulting buffer is shared between
+ * every player watching the chunk.
+ * <p>
+ * Wire format of a single chunk (as read by {@link MessageMultiPipeItem#fromBytes(ByteBuf)}):
+ * <ul>
+ * <li>Chunk X and Z (signed var ints)</li>
+ * <li>Item count (var int)</li>
+ * <li>For every item:
+ * <ul>
+ * <li>Position, relative to the chunk origin (unsigned short: x | z << 4 | y << 8)</li>
+ * <li>Stack id (var int)</li>
+ * <li>Stack count (byte)</li>
+ * <li>Side, toCenter and colour, packed with {@link #packFlags(boolean, EnumFacing, EnumDyeColor)} (byte)</li>
+ * <li>Time to destination (byte)</li>
+ * <li>Time elapsed: the number of ticks that the item has already been travelling for (byte)</li>
+ * </ul>
+ * </li>
+ * </ul>
+ * Items that don't fit within the per-pipe or per-chunk limits stay in this batch for the next tick, unless their
+ * travel time has already elapsed (as the client would never see them anyway). Carried over items are sent with the
+ * time that they have already spent travelling, so that the client starts them part of the way along the pipe rather
+ * than moving them along the whole pipe in less time. */
+public final class ChunkItemBatch {
+    /** The maximum number of items that will be sent for a single pipe in a single tick. */
+    public static final int MAX_ITEMS_PER_PIPE = 10;
+    /** The maximum number of items that will be sent for a single chunk in a single tick. */
+    public static final int MAX_ITEMS_PER_CHUNK = 2048;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** Reused between every batch to count the number of items sent to each position. */
+    private static final TShortIntHashMap COUNTS_PER_POS = new TShortIntHashMap();
+
+    public final int chunkX, chunkZ;
+
+    private int size;
+    private short[] positions = new short[INITIAL_CAPACITY];
+    private int[] stackIds = new int[INITIAL_CAPACITY];
+    private byte[] stackCounts = new byte[INITIAL_CAPACITY];
+    private byte[] flags = new byte[INITIAL_CAPACITY];
+    private byte[] timesToDest = new byte[INITIAL_CAPACITY];
+    private long[] ticksQueued = new long[INITIAL_CAPACITY];
+
+    /** The number of ticks that have passed without any items being added. */
+    int idleTicks;
+
+    public ChunkItemBatch(int chunkX, int chunkZ) {
+        this.chunkX = chunkX;
+        this.chunkZ = chunkZ;
+    }
+
+    public static short packPosition(BlockPos pos) {
+        return (short) ((pos.getX() & 15) | (pos.getZ() & 15) << 4 | (pos.getY() & 255) << 8);
+    }
+
+    public static BlockPos unpackPosition(int chunkX, int chunkZ, int packed) {
+        int x = (chunkX << 4) | (packed & 15);
+        int z = (chunkZ << 4) | ((packed >> 4) & 15);
+        int y = (packed >> 8) & 255;
+        return new BlockPos(x, y, z);
+    }
+
+    /** Packs the given values into a single byte: 6 sides * 2 directions * 17 colours (including null) only needs 204
+     * distinct values. */
+    public static byte packFlags(boolean toCenter, EnumFacing side, @Nullable EnumDyeColor colour) {
+        int colourIndex = colour == null ? 0 : colour.getMetadata() + 1;
+        return (byte) (colourIndex * 12 + side.ordinal() * 2 + (toCenter ? 1 : 0));
+    }
+
+    public static boolean unpackToCenter(int packed) {
+        return (packed & 0xFF) % 12 % 2 == 1;
+    }
+
+    public static EnumFacing unpackSide(int packed) {
+        return EnumFacing.getFront((packed & 0xFF) % 12 / 2);
+    }
+
+    @Nullable
+    public static EnumDyeColor unpackColour(int packed) {
+        int colourIndex = (packed & 0xFF) / 12;
+        return colourIndex == 0 ? null : EnumDyeColor.byMetadata(colourIndex - 1);
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void append(BlockPos pos, int stackId, byte stackCount, boolean toCenter, EnumFacing side,
+        @Nullable EnumDyeColor colour, byte timeToDest, long now) {
+        if (size == positions.length) {
+            int newCapacity = size * 2;
+            positions = Arrays.copyOf(positions, newCapacity);
+            stackIds = Arrays.copyOf(stackIds, newCapacity);
+            stackCounts = Arrays.copyOf(stackCounts, newCapacity);
+            flags = Arrays.copyOf(flags, newCapacity);
+            timesToDest = Arrays.copyOf(timesToDest, newCapacity);
+            ticksQueued = Arrays.copyOf(ticksQueued, newCapacity);
+        }
+        positions[size] = packPosition(pos);
+        stackIds[size] = stackId;
+        stackCounts[size] = stackCount;
+        flags[size] = packFlags(toCenter, side, colour);
+        timesToDest[size] = timeToDest;
+        ticksQueued[size] = now;
+        size++;
+        idleTicks = 0;
+    }
+
+    /** Removes every queued item without sending it. */
+    public void clear() {
+        size = 0;
+    }
+
+    /** Writes as many items as are allowed to a new buffer, removing them from this batch. Any items that were not
+     * written (because they went over the limits) are kept for the next call.
+     *
+     * @return The encoded chunk, or null if nothing was written. */
+    @Nullable
+    public ByteBuf encode(long now) {
+        if (size == 0) {
+            return null;
+        }
+        TShortIntHashMap counts = COUNTS_PER_POS;
+        counts.clear();
+
+        PacketBufferBC buffer = new PacketBufferBC(Unpooled.buffer(16 + size * 8));
+        buffer.writeVarInt(zigzag(chunkX));
+        buffer.writeVarInt(zigzag(chunkZ));
+        int countIndex = buffer.writerIndex();
+        // Reserve a fixed width var int so that the count can be written afterwards
+        buffer.writeMedium(0);
+
+        int written = 0;
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            int elapsed = (int) (now - ticksQueued[i]);
+            if (elapsed >= timesToDest[i]) {
+                // It's already reached its destination on the server, so the client doesn't need to know about it
+                continue;
+            }
+            short pos = positions[i];
+            if (written >= MAX_ITEMS_PER_CHUNK || counts.get(pos) >= MAX_ITEMS_PER_PIPE) {
+                // Keep it for the next tick
+                if (kept != i) {
+                    positions[kept] = pos;
+                    stackIds[kept] = stackIds[i];
+                    stackCounts[kept] = stackCounts[i];
+                    flags[kept] = flags[i];
+                    timesToDest[kept] = timesToDest[i];
+                    ticksQueued[kept] = ticksQueued[i];
+                }
+                kept++;
+                continue;
+            }
+            counts.adjustOrPutValue(pos, 1, 1);
+            buffer.writeShort(pos);
+            buffer.writeVarInt(stackIds[i]);
+            buffer.writeByte(stackCounts[i]);
+            buffer.writeByte(flags[i]);
+            buffer.writeByte(timesToDest[i]);
+            buffer.writeByte(elapsed);
+            written++;
+        }
+        size = kept;
+        if (written == 0) {
+            return null;
+        }
+        // 3 byte var int: the top bit of the first two bytes is always set
+        buffer.setByte(countIndex, (written & 0x7F) | 0x80);
+        buffer.setByte(countIndex + 1, ((written >>> 7) & 0x7F) | 0x80);
+        buffer.setByte(countIndex + 2, (written >>> 14) & 0x7F);
+        return buffer;
+    }
+
+    static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
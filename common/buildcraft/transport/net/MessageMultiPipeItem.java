@@ -25,72 +25,68 @@ import buildcraft.api.transport.pipe.IPipeHolder;
 import buildcraft.api.transport.pipe.PipeFlow;
 
 import buildcraft.lib.BCLibProxy;
-import buildcraft.lib.misc.MessageUtil;
 import buildcraft.lib.net.PacketBufferBC;
 
 import buildcraft.transport.pipe.flow.PipeFlowItems;
 
+/** Sends all of the items that started travelling in a set of chunks in a single tick. The server side only holds the
+ * (already encoded) chunks from {@link ChunkItemBatch#encode(long)}, which are shared between every player that is
+ * watching them. */
 public class MessageMultiPipeItem implements IMessage {
 
-    private static final int MAX_ITEMS_PER_PIPE = 10;
-    private static final int MAX_POSITIONS = 4000;
+    /** The maximum size of a single message. Anything larger is split up into multiple messages by
+     * {@link PipeItemMessageQueue}. */
+    public static final int MAX_MESSAGE_BYTES = 1 << 20;
+
+    /** Client side: every item received, by position. */
     public final Map<BlockPos, List<TravellingItemData>> items = new HashMap<>();
 
+    /** Server side: the encoded chunks to send. */
+    private final List<ByteBuf> chunks = new ArrayList<>();
+    private int byteSize = 0;
+
     public MessageMultiPipeItem() {
 
     }
 
+    /** @return True if the chunk was added, or false if this message is already too big to add it to. Note that an
+     *         empty message will always accept a chunk. */
+    public boolean addChunk(ByteBuf encodedChunk) {
+        int bytes = encodedChunk.readableBytes();
+        if (!chunks.isEmpty() && byteSize + bytes > MAX_MESSAGE_BYTES) {
+            return false;
+        }
+        chunks.add(encodedChunk);
+        byteSize += bytes;
+        return true;
+    }
+
     @Override
     public void fromBytes(ByteBuf buffer) {
         PacketBufferBC buf = PacketBufferBC.asPacketBufferBc(buffer);
-        int blockCount = buf.readShort();
-        for (int b = 0; b < blockCount; b++) {
-            BlockPos pos = buf.readBlockPos();
-            List<TravellingItemData> posItems = new ArrayList<>();
-            items.put(pos, posItems);
-            int itemCount = buf.readUnsignedByte();
+        int chunkCount = buf.readVarInt();
+        for (int c = 0; c < chunkCount; c++) {
+            int chunkX = ChunkItemBatch.unzigzag(buf.readVarInt());
+            int chunkZ = ChunkItemBatch.unzigzag(buf.readVarInt());
+            int itemCount = buf.readVarInt();
             for (int i = 0; i < itemCount; i++) {
-                posItems.add(new TravellingItemData(buf));
+                BlockPos pos = ChunkItemBatch.unpackPosition(chunkX, chunkZ, buf.readUnsignedShort());
+                items.computeIfAbsent(pos, p -> new ArrayList<>()).add(new TravellingItemData(buf));
             }
         }
     }
 
     @Override
     public void toBytes(ByteBuf buffer) {
+        buffer.ensureWritable(byteSize + 5);
         PacketBufferBC buf = PacketBufferBC.asPacketBufferBc(buffer);
-        int blockCount = Math.min(items.size(), MAX_POSITIONS);
-        buf.writeShort(blockCount);
-        int blockIndex = 0;
-        for (Entry<BlockPos, List<TravellingItemData>> entry : items.entrySet()) {
-            buf.writeBlockPos(entry.getKey());
-            List<TravellingItemData> list = entry.getValue();
-            int itemCount = Math.min(list.size(), MAX_ITEMS_PER_PIPE);
-            buf.writeByte(itemCount);
-            for (int i = 0; i < itemCount; i++) {
-                list.get(i).toBuffer(buf);
-            }
-            if (++blockIndex >= blockCount) {
-                break;
-            }
+        buf.writeVarInt(chunks.size());
+        for (ByteBuf chunk : chunks) {
+            // Don't modify the reader index, as the same chunk is written out to every player watching it
+            buf.writeBytes(chunk, chunk.readerIndex(), chunk.readableBytes());
         }
     }
 
-    public void append(BlockPos pos, int stackId, byte stackCount, boolean toCenter, EnumFacing side,
-        EnumDyeColor colour, byte timeToDest) {
-        List<TravellingItemData> list = items.get(pos);
-        if (list == null) {
-            if (items.size() >= MAX_POSITIONS) {
-                return;
-            }
-            list = new ArrayList<>();
-            items.put(pos, list);
-        }
-        if (list.size() >= MAX_ITEMS_PER_PIPE) {
-            return;
-        }
-        list.add(new TravellingItemData(stackId, stackCount, toCenter, side, colour, timeToDest));
-    }
-
     public static class TravellingItemData {
         public final int stackId;
         public final byte stackCount;
@@ -98,33 +94,31 @@ public class MessageMultiPipeItem implements IMessage {
         public final EnumFacing side;
         public final @Nullable EnumDyeColor colour;
         public final byte timeToDest;
+        /** The number of ticks (out of {@link #timeToDest}) that the item had already been travelling for when it was
+         * sent. */
+        public final byte timeElapsed;
 
         public TravellingItemData(int stackId, byte stackCount, boolean toCenter, EnumFacing side, EnumDyeColor colour,
-            byte timeToDest) {
+            byte timeToDest, byte timeElapsed) {
             this.stackId = stackId;
             this.stackCount = stackCount;
             this.toCenter = toCenter;
             this.side = side;
             this.colour = colour;
             this.timeToDest = timeToDest;
+            this.timeElapsed = timeElapsed;
         }
 
+        /** Reads the item data written by {@link ChunkItemBatch#encode(long)}. */
         TravellingItemData(PacketBufferBC buf) {
             stackId = buf.readVarInt();
             stackCount = buf.readByte();
-            toCenter = buf.readBoolean();
-            side = buf.readEnumValue(EnumFacing.class);
-            colour = MessageUtil.readEnumOrNull(buf, EnumDyeColor.class);
+            int packed = buf.readUnsignedByte();
+            toCenter = ChunkItemBatch.unpackToCenter(packed);
+            side = ChunkItemBatch.unpackSide(packed);
+            colour = ChunkItemBatch.unpackColour(packed);
             timeToDest = buf.readByte();
-        }
-
-        void toBuffer(PacketBufferBC buf) {
-            buf.writeVarInt(stackId);
-            buf.writeByte(stackCount);
-            buf.writeBoolean(toCenter);
-            buf.writeEnumValue(side);
-            MessageUtil.writeEnumOrNull(buf, colour);
-            buf.writeByte(timeToDest);
+            timeElapsed = buf.readByte();
         }
     }
 
@@ -1,6 +1,7 @@
 package buildcraft.transport.net;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -8,45 +9,91 @@ import java.util.WeakHashMap;
 
 import javax.annotation.Nullable;
 
+import io.netty.buffer.ByteBuf;
+
+import gnu.trove.iterator.TLongObjectIterator;
+import gnu.trove.map.hash.TLongObjectHashMap;
+
 import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.item.EnumDyeColor;
-import net.minecraft.server.management.PlayerChunkMapEntry;
 import net.minecraft.util.EnumFacing;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
 import net.minecraft.world.World;
 import net.minecraft.world.WorldServer;
 
+import buildcraft.lib.net.ChunkWatcherCache;
 import buildcraft.lib.net.MessageManager;
 
+/** Collects travelling items into per-chunk {@link ChunkItemBatch}'s, and then every tick encodes each chunk once and
+ * sends it to every player watching that chunk. */
 public class PipeItemMessageQueue {
 
-    private static final Map<EntityPlayerMP, MessageMultiPipeItem> cachedPlayerPackets = new WeakHashMap<>();
+    /** Batches that haven't had anything added to them for this many ticks are removed. */
+    private static final int MAX_IDLE_TICKS = 100;
+
+    private static final Map<World, TLongObjectHashMap<ChunkItemBatch>> worldBatches = new WeakHashMap<>();
+
+    /** Reused every tick to collect the messages for each player. */
+    private static final Map<EntityPlayerMP, List<MessageMultiPipeItem>> cachedPlayerPackets = new HashMap<>();
 
     public static void serverTick() {
-        for (Entry<EntityPlayerMP, MessageMultiPipeItem> entry : cachedPlayerPackets.entrySet()) {
-            MessageManager.sendTo(entry.getValue(), entry.getKey());
+        for (Entry<World, TLongObjectHashMap<ChunkItemBatch>> entry : worldBatches.entrySet()) {
+            WorldServer world = (WorldServer) entry.getKey();
+            long now = world.getTotalWorldTime();
+            TLongObjectIterator<ChunkItemBatch> iter = entry.getValue().iterator();
+            while (iter.hasNext()) {
+                iter.advance();
+                ChunkItemBatch batch = iter.value();
+                if (batch.isEmpty()) {
+                    if (++batch.idleTicks > MAX_IDLE_TICKS) {
+                        iter.remove();
+                    }
+                    continue;
+                }
+                List<EntityPlayerMP> watchers = ChunkWatcherCache.getWatchers(world, batch.chunkX, batch.chunkZ);
+                if (watchers.isEmpty()) {
+                    // No-one is watching this chunk any more
+                    batch.clear();
+                    continue;
+                }
+                ByteBuf encoded = batch.encode(now);
+                if (encoded == null) {
+                    continue;
+                }
+                for (EntityPlayerMP player : watchers) {
+                    addChunk(player, encoded);
+                }
+            }
+        }
+        for (Entry<EntityPlayerMP, List<MessageMultiPipeItem>> entry : cachedPlayerPackets.entrySet()) {
+            for (MessageMultiPipeItem message : entry.getValue()) {
+                MessageManager.sendTo(message, entry.getKey());
+            }
         }
         cachedPlayerPackets.clear();
     }
 
+    private static void addChunk(EntityPlayerMP player, ByteBuf encoded) {
+        List<MessageMultiPipeItem> messages = cachedPlayerPackets.computeIfAbsent(player, p -> new ArrayList<>(1));
+        if (messages.isEmpty() || !messages.get(messages.size() - 1).addChunk(encoded)) {
+            MessageMultiPipeItem message = new MessageMultiPipeItem();
+            message.addChunk(encoded);
+            messages.add(message);
+        }
+    }
+
     public static void appendTravellingItem(World world, BlockPos pos, int stackId, byte stackCount, boolean toCenter,
         EnumFacing side, @Nullable EnumDyeColor colour, byte timeToDest) {
-        WorldServer server = (WorldServer) world;
-        PlayerChunkMapEntry playerChunkMap = server.getPlayerChunkMap().getEntry(pos.getX() >> 4, pos.getZ() >> 4);
-        if (playerChunkMap == null) {
-            // No-one was watching this chunk.
-            return;
-        }
-        List<EntityPlayerMP> players = new ArrayList<>();
-        // Slightly ugly hack to iterate through all players watching the chunk
-        playerChunkMap.hasPlayerMatchingInRange(0, player -> {
-            players.add(player);
-            // Always return false so that the iteration doesn't stop early
-            return false;
-        });
-        for (EntityPlayerMP player : players) {
-            cachedPlayerPackets.computeIfAbsent(player, pl -> new MessageMultiPipeItem()).append(pos, stackId,
-                stackCount, toCenter, side, colour, timeToDest);
+        TLongObjectHashMap<ChunkItemBatch> batches = worldBatches.computeIfAbsent(world, w -> new TLongObjectHashMap<>());
+        int chunkX = pos.getX() >> 4;
+        int chunkZ = pos.getZ() >> 4;
+        long key = ChunkPos.asLong(chunkX, chunkZ);
+        ChunkItemBatch batch = batches.get(key);
+        if (batch == null) {
+            batch = new ChunkItemBatch(chunkX, chunkZ);
+            batches.put(key, batch);
         }
+        batch.append(pos, stackId, stackCount, toCenter, side, colour, timeToDest, world.getTotalWorldTime());
     }
 }
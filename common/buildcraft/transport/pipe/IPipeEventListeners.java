@@ -0,0 +1,17 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.transport.pipe;
+
+import buildcraft.api.transport.pipe.PipeEvent;
+
+/** Implemented by {@link buildcraft.api.transport.pipe.IPipeHolder}s that know which events they have handlers for,
+ * so that flows can skip creating events that nothing would see. Flows must assume that every event has a handler if
+ * the holder doesn't implement this. */
+public interface IPipeEventListeners {
+    /** @see PipeEventBus#hasHandlers(Class) */
+    boolean hasEventHandlers(Class<? extends PipeEvent> eventClass);
+}
@@ -47,6 +47,8 @@ import buildcraft.lib.misc.NBTUtilBC;
 import buildcraft.lib.net.PacketBufferBC;
 
 import buildcraft.transport.client.model.key.PipeModelKey;
+import buildcraft.transport.pipe.flow.PipeFlowItems;
+import buildcraft.transport.pipe.flow.PipeFlowPower;
 
 public final class Pipe implements IPipe, IDebuggable {
     private static final float DEFAULT_CONNECTION_DISTANCE = 0.25f;
@@ -307,6 +309,9 @@ public final class Pipe implements IPipe, IDebuggable {
             }
         }
         if (!old.equals(connected)) {
+            if (flow instanceof PipeFlowPower) {
+                ((PipeFlowPower) flow).invalidateNetwork();
+            }
             for (EnumFacing face : EnumFacing.VALUES) {
                 boolean o = old.containsKey(face);
                 boolean n = connected.containsKey(face);
@@ -352,6 +357,24 @@ public final class Pipe implements IPipe, IDebuggable {
     @Override
     public void markForUpdate() {
         updateMarked = true;
+        if (flow instanceof PipeFlowItems) {
+            ((PipeFlowItems) flow).invalidateRoutingCache();
+        } else if (flow instanceof PipeFlowPower) {
+            ((PipeFlowPower) flow).invalidateNetwork();
+        }
+    }
+
+    /** Called by the holder whenever it schedules a network update for any of the given parts. */
+    public void onNetworkUpdateScheduled(PipeMessageReceiver... parts) {
+        if (flow instanceof PipeFlowItems) {
+            for (PipeMessageReceiver part : parts) {
+                if (part == PipeMessageReceiver.BEHAVIOUR) {
+                    // Most behaviour settings affect how items are routed
+                    ((PipeFlowItems) flow).invalidateRoutingCache();
+                    break;
+                }
+            }
+        }
     }
 
     @SideOnly(Side.CLIENT)
@@ -14,40 +14,97 @@ import java.lang.reflect.Parameter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nullable;
 
 import buildcraft.api.core.BCDebugging;
 import buildcraft.api.transport.pipe.PipeEvent;
 import buildcraft.api.transport.pipe.PipeEventHandler;
 import buildcraft.api.transport.pipe.PipeEventPriority;
 
+import buildcraft.transport.pipe.PipeEventInvokers.IPipeEventInvoker;
+
 public class PipeEventBus {
     public static final boolean DEBUG = BCDebugging.shouldDebugLog("transport.pipe.event_bus");
-    // TODO: Investigate using a flag long to check if any handlers are registered for a PipeEvent class!
 
-    private static final Map<Class<?>, List<Handler>> allHandlers = new HashMap<>();
+    /** Every {@link Handler} of every class that has been registered. This is threadsafe, as layouts can be created
+     * from any thread. */
+    private static final Map<Class<?>, List<Handler>> allHandlers = new ConcurrentHashMap<>();
+
+    /** Every {@link DispatchLayout} that has been created, keyed by the (ordered) list of {@link TargetKey}'s that
+     * created it. Pipes of the same type (with the same pluggables) all share a single layout. */
+    private static final Map<List<TargetKey>, DispatchLayout> allLayouts = new ConcurrentHashMap<>();
+
+    private static final LocalHandler[] NO_HANDLERS = new LocalHandler[0];
+
+    /** If false then every handler is called through its {@link MethodHandle}, rather than a generated
+     * {@link IPipeEventInvoker}. */
+    private final boolean useInvokers;
+
+    /** Every object that has been registered to this bus, in registration order. */
+    private final List<Object> targets = new ArrayList<>();
+
+    /** The handlers of every object in {@link #targets} (at the same index) that have been bound to it, in the same
+     * order as {@link #getHandlers(TargetKey)}. These are only created once per object, so changing the registered
+     * objects only needs to re-order them. */
+    private final List<LocalHandler[]> targetHandlers = new ArrayList<>();
+
+    private DispatchLayout layout = DispatchLayout.EMPTY;
+
+    public PipeEventBus() {
+        this(true);
+    }
+
+    /** @param useInvokers False to call every handler through its {@link MethodHandle}, rather than with a generated
+     *            {@link IPipeEventInvoker}. Only useful for comparing the two. */
+    public PipeEventBus(boolean useInvokers) {
+        this.useInvokers = useInvokers;
+    }
 
-    private final List<LocalHandler> currentHandlers = new ArrayList<>();
+    /** All of the handlers for {@link #targets}, sorted by priority. The indices line up with
+     * {@link DispatchLayout#handlers}. */
+    private LocalHandler[] currentHandlers = NO_HANDLERS;
 
-    private static List<LocalHandler> getAndBindHandlers(Object obj) {
-        Class<?> cls = obj instanceof Class ? (Class<?>) obj : obj.getClass();
+    private static TargetKey getKey(Object obj) {
+        if (obj instanceof Class) {
+            return new TargetKey((Class<?>) obj, true);
+        }
+        return new TargetKey(obj.getClass(), false);
+    }
 
-        List<Handler> handlerList = getHandlers(cls);
-        List<LocalHandler> list = new ArrayList<>();
-        for (Handler handler : handlerList) {
-            LocalHandler bound = handler.bindTo(obj);
-            /* The handler will be null if a class was registered but the method was not static */
-            if (bound != null) {
-                list.add(bound);
+    private static DispatchLayout getLayout(List<TargetKey> keys) {
+        DispatchLayout existing = allLayouts.get(keys);
+        if (existing == null) {
+            // Computing a layout twice (from two threads) is harmless, so only the map itself needs to be threadsafe
+            List<TargetKey> copy = new ArrayList<>(keys);
+            existing = allLayouts.computeIfAbsent(copy, DispatchLayout::new);
+        }
+        return existing;
+    }
+
+    /** @return Every handler of the given key, that can be bound to the object that it was created for. */
+    private static List<Handler> getHandlers(TargetKey key) {
+        List<Handler> all = getHandlers(key.cls);
+        if (!key.staticOnly) {
+            return all;
+        }
+        /* Classes that were registered directly can only receive events with static methods */
+        List<Handler> list = new ArrayList<>();
+        for (Handler handler : all) {
+            if (handler.isStatic) {
+                list.add(handler);
             }
         }
         return list;
     }
 
     private static List<Handler> getHandlers(Class<?> cls) {
-        if (!allHandlers.containsKey(cls)) {
+        List<Handler> existing = allHandlers.get(cls);
+        if (existing == null) {
+            // Not computeIfAbsent, as this recurses into the super class
             List<Handler> list = new ArrayList<>();
             Class<?> superCls = cls.getSuperclass();
             if (superCls != null) {
@@ -76,29 +133,68 @@ public class PipeEventBus {
                 }
                 boolean isStatic = Modifier.isStatic(m.getModifiers());
                 String methodName = m.toString();
-                list.add(new Handler(annot.priority(), annot.receiveCancelled(), isStatic, methodName, mh, p.getType()));
+                Handler handler = new Handler(annot.priority(), annot.receiveCancelled(), isStatic, methodName, mh, p.getType());
+                handler.invokerFactory = PipeEventInvokers.createInvokerFactory(m, p.getType());
+                list.add(handler);
             }
 
-            allHandlers.put(cls, list);
-            return list;
+            // Computing the handlers twice (from two threads) is harmless, as long as they all use the same list
+            existing = allHandlers.putIfAbsent(cls, list);
+            if (existing == null) {
+                existing = list;
+            }
         }
-        return allHandlers.get(cls);
+        return existing;
     }
 
     public void registerHandler(Object obj) {
         if (obj == null) {
             return;
         }
-        currentHandlers.addAll(getAndBindHandlers(obj));
-        Collections.sort(currentHandlers);
+        List<Handler> handlers = getHandlers(getKey(obj));
+        LocalHandler[] bound = new LocalHandler[handlers.size()];
+        for (int i = 0; i < bound.length; i++) {
+            bound[i] = handlers.get(i).bindTo(obj, useInvokers);
+        }
+        targets.add(obj);
+        targetHandlers.add(bound);
+        rebuild();
     }
 
     public void unregisterHandler(Object obj) {
         if (obj == null) {
             return;
         }
+        boolean removed = false;
+        for (int i = targets.size() - 1; i >= 0; i--) {
+            if (targets.get(i) == obj) {
+                targets.remove(i);
+                targetHandlers.remove(i);
+                removed = true;
+            }
+        }
+        if (removed) {
+            rebuild();
+        }
+    }
 
-        currentHandlers.removeIf(next -> next.target == obj);
+    private void rebuild() {
+        List<TargetKey> keys = new ArrayList<>(targets.size());
+        for (Object target : targets) {
+            keys.add(getKey(target));
+        }
+        layout = getLayout(keys);
+        LocalHandler[] bound = new LocalHandler[layout.handlers.length];
+        for (int i = 0; i < bound.length; i++) {
+            bound[i] = targetHandlers.get(layout.targetIndices[i])[layout.handlerIndices[i]];
+        }
+        currentHandlers = bound;
+    }
+
+    /** @return True if at least 1 registered handler would be called if an event of the given class was fired. Useful
+     *         for skipping the creation of events that nothing listens to. */
+    public boolean hasHandlers(Class<? extends PipeEvent> eventClass) {
+        return layout.getDispatchTable(eventClass).length > 0;
     }
 
     /** Sends this event to all of the registered handlers.
@@ -113,8 +209,14 @@ public class PipeEventBus {
                     + "(error = " + error + ")");
             }
         }
-        for (LocalHandler handler : currentHandlers) {
-            handled |= handler.handleEvent(event);
+        int[] indices = layout.getDispatchTable(event.getClass());
+        if (indices.length == 0) {
+            return false;
+        }
+        LocalHandler[] handlers = currentHandlers;
+        for (int index : indices) {
+            LocalHandler handler = handlers[index];
+            handled |= handler.dispatch(event);
             if (DEBUG) {
                 String error = event.checkStateForErrors();
                 if (error != null) {
@@ -126,12 +228,103 @@ public class PipeEventBus {
         return handled;
     }
 
+    /** The unique identity of a single registered object: handlers that are bound to instances are different to
+     * handlers registered via their class (which only include static methods). */
+    static final class TargetKey {
+        final Class<?> cls;
+        final boolean staticOnly;
+
+        TargetKey(Class<?> cls, boolean staticOnly) {
+            this.cls = cls;
+            this.staticOnly = staticOnly;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) return true;
+            if (obj == null || obj.getClass() != getClass()) return false;
+            TargetKey other = (TargetKey) obj;
+            return cls == other.cls && staticOnly == other.staticOnly;
+        }
+
+        @Override
+        public int hashCode() {
+            return cls.hashCode() * 31 + (staticOnly ? 1 : 0);
+        }
+    }
+
+    /** Precomputed, priority sorted handlers for a particular ordered set of registered classes. Also stores (lazily)
+     * which handlers need to be called for every concrete {@link PipeEvent} class, so firing an event only ever calls
+     * the handlers that can actually receive it. */
+    static final class DispatchLayout {
+        static final DispatchLayout EMPTY = new DispatchLayout(Collections.emptyList());
+        private static final int[] NO_INDICES = new int[0];
+
+        final Handler[] handlers;
+        /** The index in the registered targets that each handler should be bound to. */
+        final int[] targetIndices;
+        /** The index of each handler in {@link PipeEventBus#getHandlers(TargetKey)} of its target. */
+        final int[] handlerIndices;
+        private final Map<Class<?>, int[]> dispatchTables = new ConcurrentHashMap<>();
+
+        DispatchLayout(List<TargetKey> keys) {
+            List<Handler> allList = new ArrayList<>();
+            List<Integer> targetList = new ArrayList<>();
+            List<Integer> handlerList = new ArrayList<>();
+            for (int t = 0; t < keys.size(); t++) {
+                List<Handler> handlersOfTarget = getHandlers(keys.get(t));
+                for (int h = 0; h < handlersOfTarget.size(); h++) {
+                    allList.add(handlersOfTarget.get(h));
+                    targetList.add(t);
+                    handlerList.add(h);
+                }
+            }
+            Integer[] order = new Integer[allList.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            // Stable sort, so handlers with equal priorities are called in registration order
+            Arrays.sort(order, (a, b) -> allList.get(a).priority.compareTo(allList.get(b).priority));
+            handlers = new Handler[order.length];
+            targetIndices = new int[order.length];
+            handlerIndices = new int[order.length];
+            for (int i = 0; i < order.length; i++) {
+                handlers[i] = allList.get(order[i]);
+                targetIndices[i] = targetList.get(order[i]);
+                handlerIndices[i] = handlerList.get(order[i]);
+            }
+        }
+
+        int[] getDispatchTable(Class<?> eventClass) {
+            int[] table = dispatchTables.get(eventClass);
+            if (table == null) {
+                table = computeDispatchTable(eventClass);
+                dispatchTables.put(eventClass, table);
+            }
+            return table;
+        }
+
+        private int[] computeDispatchTable(Class<?> eventClass) {
+            int count = 0;
+            int[] indices = new int[handlers.length];
+            for (int i = 0; i < handlers.length; i++) {
+                if (handlers[i].eventClassHandled.isAssignableFrom(eventClass)) {
+                    indices[count++] = i;
+                }
+            }
+            return count == 0 ? NO_INDICES : Arrays.copyOf(indices, count);
+        }
+    }
+
     public static class Handler {
         final PipeEventPriority priority;
         final boolean receiveCanceled, isStatic;
         final String methodName;
         final MethodHandle handle;
         final Class<?> eventClassHandled;
+        /** Generated by {@link PipeEventInvokers}, or null if this handler can only be called reflectively. */
+        @Nullable
+        MethodHandle invokerFactory;
 
         public Handler(PipeEventPriority priority, boolean receiveCanceled, boolean isStatic, String methodName, MethodHandle handle, Class<?> eventClassHandled) {
             this.priority = priority;
@@ -143,12 +336,21 @@ public class PipeEventBus {
         }
 
         public LocalHandler bindTo(Object obj) {
+            return bindTo(obj, true);
+        }
+
+        /** @param useInvoker False to always call the handler through its {@link MethodHandle}. */
+        public LocalHandler bindTo(Object obj, boolean useInvoker) {
             // If its not a static method then we cannot pass the class to the handler, so we won't bind it
             if (!isStatic && obj instanceof Class<?>) {
                 return null;
             }
             MethodHandle bound = isStatic ? handle : handle.bindTo(obj);
-            return new LocalHandler(priority, receiveCanceled, obj, methodName, eventClassHandled, bound);
+            IPipeEventInvoker invoker = null;
+            if (invokerFactory != null && useInvoker) {
+                invoker = PipeEventInvokers.bind(invokerFactory, isStatic ? null : obj);
+            }
+            return new LocalHandler(priority, receiveCanceled, obj, methodName, eventClassHandled, bound, invoker);
         }
     }
 
@@ -159,30 +361,47 @@ public class PipeEventBus {
         final String methodName;
         final Class<?> classHandled;
         final MethodHandle handle;
+        @Nullable
+        final IPipeEventInvoker invoker;
 
         public LocalHandler(PipeEventPriority priority, boolean receiveCanceled, Object target, String methodName, Class<?> classHandled, MethodHandle handle) {
+            this(priority, receiveCanceled, target, methodName, classHandled, handle, null);
+        }
+
+        public LocalHandler(PipeEventPriority priority, boolean receiveCanceled, Object target, String methodName, Class<?> classHandled, MethodHandle handle, @Nullable IPipeEventInvoker invoker) {
             this.priority = priority;
             this.receiveCanceled = receiveCanceled;
             this.target = target;
             this.methodName = methodName;
             this.classHandled = classHandled;
             this.handle = handle;
+            this.invoker = invoker;
         }
 
         public boolean handleEvent(PipeEvent event) {
+            if (classHandled.isAssignableFrom(event.getClass())) {
+                return dispatch(event);
+            }
+            return false;
+        }
+
+        /** Like {@link #handleEvent(PipeEvent)}, but assumes that the caller has already checked that the event is an
+         * instance of {@link #classHandled}. */
+        boolean dispatch(PipeEvent event) {
             if (!receiveCanceled && event.isCanceled()) {
                 return false;
             }
-
-            if (classHandled.isAssignableFrom(event.getClass())) {
-                try {
+            try {
+                if (invoker != null) {
+                    invoker.invoke(event);
+                } else {
                     handle.invoke(event);
-                    return true;
-                } catch (Throwable e) {
-                    throw new IllegalStateException(e);
                 }
+                return true;
+            } catch (Throwable e) {
+                // The same for both, so that callers can't tell which one was used
+                throw new IllegalStateException(e);
             }
-            return false;
         }
 
         @Override
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.transport.pipe;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import javax.annotation.Nullable;
+
+import buildcraft.api.core.BCDebugging;
+import buildcraft.api.core.BCLog;
+import buildcraft.api.transport.pipe.PipeEvent;
+
+/** Generates strongly typed {@link IPipeEventInvoker}'s for {@link buildcraft.api.transport.pipe.PipeEventHandler}
+ * methods with {@link LambdaMetafactory}, so that the JIT can inline handlers directly into
+ * {@link PipeEventBus#fireEvent(PipeEvent)}. Methods that cannot be compiled (for whatever reason) just use the
+ * reflective {@link MethodHandle} path instead. */
+public final class PipeEventInvokers {
+    public static final boolean DEBUG = BCDebugging.shouldDebugLog("transport.pipe.event_invokers");
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodType SAM_TYPE = MethodType.methodType(void.class, PipeEvent.class);
+
+    private PipeEventInvokers() {}
+
+    @FunctionalInterface
+    public interface IPipeEventInvoker {
+        void invoke(PipeEvent event);
+    }
+
+    /** @return A factory {@link MethodHandle} that takes the instance to bind to (if the method is not static) and
+     *         returns an {@link IPipeEventInvoker}, or null if the method could not be compiled. */
+    @Nullable
+    static MethodHandle createInvokerFactory(Method method, Class<?> eventClass) {
+        Class<?> owner = method.getDeclaringClass();
+        if (!Modifier.isPublic(owner.getModifiers()) || !Modifier.isPublic(method.getModifiers())) {
+            return null;
+        }
+        boolean isStatic = Modifier.isStatic(method.getModifiers());
+        try {
+            MethodHandle impl = LOOKUP.unreflect(method);
+            MethodType factoryType = isStatic ? MethodType.methodType(IPipeEventInvoker.class)
+                : MethodType.methodType(IPipeEventInvoker.class, owner);
+            MethodType instantiatedType = MethodType.methodType(void.class, eventClass);
+            CallSite site = LambdaMetafactory.metafactory(LOOKUP, "invoke", factoryType, SAM_TYPE, impl,
+                instantiatedType);
+            return site.getTarget();
+        } catch (Throwable t) {
+            if (DEBUG) {
+                BCLog.logger.warn("[transport.pipe.event_invokers] Unable to generate an invoker for " + method
+                    + ", falling back to reflection", t);
+            }
+            return null;
+        }
+    }
+
+    /** @param factory The factory returned by {@link #createInvokerFactory(Method, Class)}.
+     * @param target The object to bind to, or null if the method is static.
+     * @return The bound invoker, or null if it could not be created. */
+    @Nullable
+    static IPipeEventInvoker bind(MethodHandle factory, @Nullable Object target) {
+        try {
+            if (target == null) {
+                return (IPipeEventInvoker) factory.invoke();
+            }
+            return (IPipeEventInvoker) factory.invoke(target);
+        } catch (Throwable t) {
+            if (DEBUG) {
+                BCLog.logger.warn("[transport.pipe.event_invokers] Unable to bind an invoker to " + target, t);
+            }
+            return null;
+        }
+    }
+}
@@ -31,9 +31,10 @@ import buildcraft.lib.misc.EntityUtil;
 import buildcraft.lib.misc.NBTUtilBC;
 
 import buildcraft.transport.BCTransportStatements;
+import buildcraft.transport.pipe.flow.ICacheableItemRouting;
 import buildcraft.transport.statements.ActionPipeColor;
 
-public class PipeBehaviourDaizuli extends PipeBehaviourDirectional {
+public class PipeBehaviourDaizuli extends PipeBehaviourDirectional implements ICacheableItemRouting {
     private EnumDyeColor colour = EnumDyeColor.WHITE;
 
     public PipeBehaviourDaizuli(IPipe pipe) {
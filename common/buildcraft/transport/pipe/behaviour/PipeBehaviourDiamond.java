@@ -24,6 +24,7 @@ import buildcraft.lib.misc.AdvancementUtil;
 import buildcraft.lib.tile.item.ItemHandlerSimple;
 
 import buildcraft.transport.BCTransportGuis;
+import buildcraft.transport.pipe.flow.PipeFlowItems;
 
 public abstract class PipeBehaviourDiamond extends PipeBehaviour {
 
@@ -53,6 +54,9 @@ public abstract class PipeBehaviourDiamond extends PipeBehaviour {
         if (pipe.getHolder().getPipeWorld().isRemote) {
             return;
         }
+        if (pipe.getFlow() instanceof PipeFlowItems) {
+            ((PipeFlowItems) pipe.getFlow()).invalidateRoutingCache();
+        }
         int baseIndex = FILTERS_PER_SIDE * (slot / FILTERS_PER_SIDE);
         int count = 0;
         for (int i = 0; i < FILTERS_PER_SIDE; i++) {
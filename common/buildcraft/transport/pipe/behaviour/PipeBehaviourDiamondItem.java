@@ -22,7 +22,9 @@ import buildcraft.api.transport.pipe.PipeEventItem.ItemEntry;
 import buildcraft.lib.misc.MathUtil;
 import buildcraft.lib.misc.StackUtil;
 
-public class PipeBehaviourDiamondItem extends PipeBehaviourDiamond {
+import buildcraft.transport.pipe.flow.ICacheableItemRouting;
+
+public class PipeBehaviourDiamondItem extends PipeBehaviourDiamond implements ICacheableItemRouting {
 
     public PipeBehaviourDiamondItem(IPipe pipe) {
         super(pipe);
@@ -32,9 +32,10 @@ import buildcraft.lib.misc.EntityUtil;
 import buildcraft.lib.misc.NBTUtilBC;
 
 import buildcraft.transport.BCTransportStatements;
+import buildcraft.transport.pipe.flow.ICacheableItemRouting;
 import buildcraft.transport.statements.ActionPipeColor;
 
-public class PipeBehaviourLapis extends PipeBehaviour {
+public class PipeBehaviourLapis extends PipeBehaviour implements ICacheableItemRouting {
     private EnumDyeColor colour = EnumDyeColor.WHITE;
 
     public PipeBehaviourLapis(IPipe pipe) {
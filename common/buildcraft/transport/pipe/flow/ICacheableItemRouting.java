@@ -0,0 +1,16 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.transport.pipe.flow;
+
+/** Marker interface for pipe behaviours whose item routing (the result of
+ * {@link buildcraft.api.transport.pipe.PipeEventItem.SideCheck}) only depends on the item, its colour, where it came
+ * from, and the state of the pipe. Item pipes with a behaviour that implements this will cache their routing decisions
+ * in an {@link ItemRoutingCache}.
+ * <p>
+ * Implementations must call {@link PipeFlowItems#invalidateRoutingCache()} (or schedule a behaviour network update)
+ * whenever a setting that affects routing changes. */
+public interface ICacheableItemRouting {}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.transport.pipe.flow;
+
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import com.google.common.collect.ImmutableList;
+
+import net.minecraft.item.EnumDyeColor;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.util.EnumFacing;
+
+/** Caches the result of {@link buildcraft.api.transport.pipe.PipeEventItem.SideCheck} for a single pipe, keyed on the
+ * item (ignoring the count), the colour of the item, the side it came from and the sides that it has already tried.
+ * Only used by pipes whose behaviour implements {@link ICacheableItemRouting}.
+ * <p>
+ * This must be {@link #invalidate() invalidated} whenever anything that could change the result changes: connections,
+ * neighbours, pluggables or the settings of the behaviour. */
+public final class ItemRoutingCache {
+    private static final int MAX_ENTRIES = 64;
+
+    private final Map<Key, List<EnumSet<EnumFacing>>> entries = new LinkedHashMap<Key, List<EnumSet<EnumFacing>>>(16,
+        0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, List<EnumSet<EnumFacing>>> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    /** Reused for every lookup, so that a hit doesn't need to allocate or copy the stack. */
+    private final Key probe = new Key();
+
+    public long hits, misses, invalidations;
+
+    @Nullable
+    public List<EnumSet<EnumFacing>> get(ItemStack stack, @Nullable EnumDyeColor colour, EnumFacing from,
+        EnumSet<EnumFacing> tried) {
+        probe.set(stack, colour, from, tried);
+        List<EnumSet<EnumFacing>> order = entries.get(probe);
+        if (order == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return order;
+    }
+
+    public void put(ItemStack stack, @Nullable EnumDyeColor colour, EnumFacing from, EnumSet<EnumFacing> tried,
+        List<EnumSet<EnumFacing>> order) {
+        ImmutableList.Builder<EnumSet<EnumFacing>> copy = ImmutableList.builder();
+        for (EnumSet<EnumFacing> set : order) {
+            copy.add(EnumSet.copyOf(set));
+        }
+        Key key = new Key();
+        key.set(stack.copy(), colour, from, tried);
+        entries.put(key, copy.build());
+    }
+
+    public void invalidate() {
+        if (!entries.isEmpty()) {
+            entries.clear();
+            invalidations++;
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public void getDebugInfo(List<String> left) {
+        long total = hits + misses;
+        String rate = total == 0 ? "n/a" : (hits * 100 / total) + "%";
+        left.add("Routing cache: " + size() + " entries, " + hits + " hits, " + misses + " misses (" + rate + "), "
+            + invalidations + " invalidations");
+    }
+
+    static final class Key {
+        Item item;
+        int meta;
+        @Nullable
+        NBTTagCompound tag;
+        @Nullable
+        EnumDyeColor colour;
+        EnumFacing from;
+        int triedMask;
+        int hash;
+
+        void set(ItemStack stack, @Nullable EnumDyeColor colour, EnumFacing from, EnumSet<EnumFacing> tried) {
+            this.item = stack.getItem();
+            this.meta = stack.getMetadata();
+            this.tag = stack.getTagCompound();
+            this.colour = colour;
+            this.from = from;
+            int mask = 0;
+            for (EnumFacing face : tried) {
+                mask |= 1 << face.ordinal();
+            }
+            this.triedMask = mask;
+            int h = System.identityHashCode(item);
+            h = h * 31 + meta;
+            h = h * 31 + (tag == null ? 0 : tag.hashCode());
+            h = h * 31 + (colour == null ? 16 : colour.ordinal());
+            h = h * 31 + (from == null ? 6 : from.ordinal());
+            this.hash = h * 64 + mask;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) return true;
+            if (!(obj instanceof Key)) return false;
+            Key other = (Key) obj;
+            if (hash != other.hash) return false;
+            if (item != other.item || meta != other.meta) return false;
+            if (colour != other.colour || from != other.from || triedMask != other.triedMask) return false;
+            return tag == null ? other.tag == null : tag.equals(other.tag);
+        }
+    }
+}
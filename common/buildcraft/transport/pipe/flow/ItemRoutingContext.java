@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.transport.pipe.flow;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+
+import javax.annotation.Nullable;
+
+import net.minecraft.util.EnumFacing;
+
+import buildcraft.api.core.BCDebugging;
+import buildcraft.api.transport.pipe.IPipe;
+
+/** Per-thread scratch state used by {@link PipeFlowItems} when an item reaches the center of a pipe. This lets the
+ * common case (a pipe where nothing handles any of the routing events) pick a destination without allocating
+ * anything. Pipes with handlers for {@link buildcraft.api.transport.pipe.PipeEventItem.SideCheck} still create that
+ * event, unless the result is already in their {@link ItemRoutingCache}.
+ * <p>
+ * Contexts must be {@link #release() released} once routing has finished, and nothing (including event handlers) is
+ * allowed to keep a reference to an order returned from this afterwards. When debugging is enabled the context is
+ * cleared on release so that anything that kept a reference will see an obviously broken (empty) list. */
+public final class ItemRoutingContext {
+    public static final boolean DEBUG = BCDebugging.shouldDebugLog("transport.pipe.item_routing");
+
+    private static final ThreadLocal<ItemRoutingContext> CONTEXTS = ThreadLocal.withInitial(ItemRoutingContext::new);
+
+    /** A reusable order that contains {@link #orderSet} (unless it's empty). */
+    private final List<EnumSet<EnumFacing>> order = new ArrayList<>(1);
+    private final EnumSet<EnumFacing> orderSet = EnumSet.noneOf(EnumFacing.class);
+    private final EnumFacing[] candidates = new EnumFacing[6];
+
+    private boolean inUse;
+
+    private ItemRoutingContext() {}
+
+    /** @return An unused context. Usually this is the same (thread-local) context every time, however if the current
+     *         thread is already routing an item (for example if an event handler ends up routing another item) then a
+     *         fresh context is returned instead. */
+    public static ItemRoutingContext acquire() {
+        ItemRoutingContext ctx = CONTEXTS.get();
+        if (ctx.inUse) {
+            if (DEBUG) {
+                new Throwable("[transport.pipe.item_routing] Re-entrant item routing, allocating a new context")
+                    .printStackTrace();
+            }
+            ctx = new ItemRoutingContext();
+        }
+        ctx.inUse = true;
+        return ctx;
+    }
+
+    public void release() {
+        if (!inUse) {
+            throw new IllegalStateException("Released a routing context that wasn't in use!");
+        }
+        inUse = false;
+        if (DEBUG) {
+            order.clear();
+            orderSet.clear();
+        }
+    }
+
+    /** @return An order (that only contains the given face) for an item to bounce back along. */
+    public List<EnumSet<EnumFacing>> setBounce(EnumFacing from) {
+        checkInUse();
+        orderSet.clear();
+        orderSet.add(from);
+        return setOrder();
+    }
+
+    /** @return The order that {@link buildcraft.api.transport.pipe.PipeEventItem.SideCheck#getOrder()} would return
+     *         if nothing handled the event: a single set of every connected face that the item didn't come from and
+     *         hasn't tried yet, or an empty list if there are none. */
+    public List<EnumSet<EnumFacing>> setAllowed(IPipe pipe, EnumFacing from, EnumSet<EnumFacing> tried) {
+        checkInUse();
+        orderSet.clear();
+        for (EnumFacing face : EnumFacing.VALUES) {
+            if (face != from && !tried.contains(face) && pipe.isConnected(face)) {
+                orderSet.add(face);
+            }
+        }
+        return setOrder();
+    }
+
+    private List<EnumSet<EnumFacing>> setOrder() {
+        order.clear();
+        if (!orderSet.isEmpty()) {
+            order.add(orderSet);
+        }
+        return order;
+    }
+
+    /** Picks a random face from the first non-empty set in the given order. This is equivalent to taking the first
+     * element of {@link buildcraft.api.transport.pipe.PipeEventItem.FindDest#generateRandomOrder()}, but without
+     * creating the rest of the list.
+     *
+     * @return The chosen face, or null if every set was empty. */
+    @Nullable
+    public EnumFacing pickRandomDestination(List<EnumSet<EnumFacing>> order, Random rand) {
+        checkInUse();
+        for (int i = 0; i < order.size(); i++) {
+            EnumSet<EnumFacing> set = order.get(i);
+            if (set.isEmpty()) {
+                continue;
+            }
+            int count = 0;
+            for (EnumFacing face : EnumFacing.VALUES) {
+                if (set.contains(face)) {
+                    candidates[count++] = face;
+                }
+            }
+            return candidates[count == 1 ? 0 : rand.nextInt(count)];
+        }
+        return null;
+    }
+
+    private void checkInUse() {
+        if (DEBUG && !inUse) {
+            throw new IllegalStateException("Used a routing context after it was released!");
+        }
+    }
+}
@@ -36,12 +36,15 @@ import net.minecraftforge.fml.relauncher.SideOnly;
 
 import buildcraft.api.core.IStackFilter;
 import buildcraft.api.inventory.IItemTransactor;
+import buildcraft.api.tiles.IDebuggable;
 import buildcraft.api.transport.IInjectable;
 import buildcraft.api.transport.pipe.IFlowItems;
 import buildcraft.api.transport.pipe.IPipe;
 import buildcraft.api.transport.pipe.IPipe.ConnectedType;
 import buildcraft.api.transport.pipe.IPipeHolder;
 import buildcraft.api.transport.pipe.PipeApi;
+import buildcraft.api.transport.pipe.PipeEvent;
+import buildcraft.api.transport.pipe.PipeEventConnectionChange;
 import buildcraft.api.transport.pipe.PipeEventHandler;
 import buildcraft.api.transport.pipe.PipeEventItem;
 import buildcraft.api.transport.pipe.PipeEventStatement;
@@ -59,14 +62,19 @@ import buildcraft.lib.net.cache.BuildCraftObjectCaches;
 import buildcraft.transport.BCTransportStatements;
 import buildcraft.transport.net.MessageMultiPipeItem.TravellingItemData;
 import buildcraft.transport.net.PipeItemMessageQueue;
+import buildcraft.transport.pipe.IPipeEventListeners;
 import buildcraft.transport.pipe.behaviour.PipeBehaviourStone;
 
-public final class PipeFlowItems extends PipeFlow implements IFlowItems {
+public final class PipeFlowItems extends PipeFlow implements IFlowItems, IDebuggable {
     private static final double EXTRACT_SPEED = 0.08;
     public static final int NET_CREATE_ITEM = 2;
 
     private final DelayedList<TravellingItem> items = new DelayedList<>();
 
+    /** Only created if the behaviour implements {@link ICacheableItemRouting}. */
+    @Nullable
+    private ItemRoutingCache routingCache;
+
     public PipeFlowItems(IPipe pipe) {
         super(pipe);
     }
@@ -136,9 +144,10 @@ public final class PipeFlowItems extends PipeFlow implements IFlowItems {
         item.side = data.side;
         item.colour = data.colour;
         item.timeToDest = data.timeToDest;
-        item.tickStarted = pipe.getHolder().getPipeWorld().getTotalWorldTime() + 1;
+        // Items that were held back by the server have already travelled part of the way
+        item.tickStarted = pipe.getHolder().getPipeWorld().getTotalWorldTime() + 1 - data.timeElapsed;
         item.tickFinished = item.tickStarted + item.timeToDest;
-        items.add(item.timeToDest + 1, item);
+        items.add(item.timeToDest - data.timeElapsed + 1, item);
     }
 
     void sendItemDataToClient(TravellingItem item) {
@@ -304,46 +313,99 @@ public final class PipeFlowItems extends PipeFlow implements IFlowItems {
                 onItemReachEnd(item);
             }
         }
+        items.recycle(toTick);
     }
 
     private void onItemReachCenter(TravellingItem item) {
+        ItemRoutingContext ctx = ItemRoutingContext.acquire();
+        try {
+            onItemReachCenter(item, ctx);
+        } finally {
+            ctx.release();
+        }
+    }
+
+    /** Routes an item that has reached the center of this pipe. Events that nothing is listening to are skipped
+     * entirely (rather than being created and fired), so routing an item through a pipe without any item event
+     * handlers allocates nothing. Events that do have handlers are still created for every item, apart from
+     * {@link PipeEventItem.SideCheck} when its result is already in the {@link ItemRoutingCache}. */
+    private void onItemReachCenter(TravellingItem item, ItemRoutingContext ctx) {
         IPipeHolder holder = pipe.getHolder();
-        PipeEventItem.ReachCenter reachCenter = new PipeEventItem.ReachCenter(
-            holder, this, item.colour, item.stack, item.side
-        );
-        holder.fireEvent(reachCenter);
-        if (reachCenter.getStack().isEmpty()) {
+        EnumDyeColor colour = item.colour;
+        ItemStack stack = item.stack;
+        EnumFacing from = item.side;
+        if (hasListeners(holder, PipeEventItem.ReachCenter.class)) {
+            PipeEventItem.ReachCenter reachCenter = new PipeEventItem.ReachCenter(holder, this, colour, stack, from);
+            holder.fireEvent(reachCenter);
+            if (reachCenter.getStack().isEmpty()) {
+                return;
+            }
+            colour = reachCenter.colour;
+            stack = reachCenter.getStack();
+        } else if (stack.isEmpty()) {
             return;
         }
 
-        PipeEventItem.SideCheck sideCheck = new PipeEventItem.SideCheck(
-            holder, this, reachCenter.colour, reachCenter.from, reachCenter.getStack()
-        );
-        sideCheck.disallow(reachCenter.from);
-        for (EnumFacing face : EnumFacing.VALUES) {
-            if (item.tried.contains(face) || !pipe.isConnected(face)) {
-                sideCheck.disallow(face);
+        List<EnumSet<EnumFacing>> order;
+        if (!hasListeners(holder, PipeEventItem.SideCheck.class)) {
+            // Nothing can disallow or order any of the sides, so they are all equally good
+            order = ctx.setAllowed(pipe, from, item.tried);
+        } else {
+            ItemRoutingCache cache = getRoutingCache();
+            order = cache == null ? null : cache.get(stack, colour, from, item.tried);
+            if (order == null) {
+                PipeEventItem.SideCheck sideCheck = new PipeEventItem.SideCheck(holder, this, colour, from, stack);
+                sideCheck.disallow(from);
+                for (EnumFacing face : EnumFacing.VALUES) {
+                    if (item.tried.contains(face) || !pipe.isConnected(face)) {
+                        sideCheck.disallow(face);
+                    }
+                }
+                holder.fireEvent(sideCheck);
+                order = sideCheck.getOrder();
+                if (cache != null) {
+                    cache.put(stack, colour, from, item.tried, order);
+                }
             }
         }
-        holder.fireEvent(sideCheck);
-
-        List<EnumSet<EnumFacing>> order = sideCheck.getOrder();
         if (order.isEmpty()) {
-            PipeEventItem.TryBounce tryBounce = new PipeEventItem.TryBounce(
-                holder, this, reachCenter.colour, reachCenter.from, reachCenter.getStack()
-            );
-            holder.fireEvent(tryBounce);
-            if (tryBounce.canBounce) {
-                order = ImmutableList.of(EnumSet.of(reachCenter.from));
+            boolean canBounce = false;
+            if (hasListeners(holder, PipeEventItem.TryBounce.class)) {
+                PipeEventItem.TryBounce tryBounce = new PipeEventItem.TryBounce(holder, this, colour, from, stack);
+                holder.fireEvent(tryBounce);
+                canBounce = tryBounce.canBounce;
+            }
+            if (canBounce) {
+                order = ctx.setBounce(from);
             } else {
                 dropItem(item.stack, null, item.side.getOpposite(), item.speed);
                 return;
             }
         }
 
-        PipeEventItem.ItemEntry entry = new PipeEventItem.ItemEntry(
-            reachCenter.colour, reachCenter.getStack(), reachCenter.from
-        );
+        World world = holder.getPipeWorld();
+        long now = world.getTotalWorldTime();
+
+        if (!hasListeners(holder, PipeEventItem.Split.class) && !hasListeners(holder, PipeEventItem.FindDest.class)) {
+            // Fast path: nothing can split the item up or change where it goes, so the single item can be re-used
+            item.stack = stack;
+            item.colour = colour;
+            double newSpeed = computeNewSpeed(holder, item, null);
+            EnumFacing destination = ctx.pickRandomDestination(order, world.rand);
+            if (destination == null) {
+                dropItem(stack, null, item.side.getOpposite(), newSpeed);
+            } else {
+                item.toCenter = false;
+                item.side = destination;
+                item.speed = newSpeed;
+                item.genTimings(now, getPipeLength(destination));
+                items.add(item.timeToDest, item);
+                sendItemDataToClient(item);
+            }
+            return;
+        }
+
+        PipeEventItem.ItemEntry entry = new PipeEventItem.ItemEntry(colour, stack, from);
         PipeEventItem.Split split = new PipeEventItem.Split(holder, this, order, entry);
         holder.fireEvent(split);
         ImmutableList<PipeEventItem.ItemEntry> entries = ImmutableList.copyOf(split.items);
@@ -351,35 +413,11 @@ public final class PipeFlowItems extends PipeFlow implements IFlowItems {
         PipeEventItem.FindDest findDest = new PipeEventItem.FindDest(holder, this, order, entries);
         holder.fireEvent(findDest);
 
-        World world = holder.getPipeWorld();
-        long now = world.getTotalWorldTime();
         for (PipeEventItem.ItemEntry itemEntry : findDest.items) {
             if (itemEntry.stack.isEmpty()) {
                 continue;
             }
-            PipeEventItem.ModifySpeed modifySpeed = new PipeEventItem.ModifySpeed(holder, this, itemEntry, item.speed);
-
-            final double newSpeed;
-
-            if (holder.fireEvent(modifySpeed)) {
-                double target = modifySpeed.targetSpeed;
-                double maxDelta = modifySpeed.maxSpeedChange;
-                if (item.speed < target) {
-                    newSpeed = Math.min(target, item.speed + maxDelta);
-                } else if (item.speed > target) {
-                    newSpeed = Math.max(target, item.speed - maxDelta);
-                } else {
-                    newSpeed = item.speed;
-                }
-            } else {
-                // Nothing affected the speed
-                // so just fallback to a sensible default
-                if (item.speed > 0.03) {
-                    newSpeed = Math.max(0.03, item.speed - PipeBehaviourStone.SPEED_DELTA);
-                } else {
-                    newSpeed = item.speed;
-                }
-            }
+            final double newSpeed = computeNewSpeed(holder, item, itemEntry);
 
             List<EnumFacing> destinations = itemEntry.to;
             if (destinations == null || destinations.size() == 0) {
@@ -401,6 +439,75 @@ public final class PipeFlowItems extends PipeFlow implements IFlowItems {
         }
     }
 
+    /** @param itemEntry The entry to fire {@link PipeEventItem.ModifySpeed} with, or null to create one (only if
+     *            something is actually listening for it). */
+    private double computeNewSpeed(IPipeHolder holder, TravellingItem item,
+        @Nullable PipeEventItem.ItemEntry itemEntry) {
+        if (hasListeners(holder, PipeEventItem.ModifySpeed.class)) {
+            if (itemEntry == null) {
+                itemEntry = new PipeEventItem.ItemEntry(item.colour, item.stack, item.side);
+            }
+            PipeEventItem.ModifySpeed modifySpeed = new PipeEventItem.ModifySpeed(holder, this, itemEntry, item.speed);
+            if (holder.fireEvent(modifySpeed)) {
+                double target = modifySpeed.targetSpeed;
+                double maxDelta = modifySpeed.maxSpeedChange;
+                if (item.speed < target) {
+                    return Math.min(target, item.speed + maxDelta);
+                } else if (item.speed > target) {
+                    return Math.max(target, item.speed - maxDelta);
+                } else {
+                    return item.speed;
+                }
+            }
+        }
+        // Nothing affected the speed
+        // so just fallback to a sensible default
+        if (item.speed > 0.03) {
+            return Math.max(0.03, item.speed - PipeBehaviourStone.SPEED_DELTA);
+        } else {
+            return item.speed;
+        }
+    }
+
+    @Nullable
+    private ItemRoutingCache getRoutingCache() {
+        if (pipe.getBehaviour() instanceof ICacheableItemRouting) {
+            if (routingCache == null) {
+                routingCache = new ItemRoutingCache();
+            }
+            return routingCache;
+        }
+        return null;
+    }
+
+    /** Clears all cached routing decisions. Called whenever the connections, neighbours, pluggables or behaviour of
+     * this pipe change. */
+    public void invalidateRoutingCache() {
+        if (routingCache != null) {
+            routingCache.invalidate();
+        }
+    }
+
+    @Override
+    public void getDebugInfo(List<String> left, List<String> right, EnumFacing side) {
+        int count = 0;
+        for (List<TravellingItem> list : items.getAllElements()) {
+            count += list.size();
+        }
+        left.add("Items = " + count);
+        if (routingCache != null) {
+            routingCache.getDebugInfo(left);
+        }
+    }
+
+    private static boolean hasListeners(IPipeHolder holder, Class<? extends PipeEvent> eventClass) {
+        if (holder instanceof IPipeEventListeners) {
+            return ((IPipeEventListeners) holder).hasEventHandlers(eventClass);
+        }
+        // Unknown holder, so we have to assume that something might be listening
+        return true;
+    }
+
     private void onItemReachEnd(TravellingItem item) {
         IPipeHolder holder = pipe.getHolder();
         PipeEventItem.ReachEnd reachEnd = new PipeEventItem.ReachEnd(holder, this, item.colour, item.stack, item.side);
@@ -622,6 +729,11 @@ public final class PipeFlowItems extends PipeFlow implements IFlowItems {
         sendItemDataToClient(item);
     }
 
+    @PipeEventHandler
+    public void onConnectionChange(PipeEventConnectionChange event) {
+        invalidateRoutingCache();
+    }
+
     @PipeEventHandler
     public static void addTriggers(PipeEventStatement.AddTriggerInternal event) {
         event.triggers.add(BCTransportStatements.TRIGGER_ITEMS_TRAVERSING);
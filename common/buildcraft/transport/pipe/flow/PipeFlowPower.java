@@ -7,7 +7,6 @@
 package buildcraft.transport.pipe.flow;
 
 import java.io.IOException;
-import java.math.BigInteger;
 import java.util.Arrays;
 import java.util.EnumMap;
 import java.util.List;
@@ -49,7 +48,9 @@ import buildcraft.lib.misc.data.AverageInt;
 
 import buildcraft.core.BCCoreConfig;
 
-public class PipeFlowPower extends PipeFlow implements IFlowPower, IDebuggable {
+import buildcraft.transport.BCTransportConfig;
+
+public class PipeFlowPower extends PipeFlow implements IFlowPower, IDebuggable, PowerNetwork.IMember {
     private static final long DEFAULT_MAX_POWER = MjAPI.MJ * 10;
     public static final int NET_POWER_AMOUNTS = 2;
 
@@ -69,6 +70,16 @@ public class PipeFlowPower extends PipeFlow implements IFlowPower, IDebuggable {
     private final SafeTimeTracker tracker = new SafeTimeTracker(BCCoreConfig.networkUpdateRate);
     private long[] transferQuery;
 
+    /** The network that this is a part of, if {@link BCTransportConfig#powerNetworks} is enabled. */
+    private PowerNetwork network;
+    private int networkIndex;
+    /** Power that was received (or handed back by an invalidated network) while this wasn't part of a valid
+     * network. */
+    private long networkPower;
+    /** Set once the chunk that this is in has been unloaded. Unloaded tiles aren't marked as invalid, but they mustn't
+     * be part of a network either. */
+    private boolean unloaded;
+
     public PipeFlowPower(IPipe pipe) {
         super(pipe);
         sections = new EnumMap<>(EnumFacing.class);
@@ -160,12 +171,108 @@ public class PipeFlowPower extends PipeFlow implements IFlowPower, IDebuggable {
                 // 1% resistance
                 powerResistance = MjAPI.MJ / 100;
             }
-            powerLoss = maxPower * powerResistance / MjAPI.MJ;
+            powerLoss = MathUtil.mulDiv(maxPower, powerResistance, MjAPI.MJ);
         } else if (powerResistance < 0) {
-            powerResistance = powerLoss * MjAPI.MJ / maxPower;
+            powerResistance = MathUtil.mulDiv(powerLoss, MjAPI.MJ, maxPower);
+        }
+    }
+
+    // PowerNetwork.IMember
+
+    @Override
+    public void ensureConfigured() {
+        if (maxPower == -1) {
+            reconfigure();
+        }
+    }
+
+    @Override
+    public PipeFlowPower getConnectedMember(EnumFacing face) {
+        IPipe neighbour = pipe.getConnectedPipe(face);
+        if (neighbour != null && neighbour.getFlow() instanceof PipeFlowPower
+            && neighbour.isConnected(face.getOpposite())) {
+            PipeFlowPower flow = (PipeFlowPower) neighbour.getFlow();
+            // Otherwise the next network would be invalidated as soon as it ticks, and then built again with it
+            return flow.isMemberValid() ? flow : null;
+        }
+        return null;
+    }
+
+    @Override
+    public IMjReceiver getConnectedReceiver(EnumFacing face) {
+        if (pipe.getConnectedType(face) != ConnectedType.TILE) {
+            return null;
+        }
+        return pipe.getHolder().getCapabilityFromPipe(face, MjAPI.CAP_RECEIVER);
+    }
+
+    @Override
+    public boolean isReceiver() {
+        return isReceiver;
+    }
+
+    @Override
+    public long getMaxPower() {
+        return maxPower;
+    }
+
+    @Override
+    public long getPowerLoss() {
+        return powerLoss;
+    }
+
+    @Override
+    public long getPowerResistance() {
+        return powerResistance;
+    }
+
+    @Override
+    public boolean isMemberValid() {
+        return !unloaded && !pipe.getHolder().getPipeTile().isInvalid();
+    }
+
+    @Override
+    public PowerNetwork getNetwork() {
+        return network;
+    }
+
+    @Override
+    public void setNetwork(PowerNetwork network, int index) {
+        this.network = network;
+        this.networkIndex = index;
+    }
+
+    @Override
+    public void addNetworkPower(long microJoules) {
+        networkPower += microJoules;
+    }
+
+    @Override
+    public long takeNetworkPower() {
+        long power = networkPower;
+        networkPower = 0;
+        return power;
+    }
+
+    /** Called whenever the connections of this pipe (might) have changed, so that the {@link PowerNetwork} that this
+     * is a part of will be built again. */
+    public void invalidateNetwork() {
+        if (network != null) {
+            network.invalidate();
         }
     }
 
+    /** Called when the chunk that this is in is unloaded, so that the rest of the {@link PowerNetwork} that this is a
+     * part of stops trying to send power through it. */
+    public void onChunkUnload() {
+        unloaded = true;
+        invalidateNetwork();
+    }
+
+    private boolean isNetworkValid() {
+        return network != null && network.isValid();
+    }
+
     @Override
     public long tryExtractPower(long maxExtracted, EnumFacing from) {
         if (!isReceiver) {
@@ -219,6 +326,14 @@ public class PipeFlowPower extends PipeFlow implements IFlowPower, IDebuggable {
             "- power: IN " + arrayToString(s -> s.debugPowerInput) + ", OUT " + arrayToString(s -> s.debugPowerOutput)
         );
         left.add("- power: OFFERED " + arrayToString(s -> s.debugPowerOffered));
+        if (BCTransportConfig.powerNetworks) {
+            if (isNetworkValid()) {
+                left.add("network = " + network.getMemberCount() + " pipes, " + network.getReceiverCount()
+                    + " receivers, buffer " + LocaleUtil.localizeMj(network.getBuffer()));
+            } else {
+                left.add("network = none");
+            }
+        }
     }
 
     private String arrayToString(ToLongFunction<Section> getter) {
@@ -251,6 +366,14 @@ public class PipeFlowPower extends PipeFlow implements IFlowPower, IDebuggable {
             reconfigure();
         }
 
+        if (BCTransportConfig.powerNetworks) {
+            if (!isNetworkValid()) {
+                network = PowerNetwork.build(this);
+            }
+            network.tick(pipe.getHolder().getPipeWorld().getTotalWorldTime());
+            return;
+        }
+
         EnumFlow[] lastFlows = new EnumFlow[6];
         int[] lastDisplayPower = new int[6];
 
@@ -284,9 +407,7 @@ public class PipeFlowPower extends PipeFlow implements IFlowPower, IDebuggable {
                         Section s2 = sections.get(face2);
                         if (s2.powerQuery > 0) {
                             long watts = Math.min(
-                                BigInteger.valueOf(s.internalPower).multiply(BigInteger.valueOf(s2.powerQuery)).divide(
-                                    BigInteger.valueOf(unusedPowerQuery)
-                                ).longValue(), s.internalPower
+                                MathUtil.mulDiv(s.internalPower, s2.powerQuery, unusedPowerQuery), s.internalPower
                             );
                             unusedPowerQuery -= s2.powerQuery;
                             IPipe neighbour = pipe.getConnectedPipe(face2);
@@ -388,6 +509,36 @@ public class PipeFlowPower extends PipeFlow implements IFlowPower, IDebuggable {
         // }
     }
 
+    /** Updates the rendered power of every section from the power that went through them this tick, as worked out by
+     * the {@link PowerNetwork}.
+     * 
+     * @param offset The index of the first section of this pipe in the given arrays. */
+    @Override
+    public void updateDisplay(long[] flows, EnumFlow[] directions, int offset) {
+        boolean didChange = false;
+        for (EnumFacing face : EnumFacing.VALUES) {
+            Section s = sections.get(face);
+            int i = offset + face.ordinal();
+            EnumFlow lastFlow = s.displayFlow;
+            int lastPower = s.displayPower;
+
+            s.debugPowerOutput += directions[i] == EnumFlow.IN ? flows[i] : 0;
+            s.powerAverage.push((int) Math.min(flows[i], Integer.MAX_VALUE));
+            s.powerAverage.tick();
+            double average = s.powerAverage.getAverage();
+            s.displayPower = (int) (Math.sqrt(average / maxPower) * MjAPI.MJ);
+            if (directions[i] != EnumFlow.STATIONARY) {
+                s.displayFlow = directions[i];
+            } else if (average <= 0) {
+                s.displayFlow = EnumFlow.STATIONARY;
+            }
+            didChange |= lastFlow != s.displayFlow || lastPower != s.displayPower;
+        }
+        if (didChange) {
+            sendPayload(NET_POWER_AMOUNTS);
+        }
+    }
+
     private void step() {
         long now = pipe.getHolder().getPipeWorld().getTotalWorldTime();
         if (currentWorldTime != now) {
@@ -413,6 +564,9 @@ public class PipeFlowPower extends PipeFlow implements IFlowPower, IDebuggable {
     }
 
     public long getPowerRequested(@Nullable EnumFacing side) {
+        if (BCTransportConfig.powerNetworks) {
+            return isNetworkValid() ? network.getPowerRequested(maxPower) : 0;
+        }
         long req = 0;
         for (EnumFacing face : EnumFacing.VALUES) {
             if (side == null || face != side) {
@@ -486,7 +640,25 @@ public class PipeFlowPower extends PipeFlow implements IFlowPower, IDebuggable {
 
         @Override
         public long receivePower(long microJoules, boolean simulate) {
-            if (isReceiver) {
+            if (isReceiver && BCTransportConfig.powerNetworks) {
+                if (microJoules <= 0) {
+                    return microJoules;
+                }
+                long accepted;
+                if (isNetworkValid()) {
+                    accepted = network.receivePower(networkIndex * 6 + side.ordinal(), microJoules, simulate);
+                } else {
+                    // Held until the next network is built
+                    accepted = Math.min(microJoules, Math.max(0, maxPower - networkPower));
+                    if (!simulate) {
+                        networkPower += accepted;
+                    }
+                }
+                if (!simulate) {
+                    debugPowerOffered += microJoules;
+                }
+                return microJoules - accepted;
+            } else if (isReceiver) {
                 PipeFlowPower.this.step();
                 if (!simulate) {
                     return this.receivePowerInternal(microJoules);
@@ -0,0 +1,455 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.transport.pipe.flow;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import net.minecraft.util.EnumFacing;
+
+import buildcraft.api.mj.IMjReceiver;
+import buildcraft.api.mj.MjAPI;
+
+import buildcraft.lib.misc.MathUtil;
+
+import buildcraft.transport.BCTransportConfig;
+import buildcraft.transport.BCTransportConfig.PowerLossMode;
+import buildcraft.transport.pipe.flow.PipeFlowPower.EnumFlow;
+
+/** Every kinesis pipe that is connected together, used instead of moving power one pipe at a time when
+ * {@link BCTransportConfig#powerNetworks} is enabled.
+ * <p>
+ * The network is built once (by the first member to tick after it was invalidated) and then solved once per tick:
+ * power that was received by any member goes into a single buffer, and is split between every receiver connected to
+ * the network in proportion to how much they requested. Loss and resistance are worked out when the network is built,
+ * along the shortest path from the nearest pipe that accepts power to each receiver, so solving it doesn't need to
+ * look at the pipes in between (except to update the values used for rendering).
+ * <p>
+ * No section carries more than the maximum power of its pipe in a single tick. Receivers whose paths share an
+ * overloaded section have their share scaled down (in proportion to how much they requested) until it fits. This is a
+ * single pass, so where several overloaded sections overlap some capacity can be left unused for that tick.
+ * <p>
+ * Any change to the connections of a member invalidates the whole network (see
+ * {@link PipeFlowPower#invalidateNetwork()}) and any buffered power is handed back to the members, to be collected by
+ * the next network that gets built. */
+public class PowerNetwork {
+    /** A kinesis pipe, as seen by the network that it is a member of. */
+    public interface IMember {
+        /** Works out the maximum power, loss and resistance of this, if they haven't been already. */
+        void ensureConfigured();
+
+        /** @return The member connected to the given side of this, or null if there isn't one. */
+        @Nullable
+        IMember getConnectedMember(EnumFacing face);
+
+        /** @return The receiver connected to the given side of this (that isn't a member), or null if there isn't
+         *         one. */
+        @Nullable
+        IMjReceiver getConnectedReceiver(EnumFacing face);
+
+        /** @return True if this accepts power from engines (and so is a source for the network). */
+        boolean isReceiver();
+
+        long getMaxPower();
+
+        long getPowerLoss();
+
+        long getPowerResistance();
+
+        /** @return False once this has been removed from the world. */
+        boolean isMemberValid();
+
+        @Nullable
+        PowerNetwork getNetwork();
+
+        void setNetwork(PowerNetwork network, int index);
+
+        /** Adds to the power that this holds while it isn't part of a valid network. */
+        void addNetworkPower(long microJoules);
+
+        /** @return The power that this held while it wasn't part of a valid network, which is now reset to 0. */
+        long takeNetworkPower();
+
+        /** Called once per tick with the power that went through every section of this.
+         *
+         * @param offset The index of the first section of this in the given arrays. */
+        void updateDisplay(long[] flows, EnumFlow[] directions, int offset);
+    }
+
+    final IMember[] members;
+    private final Endpoint[] endpoints;
+    /** The power that went through each section this tick, indexed by (member index * 6 + face). */
+    private final long[] sectionFlows;
+    private final EnumFlow[] sectionDirections;
+    /** The power that each section would carry if every endpoint got what it wants. Only used while solving. */
+    private final long[] sectionLoads;
+    /** The amount of input power needed by each endpoint this tick. Only used while solving. */
+    private final long[] endpointInputs;
+
+    private long buffer, pendingInput, requested;
+    private long lastTick = -1;
+    private boolean valid = true;
+
+    private PowerNetwork(List<IMember> members, List<Endpoint> endpoints) {
+        this.members = members.toArray(new IMember[members.size()]);
+        this.endpoints = endpoints.toArray(new Endpoint[endpoints.size()]);
+        this.sectionFlows = new long[this.members.length * 6];
+        this.sectionDirections = new EnumFlow[sectionFlows.length];
+        this.sectionLoads = new long[sectionFlows.length];
+        this.endpointInputs = new long[this.endpoints.length];
+        Arrays.fill(sectionDirections, EnumFlow.STATIONARY);
+    }
+
+    public boolean isValid() {
+        return valid;
+    }
+
+    public int getMemberCount() {
+        return members.length;
+    }
+
+    public int getReceiverCount() {
+        return endpoints.length;
+    }
+
+    public long getBuffer() {
+        return buffer + pendingInput;
+    }
+
+    /** Stops this network from being used, and hands any buffered power back to the members so that the next network
+     * doesn't lose it. */
+    public void invalidate() {
+        if (!valid) {
+            return;
+        }
+        valid = false;
+        long total = buffer + pendingInput;
+        buffer = pendingInput = 0;
+        long each = total / members.length;
+        for (IMember member : members) {
+            member.addNetworkPower(each);
+        }
+        members[0].addNetworkPower(total - each * members.length);
+    }
+
+    // ##################
+    //
+    // Building
+    //
+    // ##################
+
+    /** Finds every member connected to the given one, and makes them all use the returned network. */
+    public static PowerNetwork build(IMember start) {
+        Map<IMember, Integer> indexes = new IdentityHashMap<>();
+        List<IMember> members = new ArrayList<>();
+        Deque<IMember> open = new ArrayDeque<>();
+        indexes.put(start, 0);
+        members.add(start);
+        open.add(start);
+        while (!open.isEmpty()) {
+            IMember member = open.poll();
+            member.ensureConfigured();
+            for (EnumFacing face : EnumFacing.VALUES) {
+                IMember next = member.getConnectedMember(face);
+                if (next != null && !indexes.containsKey(next)) {
+                    indexes.put(next, members.size());
+                    members.add(next);
+                    open.add(next);
+                }
+            }
+        }
+
+        int count = members.size();
+        int[] adjacency = new int[count * 6];
+        Arrays.fill(adjacency, -1);
+        for (int i = 0; i < count; i++) {
+            for (EnumFacing face : EnumFacing.VALUES) {
+                IMember next = members.get(i).getConnectedMember(face);
+                if (next != null) {
+                    adjacency[i * 6 + face.ordinal()] = indexes.get(next);
+                }
+            }
+        }
+
+        // Multi-source breadth first search from every pipe that accepts power
+        int[] parents = new int[count];
+        int[] parentFaces = new int[count];
+        Arrays.fill(parents, -2);
+        int[] queue = new int[count];
+        int head = 0, tail = 0;
+        for (int i = 0; i < count; i++) {
+            if (members.get(i).isReceiver()) {
+                parents[i] = -1;
+                queue[tail++] = i;
+            }
+        }
+        while (head < tail) {
+            int current = queue[head++];
+            for (int face = 0; face < 6; face++) {
+                int next = adjacency[current * 6 + face];
+                if (next >= 0 && parents[next] == -2) {
+                    parents[next] = current;
+                    // The face of the next pipe that points back towards the source
+                    parentFaces[next] = EnumFacing.VALUES[face].getOpposite().ordinal();
+                    queue[tail++] = next;
+                }
+            }
+        }
+
+        List<Endpoint> endpoints = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            if (parents[i] == -2) {
+                // Can't be reached from any source
+                continue;
+            }
+            for (EnumFacing face : EnumFacing.VALUES) {
+                IMjReceiver receiver = members.get(i).getConnectedReceiver(face);
+                if (receiver != null) {
+                    endpoints.add(createEndpoint(members, parents, parentFaces, i, face, receiver));
+                }
+            }
+        }
+
+        PowerNetwork network = new PowerNetwork(members, endpoints);
+        for (int i = 0; i < count; i++) {
+            IMember member = members.get(i);
+            PowerNetwork old = member.getNetwork();
+            if (old != null && old.lastTick > network.lastTick) {
+                // Don't let the new network run again in a tick that the old one already ran in
+                network.lastTick = old.lastTick;
+            }
+            member.setNetwork(network, i);
+            network.buffer += member.takeNetworkPower();
+        }
+        return network;
+    }
+
+    private static Endpoint createEndpoint(List<IMember> members, int[] parents, int[] parentFaces, int member,
+        EnumFacing face, IMjReceiver receiver) {
+        int length = 0;
+        for (int i = member; i >= 0; i = parents[i]) {
+            length++;
+        }
+        // Pairs of (entry section, exit section) from the source to the receiver
+        int[] path = new int[length * 2];
+        long efficiency = MjAPI.MJ;
+        long loss = 0;
+        long maxThroughput = Long.MAX_VALUE;
+        int exitFace = face.ordinal();
+        int p = path.length;
+        for (int i = member; i >= 0; i = parents[i]) {
+            IMember flow = members.get(i);
+            int entry = parents[i] < 0 ? -1 : i * 6 + parentFaces[i];
+            path[--p] = i * 6 + exitFace;
+            path[--p] = entry;
+            efficiency = MathUtil.mulDiv(efficiency, MjAPI.MJ - flow.getPowerResistance(), MjAPI.MJ);
+            loss += flow.getPowerLoss();
+            maxThroughput = Math.min(maxThroughput, flow.getMaxPower());
+            if (parents[i] >= 0) {
+                // The face of the parent that points at this pipe
+                exitFace = EnumFacing.VALUES[parentFaces[i]].getOpposite().ordinal();
+            }
+        }
+        return new Endpoint(members.get(member), face, receiver, path, Math.max(efficiency, 1), loss, maxThroughput);
+    }
+
+    // ##################
+    //
+    // Solving
+    //
+    // ##################
+
+    /** Adds power to the network, from outside of it. This only accepts as much as the network still needs (see
+     * {@link #getPowerRequested(long)}), and as much as the given section can still carry this tick.
+     *
+     * @param section The index of the section that the power came in through: (member index * 6 + face).
+     * @return The power that was (or would be, if simulating) accepted. */
+    public long receivePower(int section, long microJoules, boolean simulate) {
+        long capacity = members[section / 6].getMaxPower() - sectionFlows[section];
+        long accepted = Math.min(microJoules, getPowerRequested(capacity));
+        if (accepted <= 0 || simulate) {
+            return Math.max(0, accepted);
+        }
+        pendingInput += accepted;
+        sectionFlows[section] += accepted;
+        sectionDirections[section] = EnumFlow.OUT;
+        return accepted;
+    }
+
+    /** @return The power that the network still needs to satisfy every receiver, limited to what a single pipe can
+     *         accept. */
+    public long getPowerRequested(long maxPower) {
+        return Math.max(0, Math.min(requested - buffer - pendingInput, maxPower));
+    }
+
+    /** Solves the network for the given tick, unless it has already been solved for it. */
+    public void tick(long now) {
+        if (lastTick == now) {
+            return;
+        }
+        lastTick = now;
+        for (IMember member : members) {
+            if (!member.isMemberValid()) {
+                invalidate();
+                return;
+            }
+        }
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.member.getConnectedReceiver(endpoint.face) != endpoint.receiver) {
+                invalidate();
+                return;
+            }
+        }
+        buffer += pendingInput;
+        pendingInput = 0;
+
+        for (int i = 0; i < endpoints.length; i++) {
+            Endpoint endpoint = endpoints[i];
+            long demand = 0;
+            if (endpoint.receiver.canReceive()) {
+                demand = Math.min(endpoint.receiver.getPowerRequested(), endpoint.maxThroughput);
+            }
+            endpointInputs[i] = demand > 0 ? endpoint.getInputFor(demand) : 0;
+        }
+        limitToCapacity();
+        long totalInput = 0;
+        for (long input : endpointInputs) {
+            totalInput += input;
+        }
+        requested = totalInput;
+
+        if (totalInput > 0 && buffer > 0) {
+            long available = Math.min(buffer, totalInput);
+            for (int i = 0; i < endpoints.length; i++) {
+                long input = endpointInputs[i];
+                if (input <= 0) {
+                    continue;
+                }
+                if (available < totalInput) {
+                    input = MathUtil.mulDiv(input, available, totalInput);
+                }
+                Endpoint endpoint = endpoints[i];
+                long sent = endpoint.getOutputFor(input);
+                if (sent <= 0) {
+                    continue;
+                }
+                long leftover = endpoint.receiver.receivePower(sent, false);
+                long used = leftover <= 0 ? input : MathUtil.mulDiv(input, sent - leftover, sent);
+                if (used <= 0) {
+                    continue;
+                }
+                buffer -= used;
+                int[] path = endpoint.path;
+                for (int p = 0; p < path.length; p += 2) {
+                    if (path[p] >= 0) {
+                        sectionFlows[path[p]] += used;
+                        sectionDirections[path[p]] = EnumFlow.OUT;
+                    }
+                    sectionFlows[path[p + 1]] += used;
+                    sectionDirections[path[p + 1]] = EnumFlow.IN;
+                }
+            }
+        }
+
+        for (int i = 0; i < members.length; i++) {
+            members[i].updateDisplay(sectionFlows, sectionDirections, i * 6);
+        }
+        Arrays.fill(sectionFlows, 0);
+        Arrays.fill(sectionDirections, EnumFlow.STATIONARY);
+    }
+
+    /** Scales down the input of every endpoint whose path goes through a section that would otherwise carry more than
+     * the maximum power of its pipe. */
+    private void limitToCapacity() {
+        Arrays.fill(sectionLoads, 0);
+        for (int i = 0; i < endpoints.length; i++) {
+            long input = endpointInputs[i];
+            if (input <= 0) {
+                continue;
+            }
+            for (int section : endpoints[i].path) {
+                if (section >= 0) {
+                    sectionLoads[section] += input;
+                }
+            }
+        }
+        for (int i = 0; i < endpoints.length; i++) {
+            long input = endpointInputs[i];
+            if (input <= 0) {
+                continue;
+            }
+            long limited = input;
+            for (int section : endpoints[i].path) {
+                if (section < 0) {
+                    continue;
+                }
+                long load = sectionLoads[section];
+                long capacity = members[section / 6].getMaxPower();
+                if (load > capacity) {
+                    limited = Math.min(limited, MathUtil.mulDiv(input, capacity, load));
+                }
+            }
+            endpointInputs[i] = limited;
+        }
+    }
+
+    static final class Endpoint {
+        /** The member that the receiver is connected to, and the side of it that the receiver is on. */
+        final IMember member;
+        final EnumFacing face;
+        final IMjReceiver receiver;
+        final int[] path;
+        /** The fraction (out of {@link MjAPI#MJ}) of power that reaches the receiver, for
+         * {@link PowerLossMode#PERCENTAGE}. */
+        final long efficiency;
+        /** The power lost along the path, for {@link PowerLossMode#ABSOLUTE}. */
+        final long loss;
+        final long maxThroughput;
+
+        Endpoint(IMember member, EnumFacing face, IMjReceiver receiver, int[] path, long efficiency, long loss,
+            long maxThroughput) {
+            this.member = member;
+            this.face = face;
+            this.receiver = receiver;
+            this.path = path;
+            this.efficiency = efficiency;
+            this.loss = loss;
+            this.maxThroughput = maxThroughput;
+        }
+
+        /** @return The power that needs to be taken from the buffer to deliver the given power to the receiver. */
+        long getInputFor(long output) {
+            switch (BCTransportConfig.lossMode) {
+                case PERCENTAGE:
+                    return MathUtil.mulDiv(output, MjAPI.MJ, efficiency);
+                case ABSOLUTE:
+                    return output + loss;
+                default:
+                    return output;
+            }
+        }
+
+        /** @return The power that reaches the receiver if the given power is taken from the buffer. */
+        long getOutputFor(long input) {
+            switch (BCTransportConfig.lossMode) {
+                case PERCENTAGE:
+                    return MathUtil.mulDiv(input, efficiency, MjAPI.MJ);
+                case ABSOLUTE:
+                    return input - loss;
+                default:
+                    return input;
+            }
+        }
+    }
+}
@@ -38,6 +38,7 @@ import net.minecraftforge.fml.relauncher.Side;
 import buildcraft.api.BCModules;
 import buildcraft.api.core.EnumPipePart;
 import buildcraft.api.core.InvalidInputDataException;
+import buildcraft.api.mj.MjAPI;
 import buildcraft.api.tiles.IDebuggable;
 import buildcraft.api.transport.pipe.IFlowItems;
 import buildcraft.api.transport.pipe.IItemPipe;
@@ -57,12 +58,14 @@ import buildcraft.lib.tile.TileBC_Neptune;
 
 import buildcraft.silicon.plug.FilterEventHandler;
 import buildcraft.transport.BCTransportBlocks;
+import buildcraft.transport.pipe.IPipeEventListeners;
 import buildcraft.transport.pipe.Pipe;
 import buildcraft.transport.pipe.PipeEventBus;
 import buildcraft.transport.pipe.PluggableHolder;
+import buildcraft.transport.pipe.flow.PipeFlowPower;
 import buildcraft.transport.wire.WireManager;
 
-public class TilePipeHolder extends TileBC_Neptune implements IPipeHolder, ITickable, IDebuggable {
+public class TilePipeHolder extends TileBC_Neptune implements IPipeHolder, IPipeEventListeners, ITickable, IDebuggable {
 
     protected static final IdAllocator IDS = TileBC_Neptune.IDS.makeChild("pipe");
 
@@ -221,6 +224,9 @@ public class TilePipeHolder extends TileBC_Neptune implements IPipeHolder, ITick
     public void onChunkUnload() {
         super.onChunkUnload();
         eventBus.fireEvent(new PipeEventTileState.ChunkUnload(this));
+        if (pipe != null && pipe.flow instanceof PipeFlowPower) {
+            ((PipeFlowPower) pipe.flow).onChunkUnload();
+        }
     }
 
     @Override
@@ -479,6 +485,13 @@ public class TilePipeHolder extends TileBC_Neptune implements IPipeHolder, ITick
             }
         }
         if (pipe.isConnected(side)) {
+            // Kinesis pipes ask for these every tick
+            if (capability == MjAPI.CAP_RECEIVER) {
+                return MjAPI.CAP_RECEIVER.cast(getMjNeighbourCache().getReceiver(side));
+            }
+            if (capability == MjAPI.CAP_CONNECTOR) {
+                return MjAPI.CAP_CONNECTOR.cast(getMjNeighbourCache().getConnector(side));
+            }
             TileEntity neighbour = getNeighbourTile(side);
             if (neighbour != null) {
                 return neighbour.getCapability(capability, side.getOpposite());
@@ -495,6 +508,9 @@ public class TilePipeHolder extends TileBC_Neptune implements IPipeHolder, ITick
     @Override
     public void scheduleNetworkUpdate(PipeMessageReceiver... parts) {
         Collections.addAll(networkUpdates, parts);
+        if (pipe != null) {
+            pipe.onNetworkUpdateScheduled(parts);
+        }
     }
 
     @Override
@@ -522,6 +538,11 @@ public class TilePipeHolder extends TileBC_Neptune implements IPipeHolder, ITick
         return eventBus.fireEvent(event);
     }
 
+    @Override
+    public boolean hasEventHandlers(Class<? extends PipeEvent> eventClass) {
+        return eventBus.hasHandlers(eventClass);
+    }
+
     @Override
     public int getRedstoneInput(EnumFacing side) {
         if (side == null) {
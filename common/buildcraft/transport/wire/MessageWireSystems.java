@@ -6,6 +6,7 @@
 
 package buildcraft.transport.wire;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -18,23 +19,32 @@ import net.minecraft.network.PacketBuffer;
 import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
 import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
 
+/** Sends the changes to the wire systems that a player can see. If {@link #clear} is true then the client drops every
+ * system it knows about first, otherwise only the removed and changed systems are updated. */
 public class MessageWireSystems implements IMessage {
+    private boolean clear;
+    private List<Integer> removed = new ArrayList<>();
     private Map<Integer, WireSystem> wireSystems = new HashMap<>();
 
     @SuppressWarnings("unused")
     public MessageWireSystems() {
     }
 
-    public MessageWireSystems(Map<Integer, WireSystem> wireSystems) {
+    public MessageWireSystems(boolean clear, List<Integer> removed, Map<Integer, WireSystem> wireSystems) {
+        this.clear = clear;
+        this.removed = removed;
         this.wireSystems = wireSystems;
     }
 
     @Override
     public void toBytes(ByteBuf buf) {
         PacketBuffer pb = new PacketBuffer(buf);
+        pb.writeBoolean(clear);
+        pb.writeVarInt(removed.size());
+        removed.forEach(pb::writeVarInt);
         pb.writeInt(wireSystems.size());
-        wireSystems.forEach((wiresHashCode, wireSystem) -> {
-            pb.writeInt(wiresHashCode);
+        wireSystems.forEach((id, wireSystem) -> {
+            pb.writeInt(id);
             List<WireSystem.WireElement> elements = wireSystem.elements.stream()
                     .filter(element -> element.type == WireSystem.WireElement.Type.WIRE_PART)
                     .collect(Collectors.toList());
@@ -46,21 +56,30 @@ public class MessageWireSystems implements IMessage {
     @Override
     public void fromBytes(ByteBuf buf) {
         PacketBuffer pb = new PacketBuffer(buf);
+        clear = pb.readBoolean();
+        removed.clear();
+        int removedCount = pb.readVarInt();
+        for (int i = 0; i < removedCount; i++) {
+            removed.add(pb.readVarInt());
+        }
         wireSystems.clear();
         int count = pb.readInt();
         for (int i = 0; i < count; i++) {
             WireSystem wireSystem = new WireSystem();
-            int wiresHashCode = pb.readInt();
+            wireSystem.id = pb.readInt();
             int localCount = pb.readInt();
             for (int j = 0; j < localCount; j++) {
                 wireSystem.elements.add(new WireSystem.WireElement(pb));
             }
-            wireSystems.put(wiresHashCode, wireSystem);
+            wireSystems.put(wireSystem.id, wireSystem);
         }
     }
 
     public static final IMessageHandler<MessageWireSystems, IMessage> HANDLER = (message, ctx) -> {
-        ClientWireSystems.INSTANCE.wireSystems.clear();
+        if (message.clear) {
+            ClientWireSystems.INSTANCE.wireSystems.clear();
+        }
+        message.removed.forEach(ClientWireSystems.INSTANCE.wireSystems::remove);
         ClientWireSystems.INSTANCE.wireSystems.putAll(message.wireSystems);
         return null;
     };
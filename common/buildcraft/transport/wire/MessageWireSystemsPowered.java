@@ -6,15 +6,15 @@
 
 package buildcraft.transport.wire;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.BitSet;
 
 import io.netty.buffer.ByteBuf;
 
-import org.apache.commons.lang3.tuple.Pair;
-
 import net.minecraft.client.Minecraft;
+import net.minecraft.network.PacketBuffer;
 import net.minecraft.tileentity.TileEntity;
+import net.minecraft.world.World;
 
 import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
 import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
@@ -22,70 +22,96 @@ import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
 import buildcraft.api.transport.IWireManager;
 import buildcraft.api.transport.pipe.IPipeHolder;
 
+import it.unimi.dsi.fastutil.ints.Int2BooleanMap;
+
+/** Sends the power state of some wire systems. The ids are sorted and delta-encoded as var ints, followed by a single
+ * bitset of every powered state (so each system costs only a couple of bytes, rather than 5). */
 public class MessageWireSystemsPowered implements IMessage {
-    private Map<Integer, Boolean> hashesPowered = new HashMap<>();
+    private int[] ids = new int[0];
+    private BitSet powered = new BitSet();
 
     @SuppressWarnings("unused")
     public MessageWireSystemsPowered() {
     }
 
-    public MessageWireSystemsPowered(Map<Integer, Boolean> hashesPowered) {
-        this.hashesPowered = hashesPowered;
+    public MessageWireSystemsPowered(Int2BooleanMap idsPowered) {
+        ids = idsPowered.keySet().toIntArray();
+        Arrays.sort(ids);
+        powered = new BitSet(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            powered.set(i, idsPowered.get(ids[i]));
+        }
     }
 
     @Override
     public void toBytes(ByteBuf buf) {
-        buf.writeInt(hashesPowered.size());
-        hashesPowered.forEach((wiresHashCode, powered) -> {
-            buf.writeInt(wiresHashCode);
-            buf.writeBoolean(powered);
-        });
+        PacketBuffer pb = new PacketBuffer(buf);
+        pb.writeVarInt(ids.length);
+        int last = 0;
+        for (int id : ids) {
+            pb.writeVarInt(id - last);
+            last = id;
+        }
+        byte[] bits = powered.toByteArray();
+        pb.writeBytes(bits);
+        // toByteArray() drops trailing zero bytes, so pad it back to the full length
+        pb.writeZero((ids.length + 7) / 8 - bits.length);
     }
 
     @Override
     public void fromBytes(ByteBuf buf) {
-        hashesPowered.clear();
-        int count = buf.readInt();
-        for (int i = 0; i < count; i++) {
-            hashesPowered.put(buf.readInt(), buf.readBoolean());
+        PacketBuffer pb = new PacketBuffer(buf);
+        ids = new int[pb.readVarInt()];
+        int last = 0;
+        for (int i = 0; i < ids.length; i++) {
+            last += pb.readVarInt();
+            ids[i] = last;
         }
+        byte[] bits = new byte[(ids.length + 7) / 8];
+        pb.readBytes(bits);
+        powered = BitSet.valueOf(bits);
+    }
+
+    public int getCount() {
+        return ids.length;
+    }
+
+    public int getId(int index) {
+        return ids[index];
+    }
+
+    public boolean isPowered(int index) {
+        return powered.get(index);
     }
 
     public static final IMessageHandler<MessageWireSystemsPowered, IMessage> HANDLER = (message, ctx) -> {
-        message.hashesPowered.entrySet().stream()
-                .map(hashPowered ->
-                        Pair.of(
-                                ClientWireSystems.INSTANCE.wireSystems.get(hashPowered.getKey()),
-                                hashPowered.getValue()
-                        )
-                )
-                .flatMap(systemPowered ->
-                        systemPowered.getLeft().elements.stream()
-                                .map(element ->
-                                        Pair.of(element, systemPowered.getRight())
-                                )
-                )
-                .forEach(elementPowered -> {
-                    WireSystem.WireElement element = elementPowered.getLeft();
-                    boolean powered = elementPowered.getRight();
-                    if (element.type == WireSystem.WireElement.Type.WIRE_PART) {
-                        TileEntity tile = Minecraft.getMinecraft().world.getTileEntity(element.blockPos);
-                        if (tile instanceof IPipeHolder) {
-                            IPipeHolder holder = (IPipeHolder) tile;
-                            IWireManager iWireManager = holder.getWireManager();
-                            if (iWireManager instanceof WireManager) {
-                                WireManager wireManager = (WireManager) iWireManager;
-                                if (wireManager.getColorOfPart(element.wirePart) != null) {
-                                    if (powered) {
-                                        wireManager.poweredClient.add(element.wirePart);
-                                    } else {
-                                        wireManager.poweredClient.remove(element.wirePart);
-                                    }
-                                }
+        World world = Minecraft.getMinecraft().world;
+        for (int i = 0; i < message.ids.length; i++) {
+            WireSystem system = ClientWireSystems.INSTANCE.wireSystems.get(message.ids[i]);
+            if (system == null) {
+                continue;
+            }
+            boolean powered = message.powered.get(i);
+            for (WireSystem.WireElement element : system.elements) {
+                if (element.type != WireSystem.WireElement.Type.WIRE_PART) {
+                    continue;
+                }
+                TileEntity tile = world.getTileEntity(element.blockPos);
+                if (tile instanceof IPipeHolder) {
+                    IWireManager iWireManager = ((IPipeHolder) tile).getWireManager();
+                    if (iWireManager instanceof WireManager) {
+                        WireManager wireManager = (WireManager) iWireManager;
+                        if (wireManager.getColorOfPart(element.wirePart) != null) {
+                            if (powered) {
+                                wireManager.poweredClient.add(element.wirePart);
+                            } else {
+                                wireManager.poweredClient.remove(element.wirePart);
                             }
                         }
                     }
-                });
+                }
+            }
+        }
         return null;
     };
 }
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.transport.wire;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.minecraft.item.EnumDyeColor;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagList;
+
+import buildcraft.transport.wire.WireSystem.WireElement;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+/** Tracks which colours every wire emitter is emitting, and which systems every emitter is a part of. Emitters push
+ * their changes (with {@link #setEmitting(WireElement, int)}), which increments or decrements the
+ * {@link WireSystem#getEmittingCount() emitting count} of each system of that colour. So a system is powered if its
+ * count is above 0, and changing an emitter only costs as much as the number of systems it's adjacent to -- it never
+ * has to look at any other emitters, or any tile entities. */
+public class WireEmitterTracker {
+    /** Maps every emitter element to the systems that contain it (one per adjacent colour). */
+    private final Map<WireElement, List<WireSystem>> systemsByEmitter = new HashMap<>();
+    /** The colours (as a bitmask of {@link EnumDyeColor#getMetadata()}) that every indexed emitter is emitting. Emitters
+     * that aren't emitting anything aren't stored. */
+    private final Object2IntMap<WireElement> emittingMasks = new Object2IntOpenHashMap<>();
+    /** Every system whose emitting count went to or from 0. Cleared by whoever handles the changes. */
+    private final Set<WireSystem> powerChanged = new LinkedHashSet<>();
+
+    public static int getMask(EnumDyeColor colour) {
+        return 1 << colour.getMetadata();
+    }
+
+    public List<WireSystem> getSystems(WireElement emitter) {
+        List<WireSystem> systems = systemsByEmitter.get(emitter);
+        return systems == null ? Collections.emptyList() : Collections.unmodifiableList(systems);
+    }
+
+    public int getEmittingMask(WireElement emitter) {
+        return emittingMasks.getInt(emitter);
+    }
+
+    /** Adds the given emitter to the given system. The caller is responsible for adding it to the system's elements. */
+    public void add(WireElement emitter, WireSystem system) {
+        List<WireSystem> systems = systemsByEmitter.computeIfAbsent(emitter, k -> new ArrayList<>(1));
+        if (systems.contains(system)) {
+            return;
+        }
+        systems.add(system);
+        if ((getEmittingMask(emitter) & getMask(system.color)) != 0) {
+            changeCount(system, 1);
+        }
+    }
+
+    /** Removes the given emitter from the given system. The caller is responsible for removing it from the system's
+     * elements. */
+    public void remove(WireElement emitter, WireSystem system) {
+        List<WireSystem> systems = systemsByEmitter.get(emitter);
+        if (systems == null || !systems.remove(system)) {
+            return;
+        }
+        if ((getEmittingMask(emitter) & getMask(system.color)) != 0) {
+            changeCount(system, -1);
+        }
+        if (systems.isEmpty()) {
+            systemsByEmitter.remove(emitter);
+            // Nothing cares about it any more, and it will be re-read if a system is added next to it again
+            emittingMasks.removeInt(emitter);
+        }
+    }
+
+    /** Sets the colours that the given emitter is emitting. Does nothing if the emitter isn't in any system. */
+    public void setEmitting(WireElement emitter, int mask) {
+        List<WireSystem> systems = systemsByEmitter.get(emitter);
+        if (systems == null) {
+            return;
+        }
+        int old = mask == 0 ? emittingMasks.removeInt(emitter) : emittingMasks.put(emitter, mask);
+        int diff = old ^ mask;
+        if (diff == 0) {
+            return;
+        }
+        for (WireSystem system : systems) {
+            int colourMask = getMask(system.color);
+            if ((diff & colourMask) != 0) {
+                changeCount(system, (mask & colourMask) != 0 ? 1 : -1);
+            }
+        }
+    }
+
+    private void changeCount(WireSystem system, int delta) {
+        int before = system.emittingCount;
+        system.emittingCount += delta;
+        if ((before == 0) != (system.emittingCount == 0)) {
+            powerChanged.add(system);
+        }
+    }
+
+    /** @return Every system that might have changed power since this was last cleared. */
+    public Set<WireSystem> getPowerChanged() {
+        return powerChanged;
+    }
+
+    public NBTTagList writeToNBT() {
+        NBTTagList list = new NBTTagList();
+        for (Object2IntMap.Entry<WireElement> entry : emittingMasks.object2IntEntrySet()) {
+            NBTTagCompound nbt = entry.getKey().writeToNBT();
+            nbt.setInteger("emitting", entry.getIntValue());
+            list.appendTag(nbt);
+        }
+        return list;
+    }
+
+    /** Reads the states written by {@link #writeToNBT()}. Every system should have been {@link #add(WireElement,
+     * WireSystem) added} first. */
+    public void readFromNBT(NBTTagList list) {
+        for (int i = 0; i < list.tagCount(); i++) {
+            NBTTagCompound nbt = list.getCompoundTagAt(i);
+            setEmitting(new WireElement(nbt), nbt.getInteger("emitting"));
+        }
+    }
+
+    public void clear() {
+        systemsByEmitter.clear();
+        emittingMasks.clear();
+        powerChanged.clear();
+    }
+}
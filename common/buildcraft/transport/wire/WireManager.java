@@ -12,7 +12,6 @@ import java.util.EnumMap;
 import java.util.EnumSet;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Objects;
 import java.util.Set;
 
 import net.minecraft.item.EnumDyeColor;
@@ -68,9 +67,7 @@ public class WireManager implements IWireManager {
         if (!initialised) {
             initialised = true;
             if (!holder.getPipeWorld().isRemote) {
-                for (EnumWirePart part : parts.keySet()) {
-                    getWireSystems().buildAndAddWireSystem(new WireSystem.WireElement(holder.getPipePos(), part));
-                }
+                parts.forEach((part, colour) -> getWireSystems().addWirePart(holder, part, colour));
             }
             updateBetweens(false);
         }
@@ -81,7 +78,7 @@ public class WireManager implements IWireManager {
         if (getColorOfPart(part) == null) {
             parts.put(part, colour);
             if (!holder.getPipeWorld().isRemote) {
-                getWireSystems().buildAndAddWireSystem(new WireSystem.WireElement(holder.getPipePos(), part));
+                getWireSystems().addWirePart(holder, part, colour);
                 holder.getPipeTile().markDirty();
             }
             updateBetweens(false);
@@ -99,10 +96,7 @@ public class WireManager implements IWireManager {
         } else {
             parts.remove(part);
             if (!holder.getPipeWorld().isRemote) {
-                WireSystem.WireElement element = new WireSystem.WireElement(holder.getPipePos(), part);
-                WireSystem.getConnectedElementsOfElement(holder, element)
-                    .forEach(getWireSystems()::buildAndAddWireSystem);
-                getWireSystems().getWireSystemsWithElement(element).forEach(getWireSystems()::removeWireSystem);
+                getWireSystems().removeWirePart(holder, part);
                 holder.getPipeTile().markDirty();
             }
             updateBetweens(false);
@@ -119,12 +113,10 @@ public class WireManager implements IWireManager {
     }
 
     private void removePartsFromSystem(Collection<EnumWirePart> toRemove) {
-        toRemove.stream().map(part -> new WireSystem.WireElement(holder.getPipePos(), part))
-            .flatMap(element -> WireSystem.getConnectedElementsOfElement(holder, element).stream()).distinct()
-            .forEach(getWireSystems()::buildAndAddWireSystem);
-        toRemove.stream().map(part -> new WireSystem.WireElement(holder.getPipePos(), part))
-            .flatMap(element -> getWireSystems().getWireSystemsWithElement(element).stream())
-            .forEach(getWireSystems()::removeWireSystem);
+        WorldSavedDataWireSystems wireSystems = getWireSystems();
+        for (EnumWirePart part : toRemove) {
+            wireSystems.removeWirePart(holder, part);
+        }
         holder.getPipeTile().markDirty();
     }
 
@@ -176,9 +168,9 @@ public class WireManager implements IWireManager {
         if (holder.getPipeWorld().isRemote) {
             return poweredClient.contains(part);
         } else {
-            return getWireSystems().getWireSystemsWithElement(new WireSystem.WireElement(holder.getPipePos(), part))
-                .stream().map(wireSystem -> getWireSystems().wireSystems.get(wireSystem)).filter(Objects::nonNull)
-                .reduce(Boolean::logicalOr).orElse(false);
+            WorldSavedDataWireSystems wireSystems = getWireSystems();
+            WireSystem system = wireSystems.getWireSystemOfPart(new WireSystem.WireElement(holder.getPipePos(), part));
+            return system != null && wireSystems.wireSystems.getOrDefault(system, false);
         }
     }
 
@@ -6,23 +6,14 @@
 
 package buildcraft.transport.wire;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Objects;
-import java.util.Queue;
 import java.util.Set;
-import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
-import com.google.common.base.Predicates;
-
 import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.item.EnumDyeColor;
 import net.minecraft.nbt.NBTTagCompound;
@@ -38,7 +29,6 @@ import net.minecraft.world.WorldServer;
 import net.minecraftforge.common.util.Constants;
 
 import buildcraft.api.transport.EnumWirePart;
-import buildcraft.api.transport.IWireEmitter;
 import buildcraft.api.transport.WireNode;
 import buildcraft.api.transport.pipe.IPipe;
 import buildcraft.api.transport.pipe.IPipeHolder;
@@ -46,15 +36,52 @@ import buildcraft.api.transport.pipe.PipeApi;
 
 import buildcraft.lib.misc.MessageUtil;
 import buildcraft.lib.misc.NBTUtilBC;
-
+import buildcraft.lib.net.ChunkWatcherCache;
+
+/** A connected set of wire parts of a single colour, along with every wire emitter that is adjacent to one of those
+ * parts. Wire systems are identity based (rather than content based) as they are changed in-place by
+ * {@link WorldSavedDataWireSystems} whenever wires are added or removed.
+ * <p>
+ * Wire systems used to be compared by their contents (with equals and hashCode), and {@link #elements} used to be a
+ * {@link List}. Neither of those could be kept, as systems are now changed in-place while they are used as map keys,
+ * and checking if a large system contains an element has to be fast. */
 public class WireSystem {
-    public final List<WireElement> elements = new ArrayList<>();
+    /** The elements of this system. Use {@link #addElement(WireElement)} and {@link #removeElement(WireElement)} to
+     * change this on the server. */
+    public final Set<WireElement> elements = new LinkedHashSet<>();
     public EnumDyeColor color = null;
 
+    /** The id of this system, used to refer to it over the network. Assigned by {@link WorldSavedDataWireSystems} (on
+     * the server) or read from the network (on the client). */
+    public int id;
+
+    /** Every (distinct) chunk that contains at least one element of this system, or null if this needs to be
+     * recalculated. */
+    private List<ChunkPos> chunkPoses = null;
+
+    /** Maintained by {@link WireEmitterTracker}. */
+    int emittingCount = 0;
+
     public boolean hasElement(WireElement element) {
         return elements.contains(element);
     }
 
+    public boolean addElement(WireElement element) {
+        if (elements.add(element)) {
+            chunkPoses = null;
+            return true;
+        }
+        return false;
+    }
+
+    public boolean removeElement(WireElement element) {
+        if (elements.remove(element)) {
+            chunkPoses = null;
+            return true;
+        }
+        return false;
+    }
+
     /** Checks to see if the given holder could connect a wire across the specified side even if a matching wire wasn't
      * there. */
     public static boolean canWireConnect(IPipeHolder holder, EnumFacing side) {
@@ -106,76 +133,65 @@ public class WireSystem {
         return Collections.emptyList();
     }
 
+    /** @deprecated Wire systems are built by {@link WorldSavedDataWireSystems} as wires are added and removed, so this
+     *             just returns the system that already contains the given element (or this if there isn't one). */
+    @Deprecated
     public WireSystem build(WorldSavedDataWireSystems wireSystems, WireElement startElement) {
-        long time = System.currentTimeMillis();
-        Map<BlockPos, IPipeHolder> holdersCache = new HashMap<>();
-        Set<WireElement> walked = new HashSet<>();
-        Queue<WireElement> queue = new ArrayDeque<>();
-        Consumer<WireElement> build = element -> {
-            if (!walked.contains(element)) {
-                if (!holdersCache.containsKey(element.blockPos)) {
-                    TileEntity tile = wireSystems.world.getTileEntity(element.blockPos);
-                    IPipeHolder holder = null;
-                    if (tile instanceof IPipeHolder) {
-                        holder = (IPipeHolder) tile;
-                    }
-                    holdersCache.put(element.blockPos, holder);
-                }
-                IPipeHolder holder = holdersCache.get(element.blockPos);
-                if (holder != null) {
-                    if (element.type == WireElement.Type.WIRE_PART) {
-                        EnumDyeColor colorOfPart = holder.getWireManager().getColorOfPart(element.wirePart);
-                        if (color == null) {
-                            if (colorOfPart != null) {
-                                color = colorOfPart;
-                            }
-                        }
-                        if (color != null && colorOfPart == color) {
-                            wireSystems.getWireSystemsWithElement(element).stream().filter(wireSystem -> wireSystem != this && wireSystem.color == this.color).forEach(wireSystems::removeWireSystem);
-                            elements.add(element);
-                            queue.addAll(getConnectedElementsOfElement(wireSystems.world, element));
-                            Arrays.stream(EnumFacing.VALUES).forEach(side -> queue.add(new WireElement(element.blockPos, side)));
-                        }
-                    } else if (element.type == WireElement.Type.EMITTER_SIDE) {
-                        if (holder.getPluggable(element.emitterSide) instanceof IWireEmitter) {
-                            elements.add(new WireElement(element.blockPos, element.emitterSide));
-                        }
-                    }
-                }
-                walked.add(element);
+        WireSystem existing = wireSystems.getWireSystemOfPart(startElement);
+        return existing == null ? this : existing;
+    }
+
+    public boolean isEmpty() {
+        for (WireElement element : elements) {
+            if (element.type == WireElement.Type.WIRE_PART) {
+                return false;
             }
-        };
-        queue.add(startElement);
-        while (!queue.isEmpty()) {
-            build.accept(queue.remove());
         }
-        return this;
+        return true;
     }
 
-    public boolean isEmpty() {
-        return elements.stream().filter(element -> element.type == WireElement.Type.WIRE_PART).count() == 0;
+    /** @return The number of emitters in this system that are emitting this system's colour. */
+    public int getEmittingCount() {
+        return emittingCount;
     }
 
+    /** @deprecated Use {@link #getEmittingCount()}, which is kept up to date as emitters change rather than asking every
+     *             emitter. */
+    @Deprecated
     public boolean update(WorldSavedDataWireSystems wireSystems) {
-        return elements.stream().filter(element -> element.type == WireElement.Type.EMITTER_SIDE).map(element -> wireSystems.isEmitterEmitting(element, color)).reduce(Boolean::logicalOr).orElse(
-            false);
+        return getEmittingCount() > 0;
     }
 
     public List<ChunkPos> getChunkPoses() {
-        return elements.stream().map(element -> element.blockPos).map(ChunkPos::new).collect(Collectors.toList());
+        if (chunkPoses == null) {
+            chunkPoses = elements.stream().map(element -> element.blockPos).map(ChunkPos::new).distinct()
+                .collect(Collectors.toList());
+        }
+        return chunkPoses;
     }
 
     public boolean isPlayerWatching(EntityPlayerMP player) {
         if (player.world instanceof WorldServer) {
             WorldServer world = (WorldServer) player.world;
-            return getChunkPoses().stream().map(chunkPos -> world.getPlayerChunkMap().getEntry(chunkPos.x, chunkPos.z)).filter(Objects::nonNull).anyMatch(
-                playerChunkMapEntry -> playerChunkMapEntry.hasPlayerMatching(Predicates.equalTo(player)));
+            for (ChunkPos chunkPos : getChunkPoses()) {
+                if (ChunkWatcherCache.getWatchers(world, chunkPos.x, chunkPos.z).contains(player)) {
+                    return true;
+                }
+            }
         }
         return false;
     }
 
+    /** @deprecated Wire systems are identity based, and are sent to clients by {@link #id}. */
+    @Deprecated
     public int getWiresHashCode() {
-        return elements.stream().filter(element -> element.type == WireElement.Type.WIRE_PART).collect(Collectors.toList()).hashCode();
+        List<WireElement> wires = new ArrayList<>();
+        for (WireElement element : elements) {
+            if (element.type == WireElement.Type.WIRE_PART) {
+                wires.add(element);
+            }
+        }
+        return wires.hashCode();
     }
 
     public NBTTagCompound writeToNBT() {
@@ -189,36 +205,13 @@ public class WireSystem {
 
     public WireSystem readFromNBT(NBTTagCompound nbt) {
         elements.clear();
+        chunkPoses = null;
         NBTTagList elementsList = nbt.getTagList("elements", Constants.NBT.TAG_COMPOUND);
         IntStream.range(0, elementsList.tagCount()).mapToObj(elementsList::getCompoundTagAt).map(WireElement::new).forEach(elements::add);
         color = EnumDyeColor.byMetadata(nbt.getInteger("color"));
         return this;
     }
 
-    @Override
-    public boolean equals(Object o) {
-        if (this == o) {
-            return true;
-        }
-        if (o == null || getClass() != o.getClass()) {
-            return false;
-        }
-
-        WireSystem that = (WireSystem) o;
-
-        if (!elements.equals(that.elements)) {
-            return false;
-        }
-        return color == that.color;
-    }
-
-    @Override
-    public int hashCode() {
-        int result = elements.hashCode();
-        result = 31 * result + (color != null ? color.hashCode() : 0);
-        return result;
-    }
-
     public static class WireElement {
         public final Type type;
         public final BlockPos blockPos;
@@ -285,7 +278,19 @@ public class WireSystem {
             }
         }
 
-        public NBTTagCompound writeToNBT() {
+        /** @deprecated Wire systems are identity based, and are sent to clients by {@link #id}. */
+    @Deprecated
+    public int getWiresHashCode() {
+        List<WireElement> wires = new ArrayList<>();
+        for (WireElement element : elements) {
+            if (element.type == WireElement.Type.WIRE_PART) {
+                wires.add(element);
+            }
+        }
+        return wires.hashCode();
+    }
+
+    public NBTTagCompound writeToNBT() {
             NBTTagCompound nbt = new NBTTagCompound();
             nbt.setInteger("type", type.ordinal());
             nbt.setTag("blockPos", NBTUtilBC.writeBlockPos(blockPos));
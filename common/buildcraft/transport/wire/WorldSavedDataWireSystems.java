@@ -6,158 +6,717 @@
 
 package buildcraft.transport.wire;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
-import com.google.common.base.Predicates;
+import javax.annotation.Nullable;
 
-import org.apache.commons.lang3.tuple.Pair;
+import com.google.common.base.Predicates;
 
 import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.item.EnumDyeColor;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.nbt.NBTTagList;
 import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
 import net.minecraft.world.World;
+import net.minecraft.world.WorldServer;
 import net.minecraft.world.storage.MapStorage;
 import net.minecraft.world.storage.WorldSavedData;
 
 import net.minecraftforge.common.util.Constants;
 
-import buildcraft.api.core.BCLog;
 import buildcraft.api.transport.EnumWirePart;
 import buildcraft.api.transport.IWireEmitter;
+import buildcraft.api.transport.WireNode;
 import buildcraft.api.transport.pipe.IPipeHolder;
 import buildcraft.api.transport.pluggable.PipePluggable;
 
+import buildcraft.lib.net.ChunkWatcherCache;
 import buildcraft.lib.net.MessageManager;
 
+import buildcraft.transport.wire.WireSystem.WireElement;
+
+import it.unimi.dsi.fastutil.ints.Int2BooleanMap;
+import it.unimi.dsi.fastutil.ints.Int2BooleanOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+
+/** Stores every {@link WireSystem} in a world, along with an index of which system every element belongs to.
+ * <p>
+ * Wire systems are changed incrementally: adding a wire part merges the systems of its neighbours into the largest one
+ * of them (so the cost is proportional to the smaller systems), and removing a wire part only splits its system if the
+ * part's neighbours are no longer connected -- which is found by searching outwards from each neighbour at the same
+ * time, stopping as soon as they all meet up or all but one have been fully explored. Only systems that actually
+ * changed are sent to clients.
+ * <p>
+ * Every system is also indexed by the chunks that it occupies, and the systems that each player has been sent are
+ * tracked. This means that each tick only the systems that changed (or the chunks that a player started or stopped
+ * watching) need to be checked, rather than every system against every player. */
 public class WorldSavedDataWireSystems extends WorldSavedData {
     public static final String DATA_NAME = "buildcraft_wire_systems";
+
+    /** Shared between every world so that ids are never re-used while the server is running. Ids from different
+     * servers can overlap, so clients drop every system when they disconnect (in
+     * {@link buildcraft.transport.BCTransportEventDist}). */
+    private static int nextSystemId = 0;
+
     public World world;
     public final Map<WireSystem, Boolean> wireSystems = new HashMap<>();
+    /** If true then the power of every system is recalculated from its emitter count on the next tick. Not normally
+     * needed, as emitters push their changes with {@link #onEmitterChanged(BlockPos, EnumFacing, IWireEmitter)}. */
     public boolean gatesChanged = true;
+    /** If true then every system is re-sent to every player on the next tick. */
     public boolean structureChanged = true;
-    public final List<WireSystem> changedSystems = new ArrayList<>();
+    /** Systems whose power state has changed. */
+    public final Set<WireSystem> changedSystems = new LinkedHashSet<>();
+    /** Systems whose elements have changed (including new systems). */
+    public final Set<WireSystem> structureChangedSystems = new LinkedHashSet<>();
+    /** Every system that has been removed since the last tick. */
+    public final List<WireSystem> removedSystems = new ArrayList<>();
+    /** Players that need every system they can see to be re-sent. */
     public final List<EntityPlayerMP> changedPlayers = new ArrayList<>();
-    public final Map<WireSystem.WireElement, IWireEmitter> emittersCache = new HashMap<>();
+
+    /** Maps every wire part element to the (single) system that contains it. */
+    private final Map<WireElement, WireSystem> partIndex = new HashMap<>();
+    /** Tracks the systems that every emitter is in, and the colours that they are emitting. */
+    private final WireEmitterTracker emitters = new WireEmitterTracker();
+    /** Maps every chunk (as {@link ChunkPos#asLong(int, int)}) to the systems with at least one element inside it. */
+    private final Long2ObjectMap<List<WireSystem>> chunkIndex = new Long2ObjectOpenHashMap<>();
+    /** The chunks that each system was last added to in {@link #chunkIndex}. */
+    private final Map<WireSystem, List<ChunkPos>> indexedChunks = new HashMap<>();
+    /** The systems that each player's client has been sent, and hasn't been told to remove. */
+    private final Map<EntityPlayerMP, Set<WireSystem>> knownSystems = new WeakHashMap<>();
+    /** The chunks that each player has started or stopped watching since the last tick. */
+    private final Map<EntityPlayerMP, LongSet> pendingChunkWatches = new HashMap<>();
+    private final Map<EntityPlayerMP, PlayerUpdate> playerUpdates = new LinkedHashMap<>();
+
+    /** How the pipes in the world are looked at. */
+    private final IWireAccess access;
 
     public WorldSavedDataWireSystems() {
-        super(DATA_NAME);
+        this(DATA_NAME);
     }
 
     public WorldSavedDataWireSystems(String name) {
         super(name);
+        access = new WorldWireAccess();
     }
 
-    public void markStructureChanged() {
-        structureChanged = true;
-        gatesChanged = true;
-        emittersCache.clear();
+    /** Creates wire systems that look at pipes through the given {@link IWireAccess} rather than {@link #world}. */
+    public WorldSavedDataWireSystems(IWireAccess access) {
+        super(DATA_NAME);
+        this.access = access;
     }
 
-    public List<WireSystem> getWireSystemsWithElement(WireSystem.WireElement element) {
-        return wireSystems.keySet().stream().filter(wireSystem -> wireSystem.hasElement(element)).collect(Collectors.toList());
+    /** Everything that wire systems need to know about the pipes in a world. */
+    public interface IWireAccess {
+        /** @return Every wire part that the given wire part could connect to, whether or not there is a wire there. */
+        List<WireElement> getConnectedElements(WireElement part);
+
+        /** @return The emitter on the given side of the pipe at the given position, or null if there isn't one. */
+        @Nullable
+        IWireEmitter getEmitter(BlockPos pos, EnumFacing side);
+    }
+
+    private class WorldWireAccess implements IWireAccess {
+        @Override
+        public List<WireElement> getConnectedElements(WireElement part) {
+            return WireSystem.getConnectedElementsOfElement(world, part);
+        }
+
+        @Override
+        public IWireEmitter getEmitter(BlockPos pos, EnumFacing side) {
+            TileEntity tile = world.getTileEntity(pos);
+            if (tile instanceof IPipeHolder) {
+                PipePluggable plug = ((IPipeHolder) tile).getPluggable(side);
+                if (plug instanceof IWireEmitter) {
+                    return (IWireEmitter) plug;
+                }
+            }
+            return null;
+        }
+    }
+
+    public List<WireSystem> getWireSystemsWithElement(WireElement element) {
+        if (element.type == WireElement.Type.WIRE_PART) {
+            WireSystem system = partIndex.get(element);
+            return system == null ? Collections.emptyList() : Collections.singletonList(system);
+        }
+        return emitters.getSystems(element);
     }
 
-    public void removeWireSystem(WireSystem wireSystem) {
-        wireSystems.remove(wireSystem);
-        markStructureChanged();
+    /** @return The system containing the given wire part, or null if it isn't in one. */
+    public WireSystem getWireSystemOfPart(WireElement element) {
+        return partIndex.get(element);
     }
 
-    public void buildAndAddWireSystem(WireSystem.WireElement element) {
-        WireSystem wireSystem = new WireSystem().build(this, element);
-        if(!wireSystem.isEmpty()) {
-            wireSystems.put(wireSystem, false);
-            wireSystems.put(wireSystem, wireSystem.update(this));
+    // Graph changes
+
+    /** Adds the given wire part to a system, merging it with every connected system of the same colour. Does nothing
+     * if the part is already in a system of that colour. */
+    public void addWirePart(IPipeHolder holder, EnumWirePart part, EnumDyeColor colour) {
+        WireElement element = new WireElement(holder.getPipePos(), part);
+        addWirePart(element, colour, WireSystem.getConnectedElementsOfElement(holder, element));
+    }
+
+    /** Like {@link #addWirePart(IPipeHolder, EnumWirePart, EnumDyeColor)}, but finds the connections of the part with
+     * the {@link IWireAccess}. */
+    public void addWirePart(WireElement element, EnumDyeColor colour) {
+        addWirePart(element, colour, access.getConnectedElements(element));
+    }
+
+    private void addWirePart(WireElement element, EnumDyeColor colour, List<WireElement> connected) {
+        WireSystem existing = partIndex.get(element);
+        if (existing != null) {
+            if (existing.color == colour) {
+                return;
+            }
+            removeWirePart(element);
+        }
+
+        List<WireSystem> merging = new ArrayList<>(6);
+        WireSystem target = null;
+        for (WireElement neighbour : connected) {
+            WireSystem system = partIndex.get(neighbour);
+            if (system != null && system.color == colour && !merging.contains(system)) {
+                merging.add(system);
+                if (target == null || system.elements.size() > target.elements.size()) {
+                    target = system;
+                }
+            }
+        }
+        if (target == null) {
+            target = createSystem(colour);
+        }
+        for (WireSystem system : merging) {
+            if (system != target) {
+                mergeInto(system, target);
+            }
+        }
+        target.addElement(element);
+        partIndex.put(element, target);
+        updateEmittersAt(target, element.blockPos);
+        onSystemChanged(target);
+    }
+
+    /** Removes the given wire part from its system, splitting the system if it is no longer connected. */
+    public void removeWirePart(IPipeHolder holder, EnumWirePart part) {
+        removeWirePart(new WireElement(holder.getPipePos(), part));
+    }
+
+    /** Removes the given wire part from its system, splitting the system if it is no longer connected. */
+    public void removeWirePart(WireElement element) {
+        WireSystem system = partIndex.remove(element);
+        if (system == null) {
+            return;
+        }
+        system.removeElement(element);
+        updateEmittersAt(system, element.blockPos);
+
+        // The roots are every part next to this one, whether or not they are still connected to it: if this is being
+        // removed because a connection was blocked then the part on the other side of it is still in this system,
+        // but can't be reached from here any more.
+        List<WireElement> roots = new ArrayList<>(6);
+        WireNode node = new WireNode(element.blockPos, element.wirePart);
+        for (EnumFacing face : EnumFacing.VALUES) {
+            WireNode oNode = node.offset(face);
+            WireElement neighbour = new WireElement(oNode.pos, oNode.part);
+            if (partIndex.get(neighbour) == system && !roots.contains(neighbour)) {
+                roots.add(neighbour);
+            }
+        }
+        if (system.isEmpty()) {
+            removeSystem(system);
+            return;
         }
-        markStructureChanged();
+        if (roots.size() > 1) {
+            split(system, roots);
+        }
+        onSystemChanged(system);
     }
 
+    /** Re-checks every wire part and emitter of the given holder, for example after its connections or pluggables
+     * have changed. */
     public void rebuildWireSystemsAround(IPipeHolder holder) {
-        Arrays.stream(EnumWirePart.values())
-                .flatMap(part -> WireSystem.getConnectedElementsOfElement(world, new WireSystem.WireElement(holder.getPipePos(), part)).stream())
-                .distinct()
-                .forEach(this::buildAndAddWireSystem);
-    }
-
-    public IWireEmitter getEmitter(WireSystem.WireElement element) {
-        if (element.type == WireSystem.WireElement.Type.EMITTER_SIDE) {
-            if (!emittersCache.containsKey(element)) {
-                if (!world.isBlockLoaded(element.blockPos)) {
-                    BCLog.logger.warn("[transport.wire] Ghost loading " + element.blockPos + " to look for an emitter!");
-                }
-                TileEntity tile = world.getTileEntity(element.blockPos);
-                if (tile instanceof IPipeHolder) {
-                    IPipeHolder holder = (IPipeHolder) tile;
-                    PipePluggable plug = holder.getPluggable(element.emitterSide);
-                    if(plug instanceof IWireEmitter) {
-                        emittersCache.put(element, (IWireEmitter) plug);
+        rebuildWireSystemsAround(holder.getPipePos(), holder.getWireManager()::getColorOfPart,
+            element -> WireSystem.getConnectedElementsOfElement(holder, element));
+    }
+
+    /** Like {@link #rebuildWireSystemsAround(IPipeHolder)}, but finds the connections of every part with the
+     * {@link IWireAccess}.
+     *
+     * @param colours The current colour of every wire part at the given position, or null if there isn't a wire. */
+    public void rebuildWireSystemsAround(BlockPos pos, Function<EnumWirePart, EnumDyeColor> colours) {
+        rebuildWireSystemsAround(pos, colours, access::getConnectedElements);
+    }
+
+    private void rebuildWireSystemsAround(BlockPos pos, Function<EnumWirePart, EnumDyeColor> colours,
+        Function<WireElement, List<WireElement>> connections) {
+        for (EnumWirePart part : EnumWirePart.VALUES) {
+            removeWirePart(new WireElement(pos, part));
+        }
+        for (EnumWirePart part : EnumWirePart.VALUES) {
+            EnumDyeColor colour = colours.apply(part);
+            if (colour != null) {
+                WireElement element = new WireElement(pos, part);
+                addWirePart(element, colour, connections.apply(element));
+            }
+        }
+    }
+
+    private WireSystem createSystem(EnumDyeColor colour) {
+        WireSystem system = new WireSystem();
+        system.color = colour;
+        system.id = nextSystemId++;
+        wireSystems.put(system, false);
+        return system;
+    }
+
+    private void removeSystem(WireSystem system) {
+        wireSystems.remove(system);
+        structureChangedSystems.remove(system);
+        changedSystems.remove(system);
+        removedSystems.add(system);
+        unindexChunks(system);
+        for (WireElement element : system.elements) {
+            if (element.type == WireElement.Type.WIRE_PART) {
+                if (partIndex.get(element) == system) {
+                    partIndex.remove(element);
+                }
+            } else {
+                emitters.remove(element, system);
+            }
+        }
+        markDirty();
+    }
+
+    private void onSystemChanged(WireSystem system) {
+        structureChangedSystems.add(system);
+        markDirty();
+    }
+
+    /** Moves every element from the given system into the target, and then removes the (now empty) system. */
+    private void mergeInto(WireSystem from, WireSystem target) {
+        for (WireElement element : from.elements) {
+            target.addElement(element);
+            if (element.type == WireElement.Type.WIRE_PART) {
+                partIndex.put(element, target);
+            } else {
+                emitters.remove(element, from);
+                emitters.add(element, target);
+            }
+        }
+        from.elements.clear();
+        removeSystem(from);
+    }
+
+    /** Splits the given system, after an element that was connected to every one of the roots has been removed.
+     * <p>
+     * A breadth first search is started from every root, and they are all advanced one element at a time. Whenever
+     * two searches meet they are joined (using a tiny union-find over the searches). This stops as soon as every
+     * search has been joined together (so nothing needs to split), or when at most one group of searches still has
+     * elements left to explore: every group that finished is a separate component, and becomes a new system. The
+     * (unfinished) remainder stays in the original system. */
+    private void split(WireSystem system, List<WireElement> roots) {
+        int count = roots.size();
+        int[] parent = new int[count];
+        @SuppressWarnings("unchecked")
+        ArrayDeque<WireElement>[] queues = new ArrayDeque[count];
+        Map<WireElement, Integer> labels = new HashMap<>();
+        int groups = count;
+        for (int i = 0; i < count; i++) {
+            parent[i] = i;
+            queues[i] = new ArrayDeque<>();
+            queues[i].add(roots.get(i));
+            labels.put(roots.get(i), i);
+        }
+
+        while (groups > 1) {
+            boolean anyExpanded = false;
+            for (int i = 0; i < count; i++) {
+                WireElement next = queues[i].poll();
+                if (next == null) {
+                    continue;
+                }
+                anyExpanded = true;
+                for (WireElement neighbour : access.getConnectedElements(next)) {
+                    if (partIndex.get(neighbour) != system) {
+                        continue;
+                    }
+                    Integer label = labels.get(neighbour);
+                    if (label == null) {
+                        labels.put(neighbour, i);
+                        queues[i].add(neighbour);
+                    } else {
+                        int a = find(parent, label);
+                        int b = find(parent, i);
+                        if (a != b) {
+                            parent[a] = b;
+                            groups--;
+                        }
                     }
                 }
-                if (!emittersCache.containsKey(element)) {
-                    throw new IllegalStateException("Tried to get a wire element when none existed! THIS IS A BUG " + element);
+            }
+            if (!anyExpanded || countUnfinishedGroups(parent, queues) <= 1) {
+                break;
+            }
+        }
+        if (groups == 1) {
+            return;
+        }
+
+        // Every finished group becomes a new system. If every group finished then the largest one stays.
+        Map<Integer, List<WireElement>> components = new HashMap<>();
+        for (Map.Entry<WireElement, Integer> entry : labels.entrySet()) {
+            components.computeIfAbsent(find(parent, entry.getValue()), k -> new ArrayList<>()).add(entry.getKey());
+        }
+        int staying = -1;
+        for (int group : components.keySet()) {
+            if (!isGroupFinished(parent, queues, group)) {
+                staying = group;
+            }
+        }
+        if (staying == -1) {
+            int largest = 0;
+            for (Map.Entry<Integer, List<WireElement>> entry : components.entrySet()) {
+                if (entry.getValue().size() > largest) {
+                    largest = entry.getValue().size();
+                    staying = entry.getKey();
                 }
             }
-            return emittersCache.get(element);
         }
-        return null;
+        for (Map.Entry<Integer, List<WireElement>> entry : components.entrySet()) {
+            if (entry.getKey() == staying) {
+                continue;
+            }
+            WireSystem split = createSystem(system.color);
+            Set<BlockPos> positions = new LinkedHashSet<>();
+            for (WireElement element : entry.getValue()) {
+                system.removeElement(element);
+                split.addElement(element);
+                partIndex.put(element, split);
+                positions.add(element.blockPos);
+            }
+            for (BlockPos pos : positions) {
+                updateEmittersAt(system, pos);
+                updateEmittersAt(split, pos);
+            }
+            onSystemChanged(split);
+        }
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static boolean isGroupFinished(int[] parent, ArrayDeque<WireElement>[] queues, int group) {
+        for (int i = 0; i < queues.length; i++) {
+            if (find(parent, i) == group && !queues[i].isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int countUnfinishedGroups(int[] parent, ArrayDeque<WireElement>[] queues) {
+        int unfinished = 0;
+        for (int i = 0; i < queues.length; i++) {
+            if (find(parent, i) == i && !isGroupFinished(parent, queues, i)) {
+                unfinished++;
+            }
+        }
+        return unfinished;
     }
 
-    public boolean isEmitterEmitting(WireSystem.WireElement element, EnumDyeColor color) {
-        if (!world.isBlockLoaded(element.blockPos)) {
-            BCLog.logger.warn("[transport.wire] Ghost loading " + element.blockPos + " to look for an emitter!");
+    /** Adds or removes the emitters at the given position from the given system, depending on whether the system has
+     * any wire parts at that position and whether an emitter is actually there. */
+    private void updateEmittersAt(WireSystem system, BlockPos pos) {
+        boolean hasPart = false;
+        for (EnumWirePart part : EnumWirePart.VALUES) {
+            if (partIndex.get(new WireElement(pos, part)) == system) {
+                hasPart = true;
+                break;
+            }
         }
-        TileEntity tile = world.getTileEntity(element.blockPos);
-        if(tile instanceof IPipeHolder) {
-            IPipeHolder holder = (IPipeHolder) tile;
-            if (holder.getPluggable(element.emitterSide) instanceof IWireEmitter) {
-                return getEmitter(element).isEmitting(color);
+        for (EnumFacing side : EnumFacing.VALUES) {
+            WireElement element = new WireElement(pos, side);
+            IWireEmitter emitter = hasPart ? access.getEmitter(pos, side) : null;
+            if (emitter != null) {
+                if (system.addElement(element)) {
+                    emitters.add(element, system);
+                    // Read the current state once, after which the emitter pushes any changes itself
+                    emitters.setEmitting(element, getEmittingMask(emitter));
+                }
+            } else if (system.removeElement(element)) {
+                emitters.remove(element, system);
             }
         }
-        return false;
+    }
+
+    // Emitters
+
+    /** Called by wire emitters whenever the colours that they are emitting have changed. This doesn't need to be
+     * called if the emitter isn't next to any wires, but it is always safe to call. */
+    public void onEmitterChanged(BlockPos pos, EnumFacing side, IWireEmitter emitter) {
+        emitters.setEmitting(new WireElement(pos, side), getEmittingMask(emitter));
+    }
+
+    private static int getEmittingMask(IWireEmitter emitter) {
+        int mask = 0;
+        for (EnumDyeColor colour : EnumDyeColor.values()) {
+            if (emitter.isEmitting(colour)) {
+                mask |= WireEmitterTracker.getMask(colour);
+            }
+        }
+        return mask;
+    }
+
+    // Ticking + networking
+
+    /** Called whenever the given player starts or stops watching the given chunk. */
+    public void onChunkWatchChange(EntityPlayerMP player, ChunkPos chunk) {
+        pendingChunkWatches.computeIfAbsent(player, p -> new LongOpenHashSet()).add(ChunkPos.asLong(chunk.x, chunk.z));
     }
 
     public void tick() {
-        if(gatesChanged) {
-            wireSystems.keySet().stream()
-                    .filter(wireSystem -> {
-                        boolean newPowered = wireSystem.update(this);
-                        return wireSystems.put(wireSystem, newPowered) != newPowered;
-                    })
-                    .forEach(changedSystems::add);
-        }
-        world.getPlayers(EntityPlayerMP.class, Predicates.alwaysTrue()).forEach(player -> {
-            Map<Integer, WireSystem> changedWires = this.wireSystems.keySet().stream()
-                    .filter(wireSystem -> wireSystem.isPlayerWatching(player) && (structureChanged || changedPlayers.contains(player)))
-                    .collect(Collectors.toMap(WireSystem::getWiresHashCode, Function.identity()));
-            if(!changedWires.isEmpty()) {
-                MessageManager.sendTo(new MessageWireSystems(changedWires), player);
-            }
-            Map<Integer, Boolean> hashesPowered = this.wireSystems.entrySet().stream()
-                    .filter(systemPower ->
-                            systemPower.getKey().isPlayerWatching(player) &&
-                                    (structureChanged || changedSystems.contains(systemPower.getKey()) || changedPlayers.contains(player))
-                    )
-                    .map(systemPowered -> Pair.of(systemPowered.getKey().getWiresHashCode(), systemPowered.getValue()))
-                    .collect(Collectors.toMap(Pair::getLeft, Pair::getRight));
-            if(!hashesPowered.isEmpty()) {
-                MessageManager.sendTo(new MessageWireSystemsPowered(hashesPowered), player);
+        for (WireSystem system : structureChangedSystems) {
+            indexChunks(system);
+        }
+        if (gatesChanged) {
+            gatesChanged = false;
+            for (Map.Entry<WireSystem, Boolean> entry : wireSystems.entrySet()) {
+                boolean newPowered = entry.getKey().getEmittingCount() > 0;
+                if (entry.setValue(newPowered) != newPowered) {
+                    changedSystems.add(entry.getKey());
+                }
             }
-        });
-        if(structureChanged || !changedSystems.isEmpty()) {
+        } else {
+            // Only systems with an emitter that changed (or that changed shape) could have changed power
+            for (WireSystem system : emitters.getPowerChanged()) {
+                updatePowered(system);
+            }
+            for (WireSystem system : structureChangedSystems) {
+                updatePowered(system);
+            }
+        }
+        emitters.getPowerChanged().clear();
+        if (structureChanged) {
+            changedPlayers.addAll(world.getPlayers(EntityPlayerMP.class, Predicates.alwaysTrue()));
+        }
+        if (!changedPlayers.isEmpty()) {
+            resendAll(changedPlayers);
+        }
+        for (WireSystem system : removedSystems) {
+            for (Map.Entry<EntityPlayerMP, Set<WireSystem>> entry : knownSystems.entrySet()) {
+                if (entry.getValue().remove(system)) {
+                    getUpdate(entry.getKey()).removed.add(system.id);
+                }
+            }
+        }
+        for (WireSystem system : structureChangedSystems) {
+            updateVisibility(system);
+        }
+        for (Map.Entry<EntityPlayerMP, LongSet> entry : pendingChunkWatches.entrySet()) {
+            EntityPlayerMP player = entry.getKey();
+            if (player.world != world) {
+                // They've moved to a different world, so everything will need to be sent again when they come back.
+                // Their client is told to forget these systems by id rather than with a clear, as the world that they
+                // moved to might have already sent them its own systems this tick.
+                Set<WireSystem> known = knownSystems.remove(player);
+                if (known != null) {
+                    PlayerUpdate update = getUpdate(player);
+                    for (WireSystem system : known) {
+                        update.removed.add(system.id);
+                    }
+                }
+                continue;
+            }
+            for (long chunk : entry.getValue()) {
+                List<WireSystem> systems = chunkIndex.get(chunk);
+                if (systems != null) {
+                    for (WireSystem system : systems) {
+                        updateVisibility(system, player);
+                    }
+                }
+            }
+        }
+        for (WireSystem system : changedSystems) {
+            for (Map.Entry<EntityPlayerMP, Set<WireSystem>> entry : knownSystems.entrySet()) {
+                if (entry.getValue().contains(system)) {
+                    getUpdate(entry.getKey()).powered.put(system.id, (boolean) wireSystems.get(system));
+                }
+            }
+        }
+        for (Map.Entry<EntityPlayerMP, PlayerUpdate> entry : playerUpdates.entrySet()) {
+            entry.getValue().send(entry.getKey());
+        }
+        if (structureChanged || !changedSystems.isEmpty()) {
             markDirty();
         }
         structureChanged = false;
+        structureChangedSystems.clear();
+        removedSystems.clear();
         changedSystems.clear();
         changedPlayers.clear();
+        pendingChunkWatches.clear();
+        playerUpdates.clear();
+    }
+
+    private void updatePowered(WireSystem system) {
+        Boolean oldPowered = wireSystems.get(system);
+        if (oldPowered == null) {
+            // Removed
+            return;
+        }
+        boolean newPowered = system.getEmittingCount() > 0;
+        if (oldPowered != newPowered) {
+            wireSystems.put(system, newPowered);
+            changedSystems.add(system);
+        }
+    }
+
+    /** Clears everything the given players know about, and then sends them every system they can see. This walks
+     * every chunk that contains a wire system, rather than every system, so each chunk's watchers are only found
+     * once. */
+    private void resendAll(List<EntityPlayerMP> players) {
+        for (EntityPlayerMP player : players) {
+            knownSystems.remove(player);
+            getUpdate(player).clear = true;
+        }
+        WorldServer worldServer = (WorldServer) world;
+        for (Long2ObjectMap.Entry<List<WireSystem>> entry : chunkIndex.long2ObjectEntrySet()) {
+            long chunk = entry.getLongKey();
+            List<EntityPlayerMP> watchers =
+                ChunkWatcherCache.getWatchers(worldServer, (int) chunk, (int) (chunk >> 32));
+            for (EntityPlayerMP player : watchers) {
+                if (!players.contains(player)) {
+                    continue;
+                }
+                Set<WireSystem> known = getKnownSystems(player);
+                for (WireSystem system : entry.getValue()) {
+                    if (known.add(system)) {
+                        PlayerUpdate update = getUpdate(player);
+                        update.systems.put(system.id, system);
+                        update.powered.put(system.id, (boolean) wireSystems.get(system));
+                    }
+                }
+            }
+        }
     }
 
+    /** Sends the given system to every player who can see it, and removes it from every player who can't any
+     * more. */
+    private void updateVisibility(WireSystem system) {
+        for (Map.Entry<EntityPlayerMP, Set<WireSystem>> entry : knownSystems.entrySet()) {
+            if (entry.getValue().contains(system) && !system.isPlayerWatching(entry.getKey())) {
+                entry.getValue().remove(system);
+                getUpdate(entry.getKey()).removed.add(system.id);
+            }
+        }
+        WorldServer worldServer = (WorldServer) world;
+        boolean powered = wireSystems.get(system);
+        for (ChunkPos chunk : system.getChunkPoses()) {
+            for (EntityPlayerMP player : ChunkWatcherCache.getWatchers(worldServer, chunk.x, chunk.z)) {
+                PlayerUpdate update = getUpdate(player);
+                if (update.systems.put(system.id, system) == null) {
+                    getKnownSystems(player).add(system);
+                    update.powered.put(system.id, powered);
+                }
+            }
+        }
+    }
+
+    private void updateVisibility(WireSystem system, EntityPlayerMP player) {
+        Set<WireSystem> known = getKnownSystems(player);
+        boolean watching = system.isPlayerWatching(player);
+        if (watching && known.add(system)) {
+            PlayerUpdate update = getUpdate(player);
+            update.systems.put(system.id, system);
+            update.powered.put(system.id, (boolean) wireSystems.get(system));
+        } else if (!watching && known.remove(system)) {
+            getUpdate(player).removed.add(system.id);
+        }
+    }
+
+    private Set<WireSystem> getKnownSystems(EntityPlayerMP player) {
+        return knownSystems.computeIfAbsent(player, p -> new HashSet<>());
+    }
+
+    private PlayerUpdate getUpdate(EntityPlayerMP player) {
+        return playerUpdates.computeIfAbsent(player, p -> new PlayerUpdate());
+    }
+
+    /** Moves the given system to the chunks that it currently occupies in {@link #chunkIndex}. */
+    private void indexChunks(WireSystem system) {
+        unindexChunks(system);
+        List<ChunkPos> chunks = system.getChunkPoses();
+        for (ChunkPos chunk : chunks) {
+            long key = ChunkPos.asLong(chunk.x, chunk.z);
+            List<WireSystem> systems = chunkIndex.get(key);
+            if (systems == null) {
+                systems = new ArrayList<>(2);
+                chunkIndex.put(key, systems);
+            }
+            systems.add(system);
+        }
+        indexedChunks.put(system, chunks);
+    }
+
+    private void unindexChunks(WireSystem system) {
+        List<ChunkPos> chunks = indexedChunks.remove(system);
+        if (chunks == null) {
+            return;
+        }
+        for (ChunkPos chunk : chunks) {
+            long key = ChunkPos.asLong(chunk.x, chunk.z);
+            List<WireSystem> systems = chunkIndex.get(key);
+            if (systems != null) {
+                systems.remove(system);
+                if (systems.isEmpty()) {
+                    chunkIndex.remove(key);
+                }
+            }
+        }
+    }
+
+    /** Everything that needs to be sent to a single player at the end of a tick. */
+    static final class PlayerUpdate {
+        boolean clear;
+        final List<Integer> removed = new ArrayList<>();
+        final Map<Integer, WireSystem> systems = new HashMap<>();
+        final Int2BooleanMap powered = new Int2BooleanOpenHashMap();
+
+        void send(EntityPlayerMP player) {
+            if (clear || !removed.isEmpty() || !systems.isEmpty()) {
+                MessageManager.sendTo(new MessageWireSystems(clear, removed, systems), player);
+            }
+            if (!powered.isEmpty()) {
+                MessageManager.sendTo(new MessageWireSystemsPowered(powered), player);
+            }
+        }
+    }
+
+    // Saving
+
     @Override
     public NBTTagCompound writeToNBT(NBTTagCompound nbt) {
         NBTTagList entriesList = new NBTTagList();
@@ -168,17 +727,47 @@ public class WorldSavedDataWireSystems extends WorldSavedData {
             entriesList.appendTag(entry);
         });
         nbt.setTag("entries", entriesList);
+        nbt.setTag("emitting", emitters.writeToNBT());
         return nbt;
     }
 
     @Override
     public void readFromNBT(NBTTagCompound nbt) {
         wireSystems.clear();
+        partIndex.clear();
+        emitters.clear();
+        chunkIndex.clear();
+        indexedChunks.clear();
         NBTTagList entriesList = nbt.getTagList("entries", Constants.NBT.TAG_COMPOUND);
         for(int i = 0; i < entriesList.tagCount(); i++) {
             NBTTagCompound entry = entriesList.getCompoundTagAt(i);
-            wireSystems.put(new WireSystem().readFromNBT(entry.getCompoundTag("wireSystem")), entry.getBoolean("powered"));
+            WireSystem system = new WireSystem().readFromNBT(entry.getCompoundTag("wireSystem"));
+            system.id = nextSystemId++;
+            List<WireElement> duplicates = new ArrayList<>();
+            for (WireElement element : system.elements) {
+                if (element.type == WireElement.Type.WIRE_PART) {
+                    if (partIndex.putIfAbsent(element, system) != null) {
+                        // Shouldn't happen, but older versions could save overlapping systems
+                        duplicates.add(element);
+                    }
+                } else {
+                    emitters.add(element, system);
+                }
+            }
+            duplicates.forEach(system::removeElement);
+            if (!system.isEmpty()) {
+                wireSystems.put(system, entry.getBoolean("powered"));
+                indexChunks(system);
+            } else {
+                for (WireElement element : system.elements) {
+                    emitters.remove(element, system);
+                }
+            }
         }
+        // Older saves don't have this, but every loaded gate will push its state on its first tick
+        emitters.readFromNBT(nbt.getTagList("emitting", Constants.NBT.TAG_COMPOUND));
+        structureChanged = true;
+        gatesChanged = true;
     }
 
     public static WorldSavedDataWireSystems get(World world) {
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.test.builders.snapshot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.minecraft.nbt.CompressedStreamTools;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagInt;
+import net.minecraft.nbt.NBTTagList;
+
+import net.minecraftforge.common.util.Constants;
+
+import buildcraft.api.core.InvalidInputDataException;
+
+import buildcraft.builders.snapshot.PackedBlueprintData;
+
+public class PackedBlueprintDataTester {
+    private static final int AIR = 0;
+
+    public static long dontInlineThis = 0;
+
+    /** Mostly solid at the bottom, mostly air at the top, with some scattered air in the solid part. */
+    private static int[] createData(int sizeX, int sizeY, int sizeZ, int paletteSize, Random rand) {
+        int[] data = new int[sizeX * sizeY * sizeZ];
+        int i = 0;
+        for (int z = 0; z < sizeZ; z++) {
+            for (int y = 0; y < sizeY; y++) {
+                for (int x = 0; x < sizeX; x++) {
+                    boolean solid = y < sizeY / 2 ? rand.nextInt(8) != 0 : rand.nextInt(64) == 0;
+                    data[i++] = solid && paletteSize > 1 ? 1 + rand.nextInt(paletteSize - 1) : AIR;
+                }
+            }
+        }
+        return data;
+    }
+
+    @Test
+    public void testBits() {
+        Assert.assertEquals(1, PackedBlueprintData.getBits(0));
+        Assert.assertEquals(1, PackedBlueprintData.getBits(1));
+        Assert.assertEquals(1, PackedBlueprintData.getBits(2));
+        Assert.assertEquals(2, PackedBlueprintData.getBits(3));
+        Assert.assertEquals(2, PackedBlueprintData.getBits(4));
+        Assert.assertEquals(3, PackedBlueprintData.getBits(5));
+        Assert.assertEquals(8, PackedBlueprintData.getBits(256));
+        Assert.assertEquals(9, PackedBlueprintData.getBits(257));
+    }
+
+    @Test
+    public void testRoundTrip() throws InvalidInputDataException {
+        Random rand = new Random(0x5eed);
+        for (int paletteSize : new int[] { 1, 2, 3, 7, 17, 300, 70_000 }) {
+            for (int airIndex : new int[] { AIR, -1 }) {
+                for (int[] size : new int[][] { { 0, 0, 0 }, { 1, 1, 1 }, { 5, 3, 7 }, { 16, 16, 16 } }) {
+                    int[] data = createData(size[0], size[1], size[2], paletteSize, rand);
+                    NBTTagCompound nbt = PackedBlueprintData.write(data, paletteSize, airIndex);
+                    int[] read = PackedBlueprintData.read(nbt, data.length, paletteSize);
+                    Assert.assertArrayEquals("palette = " + paletteSize + ", air = " + airIndex, data, read);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testAirRuns() throws InvalidInputDataException {
+        int[] data = new int[100];
+        data[0] = 1;
+        data[50] = 2;
+        // Short runs of air must not be split out
+        data[53] = 3;
+        NBTTagCompound nbt = PackedBlueprintData.write(data, 4, AIR);
+        Assert.assertArrayEquals(new int[] { 1, 49, 4, 46 }, nbt.getIntArray("runs"));
+        Assert.assertArrayEquals(data, PackedBlueprintData.read(nbt, data.length, 4));
+
+        int[] allAir = new int[1000];
+        nbt = PackedBlueprintData.write(allAir, 1, AIR);
+        Assert.assertArrayEquals(new int[] { 0, 1000 }, nbt.getIntArray("runs"));
+        Assert.assertEquals(0, nbt.getIntArray("values").length);
+        Assert.assertArrayEquals(allAir, PackedBlueprintData.read(nbt, allAir.length, 1));
+    }
+
+    @Test
+    public void testInvalid() {
+        int[] data = { 0, 1, 2, 3 };
+        NBTTagCompound nbt = PackedBlueprintData.write(data, 4, AIR);
+        assertInvalid(nbt, 5, 4);
+        assertInvalid(nbt, 4, 3);
+
+        NBTTagCompound corrupt = nbt.copy();
+        corrupt.setIntArray("values", new int[0]);
+        assertInvalid(corrupt, 4, 4);
+
+        corrupt = nbt.copy();
+        corrupt.setByte("bits", (byte) 0);
+        assertInvalid(corrupt, 4, 4);
+
+        corrupt = nbt.copy();
+        corrupt.setIntArray("runs", new int[] { 2, 2 });
+        corrupt.setInteger("air", -1);
+        assertInvalid(corrupt, 4, 4);
+    }
+
+    private static void assertInvalid(NBTTagCompound nbt, int dataSize, int paletteSize) {
+        try {
+            PackedBlueprintData.read(nbt, dataSize, paletteSize);
+            Assert.fail("Expected the data to be rejected");
+        } catch (InvalidInputDataException expected) {
+            // Expected
+        }
+    }
+
+    // The old format, copied from Blueprint before the packed format was added
+
+    private static NBTTagList writeLegacy(int[] data) {
+        NBTTagList list = new NBTTagList();
+        for (int value : data) {
+            list.appendTag(new NBTTagInt(value));
+        }
+        return list;
+    }
+
+    private static int[] readLegacy(NBTTagCompound nbt) {
+        NBTTagList list = nbt.getTagList("data", Constants.NBT.TAG_INT);
+        int[] data = new int[list.tagCount()];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = list.getIntAt(i);
+        }
+        return data;
+    }
+
+    private static long getAllocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    private static int getSerializedSize(NBTTagCompound nbt) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        CompressedStreamTools.write(nbt, new DataOutputStream(baos));
+        return baos.size();
+    }
+
+    @Test
+    public void benchmark() throws IOException, InvalidInputDataException {
+        Random rand = new Random(42);
+        int paletteSize = 40;
+        for (int[] size : new int[][] { { 16, 16, 16 }, { 64, 32, 64 }, { 128, 64, 128 }, { 256, 128, 256 } }) {
+            int[] data = createData(size[0], size[1], size[2], paletteSize, rand);
+            boolean runLegacy = data.length <= 1 << 20;
+            // Warm up
+            for (int i = 0; i < 3; i++) {
+                dontInlineThis += PackedBlueprintData.write(data, paletteSize, AIR).getIntArray("values").length;
+                if (runLegacy) {
+                    dontInlineThis += writeLegacy(data).tagCount();
+                }
+            }
+
+            long allocStart = getAllocatedBytes();
+            long start = System.nanoTime();
+            NBTTagCompound packed = new NBTTagCompound();
+            packed.setTag("dataPacked", PackedBlueprintData.write(data, paletteSize, AIR));
+            long packedWrite = System.nanoTime() - start;
+            long packedAlloc = getAllocatedBytes() - allocStart;
+            start = System.nanoTime();
+            int[] read = PackedBlueprintData.read(packed.getCompoundTag("dataPacked"), data.length, paletteSize);
+            long packedRead = System.nanoTime() - start;
+            Assert.assertArrayEquals(data, read);
+
+            String label = size[0] + "x" + size[1] + "x" + size[2];
+            System.out.printf("%-12s packed: write %6.1fms, read %6.1fms, alloc %,12d bytes, stream %,11d bytes%n",
+                label, packedWrite / 1e6, packedRead / 1e6, packedAlloc, getSerializedSize(packed));
+
+            if (runLegacy) {
+                allocStart = getAllocatedBytes();
+                start = System.nanoTime();
+                NBTTagCompound legacy = new NBTTagCompound();
+                legacy.setTag("data", writeLegacy(data));
+                long legacyWrite = System.nanoTime() - start;
+                long legacyAlloc = getAllocatedBytes() - allocStart;
+                start = System.nanoTime();
+                read = readLegacy(legacy);
+                long legacyRead = System.nanoTime() - start;
+                Assert.assertArrayEquals(data, read);
+                System.out.printf("%-12s legacy: write %6.1fms, read %6.1fms, alloc %,12d bytes, stream %,11d bytes%n",
+                    label, legacyWrite / 1e6, legacyRead / 1e6, legacyAlloc, getSerializedSize(legacy));
+            } else {
+                System.out.printf("%-12s legacy: skipped (too large)%n", label);
+            }
+        }
+    }
+}
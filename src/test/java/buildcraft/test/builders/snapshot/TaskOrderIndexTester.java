@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.test.builders.snapshot;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import buildcraft.builders.snapshot.TaskOrderIndex;
+
+public class TaskOrderIndexTester {
+    private static final int TASKS = 16;
+    private static final int CHANGES_PER_TICK = 10;
+
+    public static long dontInlineThis = 0;
+
+    private static int[] createOrder(int volume, Random rand) {
+        int[] order = new int[volume];
+        for (int i = 0; i < volume; i++) {
+            order[i] = i;
+        }
+        for (int i = volume - 1; i > 0; i--) {
+            int j = rand.nextInt(i + 1);
+            int t = order[i];
+            order[i] = order[j];
+            order[j] = t;
+        }
+        return order;
+    }
+
+    /** The old way of finding the next tasks: filter the entire order. */
+    private static int[] pickFull(int[] order, boolean[] results, int[] current) {
+        Set<Integer> currentIndexes = Arrays.stream(current).boxed().collect(Collectors.toSet());
+        return Arrays.stream(order)
+            .filter(i -> results[i] && !currentIndexes.contains(i))
+            .limit(TASKS)
+            .toArray();
+    }
+
+    private static int[] pickIndexed(TaskOrderIndex index, int[] current) {
+        int[] picked = new int[TASKS];
+        int count = 0;
+        for (int rank = index.nextRank(0); rank != -1 && count < TASKS; rank = index.nextRank(rank + 1)) {
+            int i = index.getIndex(rank);
+            boolean isCurrent = false;
+            for (int c : current) {
+                isCurrent |= c == i;
+            }
+            if (!isCurrent) {
+                picked[count++] = i;
+            }
+        }
+        return Arrays.copyOf(picked, count);
+    }
+
+    @Test
+    public void testMatchesFullScan() {
+        Random rand = new Random(0);
+        int volume = 16 * 16 * 16;
+        int[] order = createOrder(volume, rand);
+        boolean[] results = new boolean[volume];
+        TaskOrderIndex index = new TaskOrderIndex(order);
+        int[] current = new int[0];
+        for (int tick = 0; tick < 1000; tick++) {
+            for (int c = 0; c < CHANGES_PER_TICK * 10; c++) {
+                int i = rand.nextInt(volume);
+                results[i] = rand.nextInt(4) == 0;
+                index.set(i, results[i]);
+            }
+            int[] expected = pickFull(order, results, current);
+            Assert.assertArrayEquals(expected, pickIndexed(index, current));
+            int count = 0;
+            for (boolean result : results) {
+                count += result ? 1 : 0;
+            }
+            Assert.assertEquals(count, index.size());
+            current = Arrays.copyOf(expected, Math.min(expected.length, 4));
+        }
+    }
+
+    @Test
+    public void testBlocked() {
+        TaskOrderIndex index = new TaskOrderIndex(new int[] { 3, 1, 0, 2 });
+        index.set(0, true);
+        index.set(1, true);
+        index.set(2, true);
+        Assert.assertEquals(1, index.getIndex(index.nextRank(0)));
+        index.block(1);
+        Assert.assertEquals(0, index.getIndex(index.nextRank(0)));
+        Assert.assertEquals(3, index.size());
+        index.set(1, false);
+        index.set(1, true);
+        Assert.assertEquals(0, index.getIndex(index.nextRank(0)));
+        index.unblockAll();
+        Assert.assertEquals(1, index.getIndex(index.nextRank(0)));
+        index.clear();
+        Assert.assertEquals(-1, index.nextRank(0));
+        Assert.assertEquals(0, index.size());
+    }
+
+    @Test
+    public void benchmarkTaskSelection() {
+        for (int size : new int[] { 16, 32, 64 }) {
+            int volume = size * size * size;
+            Random rand = new Random(size);
+            int[] order = createOrder(volume, rand);
+            boolean[] results = new boolean[volume];
+            TaskOrderIndex index = new TaskOrderIndex(order);
+            // Most of the volume is already done, with a few blocks left to build scattered through it
+            for (int i = 0; i < volume; i++) {
+                results[i] = rand.nextInt(64) == 0;
+                index.set(i, results[i]);
+            }
+            int ticks = 200;
+            int[] current = new int[0];
+
+            long start = System.nanoTime();
+            for (int tick = 0; tick < ticks; tick++) {
+                simulateChecks(rand, volume, results, null);
+                dontInlineThis += pickFull(order, results, current).length;
+            }
+            long full = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int tick = 0; tick < ticks; tick++) {
+                simulateChecks(rand, volume, results, index);
+                dontInlineThis += pickIndexed(index, current).length;
+            }
+            long indexed = System.nanoTime() - start;
+
+            System.out.println(size + "^3 (" + volume + " blocks), " + ticks + " ticks:");
+            System.out.println("  Full scan: " + full / 1000 / ticks + "us per tick");
+            System.out.println("  Indexed:   " + indexed / 1000 / ticks + "us per tick");
+        }
+    }
+
+    private static void simulateChecks(Random rand, int volume, boolean[] results, TaskOrderIndex index) {
+        for (int c = 0; c < CHANGES_PER_TICK; c++) {
+            int i = rand.nextInt(volume);
+            results[i] = rand.nextInt(64) == 0;
+            if (index != null) {
+                index.set(i, results[i]);
+            }
+        }
+    }
+}
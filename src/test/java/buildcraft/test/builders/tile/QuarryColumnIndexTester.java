@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.test.builders.tile;
+
+import java.util.Random;
+import java.util.function.Predicate;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.minecraft.util.math.BlockPos;
+
+import buildcraft.builders.tile.QuarryColumnIndex;
+
+public class QuarryColumnIndexTester {
+    private static final BlockPos MIN = new BlockPos(-3, 5, 10);
+    private static final BlockPos MAX = new BlockPos(4, 20, 14);
+
+    /** True for every solid block, indexed by [x][y][z] relative to {@link #MIN}. */
+    private final boolean[][][] solid = new boolean[8][16][5];
+    private int tests = 0;
+
+    private final Predicate<BlockPos> canMoveThrough = pos -> {
+        tests++;
+        return !solid[pos.getX() - MIN.getX()][pos.getY() - MIN.getY()][pos.getZ() - MIN.getZ()];
+    };
+
+    private int findSurface(int x, int z) {
+        for (int y = MAX.getY(); y >= MIN.getY(); y--) {
+            if (solid[x - MIN.getX()][y - MIN.getY()][z - MIN.getZ()]) {
+                return y;
+            }
+        }
+        return MIN.getY() - 1;
+    }
+
+    private void set(QuarryColumnIndex index, BlockPos pos, boolean value) {
+        solid[pos.getX() - MIN.getX()][pos.getY() - MIN.getY()][pos.getZ() - MIN.getZ()] = value;
+        index.onBlockChanged(pos, !value);
+    }
+
+    private void assertMatches(QuarryColumnIndex index) {
+        for (int x = MIN.getX(); x <= MAX.getX(); x++) {
+            for (int z = MIN.getZ(); z <= MAX.getZ(); z++) {
+                int surface = index.getSurface(x, z, canMoveThrough);
+                Assert.assertEquals("Column " + x + ", " + z, findSurface(x, z), surface);
+            }
+        }
+    }
+
+    @Test
+    public void testRandomChanges() {
+        Random rand = new Random(7);
+        for (boolean[][] plane : solid) {
+            for (boolean[] column : plane) {
+                for (int i = 0; i < column.length; i++) {
+                    column[i] = rand.nextInt(3) == 0;
+                }
+            }
+        }
+        QuarryColumnIndex index = new QuarryColumnIndex(MIN, MAX);
+        assertMatches(index);
+        for (int i = 0; i < 2000; i++) {
+            BlockPos pos = new BlockPos(
+                MIN.getX() + rand.nextInt(8), MIN.getY() + rand.nextInt(16), MIN.getZ() + rand.nextInt(5)
+            );
+            set(index, pos, rand.nextBoolean());
+            if (i % 50 == 0) {
+                assertMatches(index);
+            }
+        }
+        assertMatches(index);
+
+        QuarryColumnIndex read = new QuarryColumnIndex(MIN, MAX);
+        read.readFromNBT(index.writeToNBT());
+        assertMatches(read);
+    }
+
+    @Test
+    public void testMiningLooksAtEveryBlockOnce() {
+        for (boolean[][] plane : solid) {
+            for (boolean[] column : plane) {
+                for (int i = 0; i < column.length; i++) {
+                    column[i] = true;
+                }
+            }
+        }
+        QuarryColumnIndex index = new QuarryColumnIndex(MIN, MAX);
+        // Mine every block, top down, checking every position in every layer like the quarry does
+        for (int y = MAX.getY(); y >= MIN.getY(); y--) {
+            for (int x = MIN.getX(); x <= MAX.getX(); x++) {
+                for (int z = MIN.getZ(); z <= MAX.getZ(); z++) {
+                    BlockPos pos = new BlockPos(x, y, z);
+                    Assert.assertTrue(index.canMoveDownTo(pos, canMoveThrough));
+                    Assert.assertEquals(y, index.getSurface(x, z, canMoveThrough));
+                    set(index, pos, false);
+                }
+            }
+        }
+        int volume = 8 * 16 * 5;
+        // Every block is tested exactly once (while it is still solid)
+        Assert.assertEquals(volume, tests);
+        assertMatches(index);
+    }
+}
@@ -0,0 +1,137 @@
+package buildcraft.test.lib.cache;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.EnumFacing;
+
+import net.minecraftforge.common.capabilities.Capability;
+
+import buildcraft.api.mj.IMjConnector;
+import buildcraft.api.mj.IMjReceiver;
+
+import buildcraft.lib.cache.MjNeighbourCache;
+
+import buildcraft.test.VanillaSetupBaseTester;
+
+public class MjNeighbourCacheTester extends VanillaSetupBaseTester {
+
+    /** Returns {@link #receiver} for every capability, as capabilities aren't injected outside of the game. */
+    static class TestTile extends TileEntity {
+        IMjReceiver receiver;
+        int lookups;
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public <T> T getCapability(@Nonnull Capability<T> capability, EnumFacing facing) {
+            lookups++;
+            return (T) receiver;
+        }
+    }
+
+    static class TestReceiver implements IMjReceiver {
+        @Override
+        public boolean canConnect(@Nonnull IMjConnector other) {
+            return true;
+        }
+
+        @Override
+        public long getPowerRequested() {
+            return 0;
+        }
+
+        @Override
+        public long receivePower(long microJoules, boolean simulate) {
+            return microJoules;
+        }
+
+        @Override
+        public boolean canReceive() {
+            return true;
+        }
+    }
+
+    private final Map<EnumFacing, TileEntity> neighbours = new EnumMap<>(EnumFacing.class);
+    private long time = 0;
+    private final MjNeighbourCache cache = new MjNeighbourCache(neighbours::get, () -> time);
+
+    @Test
+    public void testFoundIsCached() {
+        TestTile tile = new TestTile();
+        tile.receiver = new TestReceiver();
+        neighbours.put(EnumFacing.NORTH, tile);
+
+        Assert.assertSame(tile, cache.getTile(EnumFacing.NORTH));
+        Assert.assertSame(tile.receiver, cache.getReceiver(EnumFacing.NORTH));
+        time += 1000;
+        Assert.assertSame(tile.receiver, cache.getReceiver(EnumFacing.NORTH));
+        Assert.assertEquals(1, tile.lookups);
+        Assert.assertNull(cache.getTile(EnumFacing.SOUTH));
+        Assert.assertNull(cache.getReceiver(EnumFacing.SOUTH));
+
+        cache.invalidate();
+        Assert.assertSame(tile.receiver, cache.getReceiver(EnumFacing.NORTH));
+        Assert.assertEquals(2, tile.lookups);
+    }
+
+    @Test
+    public void testNeighbourChange() {
+        TestTile first = new TestTile();
+        first.receiver = new TestReceiver();
+        neighbours.put(EnumFacing.UP, first);
+        Assert.assertSame(first.receiver, cache.getReceiver(EnumFacing.UP));
+
+        // A different tile in the same place, even if it's of the same type
+        TestTile second = new TestTile();
+        second.receiver = new TestReceiver();
+        neighbours.put(EnumFacing.UP, second);
+        Assert.assertSame(second, cache.getTile(EnumFacing.UP));
+        Assert.assertSame(second.receiver, cache.getReceiver(EnumFacing.UP));
+        Assert.assertEquals(1, second.lookups);
+
+        // And the old one comes back
+        neighbours.put(EnumFacing.UP, first);
+        Assert.assertSame(first.receiver, cache.getReceiver(EnumFacing.UP));
+        Assert.assertEquals(2, first.lookups);
+
+        neighbours.remove(EnumFacing.UP);
+        Assert.assertNull(cache.getTile(EnumFacing.UP));
+        Assert.assertNull(cache.getReceiver(EnumFacing.UP));
+    }
+
+    @Test
+    public void testMissingRechecked() {
+        TestTile tile = new TestTile();
+        neighbours.put(EnumFacing.EAST, tile);
+        Assert.assertNull(cache.getReceiver(EnumFacing.EAST));
+        Assert.assertEquals(1, tile.lookups);
+
+        // The tile starts exposing a receiver without telling its neighbours
+        tile.receiver = new TestReceiver();
+        time = 19;
+        Assert.assertNull(cache.getReceiver(EnumFacing.EAST));
+        Assert.assertEquals(1, tile.lookups);
+        time = 20;
+        Assert.assertSame(tile.receiver, cache.getReceiver(EnumFacing.EAST));
+        Assert.assertEquals(2, tile.lookups);
+
+        // Connectors are cached separately from receivers
+        Assert.assertSame(tile.receiver, cache.getConnector(EnumFacing.EAST));
+        Assert.assertEquals(3, tile.lookups);
+
+        // Replacing the tile doesn't wait for the recheck
+        TestTile replacement = new TestTile();
+        neighbours.put(EnumFacing.EAST, replacement);
+        time = 21;
+        Assert.assertNull(cache.getReceiver(EnumFacing.EAST));
+        replacement.receiver = new TestReceiver();
+        neighbours.put(EnumFacing.EAST, tile);
+        Assert.assertSame(tile.receiver, cache.getReceiver(EnumFacing.EAST));
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.test.lib.misc;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import buildcraft.lib.misc.MathUtil;
+
+public class MathUtilTester {
+    private static final BigInteger MIN = BigInteger.valueOf(Long.MIN_VALUE);
+    private static final BigInteger MAX = BigInteger.valueOf(Long.MAX_VALUE);
+    private static final long[] EDGES = { 0, 1, -1, 2, -2, 3, Integer.MAX_VALUE, Integer.MIN_VALUE, 1L << 31,
+        -(1L << 31), 1L << 32, (1L << 32) - 1, 1L << 62, Long.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE - 1,
+        Long.MIN_VALUE + 1, 1_000_000, 24_000_000_000L, 512_000_000 };
+
+    public static long dontInlineThis = 0;
+
+    /** @return A random long, with a random number of significant bits so that small and large values are both
+     *         common. */
+    private static long nextLong(Random rand) {
+        switch (rand.nextInt(4)) {
+            case 0:
+                return EDGES[rand.nextInt(EDGES.length)];
+            case 1:
+                return rand.nextLong();
+            default:
+                return rand.nextLong() >> rand.nextInt(64);
+        }
+    }
+
+    private static void assertMulDiv(long a, long b, long c) {
+        String message = a + " * " + b + " / " + c;
+        if (c == 0) {
+            try {
+                MathUtil.mulDiv(a, b, c);
+                Assert.fail("Expected division by zero to fail: " + message);
+            } catch (ArithmeticException expected) {
+                return;
+            }
+        }
+        BigInteger expected = BigInteger.valueOf(a).multiply(BigInteger.valueOf(b)).divide(BigInteger.valueOf(c));
+        if (expected.compareTo(MIN) < 0 || expected.compareTo(MAX) > 0) {
+            try {
+                long actual = MathUtil.mulDiv(a, b, c);
+                Assert.fail("Expected overflow for " + message + ", but got " + actual);
+            } catch (ArithmeticException e) {
+                // Expected
+            }
+        } else {
+            Assert.assertEquals(message, expected.longValue(), MathUtil.mulDiv(a, b, c));
+        }
+    }
+
+    @Test
+    public void testMultiplyHigh() {
+        Random rand = new Random(0x4d4a);
+        for (int i = 0; i < 1_000_000; i++) {
+            long a = nextLong(rand);
+            long b = nextLong(rand);
+            long expected = BigInteger.valueOf(a).multiply(BigInteger.valueOf(b)).shiftRight(64).longValue();
+            Assert.assertEquals(a + " * " + b, expected, MathUtil.multiplyHigh(a, b));
+        }
+    }
+
+    @Test
+    public void testMulDivEdges() {
+        for (long a : EDGES) {
+            for (long b : EDGES) {
+                for (long c : EDGES) {
+                    assertMulDiv(a, b, c);
+                    assertMulDiv(-a, b, c);
+                    assertMulDiv(a, b, -c);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMulDivRandom() {
+        Random rand = new Random(0x6d756c);
+        for (int i = 0; i < 2_000_000; i++) {
+            long a = nextLong(rand);
+            long b = nextLong(rand);
+            long c;
+            if (rand.nextBoolean()) {
+                c = nextLong(rand);
+            } else {
+                // Results that are close to the limit of a long
+                long high = MathUtil.multiplyHigh(a, b);
+                c = high == 0 ? nextLong(rand) : high * (2 + rand.nextInt(4)) + rand.nextInt(1000);
+            }
+            assertMulDiv(a, b, c);
+        }
+    }
+
+    @Test
+    public void benchmark() {
+        Random rand = new Random(1);
+        int count = 1 << 16;
+        long[] as = new long[count];
+        long[] bs = new long[count];
+        long[] cs = new long[count];
+        for (int i = 0; i < count; i++) {
+            // The sort of values that MJ code deals with: power in micro MJ, scaled by other power values
+            as[i] = (long) (rand.nextDouble() * 24_000_000_000_000L);
+            bs[i] = (long) (rand.nextDouble() * 512_000_000_000L);
+            cs[i] = 1 + (long) (rand.nextDouble() * 12_000_000_000_000L);
+        }
+        for (int run = 0; run < 5; run++) {
+            long start = System.nanoTime();
+            long total = 0;
+            for (int i = 0; i < count; i++) {
+                total += BigInteger.valueOf(as[i]).multiply(BigInteger.valueOf(bs[i])).divide(BigInteger.valueOf(
+                    cs[i])).longValue();
+            }
+            long big = System.nanoTime() - start;
+            dontInlineThis += total;
+
+            start = System.nanoTime();
+            long total2 = 0;
+            for (int i = 0; i < count; i++) {
+                total2 += MathUtil.mulDiv(as[i], bs[i], cs[i]);
+            }
+            long mulDiv = System.nanoTime() - start;
+            dontInlineThis += total2;
+            Assert.assertEquals(total, total2);
+
+            System.out.printf("%d calls: BigInteger %6.2fms (%5.1fns each), mulDiv %6.2fms (%5.1fns each)%n", count,
+                big / 1e6, big / (double) count, mulDiv / 1e6, mulDiv / (double) count);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package buildcraft.test.lib.misc.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Stopwatch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import buildcraft.lib.misc.data.DelayedList;
+
+public class DelayedListTester {
+    public static long dontInlineThis = 0;
+
+    @Test
+    public void testOrder() {
+        DelayedList<Integer> list = new DelayedList<>();
+        list.add(2, 2);
+        list.add(0, 0);
+        list.add(-5, 0);
+        list.add(1, 1);
+        Assert.assertEquals(3, list.getMaxDelay());
+
+        Assert.assertEquals(2, list.advance().size());
+        Assert.assertEquals(2, list.getMaxDelay());
+        Assert.assertEquals(1, (int) list.advance().get(0));
+        Assert.assertEquals(2, (int) list.advance().get(0));
+        Assert.assertEquals(0, list.getMaxDelay());
+        Assert.assertTrue(list.advance().isEmpty());
+    }
+
+    @Test
+    public void testWrapAndGrow() {
+        DelayedList<Integer> list = new DelayedList<>();
+        Random rand = new Random(0x44_11_a7);
+        List<List<Integer>> expected = new ArrayList<>();
+        for (int tick = 0; tick < 1000; tick++) {
+            int count = rand.nextInt(4);
+            for (int i = 0; i < count; i++) {
+                int delay = rand.nextInt(tick % 100 == 0 ? 100 : 20);
+                int value = rand.nextInt();
+                list.add(delay, value);
+                while (expected.size() < delay + 1) {
+                    expected.add(new ArrayList<>());
+                }
+                expected.get(delay).add(value);
+            }
+            Assert.assertEquals(expected, list.getAllElements());
+            List<Integer> next = expected.isEmpty() ? new ArrayList<>() : expected.remove(0);
+            Assert.assertEquals(next, list.advance());
+        }
+        list.clear();
+        Assert.assertEquals(0, list.getMaxDelay());
+        Assert.assertTrue(list.getAllElements().isEmpty());
+    }
+
+    @Test
+    public void testAdvanceHandsOver() {
+        DelayedList<Integer> list = new DelayedList<>();
+        list.add(0, 1);
+        list.add(1, 2);
+        List<Integer> first = list.advance();
+        list.add(0, 3);
+        Assert.assertEquals(2, list.advance().size());
+        list.add(2, 4);
+        list.clear();
+        // Nothing that happens to the list afterwards changes what it returned
+        Assert.assertEquals(1, first.size());
+        Assert.assertEquals(1, (int) first.get(0));
+
+        // Unless it is handed back
+        list.recycle(first);
+        Assert.assertTrue(first.isEmpty());
+        list.add(0, 5);
+        Assert.assertSame(first, list.advance());
+        Assert.assertEquals(5, (int) first.get(0));
+        list.recycle(list.advance());
+    }
+
+    @Test
+    public void testConcurrent() throws InterruptedException {
+        DelayedList<Integer> list = DelayedList.createConcurrent();
+        int count = 10_000;
+        Thread adder = new Thread(() -> {
+            for (int i = 0; i < count; i++) {
+                list.add(i % 3, i);
+            }
+        });
+        adder.start();
+        int seen = 0;
+        while (adder.isAlive() || list.getMaxDelay() > 0) {
+            for (List<Integer> bucket : list.getAllElements()) {
+                // A copy, so this can't see the other thread adding to it
+                Assert.assertTrue(bucket.size() <= count);
+            }
+            for (Integer value : list.advance()) {
+                Assert.assertNotNull(value);
+                seen++;
+            }
+        }
+        adder.join();
+        for (Integer value : list.advance()) {
+            Assert.assertNotNull(value);
+            seen++;
+        }
+        Assert.assertEquals(count, seen);
+    }
+
+    /** Ticks 10,000 pipes that each have 20 items travelling through them. */
+    @Test
+    public void benchmarkPipes() {
+        final int pipes = 10_000;
+        final int itemsPerPipe = 20;
+        final int ticks = 200;
+
+        List<DelayedList<Object>> wheels = new ArrayList<>();
+        List<ShiftingDelayedList<Object>> shifting = new ArrayList<>();
+        Random rand = new Random(0x5eed);
+        for (int p = 0; p < pipes; p++) {
+            DelayedList<Object> wheel = new DelayedList<>();
+            ShiftingDelayedList<Object> shift = new ShiftingDelayedList<>();
+            for (int i = 0; i < itemsPerPipe; i++) {
+                Object item = new Object();
+                int delay = rand.nextInt(itemsPerPipe);
+                wheel.add(delay, item);
+                shift.add(delay, item);
+            }
+            wheels.add(wheel);
+            shifting.add(shift);
+        }
+
+        for (int warmup = 0; warmup < 3; warmup++) {
+            tickShifting(shifting, ticks / 4, false);
+            tickWheels(wheels, ticks / 4, false);
+        }
+        tickShifting(shifting, ticks, true);
+        tickWheels(wheels, ticks, true);
+    }
+
+    private static void tickWheels(List<DelayedList<Object>> wheels, int ticks, boolean print) {
+        Stopwatch watch = Stopwatch.createStarted();
+        for (int t = 0; t < ticks; t++) {
+            for (DelayedList<Object> wheel : wheels) {
+                List<Object> done = wheel.advance();
+                for (int i = 0; i < done.size(); i++) {
+                    // Items move into the next pipe, and so the same number come in from the previous one
+                    wheel.add(16 + (i & 7), done.get(i));
+                }
+            }
+        }
+        watch.stop();
+        if (print) {
+            System.out.println("[timing wheel] " + ticks + " ticks of " + wheels.size() + " pipes took "
+                + watch.elapsed(TimeUnit.MILLISECONDS) + "ms");
+        }
+    }
+
+    private static void tickShifting(List<ShiftingDelayedList<Object>> lists, int ticks, boolean print) {
+        Stopwatch watch = Stopwatch.createStarted();
+        for (int t = 0; t < ticks; t++) {
+            for (ShiftingDelayedList<Object> list : lists) {
+                List<Object> done = list.advance();
+                for (int i = 0; i < done.size(); i++) {
+                    list.add(16 + (i & 7), done.get(i));
+                }
+                dontInlineThis += done.size();
+            }
+        }
+        watch.stop();
+        if (print) {
+            System.out.println("[array list  ] " + ticks + " ticks of " + lists.size() + " pipes took "
+                + watch.elapsed(TimeUnit.MILLISECONDS) + "ms");
+        }
+    }
+
+    /** The previous implementation of {@link DelayedList}, kept only for comparison. */
+    static class ShiftingDelayedList<E> {
+        final List<List<E>> elements = new ArrayList<>();
+
+        List<E> advance() {
+            if (elements.isEmpty()) {
+                return new ArrayList<>();
+            }
+            return elements.remove(0);
+        }
+
+        void add(int delay, E element) {
+            while (elements.size() < delay + 1) {
+                elements.add(new ArrayList<>());
+            }
+            elements.get(delay).add(element);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package buildcraft.test.lib.net;
+
+import java.lang.management.ManagementFactory;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.minecraft.network.PacketBuffer;
+import net.minecraft.util.math.BlockPos;
+
+import buildcraft.lib.misc.MessageUtil;
+import buildcraft.lib.net.MessageMultiTileUpdate;
+import buildcraft.lib.net.MessageUpdateTile;
+import buildcraft.lib.net.PacketBufferBC;
+
+public class MessageUpdateTileTester {
+    private static final BlockPos POS = new BlockPos(-120, 64, 3000);
+    private static final int PAYLOAD_SIZE = 64;
+    private static final int UPDATES = 100_000;
+
+    public static long dontInlineThis = 0;
+
+    @Test
+    public void testRoundTrip() {
+        PacketBufferBC payload = MessageUpdateTile.allocatePayload();
+        writePayload(payload);
+        MessageUpdateTile sent = new MessageUpdateTile(POS, payload);
+
+        // Sending to two players encodes the message twice
+        ByteBuf first = Unpooled.buffer();
+        ByteBuf second = Unpooled.buffer();
+        sent.toBytes(first);
+        sent.toBytes(second);
+        sent.release();
+        Assert.assertEquals(0, payload.refCnt());
+        Assert.assertEquals(first, second);
+
+        MessageUpdateTile received = new MessageUpdateTile();
+        received.fromBytes(first);
+        Assert.assertEquals(PAYLOAD_SIZE, received.getPayloadSize());
+        Assert.assertEquals(0, first.readableBytes());
+        // The payload is a retained slice of the incoming buffer rather than a copy
+        Assert.assertEquals(2, first.refCnt());
+        received.release();
+        Assert.assertEquals(1, first.refCnt());
+    }
+
+    @Test
+    public void testMultiRoundTrip() {
+        PacketBufferBC payload = MessageUpdateTile.allocatePayload();
+        writePayload(payload);
+        MessageMultiTileUpdate sent = new MessageMultiTileUpdate();
+        Assert.assertTrue(sent.add(POS, payload));
+        Assert.assertTrue(sent.add(POS.up(), payload));
+        Assert.assertEquals(2, sent.getCount());
+
+        ByteBuf network = Unpooled.buffer();
+        sent.toBytes(network);
+        // The payload is owned by the caller, not the message
+        Assert.assertEquals(1, payload.refCnt());
+        payload.release();
+
+        MessageMultiTileUpdate received = new MessageMultiTileUpdate();
+        received.fromBytes(network);
+        Assert.assertEquals(2, received.getCount());
+        Assert.assertEquals(0, network.readableBytes());
+        Assert.assertEquals(3, network.refCnt());
+    }
+
+    /** Compares the previous implementation (an unpooled payload, which is copied into the outgoing buffer and then
+     * copied out again when read) against the current one. */
+    @Test
+    public void benchmarkUpdates() {
+        com.sun.management.ThreadMXBean bean = getAllocationBean();
+
+        for (int i = 0; i < UPDATES; i++) {
+            legacyUpdate();
+            pooledUpdate();
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long[] copied = new long[2];
+        long[] allocated = new long[2];
+        long[] nanos = new long[2];
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime();
+            long before = bean == null ? 0 : bean.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < UPDATES; i++) {
+                copied[round] += round == 0 ? legacyUpdate() : pooledUpdate();
+            }
+            long after = bean == null ? 0 : bean.getThreadAllocatedBytes(threadId);
+            nanos[round] = System.nanoTime() - start;
+            allocated[round] = after - before;
+        }
+        String[] names = { "Unpooled + copy", "Pooled + slice" };
+        for (int round = 0; round < 2; round++) {
+            System.out.println(names[round] + ": " + (copied[round] / UPDATES) + " bytes copied, "
+                + (bean == null ? "?" : Long.toString(allocated[round] / UPDATES)) + " bytes allocated, "
+                + (nanos[round] / UPDATES) + "ns per update");
+        }
+        Assert.assertTrue(copied[1] < copied[0]);
+    }
+
+    private static com.sun.management.ThreadMXBean getAllocationBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported()) {
+                sunBean.setThreadAllocatedMemoryEnabled(true);
+                return sunBean;
+            }
+        }
+        return null;
+    }
+
+    private static void writePayload(PacketBufferBC buffer) {
+        buffer.writeShort(3);
+        for (int i = 2; i < PAYLOAD_SIZE; i += 2) {
+            buffer.writeShort(i);
+        }
+    }
+
+    /** @return The number of bytes copied after the payload was written. */
+    private static int legacyUpdate() {
+        PacketBufferBC payload = new PacketBufferBC(Unpooled.buffer());
+        writePayload(payload);
+
+        ByteBuf network = Unpooled.buffer();
+        MessageUtil.writeBlockPos(new PacketBuffer(network), POS);
+        int length = payload.readableBytes();
+        network.writeMedium(length);
+        network.writeBytes(payload, 0, length);
+
+        MessageUtil.readBlockPos(new PacketBuffer(network));
+        int size = network.readUnsignedMedium();
+        ByteBuf read = network.readBytes(size);
+        dontInlineThis += read.readShort();
+        read.release();
+        return length + size;
+    }
+
+    /** @return The number of bytes copied after the payload was written. */
+    private static int pooledUpdate() {
+        PacketBufferBC payload = MessageUpdateTile.allocatePayload();
+        writePayload(payload);
+        MessageUpdateTile message = new MessageUpdateTile(POS, payload);
+        int length = message.getPayloadSize();
+
+        ByteBuf network = Unpooled.buffer();
+        message.toBytes(network);
+        message.release();
+
+        MessageUpdateTile received = new MessageUpdateTile();
+        received.fromBytes(network);
+        dontInlineThis += received.getPayloadSize();
+        received.release();
+        return length;
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.test.lib.path;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.minecraft.util.math.BlockPos;
+
+import buildcraft.lib.misc.WorkerThreadUtil;
+import buildcraft.lib.path.MiniChunkGraph;
+import buildcraft.lib.path.MiniChunkGraph.ChunkType;
+import buildcraft.lib.path.task.AnalysedChunk;
+import buildcraft.lib.path.task.EnumTraversalExpense;
+import buildcraft.lib.path.task.FilledChunk;
+import buildcraft.lib.path.task.TaskMiniChunkAnalyser;
+
+public class MiniChunkAnalyserTester {
+    public static long dontInlineThis = 0;
+
+    private static FilledChunk fill(Random rand, int surface, int solidChance) {
+        FilledChunk filled = new FilledChunk();
+        for (int y = 0; y < 16; y++) {
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    EnumTraversalExpense expense;
+                    if (y < surface) {
+                        expense = rand.nextInt(100) < solidChance ? EnumTraversalExpense.SOLID
+                            : EnumTraversalExpense.AIR;
+                    } else {
+                        expense = rand.nextInt(20) == 0 ? EnumTraversalExpense.FLUID : EnumTraversalExpense.AIR;
+                    }
+                    filled.set(MiniChunkGraph.getIndex(x, y, z), expense);
+                }
+            }
+        }
+        return filled;
+    }
+
+    private static FilledChunk fill(EnumTraversalExpense expense) {
+        FilledChunk filled = new FilledChunk();
+        for (int i = 0; i < MiniChunkGraph.VOLUME; i++) {
+            filled.set(i, expense);
+        }
+        return filled;
+    }
+
+    /** Finds the number of graphs with a plain flood fill over positions, to check the analyser against. */
+    private static int countGraphsSlowly(FilledChunk filled) {
+        boolean[] seen = new boolean[MiniChunkGraph.VOLUME];
+        int graphs = 0;
+        for (int i = 0; i < MiniChunkGraph.VOLUME; i++) {
+            if (seen[i] || filled.expenses[i] < 0) {
+                continue;
+            }
+            graphs++;
+            Deque<BlockPos> open = new ArrayDeque<>();
+            open.add(new BlockPos(i & 15, i >> 8, (i >> 4) & 15));
+            seen[i] = true;
+            while (!open.isEmpty()) {
+                BlockPos pos = open.poll();
+                for (BlockPos next : new BlockPos[] { pos.up(), pos.down(), pos.north(), pos.south(), pos.east(),
+                    pos.west() }) {
+                    if (!MiniChunkGraph.isValid(next.getX(), next.getY(), next.getZ())) {
+                        continue;
+                    }
+                    int index = MiniChunkGraph.getIndex(next.getX(), next.getY(), next.getZ());
+                    if (!seen[index] && filled.expenses[index] >= 0) {
+                        seen[index] = true;
+                        open.add(next);
+                    }
+                }
+            }
+        }
+        return graphs;
+    }
+
+    @Test
+    public void testTypes() {
+        AnalysedChunk free = new TaskMiniChunkAnalyser(fill(EnumTraversalExpense.AIR)).call();
+        Assert.assertEquals(1, free.getGraphCount());
+        Assert.assertEquals(MiniChunkGraph.VOLUME, free.blockCounts.getInt(0));
+        Assert.assertEquals(ChunkType.COMPLETELY_FREE, ChunkType.getFor(free));
+
+        AnalysedChunk water = new TaskMiniChunkAnalyser(fill(EnumTraversalExpense.FLUID)).call();
+        Assert.assertEquals(MiniChunkGraph.VOLUME * 3, water.totalExpenses.getInt(0));
+
+        AnalysedChunk filled = new TaskMiniChunkAnalyser(fill(EnumTraversalExpense.SOLID)).call();
+        Assert.assertEquals(0, filled.getGraphCount());
+        Assert.assertEquals(ChunkType.COMPLETELY_FILLED, ChunkType.getFor(filled));
+    }
+
+    @Test
+    public void testSplitGraphs() {
+        // A solid wall at x = 8 splits the chunk in 2
+        FilledChunk wall = new FilledChunk();
+        for (int i = 0; i < MiniChunkGraph.VOLUME; i++) {
+            wall.set(i, (i & 15) == 8 ? EnumTraversalExpense.SOLID : EnumTraversalExpense.AIR);
+        }
+        AnalysedChunk analysed = new TaskMiniChunkAnalyser(wall).call();
+        Assert.assertEquals(2, analysed.getGraphCount());
+        Assert.assertEquals(8 * 256, analysed.blockCounts.getInt(0));
+        Assert.assertEquals(7 * 256, analysed.blockCounts.getInt(1));
+        Assert.assertEquals(ChunkType.MULTIPLE_GRAPHS, ChunkType.getFor(analysed));
+
+        MiniChunkGraph graph = new MiniChunkGraph(BlockPos.ORIGIN, analysed);
+        Assert.assertEquals(0, graph.getFor(new BlockPos(0, 5, 5)).id);
+        Assert.assertEquals(1, graph.getFor(new BlockPos(15, 5, 5)).id);
+        Assert.assertFalse(graph.nodes.get(0).contains(new BlockPos(8, 5, 5)));
+
+        // Every block isolated from every other: more graphs than fit in a byte
+        FilledChunk checkerboard = new FilledChunk();
+        for (int i = 0; i < MiniChunkGraph.VOLUME; i++) {
+            int sum = (i & 15) + ((i >> 4) & 15) + (i >> 8);
+            checkerboard.set(i, (sum & 1) == 0 ? EnumTraversalExpense.AIR : EnumTraversalExpense.SOLID);
+        }
+        analysed = new TaskMiniChunkAnalyser(checkerboard).call();
+        Assert.assertEquals(MiniChunkGraph.VOLUME / 2, analysed.getGraphCount());
+    }
+
+    @Test
+    public void testRandom() {
+        Random rand = new Random(16);
+        for (int i = 0; i < 200; i++) {
+            FilledChunk filled = fill(rand, rand.nextInt(17), rand.nextInt(101));
+            AnalysedChunk analysed = new TaskMiniChunkAnalyser(filled).call();
+            Assert.assertEquals(countGraphsSlowly(filled), analysed.getGraphCount());
+            int blocks = 0;
+            for (int j = 0; j < MiniChunkGraph.VOLUME; j++) {
+                int graph = analysed.graphs[j];
+                Assert.assertEquals(filled.expenses[j] < 0, graph < 0);
+                if (graph >= 0) {
+                    blocks++;
+                }
+            }
+            int counted = 0;
+            for (int j = 0; j < analysed.getGraphCount(); j++) {
+                counted += analysed.blockCounts.getInt(j);
+            }
+            Assert.assertEquals(blocks, counted);
+        }
+    }
+
+    /** Analyses a loaded region of 32x16x32 mini chunks (512x256x512 blocks): underground with caves, a surface layer,
+     * and open air above. */
+    @Test
+    public void benchmark() throws InterruptedException, ExecutionException {
+        Random rand = new Random(42);
+        // Analysis doesn't modify the filled chunks, so a few of them can be shared by the whole region
+        FilledChunk[] underground = new FilledChunk[16];
+        FilledChunk[] surface = new FilledChunk[16];
+        for (int i = 0; i < 16; i++) {
+            underground[i] = fill(rand, 16, 70 + rand.nextInt(20));
+            surface[i] = fill(rand, rand.nextInt(16), 85);
+        }
+        FilledChunk sky = fill(EnumTraversalExpense.AIR);
+        List<FilledChunk> region = new ArrayList<>();
+        for (int x = 0; x < 32; x++) {
+            for (int y = 0; y < 16; y++) {
+                for (int z = 0; z < 32; z++) {
+                    int i = (x * 31 + z * 17) & 15;
+                    region.add(y < 4 ? underground[i] : y == 4 ? surface[i] : sky);
+                }
+            }
+        }
+
+        for (int run = 0; run < 3; run++) {
+            long start = System.nanoTime();
+            int graphs = 0;
+            for (FilledChunk filled : region) {
+                graphs += new TaskMiniChunkAnalyser(filled).call().getGraphCount();
+            }
+            long single = System.nanoTime() - start;
+            dontInlineThis += graphs;
+
+            start = System.nanoTime();
+            List<Future<Integer>> futures = new ArrayList<>(region.size());
+            for (FilledChunk filled : region) {
+                TaskMiniChunkAnalyser task = new TaskMiniChunkAnalyser(filled);
+                futures.add(WorkerThreadUtil.executeWorkTask(() -> task.call().getGraphCount()));
+            }
+            int poolGraphs = 0;
+            for (Future<Integer> future : futures) {
+                poolGraphs += future.get();
+            }
+            long pool = System.nanoTime() - start;
+            Assert.assertEquals(graphs, poolGraphs);
+
+            System.out.printf("%d mini chunks (%d graphs): single thread %6.1fms, worker pool %6.1fms%n", region
+                .size(), graphs, single / 1e6, pool / 1e6);
+        }
+    }
+}
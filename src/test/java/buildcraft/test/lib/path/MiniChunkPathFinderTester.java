@@ -0,0 +1,327 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.test.lib.path;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.math.BlockPos;
+
+import buildcraft.lib.path.MiniChunkGraph;
+import buildcraft.lib.path.MiniChunkGraph.MiniChunkNode;
+import buildcraft.lib.path.MiniChunkPathFinder;
+import buildcraft.lib.path.task.EnumTraversalExpense;
+import buildcraft.lib.path.task.FilledChunk;
+import buildcraft.lib.path.task.TaskMiniChunkAnalyser;
+
+public class MiniChunkPathFinderTester {
+
+    /** Every graph that has been "loaded", by minimum position. */
+    private final Map<BlockPos, MiniChunkGraph> graphs = new HashMap<>();
+
+    /** Links every loaded neighbour of the node's graph, like {@link MiniChunkNode#requestAllConnected}. */
+    private final Consumer<MiniChunkNode> loader = node -> {
+        MiniChunkGraph graph = node.getParent();
+        for (EnumFacing face : EnumFacing.VALUES) {
+            MiniChunkGraph other = graphs.get(graph.min.offset(face, MiniChunkGraph.SIZE));
+            if (other != null && !graph.neighbours.containsKey(face)) {
+                graph.link(face, other);
+            }
+        }
+    };
+
+    private MiniChunkGraph load(BlockPos min, FilledChunk filled) {
+        MiniChunkGraph graph = new MiniChunkGraph(min, new TaskMiniChunkAnalyser(filled).call());
+        graphs.put(min, graph);
+        return graph;
+    }
+
+    private static FilledChunk fill(Random rand, int solidChance) {
+        FilledChunk filled = new FilledChunk();
+        for (int i = 0; i < MiniChunkGraph.VOLUME; i++) {
+            int r = rand.nextInt(100);
+            filled.set(i, r < solidChance ? EnumTraversalExpense.SOLID
+                : r < solidChance + 10 ? EnumTraversalExpense.FLUID : EnumTraversalExpense.AIR);
+        }
+        return filled;
+    }
+
+    private static FilledChunk fill(EnumTraversalExpense expense) {
+        FilledChunk filled = new FilledChunk();
+        for (int i = 0; i < MiniChunkGraph.VOLUME; i++) {
+            filled.set(i, expense);
+        }
+        return filled;
+    }
+
+    /** @return A random position in the given graph that isn't solid, or null if every position is. */
+    private static BlockPos randomOpenPos(Random rand, MiniChunkGraph graph) {
+        if (graph.nodes.isEmpty()) {
+            return null;
+        }
+        while (true) {
+            BlockPos pos = graph.getPos(rand.nextInt(MiniChunkGraph.VOLUME));
+            if (graph.getExpenseAt(pos) >= 0) {
+                return pos;
+            }
+        }
+    }
+
+    @Test
+    public void testSegmentKey() {
+        Random rand = new Random(0x5e9);
+        int[] edges = { 0, 1, 4094, 4095 };
+        for (int i = 0; i < 10_000; i++) {
+            int nodeId = i < 16 ? edges[i & 3] : rand.nextInt(4096);
+            int entry = i < 16 ? edges[i >> 2] : rand.nextInt(4096);
+            int target = i < 16 ? edges[(i + 1) & 3] : rand.nextInt(4096);
+            EnumFacing face = rand.nextInt(7) == 0 ? null : EnumFacing.VALUES[rand.nextInt(6)];
+            long key = MiniChunkPathFinder.getSegmentKey(nodeId, entry, face, target);
+            // Every part can be read back, so no 2 different segments share a key
+            Assert.assertEquals(nodeId, (int) (key >>> 32));
+            Assert.assertEquals(entry, (int) (key >>> 16) & 0xFFF);
+            Assert.assertEquals(face == null ? 0 : face.ordinal() + 1, (int) (key >>> 12) & 0xF);
+            Assert.assertEquals(target, (int) key & 0xFFF);
+            Assert.assertEquals(0, key & 0xF000_8000L);
+        }
+    }
+
+    /** Checks that paths through a single node are as cheap as a plain search over every block says they can be. */
+    @Test
+    public void testSegmentIsCheapest() {
+        Random rand = new Random(1234);
+        for (int i = 0; i < 100; i++) {
+            graphs.clear();
+            MiniChunkGraph graph = load(BlockPos.ORIGIN, fill(rand, rand.nextInt(50)));
+            BlockPos from = randomOpenPos(rand, graph);
+            BlockPos to = randomOpenPos(rand, graph);
+            MiniChunkNode node = graph.getFor(from);
+            List<BlockPos> path = MiniChunkPathFinder.refine(Collections.singletonList(node), from, to);
+            if (!node.contains(to)) {
+                Assert.assertNull(path);
+                continue;
+            }
+            Assert.assertNotNull(path);
+            assertContinuous(path, from, to);
+            for (BlockPos pos : path) {
+                Assert.assertTrue(node.contains(pos));
+            }
+            Assert.assertEquals(findCostSlowly(graph, from, to), getCost(graph, path));
+        }
+    }
+
+    /** Checks that the node search finds the cheapest path across a region of randomly filled mini chunks, loading
+     * them as it goes. */
+    @Test
+    public void testNodeSearch() {
+        Random rand = new Random(5678);
+        int found = 0;
+        for (int i = 0; i < 20; i++) {
+            graphs.clear();
+            for (int x = 0; x < 4; x++) {
+                for (int y = 0; y < 2; y++) {
+                    for (int z = 0; z < 4; z++) {
+                        BlockPos min = new BlockPos(x * 16, y * 16, z * 16);
+                        load(min, fill(rand, 30 + rand.nextInt(30)));
+                    }
+                }
+            }
+            MiniChunkGraph startGraph = graphs.get(BlockPos.ORIGIN);
+            MiniChunkGraph goalGraph = graphs.get(new BlockPos(48, 16, 48));
+            BlockPos from = randomOpenPos(rand, startGraph);
+            BlockPos to = randomOpenPos(rand, goalGraph);
+            MiniChunkNode start = startGraph.getFor(from);
+            MiniChunkNode goal = goalGraph.getFor(to);
+            List<MiniChunkNode> nodes = MiniChunkPathFinder.findNodePath(start, goal, loader);
+            double cheapest = findNodeCostSlowly(start, goal);
+            if (nodes == null) {
+                Assert.assertEquals(Double.POSITIVE_INFINITY, cheapest, 0);
+                continue;
+            }
+            found++;
+            Assert.assertSame(start, nodes.get(0));
+            Assert.assertSame(goal, nodes.get(nodes.size() - 1));
+            double cost = 0;
+            for (int j = 1; j < nodes.size(); j++) {
+                Assert.assertTrue(isConnected(nodes.get(j - 1), nodes.get(j)));
+                cost += MiniChunkPathFinder.getCost(nodes.get(j - 1), nodes.get(j));
+            }
+            Assert.assertEquals(cheapest, cost, 1e-6);
+
+            List<BlockPos> path = MiniChunkPathFinder.refine(nodes, from, to);
+            Assert.assertNotNull(path);
+            assertContinuous(path, from, to);
+        }
+        // Make sure that the fills aren't so solid that nothing was tested
+        Assert.assertTrue(found >= 10);
+    }
+
+    @Test
+    public void testRemovedGraphs() {
+        MiniChunkGraph a = load(BlockPos.ORIGIN, fill(EnumTraversalExpense.AIR));
+        MiniChunkGraph b = load(new BlockPos(16, 0, 0), fill(EnumTraversalExpense.AIR));
+        MiniChunkNode a0 = a.nodes.get(0);
+        MiniChunkNode b0 = b.nodes.get(0);
+        BlockPos from = new BlockPos(0, 8, 8);
+        BlockPos to = new BlockPos(20, 8, 8);
+
+        List<MiniChunkNode> nodes = MiniChunkPathFinder.findNodePath(a0, b0, loader);
+        Assert.assertEquals(Arrays.asList(a0, b0), nodes);
+        Assert.assertSame(nodes, MiniChunkPathFinder.findNodePath(a0, b0, loader));
+        List<BlockPos> path = MiniChunkPathFinder.refine(nodes, from, to);
+        Assert.assertNotNull(path);
+        Assert.assertTrue(path.contains(new BlockPos(16, 8, 8)));
+
+        // Like MiniChunkCache.invalidate after a block in B changed: a wall with a hole in the corner
+        b.unlink();
+        Assert.assertTrue(b.isRemoved());
+        Assert.assertFalse(a.neighbours.containsKey(EnumFacing.EAST));
+        Assert.assertEquals(0, a0.getConnected(EnumFacing.EAST).length);
+        FilledChunk wall = fill(EnumTraversalExpense.AIR);
+        for (int y = 0; y < 16; y++) {
+            for (int z = 0; z < 16; z++) {
+                if (y != 0 || z != 0) {
+                    wall.set(MiniChunkGraph.getIndex(0, y, z), EnumTraversalExpense.SOLID);
+                }
+            }
+        }
+        MiniChunkGraph rebuilt = load(new BlockPos(16, 0, 0), wall);
+        Assert.assertEquals(1, rebuilt.nodes.size());
+
+        // The cached path goes through the removed graph, so it must not be used
+        Assert.assertNull(MiniChunkPathFinder.findNodePath(a0, b0, loader));
+        nodes = MiniChunkPathFinder.findNodePath(a0, rebuilt.nodes.get(0), loader);
+        Assert.assertEquals(Arrays.asList(a0, rebuilt.nodes.get(0)), nodes);
+
+        // The path through A to B was cached in A, and is no longer valid
+        path = MiniChunkPathFinder.refine(nodes, from, to);
+        Assert.assertNotNull(path);
+        assertContinuous(path, from, to);
+        int exit = path.indexOf(new BlockPos(15, 0, 0));
+        Assert.assertTrue(exit >= 0);
+        Assert.assertEquals(new BlockPos(16, 0, 0), path.get(exit + 1));
+        for (BlockPos pos : path) {
+            MiniChunkGraph graph = pos.getX() < 16 ? a : rebuilt;
+            Assert.assertTrue(graph.getExpenseAt(pos) > 0);
+        }
+    }
+
+    private static boolean isConnected(MiniChunkNode from, MiniChunkNode to) {
+        for (EnumFacing face : EnumFacing.VALUES) {
+            if (from.getParent().neighbours.get(face) != to.getParent()) {
+                continue;
+            }
+            for (int id : from.getConnected(face)) {
+                if (id == to.id) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static void assertContinuous(List<BlockPos> path, BlockPos from, BlockPos to) {
+        Assert.assertEquals(from, path.get(0));
+        Assert.assertEquals(to, path.get(path.size() - 1));
+        for (int i = 1; i < path.size(); i++) {
+            BlockPos diff = path.get(i).subtract(path.get(i - 1));
+            int distance = Math.abs(diff.getX()) + Math.abs(diff.getY()) + Math.abs(diff.getZ());
+            Assert.assertEquals("Gap in the path at " + path.get(i), 1, distance);
+        }
+    }
+
+    /** @return The cost of moving along the given path, which is the expense of every block after the first. */
+    private static int getCost(MiniChunkGraph graph, List<BlockPos> path) {
+        int cost = 0;
+        for (int i = 1; i < path.size(); i++) {
+            cost += graph.getExpenseAt(path.get(i));
+        }
+        return cost;
+    }
+
+    /** A plain search over block positions, to check the packed search of the path finder against. */
+    private static int findCostSlowly(MiniChunkGraph graph, BlockPos from, BlockPos to) {
+        Map<BlockPos, Integer> costs = new HashMap<>();
+        PriorityQueue<Object[]> open = new PriorityQueue<>((x, y) -> Integer.compare((int) x[1], (int) y[1]));
+        costs.put(from, 0);
+        open.add(new Object[] { from, 0 });
+        while (!open.isEmpty()) {
+            Object[] current = open.poll();
+            BlockPos pos = (BlockPos) current[0];
+            int cost = (int) current[1];
+            if (pos.equals(to)) {
+                return cost;
+            }
+            if (cost > costs.get(pos)) {
+                continue;
+            }
+            for (EnumFacing face : EnumFacing.VALUES) {
+                BlockPos next = pos.offset(face);
+                int expense = graph.getExpenseAt(next);
+                if (expense < 0) {
+                    continue;
+                }
+                Integer existing = costs.get(next);
+                if (existing == null || cost + expense < existing) {
+                    costs.put(next, cost + expense);
+                    open.add(new Object[] { next, cost + expense });
+                }
+            }
+        }
+        return -1;
+    }
+
+    /** Dijkstra's algorithm over the nodes, without a heuristic or any limit on the number of nodes expanded. This
+     * loads every node that it reaches.
+     *
+     * @return The cost of the cheapest path, or {@link Double#POSITIVE_INFINITY} if there isn't one. */
+    private double findNodeCostSlowly(MiniChunkNode start, MiniChunkNode goal) {
+        // MiniChunkNode doesn't override equals, so these compare by identity
+        Map<MiniChunkNode, Double> costs = new HashMap<>();
+        Set<MiniChunkNode> done = new HashSet<>();
+        PriorityQueue<Object[]> open = new PriorityQueue<>((x, y) -> Double.compare((double) x[1], (double) y[1]));
+        costs.put(start, 0.0);
+        open.add(new Object[] { start, 0.0 });
+        while (!open.isEmpty()) {
+            MiniChunkNode current = (MiniChunkNode) open.poll()[0];
+            if (!done.add(current)) {
+                continue;
+            }
+            if (current == goal) {
+                return costs.get(current);
+            }
+            loader.accept(current);
+            for (EnumFacing face : EnumFacing.VALUES) {
+                if (!current.getParent().neighbours.containsKey(face)) {
+                    continue;
+                }
+                for (int id : current.getConnected(face)) {
+                    MiniChunkNode next = current.getConnectedNode(face, id);
+                    double cost = costs.get(current) + MiniChunkPathFinder.getCost(current, next);
+                    Double existing = costs.get(next);
+                    if (existing == null || cost < existing) {
+                        costs.put(next, cost);
+                        open.add(new Object[] { next, cost });
+                    }
+                }
+            }
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+}
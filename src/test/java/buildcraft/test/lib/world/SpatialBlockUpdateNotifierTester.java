@@ -0,0 +1,131 @@
+package buildcraft.test.lib.world;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Blocks;
+import net.minecraft.profiler.Profiler;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.GameType;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldProviderSurface;
+import net.minecraft.world.WorldSettings;
+import net.minecraft.world.WorldType;
+import net.minecraft.world.chunk.IChunkProvider;
+import net.minecraft.world.storage.WorldInfo;
+
+import buildcraft.lib.world.SpatialBlockUpdateNotifier;
+import buildcraft.lib.world.SpatialBlockUpdateNotifier.IBlockUpdateListener;
+
+import buildcraft.test.VanillaSetupBaseTester;
+
+public class SpatialBlockUpdateNotifierTester extends VanillaSetupBaseTester {
+
+    /** A server world without any chunks, as the notifier only needs the event listeners. */
+    private static class TestWorld extends World {
+        TestWorld() {
+            super(null, new WorldInfo(new WorldSettings(0, GameType.SURVIVAL, false, false, WorldType.DEFAULT), "test"),
+                new WorldProviderSurface(), new Profiler(), false);
+        }
+
+        @Override
+        protected IChunkProvider createChunkProvider() {
+            return null;
+        }
+
+        @Override
+        protected boolean isChunkLoaded(int x, int z, boolean allowEmpty) {
+            return false;
+        }
+    }
+
+    /** Records the position of every update that it is told about. */
+    static class TestListener implements IBlockUpdateListener {
+        final List<BlockPos> updates = new ArrayList<>();
+
+        @Override
+        public void onBlockUpdate(World world, BlockPos pos, IBlockState oldState, IBlockState newState, int flags) {
+            updates.add(pos);
+        }
+    }
+
+    private final World world = new TestWorld();
+    private final SpatialBlockUpdateNotifier notifier = SpatialBlockUpdateNotifier.get(world);
+
+    private void update(int x, int y, int z) {
+        world.notifyBlockUpdate(new BlockPos(x, y, z), Blocks.AIR.getDefaultState(), Blocks.STONE.getDefaultState(),
+            3);
+    }
+
+    @Test
+    public void testSameInstance() {
+        Assert.assertSame(notifier, SpatialBlockUpdateNotifier.get(world));
+        Assert.assertNotSame(notifier, SpatialBlockUpdateNotifier.get(new TestWorld()));
+    }
+
+    @Test
+    public void testOnlyInsideBox() {
+        TestListener listener = new TestListener();
+        // Crosses section boundaries on every axis, including into negative coordinates
+        notifier.register(listener, new BlockPos(-4, 10, 12), new BlockPos(20, 40, 17));
+
+        update(-4, 10, 12);
+        update(20, 40, 17);
+        update(0, 32, 16);
+        update(-5, 10, 12);
+        update(21, 40, 17);
+        update(0, 41, 16);
+        update(0, 20, 11);
+        update(300, 20, 12);
+
+        List<BlockPos> expected = new ArrayList<>();
+        expected.add(new BlockPos(-4, 10, 12));
+        expected.add(new BlockPos(20, 40, 17));
+        expected.add(new BlockPos(0, 32, 16));
+        Assert.assertEquals(expected, listener.updates);
+        Assert.assertEquals(8, notifier.getUpdateCount());
+        Assert.assertEquals(3, notifier.getDeliveredCount());
+    }
+
+    @Test
+    public void testMoveAndUnregister() {
+        TestListener listener = new TestListener();
+        TestListener other = new TestListener();
+        notifier.register(listener, new BlockPos(0, 0, 0), new BlockPos(3, 3, 3));
+        notifier.register(other, new BlockPos(0, 0, 0), new BlockPos(3, 3, 3));
+        Assert.assertEquals(2, notifier.getSubscriptionCount());
+
+        // Registering again replaces the old box
+        notifier.register(listener, new BlockPos(100, 0, 0), new BlockPos(103, 3, 3));
+        Assert.assertEquals(2, notifier.getSubscriptionCount());
+        update(1, 1, 1);
+        update(101, 1, 1);
+        Assert.assertEquals(1, listener.updates.size());
+        Assert.assertEquals(new BlockPos(101, 1, 1), listener.updates.get(0));
+        Assert.assertEquals(1, other.updates.size());
+
+        notifier.unregister(listener);
+        notifier.unregister(listener);
+        Assert.assertEquals(1, notifier.getSubscriptionCount());
+        update(101, 1, 1);
+        update(1, 1, 1);
+        Assert.assertEquals(1, listener.updates.size());
+        Assert.assertEquals(2, other.updates.size());
+    }
+
+    @Test
+    public void testUnregisterWhileDispatching() {
+        TestListener second = new TestListener();
+        IBlockUpdateListener first = (w, pos, oldState, newState, flags) -> notifier.unregister(second);
+        notifier.register(first, new BlockPos(0, 0, 0), new BlockPos(3, 3, 3));
+        notifier.register(second, new BlockPos(0, 0, 0), new BlockPos(3, 3, 3));
+
+        update(1, 1, 1);
+        Assert.assertEquals(0, second.updates.size());
+        Assert.assertEquals(1, notifier.getDeliveredCount());
+    }
+}
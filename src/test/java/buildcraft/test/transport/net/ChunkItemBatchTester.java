@@ -0,0 +1,107 @@
+package buildcraft.test.transport.net;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import net.minecraft.item.EnumDyeColor;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.math.BlockPos;
+
+import buildcraft.transport.net.ChunkItemBatch;
+import buildcraft.transport.net.MessageMultiPipeItem;
+import buildcraft.transport.net.MessageMultiPipeItem.TravellingItemData;
+
+public class ChunkItemBatchTester {
+    @Test
+    public void testFlags() {
+        for (EnumFacing side : EnumFacing.VALUES) {
+            for (int c = -1; c < 16; c++) {
+                EnumDyeColor colour = c < 0 ? null : EnumDyeColor.byMetadata(c);
+                for (boolean toCenter : new boolean[] { false, true }) {
+                    byte packed = ChunkItemBatch.packFlags(toCenter, side, colour);
+                    Assert.assertEquals(toCenter, ChunkItemBatch.unpackToCenter(packed));
+                    Assert.assertEquals(side, ChunkItemBatch.unpackSide(packed));
+                    Assert.assertEquals(colour, ChunkItemBatch.unpackColour(packed));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRoundTrip() {
+        BlockPos pos = new BlockPos(-33, 200, 47);
+        ChunkItemBatch batch = new ChunkItemBatch(pos.getX() >> 4, pos.getZ() >> 4);
+        batch.append(pos, 300, (byte) 64, true, EnumFacing.WEST, EnumDyeColor.RED, (byte) 20, 100);
+        batch.append(pos, 7, (byte) 1, false, EnumFacing.UP, null, (byte) 5, 100);
+
+        MessageMultiPipeItem received = sendAndReceive(batch, 101);
+        List<TravellingItemData> items = received.items.get(pos);
+        Assert.assertNotNull(items);
+        Assert.assertEquals(2, items.size());
+
+        TravellingItemData first = items.get(0);
+        Assert.assertEquals(300, first.stackId);
+        Assert.assertEquals(64, first.stackCount);
+        Assert.assertTrue(first.toCenter);
+        Assert.assertEquals(EnumFacing.WEST, first.side);
+        Assert.assertEquals(EnumDyeColor.RED, first.colour);
+        // Sent a tick after it was queued
+        Assert.assertEquals(20, first.timeToDest);
+        Assert.assertEquals(1, first.timeElapsed);
+
+        TravellingItemData second = items.get(1);
+        Assert.assertEquals(7, second.stackId);
+        Assert.assertNull(second.colour);
+        Assert.assertEquals(EnumFacing.UP, second.side);
+        Assert.assertTrue(batch.isEmpty());
+    }
+
+    @Test
+    public void testCarryOver() {
+        BlockPos pos = new BlockPos(5, 64, 5);
+        ChunkItemBatch batch = new ChunkItemBatch(0, 0);
+        int total = ChunkItemBatch.MAX_ITEMS_PER_PIPE + 3;
+        for (int i = 0; i < total; i++) {
+            batch.append(pos, i, (byte) 1, true, EnumFacing.NORTH, null, (byte) 20, 0);
+        }
+        MessageMultiPipeItem first = sendAndReceive(batch, 0);
+        Assert.assertEquals(ChunkItemBatch.MAX_ITEMS_PER_PIPE, first.items.get(pos).size());
+        Assert.assertEquals(0, first.items.get(pos).get(0).timeElapsed);
+        Assert.assertEquals(3, batch.size());
+
+        MessageMultiPipeItem second = sendAndReceive(batch, 1);
+        List<TravellingItemData> items = second.items.get(pos);
+        Assert.assertEquals(3, items.size());
+        Assert.assertEquals(ChunkItemBatch.MAX_ITEMS_PER_PIPE, items.get(0).stackId);
+        // The whole journey is sent, along with how much of it has already happened, so that the item doesn't speed up
+        Assert.assertEquals(20, items.get(0).timeToDest);
+        Assert.assertEquals(1, items.get(0).timeElapsed);
+        Assert.assertTrue(batch.isEmpty());
+    }
+
+    @Test
+    public void testExpired() {
+        ChunkItemBatch batch = new ChunkItemBatch(0, 0);
+        batch.append(new BlockPos(1, 1, 1), 1, (byte) 1, true, EnumFacing.NORTH, null, (byte) 3, 0);
+        Assert.assertNull(batch.encode(3));
+        Assert.assertTrue(batch.isEmpty());
+    }
+
+    private static MessageMultiPipeItem sendAndReceive(ChunkItemBatch batch, long now) {
+        ByteBuf encoded = batch.encode(now);
+        Assert.assertNotNull(encoded);
+        MessageMultiPipeItem sent = new MessageMultiPipeItem();
+        Assert.assertTrue(sent.addChunk(encoded));
+        ByteBuf wire = Unpooled.buffer();
+        sent.toBytes(wire);
+        MessageMultiPipeItem received = new MessageMultiPipeItem();
+        received.fromBytes(wire);
+        Assert.assertEquals(0, wire.readableBytes());
+        return received;
+    }
+}
@@ -1,10 +1,18 @@
 package buildcraft.test.transport.pipe;
 
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import com.google.common.base.Stopwatch;
+
 import org.junit.Assert;
 import org.junit.Test;
 
+import buildcraft.api.transport.pipe.PipeEvent;
 import buildcraft.api.transport.pipe.PipeEventHandler;
 import buildcraft.api.transport.pipe.PipeEventItem;
+import buildcraft.api.transport.pipe.PipeEventPriority;
+import buildcraft.api.transport.pipe.PipeEventTileState;
 
 import buildcraft.transport.pipe.PipeEventBus;
 
@@ -72,4 +80,226 @@ public class PipeEventBusTester {
             event.targetSpeed = 3;
         }
     }
+
+    @Test
+    public void testPriorityOrder() {
+        PipeEventBus bus = new PipeEventBus();
+        bus.registerHandler(new Late());
+        bus.registerHandler(new Early());
+
+        PipeEventItem.ModifySpeed event = new PipeEventItem.ModifySpeed(null, null, null, 1);
+        bus.fireEvent(event);
+        // Early sets 4, late then doubles it
+        Assert.assertEquals(8, event.targetSpeed, 0.00001);
+
+        // A second bus with the same classes shares the layout, but must be bound to its own objects
+        PipeEventBus bus2 = new PipeEventBus();
+        Late late = new Late();
+        bus2.registerHandler(late);
+        bus2.registerHandler(new Early());
+        bus2.unregisterHandler(late);
+
+        event = new PipeEventItem.ModifySpeed(null, null, null, 1);
+        bus2.fireEvent(event);
+        Assert.assertEquals(4, event.targetSpeed, 0.00001);
+    }
+
+    @Test
+    public void testStaticOnly() {
+        PipeEventBus bus = new PipeEventBus();
+        bus.registerHandler(Early.class);
+
+        PipeEventItem.ModifySpeed event = new PipeEventItem.ModifySpeed(null, null, null, 1);
+        Assert.assertFalse(bus.fireEvent(event));
+
+        PipeEventTileState.Validate validate = new PipeEventTileState.Validate(null);
+        Assert.assertTrue(bus.fireEvent(validate));
+    }
+
+    public static class Early {
+        @PipeEventHandler(priority = PipeEventPriority.FIRST)
+        public void modifySpeed(PipeEventItem.ModifySpeed event) {
+            event.targetSpeed = 4;
+        }
+
+        @PipeEventHandler
+        public static void validate(PipeEventTileState.Validate event) {
+            dontInlineThis++;
+        }
+    }
+
+    public static class Late {
+        @PipeEventHandler(priority = PipeEventPriority.LAST)
+        public void modifySpeed(PipeEventItem.ModifySpeed event) {
+            event.targetSpeed *= 2;
+        }
+    }
+
+    /** Roughly the handlers of a behaviour, flow and a couple of pluggables on a normal item pipe. */
+    public static class BenchBehaviour {
+        @PipeEventHandler
+        public void modifySpeed(PipeEventItem.ModifySpeed event) {
+            event.modifyTo(0.08, 0.02);
+        }
+
+        @PipeEventHandler
+        public void onValidate(PipeEventTileState.Validate event) {
+            dontInlineThis++;
+        }
+    }
+
+    public static class BenchFlow {
+        @PipeEventHandler
+        public static void onAnyItemEvent(PipeEventItem event) {
+            dontInlineThis++;
+        }
+    }
+
+    public static class BenchPluggable {
+        @PipeEventHandler(priority = PipeEventPriority.LAST)
+        public void modifySpeed(PipeEventItem.ModifySpeed event) {
+            dontInlineThis++;
+        }
+    }
+
+    @Test
+    public void benchmarkFireEvent() {
+        PipeEventBus bus = new PipeEventBus();
+        bus.registerHandler(new BenchBehaviour());
+        bus.registerHandler(new BenchFlow());
+        bus.registerHandler(BenchFlow.class);
+        bus.registerHandler(new BenchPluggable());
+        bus.registerHandler(new BenchPluggable());
+
+        PipeEvent listened = new PipeEventItem.ModifySpeed(null, null, null, 1);
+        PipeEvent unlistened = new PipeEventTileState.ChunkUnload(null);
+
+        for (int warmup = 0; warmup < 5; warmup++) {
+            benchmark(bus, listened, 1_000_000, false);
+            benchmark(bus, unlistened, 1_000_000, false);
+        }
+        benchmark(bus, listened, 10_000_000, true);
+        benchmark(bus, unlistened, 10_000_000, true);
+    }
+
+    private static void benchmark(PipeEventBus bus, PipeEvent event, int count, boolean print) {
+        Stopwatch watch = Stopwatch.createStarted();
+        for (int i = 0; i < count; i++) {
+            bus.fireEvent(event);
+        }
+        watch.stop();
+        if (print) {
+            long nanos = watch.elapsed(TimeUnit.NANOSECONDS);
+            System.out.println("Fired " + count + " " + event.getClass().getSimpleName() + " in "
+                + watch.elapsed(TimeUnit.MILLISECONDS) + "ms (" + (nanos / (double) count) + "ns per event)");
+        }
+    }
+
+    private static PipeEventBus createBus(boolean useInvokers, Object... targets) {
+        PipeEventBus bus = new PipeEventBus(useInvokers);
+        for (Object target : targets) {
+            bus.registerHandler(target);
+        }
+        return bus;
+    }
+
+    @Test
+    public void testReflectiveMatchesGenerated() {
+        Object[] targets = { new Late(), new Early(), new Sub() };
+        PipeEventBus generated = createBus(true, targets);
+        PipeEventBus reflective = createBus(false, targets);
+
+        PipeEventItem.ModifySpeed generatedEvent = new PipeEventItem.ModifySpeed(null, null, null, 1);
+        generated.fireEvent(generatedEvent);
+        PipeEventItem.ModifySpeed reflectiveEvent = new PipeEventItem.ModifySpeed(null, null, null, 1);
+        reflective.fireEvent(reflectiveEvent);
+        Assert.assertEquals(generatedEvent.targetSpeed, reflectiveEvent.targetSpeed, 0.00001);
+
+        long before = dontInlineThis;
+        generated.fireEvent(new PipeEventTileState.Validate(null));
+        long generatedCalls = dontInlineThis - before;
+        reflective.fireEvent(new PipeEventTileState.Validate(null));
+        Assert.assertEquals(generatedCalls, dontInlineThis - before - generatedCalls);
+    }
+
+    public static class Thrower {
+        static final RuntimeException THROWN = new UnsupportedOperationException("Thrown by a handler");
+
+        @PipeEventHandler
+        public void modifySpeed(PipeEventItem.ModifySpeed event) {
+            throw THROWN;
+        }
+    }
+
+    @Test
+    public void testExceptionsWrapped() {
+        for (boolean useInvokers : new boolean[] { true, false }) {
+            PipeEventBus bus = createBus(useInvokers, new Thrower());
+            try {
+                bus.fireEvent(new PipeEventItem.ModifySpeed(null, null, null, 1));
+                Assert.fail("Expected an exception");
+            } catch (IllegalStateException e) {
+                Assert.assertSame(Thrower.THROWN, e.getCause());
+            }
+        }
+    }
+
+    @Test
+    public void testReRegister() {
+        PipeEventBus bus = new PipeEventBus();
+        Late late = new Late();
+        Early early = new Early();
+        bus.registerHandler(late);
+        bus.registerHandler(early);
+        bus.unregisterHandler(late);
+        bus.registerHandler(late);
+        bus.unregisterHandler(early);
+        bus.registerHandler(early);
+
+        // Priorities still decide the order, whatever the order of registration
+        PipeEventItem.ModifySpeed event = new PipeEventItem.ModifySpeed(null, null, null, 1);
+        bus.fireEvent(event);
+        Assert.assertEquals(8, event.targetSpeed, 0.00001);
+
+        bus.unregisterHandler(early);
+        event = new PipeEventItem.ModifySpeed(null, null, null, 1);
+        event.targetSpeed = 3;
+        bus.fireEvent(event);
+        Assert.assertEquals(6, event.targetSpeed, 0.00001);
+    }
+
+    /** Compares the reflective and generated invokers when routing lots of items through a pipe. Every item that
+     * passes through the center of a pipe fires around 8 events, so this fires 8 {@link PipeEventItem.ModifySpeed}
+     * events per item. */
+    @Test
+    public void benchmarkGeneratedInvokers() {
+        PipeEventBus reflective = createBus(false, createBenchmarkTargets());
+        PipeEventBus generated = createBus(true, createBenchmarkTargets());
+
+        for (int warmup = 0; warmup < 5; warmup++) {
+            benchmarkItems("reflective", reflective::fireEvent, 10_000, false);
+            benchmarkItems("generated", generated::fireEvent, 10_000, false);
+        }
+        benchmarkItems("reflective", reflective::fireEvent, 1_000_000, true);
+        benchmarkItems("generated", generated::fireEvent, 1_000_000, true);
+    }
+
+    private static Object[] createBenchmarkTargets() {
+        return new Object[] { new BenchBehaviour(), new BenchFlow(), BenchFlow.class, new BenchPluggable() };
+    }
+
+    private static void benchmarkItems(String name, Consumer<PipeEvent> fire, int items, boolean print) {
+        Stopwatch watch = Stopwatch.createStarted();
+        for (int i = 0; i < items; i++) {
+            for (int e = 0; e < 8; e++) {
+                fire.accept(new PipeEventItem.ModifySpeed(null, null, null, 0.01 * e));
+            }
+        }
+        watch.stop();
+        if (print) {
+            long nanos = watch.elapsed(TimeUnit.NANOSECONDS);
+            System.out.println("[" + name + "] Routed " + items + " items in " + watch.elapsed(TimeUnit.MILLISECONDS)
+                + "ms (" + (nanos / (double) items) + "ns per item)");
+        }
+    }
 }
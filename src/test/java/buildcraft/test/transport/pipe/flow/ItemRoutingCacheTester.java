@@ -0,0 +1,126 @@
+package buildcraft.test.transport.pipe.flow;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.minecraft.init.Items;
+import net.minecraft.item.EnumDyeColor;
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.util.EnumFacing;
+
+import buildcraft.transport.pipe.flow.ItemRoutingCache;
+
+import buildcraft.test.VanillaSetupBaseTester;
+
+public class ItemRoutingCacheTester extends VanillaSetupBaseTester {
+    private static final EnumSet<EnumFacing> NONE_TRIED = EnumSet.noneOf(EnumFacing.class);
+
+    private final ItemRoutingCache cache = new ItemRoutingCache();
+
+    private static List<EnumSet<EnumFacing>> order(EnumFacing... faces) {
+        return ImmutableList.of(EnumSet.of(faces[0], faces));
+    }
+
+    @Test
+    public void testHitsAndMisses() {
+        ItemStack stack = new ItemStack(Items.DIAMOND);
+        Assert.assertNull(cache.get(stack, null, EnumFacing.WEST, NONE_TRIED));
+        cache.put(stack, null, EnumFacing.WEST, NONE_TRIED, order(EnumFacing.EAST));
+        Assert.assertEquals(order(EnumFacing.EAST), cache.get(stack, null, EnumFacing.WEST, NONE_TRIED));
+        // The count of the stack doesn't change where it goes
+        ItemStack bigger = new ItemStack(Items.DIAMOND, 64);
+        Assert.assertEquals(order(EnumFacing.EAST), cache.get(bigger, null, EnumFacing.WEST, NONE_TRIED));
+        Assert.assertEquals(2, cache.hits);
+        Assert.assertEquals(1, cache.misses);
+        Assert.assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testKey() {
+        ItemStack stack = new ItemStack(Items.DYE, 1, 4);
+        cache.put(stack, EnumDyeColor.RED, EnumFacing.WEST, NONE_TRIED, order(EnumFacing.EAST));
+
+        Assert.assertNull(cache.get(new ItemStack(Items.DIAMOND), EnumDyeColor.RED, EnumFacing.WEST, NONE_TRIED));
+        Assert.assertNull(cache.get(new ItemStack(Items.DYE, 1, 5), EnumDyeColor.RED, EnumFacing.WEST, NONE_TRIED));
+        ItemStack tagged = stack.copy();
+        NBTTagCompound tag = new NBTTagCompound();
+        tag.setString("name", "value");
+        tagged.setTagCompound(tag);
+        Assert.assertNull(cache.get(tagged, EnumDyeColor.RED, EnumFacing.WEST, NONE_TRIED));
+        Assert.assertNull(cache.get(stack, null, EnumFacing.WEST, NONE_TRIED));
+        Assert.assertNull(cache.get(stack, EnumDyeColor.BLUE, EnumFacing.WEST, NONE_TRIED));
+        Assert.assertNull(cache.get(stack, EnumDyeColor.RED, EnumFacing.EAST, NONE_TRIED));
+        Assert.assertNull(cache.get(stack, EnumDyeColor.RED, EnumFacing.WEST, EnumSet.of(EnumFacing.NORTH)));
+        Assert.assertEquals(0, cache.hits);
+
+        EnumSet<EnumFacing> noneTried = EnumSet.noneOf(EnumFacing.class);
+        Assert.assertNotNull(cache.get(stack.copy(), EnumDyeColor.RED, EnumFacing.WEST, noneTried));
+        Assert.assertEquals(1, cache.hits);
+
+        // Tags are compared by value
+        cache.put(tagged, EnumDyeColor.RED, EnumFacing.WEST, NONE_TRIED, order(EnumFacing.UP));
+        ItemStack sameTag = stack.copy();
+        sameTag.setTagCompound(tag.copy());
+        Assert.assertEquals(order(EnumFacing.UP), cache.get(sameTag, EnumDyeColor.RED, EnumFacing.WEST, NONE_TRIED));
+        Assert.assertEquals(order(EnumFacing.EAST), cache.get(stack, EnumDyeColor.RED, EnumFacing.WEST, NONE_TRIED));
+    }
+
+    @Test
+    public void testStoresCopies() {
+        ItemStack stack = new ItemStack(Items.DIAMOND);
+        EnumSet<EnumFacing> first = EnumSet.of(EnumFacing.EAST);
+        List<EnumSet<EnumFacing>> order = new ArrayList<>();
+        order.add(first);
+        cache.put(stack, null, EnumFacing.WEST, NONE_TRIED, order);
+
+        // Changing anything that was passed in afterwards doesn't change the cached entry
+        first.add(EnumFacing.UP);
+        order.add(EnumSet.of(EnumFacing.DOWN));
+        stack.setItemDamage(3);
+        Assert.assertNull(cache.get(stack, null, EnumFacing.WEST, NONE_TRIED));
+        ItemStack original = new ItemStack(Items.DIAMOND);
+        Assert.assertEquals(order(EnumFacing.EAST), cache.get(original, null, EnumFacing.WEST, NONE_TRIED));
+    }
+
+    @Test
+    public void testEviction() {
+        List<ItemStack> stacks = new ArrayList<>();
+        for (int meta = 0; meta < 65; meta++) {
+            stacks.add(new ItemStack(Items.DYE, 1, meta));
+        }
+        for (int i = 0; i < 64; i++) {
+            cache.put(stacks.get(i), null, EnumFacing.WEST, NONE_TRIED, order(EnumFacing.EAST));
+        }
+        Assert.assertEquals(64, cache.size());
+
+        // Reading the oldest entry makes it the most recently used one, so the second oldest is evicted instead
+        Assert.assertNotNull(cache.get(stacks.get(0), null, EnumFacing.WEST, NONE_TRIED));
+        cache.put(stacks.get(64), null, EnumFacing.WEST, NONE_TRIED, order(EnumFacing.EAST));
+        Assert.assertEquals(64, cache.size());
+        Assert.assertNotNull(cache.get(stacks.get(0), null, EnumFacing.WEST, NONE_TRIED));
+        Assert.assertNull(cache.get(stacks.get(1), null, EnumFacing.WEST, NONE_TRIED));
+        Assert.assertNotNull(cache.get(stacks.get(2), null, EnumFacing.WEST, NONE_TRIED));
+        Assert.assertNotNull(cache.get(stacks.get(64), null, EnumFacing.WEST, NONE_TRIED));
+    }
+
+    @Test
+    public void testInvalidate() {
+        // Invalidating an empty cache isn't counted
+        cache.invalidate();
+        Assert.assertEquals(0, cache.invalidations);
+
+        ItemStack stack = new ItemStack(Items.DIAMOND);
+        cache.put(stack, null, EnumFacing.WEST, NONE_TRIED, order(EnumFacing.EAST));
+        cache.invalidate();
+        Assert.assertEquals(1, cache.invalidations);
+        Assert.assertEquals(0, cache.size());
+        Assert.assertNull(cache.get(stack, null, EnumFacing.WEST, NONE_TRIED));
+    }
+}
@@ -0,0 +1,107 @@
+package buildcraft.test.transport.pipe.flow;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import net.minecraft.util.EnumFacing;
+
+import buildcraft.transport.pipe.flow.ItemRoutingContext;
+
+public class ItemRoutingContextTester {
+    public static long dontInlineThis = 0;
+
+    @Test
+    public void testPickDestination() {
+        List<EnumSet<EnumFacing>> order = new ArrayList<>();
+        order.add(EnumSet.noneOf(EnumFacing.class));
+        order.add(EnumSet.of(EnumFacing.NORTH, EnumFacing.EAST));
+        order.add(EnumSet.of(EnumFacing.UP));
+
+        Random rand = new Random(0);
+        ItemRoutingContext ctx = ItemRoutingContext.acquire();
+        try {
+            for (int i = 0; i < 100; i++) {
+                EnumFacing face = ctx.pickRandomDestination(order, rand);
+                Assert.assertTrue(face == EnumFacing.NORTH || face == EnumFacing.EAST);
+            }
+            List<EnumSet<EnumFacing>> bounce = ctx.setBounce(EnumFacing.WEST);
+            Assert.assertEquals(1, bounce.size());
+            Assert.assertEquals(EnumSet.of(EnumFacing.WEST), bounce.get(0));
+            Assert.assertEquals(EnumFacing.WEST, ctx.pickRandomDestination(bounce, rand));
+            Assert.assertNull(ctx.pickRandomDestination(new ArrayList<>(), rand));
+        } finally {
+            ctx.release();
+        }
+    }
+
+    @Test
+    public void testReentrant() {
+        ItemRoutingContext first = ItemRoutingContext.acquire();
+        ItemRoutingContext second = ItemRoutingContext.acquire();
+        Assert.assertNotSame(first, second);
+        second.release();
+        first.release();
+        ItemRoutingContext again = ItemRoutingContext.acquire();
+        Assert.assertSame(first, again);
+        again.release();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testDoubleRelease() {
+        ItemRoutingContext ctx = ItemRoutingContext.acquire();
+        ctx.release();
+        ctx.release();
+    }
+
+    /** Checks that picking a destination with a context doesn't allocate anything, using the allocated bytes counter
+     * of the current thread. {@link PipeFlowItemsTester} checks that a pipe without handlers doesn't create any
+     * events while routing. */
+    @Test
+    public void testNoAllocation() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(sunBean.isThreadAllocatedMemorySupported());
+        sunBean.setThreadAllocatedMemoryEnabled(true);
+
+        List<EnumSet<EnumFacing>> order = new ArrayList<>();
+        order.add(EnumSet.of(EnumFacing.NORTH, EnumFacing.SOUTH, EnumFacing.UP));
+        Random rand = new Random(1);
+
+        // Warm up, so that the JIT has had a chance to remove anything that escape analysis can
+        for (int i = 0; i < 100_000; i++) {
+            route(order, rand);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long before = sunBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100_000; i++) {
+            route(order, rand);
+        }
+        long after = sunBean.getThreadAllocatedBytes(threadId);
+        long allocated = after - before;
+        System.out.println("Routing 100,000 items allocated " + allocated + " bytes");
+        // Allow a little bit of slack for anything that the bean itself allocates
+        Assert.assertTrue("Allocated " + allocated + " bytes!", allocated < 1024);
+    }
+
+    private static void route(List<EnumSet<EnumFacing>> order, Random rand) {
+        ItemRoutingContext ctx = ItemRoutingContext.acquire();
+        try {
+            EnumFacing face = ctx.pickRandomDestination(order, rand);
+            if (face == null) {
+                face = ctx.pickRandomDestination(ctx.setBounce(EnumFacing.DOWN), rand);
+            }
+            dontInlineThis += face.ordinal();
+        } finally {
+            ctx.release();
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package buildcraft.test.transport.pipe.flow;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.minecraft.init.Items;
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.profiler.Profiler;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.ResourceLocation;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.GameType;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldProviderSurface;
+import net.minecraft.world.WorldSettings;
+import net.minecraft.world.WorldType;
+import net.minecraft.world.chunk.IChunkProvider;
+import net.minecraft.world.storage.WorldInfo;
+
+import buildcraft.api.core.InvalidInputDataException;
+import buildcraft.api.transport.pipe.IPipe;
+import buildcraft.api.transport.pipe.IPipe.ConnectedType;
+import buildcraft.api.transport.pipe.IPipeHolder;
+import buildcraft.api.transport.pipe.IPipeHolder.PipeMessageReceiver;
+import buildcraft.api.transport.pipe.PipeDefinition;
+import buildcraft.api.transport.pipe.PipeDefinition.PipeDefinitionBuilder;
+import buildcraft.api.transport.pipe.PipeEvent;
+import buildcraft.api.transport.pipe.PipeEventItem;
+import buildcraft.api.transport.pipe.PipeFlowType;
+
+import buildcraft.transport.pipe.IPipeEventListeners;
+import buildcraft.transport.pipe.Pipe;
+import buildcraft.transport.pipe.PipeRegistry;
+import buildcraft.transport.pipe.behaviour.PipeBehaviourLapis;
+import buildcraft.transport.pipe.flow.PipeFlowItems;
+import buildcraft.transport.pipe.flow.TravellingItem;
+
+import buildcraft.test.VanillaSetupBaseTester;
+
+/** Routes items through a {@link PipeFlowItems} whose pipe and holder only implement what routing an item through the
+ * center of a pipe needs. */
+public class PipeFlowItemsTester extends VanillaSetupBaseTester {
+
+    /** A world without any chunks, as routing only needs the time and the random. */
+    private static class TestWorld extends World {
+        TestWorld() {
+            super(null, new WorldInfo(new WorldSettings(0, GameType.SURVIVAL, false, false, WorldType.DEFAULT), "test"),
+                new WorldProviderSurface(), new Profiler(), false);
+        }
+
+        @Override
+        protected IChunkProvider createChunkProvider() {
+            return null;
+        }
+
+        @Override
+        protected boolean isChunkLoaded(int x, int z, boolean allowEmpty) {
+            return false;
+        }
+    }
+
+    private final World world = new TestWorld();
+    private final Set<EnumFacing> connected = EnumSet.of(EnumFacing.NORTH, EnumFacing.SOUTH, EnumFacing.EAST);
+    private final List<PipeEvent> firedEvents = new ArrayList<>();
+    /** If true then the holder claims to have handlers for every event. */
+    private boolean hasHandlers = false;
+    private IPipeHolder holder;
+    private PipeFlowItems flow;
+    private int inserted = 0;
+
+    @Before
+    public void setup() {
+        holder = proxy(IPipeHolder.class, new Class<?>[] { IPipeEventListeners.class }, (name, args) -> {
+            switch (name) {
+                case "getPipeWorld":
+                    return world;
+                case "getPipePos":
+                    return BlockPos.ORIGIN;
+                case "hasEventHandlers":
+                    return hasHandlers;
+                case "fireEvent":
+                    firedEvents.add((PipeEvent) args[0]);
+                    return false;
+                default:
+                    return null;
+            }
+        });
+        IPipe pipe = proxy(IPipe.class, new Class<?>[0], (name, args) -> {
+            switch (name) {
+                case "getHolder":
+                    return holder;
+                case "getFlow":
+                    return flow;
+                case "isConnected":
+                    return connected.contains(args[0]);
+                case "getConnectedType":
+                    return connected.contains(args[0]) ? ConnectedType.PIPE : null;
+                default:
+                    return null;
+            }
+        });
+        flow = new PipeFlowItems(pipe);
+    }
+
+    /** Replaces {@link #flow} with the flow of a real lapis pipe (which caches its routing) that is connected to every
+     * side in {@link #connected}. */
+    private Pipe createLapisPipe() throws InvalidInputDataException {
+        ResourceLocation id = new ResourceLocation("buildcrafttransport", "test_lapis_item");
+        if (PipeRegistry.INSTANCE.getDefinition(id) == null) {
+            PipeDefinitionBuilder builder = new PipeDefinitionBuilder();
+            builder.identifier = id;
+            builder.texturePrefix = "buildcrafttransport:pipes/lapis_item";
+            builder.logicConstructor = PipeBehaviourLapis::new;
+            builder.logicLoader = PipeBehaviourLapis::new;
+            builder.flow(new PipeFlowType(PipeFlowItems::new, PipeFlowItems::new));
+            PipeRegistry.INSTANCE.registerPipe(new PipeDefinition(builder));
+        }
+        // Loaded rather than created, as that's the only way to set the connections without a world
+        NBTTagCompound nbt = new NBTTagCompound();
+        nbt.setString("def", id.toString());
+        int connectionData = 0;
+        for (EnumFacing face : connected) {
+            connectionData |= 0b01 << (face.ordinal() * 2);
+        }
+        nbt.setInteger("con", connectionData);
+        Pipe pipe = new Pipe(holder, nbt);
+        flow = (PipeFlowItems) pipe.flow;
+        return pipe;
+    }
+
+    interface Handler {
+        /** @return The value to return, or null to return the default value for the return type. */
+        Object invoke(String name, Object[] args);
+    }
+
+    private static <T> T proxy(Class<T> type, Class<?>[] extra, Handler handler) {
+        Class<?>[] interfaces = new Class<?>[extra.length + 1];
+        interfaces[0] = type;
+        System.arraycopy(extra, 0, interfaces, 1, extra.length);
+        Object proxy = Proxy.newProxyInstance(type.getClassLoader(), interfaces, (p, method, args) -> {
+            switch (method.getName()) {
+                case "hashCode":
+                    return System.identityHashCode(p);
+                case "equals":
+                    return p == args[0];
+                case "toString":
+                    return "Test" + type.getSimpleName();
+            }
+            Object value = handler.invoke(method.getName(), args);
+            if (value == null && method.getReturnType().isPrimitive() && method.getReturnType() != void.class) {
+                // The default value of the primitive
+                return Array.get(Array.newInstance(method.getReturnType(), 1), 0);
+            }
+            return value;
+        });
+        return type.cast(proxy);
+    }
+
+    /** Inserts items from the west, and ticks the pipe until they have all reached the center.
+     *
+     * @return Every direction that any item in the pipe has been sent in. */
+    private Set<EnumFacing> routeItems(int count) {
+        inserted += count;
+        for (int i = 0; i < count; i++) {
+            flow.insertItemsForce(new ItemStack(Items.DIAMOND), EnumFacing.WEST, null, 0.05);
+            // The time never moves on, so routed items are never ticked past the center
+            flow.onTick();
+        }
+        Set<EnumFacing> directions = EnumSet.noneOf(EnumFacing.class);
+        List<TravellingItem> items = flow.getAllItemsForRender();
+        Assert.assertEquals(inserted, items.size());
+        for (TravellingItem item : items) {
+            directions.add(item.getRenderDirection(world.getTotalWorldTime(), 0));
+        }
+        return directions;
+    }
+
+    @Test
+    public void testNoHandlersFiresNoEvents() {
+        Assert.assertEquals(connected, routeItems(200));
+        // Every event that is created is fired, so none were created either
+        Assert.assertEquals(0, firedEvents.size());
+    }
+
+    private int countSideChecks() {
+        int sideChecks = 0;
+        for (PipeEvent event : firedEvents) {
+            if (event instanceof PipeEventItem.SideCheck) {
+                sideChecks++;
+            }
+        }
+        return sideChecks;
+    }
+
+    @Test
+    public void testHandlersGetEvents() {
+        hasHandlers = true;
+        Assert.assertEquals(connected, routeItems(200));
+        // There isn't a behaviour, so there isn't a routing cache either
+        Assert.assertEquals(200, countSideChecks());
+    }
+
+    @Test
+    public void testRoutingCache() throws InvalidInputDataException {
+        hasHandlers = true;
+        Pipe pipe = createLapisPipe();
+        Assert.assertEquals(connected, routeItems(200));
+        // Every item is the same, so only the first one needed a side check
+        Assert.assertEquals(1, countSideChecks());
+
+        // Neighbour, connection and pluggable changes
+        pipe.markForUpdate();
+        routeItems(5);
+        Assert.assertEquals(2, countSideChecks());
+
+        // Only behaviour updates change the routing
+        pipe.onNetworkUpdateScheduled(PipeMessageReceiver.FLOW, PipeMessageReceiver.WIRES);
+        routeItems(5);
+        Assert.assertEquals(2, countSideChecks());
+        pipe.onNetworkUpdateScheduled(PipeMessageReceiver.FLOW, PipeMessageReceiver.BEHAVIOUR);
+        routeItems(5);
+        Assert.assertEquals(3, countSideChecks());
+    }
+
+    @Test
+    public void testSingleConnection() {
+        connected.clear();
+        connected.add(EnumFacing.UP);
+        Assert.assertEquals(EnumSet.of(EnumFacing.UP), routeItems(20));
+        connected.add(EnumFacing.WEST);
+        // Items are never sent back the way they came, even if that side is connected
+        Assert.assertEquals(EnumSet.of(EnumFacing.UP), routeItems(20));
+        Assert.assertEquals(0, firedEvents.size());
+    }
+}
@@ -0,0 +1,285 @@
+package buildcraft.test.transport.pipe.flow;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.minecraft.util.EnumFacing;
+
+import buildcraft.api.mj.IMjConnector;
+import buildcraft.api.mj.IMjReceiver;
+import buildcraft.api.mj.MjAPI;
+
+import buildcraft.transport.BCTransportConfig;
+import buildcraft.transport.BCTransportConfig.PowerLossMode;
+import buildcraft.transport.pipe.flow.PipeFlowPower.EnumFlow;
+import buildcraft.transport.pipe.flow.PowerNetwork;
+
+public class PowerNetworkTester {
+    private static final long MJ = MjAPI.MJ;
+
+    static class TestPipe implements PowerNetwork.IMember {
+        final boolean isReceiver;
+        final long maxPower;
+        final TestPipe[] neighbours = new TestPipe[6];
+        final IMjReceiver[] receivers = new IMjReceiver[6];
+        boolean valid = true;
+        PowerNetwork network;
+        int index;
+        long networkPower;
+        /** The flows of every section from the last tick. */
+        final long[] flows = new long[6];
+
+        TestPipe(boolean isReceiver, long maxPower) {
+            this.isReceiver = isReceiver;
+            this.maxPower = maxPower;
+        }
+
+        /** @return The section of this on the given side, for {@link PowerNetwork#receivePower(int, long, boolean)}. */
+        int section(EnumFacing face) {
+            return index * 6 + face.ordinal();
+        }
+
+        @Override
+        public void ensureConfigured() {}
+
+        @Override
+        public PowerNetwork.IMember getConnectedMember(EnumFacing face) {
+            return neighbours[face.ordinal()];
+        }
+
+        @Override
+        public IMjReceiver getConnectedReceiver(EnumFacing face) {
+            return receivers[face.ordinal()];
+        }
+
+        @Override
+        public boolean isReceiver() {
+            return isReceiver;
+        }
+
+        @Override
+        public long getMaxPower() {
+            return maxPower;
+        }
+
+        @Override
+        public long getPowerLoss() {
+            return 0;
+        }
+
+        @Override
+        public long getPowerResistance() {
+            return 0;
+        }
+
+        @Override
+        public boolean isMemberValid() {
+            return valid;
+        }
+
+        @Override
+        public PowerNetwork getNetwork() {
+            return network;
+        }
+
+        @Override
+        public void setNetwork(PowerNetwork network, int index) {
+            this.network = network;
+            this.index = index;
+        }
+
+        @Override
+        public void addNetworkPower(long microJoules) {
+            networkPower += microJoules;
+        }
+
+        @Override
+        public long takeNetworkPower() {
+            long power = networkPower;
+            networkPower = 0;
+            return power;
+        }
+
+        @Override
+        public void updateDisplay(long[] flows, EnumFlow[] directions, int offset) {
+            System.arraycopy(flows, offset, this.flows, 0, 6);
+        }
+    }
+
+    /** Requests the same amount of power every tick, and accepts everything it's given. */
+    static class TestReceiver implements IMjReceiver {
+        final long requested;
+        long received;
+
+        TestReceiver(long requested) {
+            this.requested = requested;
+        }
+
+        @Override
+        public boolean canConnect(@Nonnull IMjConnector other) {
+            return true;
+        }
+
+        @Override
+        public long getPowerRequested() {
+            return requested;
+        }
+
+        @Override
+        public long receivePower(long microJoules, boolean simulate) {
+            if (!simulate) {
+                received += microJoules;
+            }
+            return 0;
+        }
+
+        @Override
+        public boolean canReceive() {
+            return true;
+        }
+    }
+
+    private static void connect(TestPipe from, EnumFacing face, TestPipe to) {
+        from.neighbours[face.ordinal()] = to;
+        to.neighbours[face.getOpposite().ordinal()] = from;
+    }
+
+    private TestPipe source, middle;
+    private TestReceiver small, large;
+
+    @Before
+    public void setup() {
+        BCTransportConfig.lossMode = PowerLossMode.LOSSLESS;
+        source = new TestPipe(true, 100 * MJ);
+        middle = new TestPipe(false, 100 * MJ);
+        connect(source, EnumFacing.EAST, middle);
+        small = new TestReceiver(10 * MJ);
+        large = new TestReceiver(30 * MJ);
+        middle.receivers[EnumFacing.NORTH.ordinal()] = small;
+        middle.receivers[EnumFacing.SOUTH.ordinal()] = large;
+    }
+
+    @Test
+    public void testBuild() {
+        PowerNetwork network = PowerNetwork.build(middle);
+        Assert.assertEquals(2, network.getMemberCount());
+        Assert.assertEquals(2, network.getReceiverCount());
+        Assert.assertSame(network, source.network);
+        Assert.assertSame(network, middle.network);
+        Assert.assertTrue(network.isValid());
+    }
+
+    @Test
+    public void testProportionalSplit() {
+        PowerNetwork network = PowerNetwork.build(source);
+        network.tick(0);
+        Assert.assertEquals(40 * MJ, network.getPowerRequested(Long.MAX_VALUE));
+
+        int section = source.section(EnumFacing.WEST);
+        Assert.assertEquals(20 * MJ, network.receivePower(section, 20 * MJ, false));
+        Assert.assertEquals(20 * MJ, network.getPowerRequested(Long.MAX_VALUE));
+        network.tick(1);
+        Assert.assertEquals(5 * MJ, small.received);
+        Assert.assertEquals(15 * MJ, large.received);
+        Assert.assertEquals(0, network.getBuffer());
+        Assert.assertEquals(20 * MJ, middle.flows[EnumFacing.WEST.ordinal()]);
+        Assert.assertEquals(5 * MJ, middle.flows[EnumFacing.NORTH.ordinal()]);
+        Assert.assertEquals(15 * MJ, middle.flows[EnumFacing.SOUTH.ordinal()]);
+
+        // Solving again in the same tick does nothing
+        network.receivePower(section, 20 * MJ, false);
+        network.tick(1);
+        Assert.assertEquals(5 * MJ, small.received);
+        Assert.assertEquals(20 * MJ, network.getBuffer());
+    }
+
+    @Test
+    public void testReceiveReturnsExcess() {
+        PowerNetwork network = PowerNetwork.build(source);
+        network.tick(0);
+        int section = source.section(EnumFacing.WEST);
+
+        // Only as much as the network needs
+        Assert.assertEquals(40 * MJ, network.receivePower(section, 100 * MJ, true));
+        Assert.assertEquals(40 * MJ, network.receivePower(section, 100 * MJ, false));
+        Assert.assertEquals(0, network.receivePower(section, 100 * MJ, false));
+        Assert.assertEquals(40 * MJ, network.getBuffer());
+
+        // And only as much as the section can carry
+        TestPipe weakSource = new TestPipe(true, 5 * MJ);
+        connect(weakSource, EnumFacing.UP, middle);
+        network = PowerNetwork.build(middle);
+        network.tick(1);
+        section = weakSource.section(EnumFacing.DOWN);
+        Assert.assertEquals(5 * MJ, network.receivePower(section, 20 * MJ, false));
+        Assert.assertEquals(0, network.receivePower(section, 20 * MJ, false));
+    }
+
+    @Test
+    public void testInvalidateHandsBackBuffer() {
+        PowerNetwork network = PowerNetwork.build(source);
+        network.tick(0);
+        network.receivePower(source.section(EnumFacing.WEST), 21 * MJ + 1, false);
+        network.invalidate();
+        Assert.assertFalse(network.isValid());
+        Assert.assertEquals(0, network.getBuffer());
+        Assert.assertEquals(21 * MJ + 1, source.networkPower + middle.networkPower);
+
+        PowerNetwork rebuilt = PowerNetwork.build(middle);
+        Assert.assertEquals(21 * MJ + 1, rebuilt.getBuffer());
+        Assert.assertEquals(0, source.networkPower + middle.networkPower);
+
+        // The old network already ran in tick 0
+        rebuilt.tick(0);
+        Assert.assertEquals(0, small.received + large.received);
+        rebuilt.tick(1);
+        Assert.assertEquals(21 * MJ + 1, small.received + large.received + rebuilt.getBuffer());
+        Assert.assertEquals(large.received, small.received * 3, 3);
+    }
+
+    @Test
+    public void testChangesInvalidate() {
+        PowerNetwork network = PowerNetwork.build(source);
+        network.tick(0);
+        network.receivePower(source.section(EnumFacing.WEST), 10 * MJ, false);
+        middle.receivers[EnumFacing.NORTH.ordinal()] = new TestReceiver(10 * MJ);
+        network.tick(1);
+        Assert.assertFalse(network.isValid());
+        Assert.assertEquals(0, small.received + large.received);
+        Assert.assertEquals(10 * MJ, source.networkPower + middle.networkPower);
+
+        network = PowerNetwork.build(source);
+        network.tick(2);
+        Assert.assertTrue(network.isValid());
+        middle.valid = false;
+        network.tick(3);
+        Assert.assertFalse(network.isValid());
+    }
+
+    @Test
+    public void testSharedSectionCapacity() {
+        // source -> trunk -> middle, with both receivers on the far side of the trunk
+        TestPipe trunk = new TestPipe(false, 20 * MJ);
+        source = new TestPipe(true, 100 * MJ);
+        connect(source, EnumFacing.EAST, trunk);
+        connect(trunk, EnumFacing.EAST, middle);
+
+        PowerNetwork network = PowerNetwork.build(source);
+        network.tick(0);
+        // The large receiver is limited to 20 by the trunk on its own, but together they would need 30
+        long requested = network.getPowerRequested(Long.MAX_VALUE);
+        Assert.assertTrue(requested <= 20 * MJ);
+        Assert.assertTrue(requested > 19 * MJ);
+
+        network.receivePower(source.section(EnumFacing.WEST), 100 * MJ, false);
+        network.tick(1);
+        Assert.assertTrue(small.received + large.received <= 20 * MJ);
+        Assert.assertEquals(large.received, small.received * 2, 2);
+        for (long flow : trunk.flows) {
+            Assert.assertTrue(flow <= 20 * MJ);
+        }
+    }
+}
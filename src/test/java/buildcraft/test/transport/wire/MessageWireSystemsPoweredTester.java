@@ -0,0 +1,48 @@
+package buildcraft.test.transport.wire;
+
+import java.util.Random;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import buildcraft.transport.wire.MessageWireSystemsPowered;
+
+import it.unimi.dsi.fastutil.ints.Int2BooleanMap;
+import it.unimi.dsi.fastutil.ints.Int2BooleanOpenHashMap;
+
+public class MessageWireSystemsPoweredTester {
+    @Test
+    public void testRoundTrip() {
+        for (int count : new int[] { 0, 1, 7, 8, 9, 1000 }) {
+            Random rand = new Random(count);
+            Int2BooleanMap idsPowered = new Int2BooleanOpenHashMap();
+            while (idsPowered.size() < count) {
+                idsPowered.put(rand.nextInt(100_000), rand.nextBoolean());
+            }
+            // Make sure that trailing unpowered systems are still sent
+            if (count > 0) {
+                idsPowered.put(200_000, false);
+            }
+
+            ByteBuf buffer = Unpooled.buffer();
+            new MessageWireSystemsPowered(idsPowered).toBytes(buffer);
+            MessageWireSystemsPowered read = new MessageWireSystemsPowered();
+            read.fromBytes(buffer);
+
+            Assert.assertEquals(0, buffer.readableBytes());
+            Assert.assertEquals(idsPowered.size(), read.getCount());
+            int last = -1;
+            for (int i = 0; i < read.getCount(); i++) {
+                int id = read.getId(i);
+                Assert.assertTrue(id > last);
+                last = id;
+                Assert.assertTrue(idsPowered.containsKey(id));
+                Assert.assertEquals(idsPowered.get(id), read.isPowered(i));
+            }
+            System.out.println(idsPowered.size() + " systems took " + buffer.writerIndex() + " bytes");
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package buildcraft.test.transport.wire;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.minecraft.item.EnumDyeColor;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.math.BlockPos;
+
+import buildcraft.transport.wire.WireEmitterTracker;
+import buildcraft.transport.wire.WireSystem;
+import buildcraft.transport.wire.WireSystem.WireElement;
+
+public class WireEmitterTrackerTester {
+    private static final int SYSTEMS = 200;
+    private static final int GATES = 1000;
+    private static final int ROUNDS = 1000;
+
+    public static long dontInlineThis = 0;
+
+    private final List<WireSystem> systems = new ArrayList<>();
+    private final WireElement[] gates = new WireElement[GATES];
+    private final int[] masks = new int[GATES];
+    private final WireEmitterTracker tracker = new WireEmitterTracker();
+
+    /** Creates 1000 gates spread over 200 systems, where every gate is next to one or two systems. */
+    private void setup(Random rand) {
+        for (int i = 0; i < SYSTEMS; i++) {
+            WireSystem system = new WireSystem();
+            system.color = EnumDyeColor.byMetadata(rand.nextInt(16));
+            system.id = i;
+            systems.add(system);
+        }
+        for (int i = 0; i < GATES; i++) {
+            gates[i] = new WireElement(new BlockPos(i, 64, 0), EnumFacing.NORTH);
+            int count = 1 + rand.nextInt(2);
+            for (int j = 0; j < count; j++) {
+                WireSystem system = systems.get(rand.nextInt(SYSTEMS));
+                if (system.addElement(gates[i])) {
+                    tracker.add(gates[i], system);
+                }
+            }
+        }
+    }
+
+    private void toggle(Random rand) {
+        int gate = rand.nextInt(GATES);
+        masks[gate] ^= 1 << rand.nextInt(16);
+        tracker.setEmitting(gates[gate], masks[gate]);
+    }
+
+    /** The old approach: look at every emitter of every system. */
+    private boolean isPoweredFull(WireSystem system) {
+        for (WireElement element : system.elements) {
+            for (int i = 0; i < GATES; i++) {
+                if (gates[i] == element) {
+                    if ((masks[i] & WireEmitterTracker.getMask(system.color)) != 0) {
+                        return true;
+                    }
+                    break;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void testMatchesFullRecalculation() {
+        Random rand = new Random(0);
+        setup(rand);
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int i = 0; i < 10; i++) {
+                toggle(rand);
+            }
+            for (WireSystem system : systems) {
+                Assert.assertEquals(isPoweredFull(system), system.getEmittingCount() > 0);
+            }
+            for (WireSystem system : tracker.getPowerChanged()) {
+                Assert.assertTrue(systems.contains(system));
+            }
+            tracker.getPowerChanged().clear();
+        }
+
+        // Removing every emitter should leave every system unpowered
+        for (WireSystem system : systems) {
+            for (WireElement element : new ArrayList<>(system.elements)) {
+                system.removeElement(element);
+                tracker.remove(element, system);
+            }
+            Assert.assertEquals(0, system.getEmittingCount());
+        }
+    }
+
+    @Test
+    public void benchmarkToggles() {
+        Random rand = new Random(1);
+        setup(rand);
+
+        // Warm up
+        for (int i = 0; i < 100_000; i++) {
+            toggle(rand);
+            tracker.getPowerChanged().clear();
+        }
+
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int i = 0; i < GATES; i++) {
+                toggle(rand);
+            }
+            for (WireSystem system : tracker.getPowerChanged()) {
+                dontInlineThis += system.getEmittingCount();
+            }
+            tracker.getPowerChanged().clear();
+        }
+        long eventDriven = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int round = 0; round < ROUNDS / 10; round++) {
+            for (int i = 0; i < GATES; i++) {
+                int gate = rand.nextInt(GATES);
+                masks[gate] ^= 1 << rand.nextInt(16);
+            }
+            // Previously any gate change caused every system to be recalculated
+            for (WireSystem system : systems) {
+                dontInlineThis += isPoweredFull(system) ? 1 : 0;
+            }
+        }
+        long full = (System.nanoTime() - start) * 10;
+
+        System.out.println("Toggling " + GATES + " gates across " + SYSTEMS + " systems " + ROUNDS + " times:");
+        System.out.println("  Event driven: " + eventDriven / 1_000_000 + "ms");
+        System.out.println("  Full recalculation: ~" + full / 1_000_000 + "ms");
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.test.transport.wire;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.minecraft.item.EnumDyeColor;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.math.BlockPos;
+
+import buildcraft.api.transport.EnumWirePart;
+import buildcraft.api.transport.IWireEmitter;
+import buildcraft.api.transport.WireNode;
+
+import buildcraft.transport.wire.WireSystem;
+import buildcraft.transport.wire.WireSystem.WireElement;
+import buildcraft.transport.wire.WorldSavedDataWireSystems;
+import buildcraft.transport.wire.WorldSavedDataWireSystems.IWireAccess;
+
+public class WorldSavedDataWireSystemsTester {
+
+    /** A set of pipes, where every pipe connects to every neighbouring pipe unless one of them has a blocking
+     * pluggable on that side. */
+    private static class TestPipes implements IWireAccess {
+        final Map<BlockPos, Map<EnumWirePart, EnumDyeColor>> wires = new HashMap<>();
+        final Map<BlockPos, Set<EnumFacing>> blocked = new HashMap<>();
+
+        boolean isBlocked(BlockPos pos, EnumFacing side) {
+            Set<EnumFacing> sides = blocked.get(pos);
+            return sides != null && sides.contains(side);
+        }
+
+        EnumDyeColor getColour(WireElement element) {
+            Map<EnumWirePart, EnumDyeColor> parts = wires.get(element.blockPos);
+            return parts == null ? null : parts.get(element.wirePart);
+        }
+
+        @Override
+        public List<WireElement> getConnectedElements(WireElement part) {
+            WireNode node = new WireNode(part.blockPos, part.wirePart);
+            List<WireElement> list = new ArrayList<>();
+            for (EnumFacing face : EnumFacing.VALUES) {
+                WireNode oNode = node.offset(face);
+                if (oNode.pos.equals(node.pos) || (wires.containsKey(oNode.pos) && !isBlocked(node.pos, face)
+                    && !isBlocked(oNode.pos, face.getOpposite()))) {
+                    list.add(new WireElement(oNode.pos, oNode.part));
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public IWireEmitter getEmitter(BlockPos pos, EnumFacing side) {
+            return null;
+        }
+    }
+
+    private final TestPipes pipes = new TestPipes();
+    private final WorldSavedDataWireSystems systems = new WorldSavedDataWireSystems(pipes);
+
+    private void addWire(WireNode node, EnumDyeColor colour) {
+        pipes.wires.computeIfAbsent(node.pos, p -> new EnumMap<>(EnumWirePart.class)).put(node.part, colour);
+        systems.addWirePart(new WireElement(node.pos, node.part), colour);
+    }
+
+    private void setBlocked(BlockPos pos, EnumFacing side, boolean block) {
+        Set<EnumFacing> sides = pipes.blocked.computeIfAbsent(pos, p -> EnumSet.noneOf(EnumFacing.class));
+        if (block) {
+            sides.add(side);
+        } else {
+            sides.remove(side);
+        }
+        // Like TilePipeHolder.replacePluggable
+        Map<EnumWirePart, EnumDyeColor> parts = pipes.wires.get(pos);
+        systems.rebuildWireSystemsAround(pos, part -> parts == null ? null : parts.get(part));
+    }
+
+    private WireSystem getSystem(WireNode node) {
+        return systems.getWireSystemOfPart(new WireElement(node.pos, node.part));
+    }
+
+    /** @return The wire part in the next pipe over in the given direction. */
+    private static WireNode next(WireNode node, EnumFacing face) {
+        WireNode next = node.offset(face);
+        while (next.pos.equals(node.pos)) {
+            next = next.offset(face);
+        }
+        return next;
+    }
+
+    @Test
+    public void testBlockingPluggableSplits() {
+        WireNode x = new WireNode(new BlockPos(0, 64, 0), EnumWirePart.VALUES[0]);
+        WireNode a = next(x, EnumFacing.EAST);
+        WireNode b = next(a, EnumFacing.EAST);
+        addWire(x, EnumDyeColor.RED);
+        addWire(a, EnumDyeColor.RED);
+        addWire(b, EnumDyeColor.RED);
+        Assert.assertNotNull(getSystem(x));
+        Assert.assertSame(getSystem(x), getSystem(a));
+        Assert.assertSame(getSystem(x), getSystem(b));
+
+        // A blocking pluggable on A, facing B
+        setBlocked(a.pos, EnumFacing.EAST, true);
+        Assert.assertSame(getSystem(x), getSystem(a));
+        Assert.assertNotNull(getSystem(b));
+        Assert.assertNotSame(getSystem(x), getSystem(b));
+        Assert.assertFalse(getSystem(x).hasElement(new WireElement(b.pos, b.part)));
+
+        // And removing it again
+        setBlocked(a.pos, EnumFacing.EAST, false);
+        Assert.assertSame(getSystem(x), getSystem(a));
+        Assert.assertSame(getSystem(x), getSystem(b));
+    }
+
+    /** Randomly changes the wires and pluggables of a grid of pipes, checking the systems against a full search after
+     * every change. */
+    @Test
+    public void testRandomChanges() {
+        Random rand = new Random(0x77697265);
+        int size = 6;
+        EnumDyeColor[] colours = { EnumDyeColor.RED, EnumDyeColor.BLUE };
+        List<BlockPos> positions = new ArrayList<>();
+        for (int x = 0; x < size; x++) {
+            for (int z = 0; z < size; z++) {
+                positions.add(new BlockPos(x, 64, z));
+            }
+        }
+        for (BlockPos pos : positions) {
+            for (EnumWirePart part : EnumWirePart.VALUES) {
+                if (rand.nextInt(3) != 0) {
+                    addWire(new WireNode(pos, part), colours[rand.nextInt(colours.length)]);
+                }
+            }
+        }
+        assertMatchesSearch();
+
+        for (int i = 0; i < 500; i++) {
+            BlockPos pos = positions.get(rand.nextInt(positions.size()));
+            if (rand.nextBoolean()) {
+                EnumFacing side = EnumFacing.VALUES[rand.nextInt(6)];
+                setBlocked(pos, side, !pipes.isBlocked(pos, side));
+            } else {
+                EnumWirePart part = EnumWirePart.VALUES[rand.nextInt(EnumWirePart.VALUES.length)];
+                WireElement element = new WireElement(pos, part);
+                Map<EnumWirePart, EnumDyeColor> parts = pipes.wires.get(pos);
+                if (parts.containsKey(part) && rand.nextBoolean()) {
+                    parts.remove(part);
+                    systems.removeWirePart(element);
+                } else {
+                    addWire(new WireNode(pos, part), colours[rand.nextInt(colours.length)]);
+                }
+            }
+            assertMatchesSearch();
+        }
+    }
+
+    /** Checks that every wire is in a system, and that two wires are in the same system if (and only if) they are
+     * connected. */
+    private void assertMatchesSearch() {
+        Map<WireElement, Integer> components = new HashMap<>();
+        int nextComponent = 0;
+        for (Map.Entry<BlockPos, Map<EnumWirePart, EnumDyeColor>> entry : pipes.wires.entrySet()) {
+            for (EnumWirePart part : entry.getValue().keySet()) {
+                WireElement start = new WireElement(entry.getKey(), part);
+                if (components.containsKey(start)) {
+                    continue;
+                }
+                EnumDyeColor colour = pipes.getColour(start);
+                int component = nextComponent++;
+                ArrayDeque<WireElement> queue = new ArrayDeque<>();
+                queue.add(start);
+                components.put(start, component);
+                while (!queue.isEmpty()) {
+                    for (WireElement neighbour : pipes.getConnectedElements(queue.poll())) {
+                        if (pipes.getColour(neighbour) == colour && !components.containsKey(neighbour)) {
+                            components.put(neighbour, component);
+                            queue.add(neighbour);
+                        }
+                    }
+                }
+            }
+        }
+
+        Map<Integer, WireSystem> componentSystems = new HashMap<>();
+        Set<WireSystem> seen = new HashSet<>();
+        for (Map.Entry<WireElement, Integer> entry : components.entrySet()) {
+            WireSystem system = systems.getWireSystemOfPart(entry.getKey());
+            Assert.assertNotNull("No system for " + entry.getKey(), system);
+            Assert.assertEquals(pipes.getColour(entry.getKey()), system.color);
+            WireSystem existing = componentSystems.get(entry.getValue());
+            if (existing == null) {
+                Assert.assertTrue("Two components share a system: " + entry.getKey(), seen.add(system));
+                componentSystems.put(entry.getValue(), system);
+            } else {
+                Assert.assertSame("A component was split: " + entry.getKey(), existing, system);
+            }
+        }
+        for (WireSystem system : systems.wireSystems.keySet()) {
+            Assert.assertTrue("Orphaned system " + system.id, seen.contains(system));
+            for (WireElement element : system.elements) {
+                Assert.assertTrue(components.containsKey(element));
+            }
+        }
+    }
+}